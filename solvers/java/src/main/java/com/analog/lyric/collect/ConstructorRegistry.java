@@ -16,17 +16,23 @@
 
 package com.analog.lyric.collect;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -56,6 +62,17 @@ import net.jcip.annotations.ThreadSafe;
 @ThreadSafe
 public class ConstructorRegistry<T> extends AbstractMap<String, Constructor<T>>
 {
+	/**
+	 * Resource directory containing class index files used by {@link #loadAll()}.
+	 * <p>
+	 * Each index file is named by a fully qualified package name and lists the simple names of
+	 * the top-level classes in that package, one per line. Blank lines and lines starting with '#'
+	 * are ignored. The Dimple build generates these files for all of its packages.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final String CLASS_INDEX_PATH = "META-INF/dimple/class-index/";
+
 	private final Class<? super T> _superClass;
 
 	/**
@@ -425,6 +442,11 @@ public class ConstructorRegistry<T> extends AbstractMap<String, Constructor<T>>
 	 * Searches all of the packages in {@link #getPackages()} for subclasses of {@code T} and adds
 	 * then to the registry.
 	 * <p>
+	 * Packages that have a class index (see {@link #CLASS_INDEX_PATH}) in every class path location that
+	 * contains them are searched using only the classes listed in the index. Other packages, including
+	 * packages split across indexed and unindexed locations, are searched by scanning the entire class
+	 * path, which can be slow when there are many or large jars.
+	 * <p>
 	 * 
 	 * @since 0.07
 	 */
@@ -432,17 +454,37 @@ public class ConstructorRegistry<T> extends AbstractMap<String, Constructor<T>>
 	{
 		ClassLoader loader = getClass().getClassLoader();
 
-		ClassPath path;
-		try
-		{
-			path = ClassPath.from(loader);
-		}
-		catch (IOException ex)
-		{
-			throw new RuntimeException(ex);
-		}
+		ClassPath path = null;
 		for (String packageName : _packages)
 		{
+			final Collection<String> classNames = readClassIndex(loader, packageName);
+			if (classNames != null)
+			{
+				for (String className : classNames)
+				{
+					try
+					{
+						addConstructorsFrom(Class.forName(packageName + "." + className, false, loader), true);
+					}
+					catch (ClassNotFoundException | LinkageError ex)
+					{
+						// Ignore stale entries
+					}
+				}
+				continue;
+			}
+			
+			if (path == null)
+			{
+				try
+				{
+					path = ClassPath.from(loader);
+				}
+				catch (IOException ex)
+				{
+					throw new RuntimeException(ex);
+				}
+			}
 			for (ClassPath.ClassInfo info : path.getTopLevelClasses(packageName))
 			{
 				addConstructorsFrom(info.load(), true);
@@ -450,6 +492,73 @@ public class ConstructorRegistry<T> extends AbstractMap<String, Constructor<T>>
 		}
 	}
 
+	/**
+	 * Reads names of top-level classes in package from class index.
+	 * <p>
+	 * Combines the contents of all resources named {@link #CLASS_INDEX_PATH} + {@code packageName}
+	 * visible to the class loader.
+	 * <p>
+	 * @return simple names of classes in the order in which they were listed, or null if there is no
+	 * index for the package or if some class path location that contains the package has no index,
+	 * in which case the index would be incomplete.
+	 * @since 0.08
+	 */
+	public static @Nullable Collection<String> readClassIndex(ClassLoader loader, String packageName)
+	{
+		final String indexPath = CLASS_INDEX_PATH + packageName;
+		LinkedHashSet<String> classNames = null;
+		
+		try
+		{
+			final Set<String> indexedRoots = new HashSet<>();
+			final Enumeration<URL> urls = loader.getResources(indexPath);
+			while (urls.hasMoreElements())
+			{
+				if (classNames == null)
+				{
+					classNames = new LinkedHashSet<>();
+				}
+				
+				final URL url = urls.nextElement();
+				indexedRoots.add(resourceRoot(url, indexPath));
+				try (BufferedReader reader =
+					new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)))
+				{
+					for (String line; (line = reader.readLine()) != null;)
+					{
+						line = line.trim();
+						if (!line.isEmpty() && !line.startsWith("#"))
+						{
+							classNames.add(line);
+						}
+					}
+				}
+			}
+			
+			if (classNames != null)
+			{
+				// Classes in the same package may come from more than one location. If any of them
+				// was not indexed, the index does not list all of the classes.
+				final String packagePath = packageName.replace('.', '/');
+				final Enumeration<URL> packageUrls = loader.getResources(packagePath);
+				while (packageUrls.hasMoreElements())
+				{
+					if (!indexedRoots.contains(resourceRoot(packageUrls.nextElement(), packagePath)))
+					{
+						return null;
+					}
+				}
+			}
+		}
+		catch (IOException ex)
+		{
+			// Use class path scan instead.
+			return null;
+		}
+		
+		return classNames;
+	}
+
 	/**
 	 * Resets back to initial state upon construction.
 	 * <p>
@@ -467,6 +576,19 @@ public class ConstructorRegistry<T> extends AbstractMap<String, Constructor<T>>
 	 * Private methods
 	 */
 	
+	/**
+	 * Location of class path root from which resource with given path was loaded.
+	 */
+	private static String resourceRoot(URL url, String path)
+	{
+		String location = url.toString();
+		if (location.endsWith("/"))
+		{
+			location = location.substring(0, location.length() - 1);
+		}
+		return location.endsWith(path) ? location.substring(0, location.length() - path.length()) : location;
+	}
+	
 	@NonNullByDefault(false)
 	private static enum ConstructorComparator implements Comparator<Constructor<?>>
 	{
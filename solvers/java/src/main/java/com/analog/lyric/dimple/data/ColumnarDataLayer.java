@@ -0,0 +1,289 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.data;
+
+import static java.lang.String.*;
+import static java.util.Objects.*;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.Ids;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.domains.Domain;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Variable;
+
+/**
+ * A {@link ValueDataLayer} that stores values in primitive arrays.
+ * <p>
+ * Each graph's data is held in a {@link ColumnarFactorGraphData}, which stores discrete values as domain
+ * indices and scalar real values as doubles, so that evidence for large numbers of variables can be set
+ * without allocating a {@link Value} object per variable. The bulk setters {@link #setIndices} and
+ * {@link #setDoubles} can be used to load data directly from arrays or NIO buffers.
+ * <p>
+ * When used as a graph's {@linkplain FactorGraph#setDefaultConditioningLayer conditioning layer}, solvers
+ * read values through {@link #getValueInto} without allocating. Note however that the generic
+ * {@link java.util.Map} accessors such as {@link #get} return newly allocated {@link Value} objects
+ * that do not write through to the layer.
+ * <p>
+ * Only discrete and scalar real variables are supported.
+ * <p>
+ * @since 0.08
+ */
+public class ColumnarDataLayer extends ValueDataLayer
+{
+	/*--------------
+	 * Construction
+	 */
+
+	public ColumnarDataLayer(FactorGraph graph)
+	{
+		super(graph, ColumnarFactorGraphData.constructor());
+	}
+
+	protected ColumnarDataLayer(ColumnarDataLayer other)
+	{
+		super(other);
+	}
+
+	@Override
+	public ColumnarDataLayer clone()
+	{
+		return new ColumnarDataLayer(this);
+	}
+
+	/*-------------------
+	 * DataLayer methods
+	 */
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only the value of {@code value} is stored, so subsequent modification of a {@link Value}
+	 * argument will not affect the layer.
+	 */
+	@Override
+	public void set(Variable var, @Nullable Object value)
+	{
+		if (value == null)
+		{
+			remove(var);
+		}
+		else if (value instanceof Value)
+		{
+			put(var, (Value)value);
+		}
+		else
+		{
+			final Domain domain = var.getDomain();
+			if (!domain.inDomain(value))
+			{
+				throw new ClassCastException(format("'%s' is not a Value or member of domain %s", value, domain));
+			}
+
+			final DiscreteDomain discrete = domain.asDiscrete();
+			if (discrete != null)
+			{
+				setIndex(var, discrete.getIndex(value));
+			}
+			else
+			{
+				setDouble(var, ((Number)value).doubleValue());
+			}
+		}
+	}
+
+	/*---------------------------
+	 * ColumnarDataLayer methods
+	 */
+
+	/**
+	 * Returns data for given graph, creating it if necessary.
+	 * <p>
+	 * @throws IllegalStateException if a different type of data has been set for the graph using
+	 * {@link #setDataForGraph}.
+	 * @since 0.08
+	 */
+	public ColumnarFactorGraphData createColumnsForGraph(FactorGraph graph)
+	{
+		final FactorGraphData<Variable,Value> data = createDataForGraph(graph);
+		if (!(data instanceof ColumnarFactorGraphData))
+		{
+			throw new IllegalStateException(format("Data for %s in %s is not columnar", graph, this));
+		}
+		return (ColumnarFactorGraphData)data;
+	}
+
+	/**
+	 * Copies value for {@code var} into {@code value} without allocating anything.
+	 * <p>
+	 * @param value must have domain compatible with {@code var}'s.
+	 * @return false if layer has no value for {@code var}, in which case {@code value} is not modified.
+	 * @since 0.08
+	 */
+	public boolean getValueInto(Variable var, Value value)
+	{
+		final FactorGraph graph = var.getParentGraph();
+		if (graph != null)
+		{
+			final FactorGraphData<Variable,Value> data = getDataForGraph(graph);
+			if (data instanceof ColumnarFactorGraphData)
+			{
+				return ((ColumnarFactorGraphData)data).getValueInto(localIndex(var), value);
+			}
+			else if (data != null)
+			{
+				final Value datum = data.get(var);
+				if (datum != null)
+				{
+					value.setFrom(datum);
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Sets value of discrete {@code var} to element with given {@code index} in its domain.
+	 * <p>
+	 * @param index is the domain index or a negative number to remove the value.
+	 * @since 0.08
+	 * @see ColumnarFactorGraphData#setIndexByLocalIndex
+	 */
+	public void setIndex(Variable var, int index)
+	{
+		assertSharesRoot(var);
+		createColumnsForGraph(requireNonNull(var.getParentGraph())).setIndexByLocalIndex(localIndex(var), index);
+	}
+
+	/**
+	 * Sets value of scalar real {@code var}.
+	 * <p>
+	 * @param value is the new value or {@link Double#NaN} to remove the value.
+	 * @since 0.08
+	 * @see ColumnarFactorGraphData#setDoubleByLocalIndex
+	 */
+	public void setDouble(Variable var, double value)
+	{
+		assertSharesRoot(var);
+		createColumnsForGraph(requireNonNull(var.getParentGraph())).setDoubleByLocalIndex(localIndex(var), value);
+	}
+
+	/**
+	 * Sets values of discrete variables from domain indices.
+	 * <p>
+	 * Sets value of {@code vars.get(i)} to {@code indices[i]}, where negative indices remove the value.
+	 * Does not allocate any objects once the data for the variables' graphs has been created.
+	 * <p>
+	 * @throws IllegalArgumentException if {@code indices} is shorter than {@code vars}.
+	 * @since 0.08
+	 */
+	public void setIndices(List<? extends Variable> vars, int[] indices)
+	{
+		final int n = vars.size();
+		assertLength(n, indices.length);
+
+		for (int i = 0; i < n; ++i)
+		{
+			setIndex(vars.get(i), indices[i]);
+		}
+	}
+
+	/**
+	 * Sets values of discrete variables from domain indices read from buffer.
+	 * <p>
+	 * Like {@link #setIndices(List, int[])} but reads the indices using relative {@link IntBuffer#get()},
+	 * so the buffer's position will be advanced by the number of variables.
+	 * <p>
+	 * @throws IllegalArgumentException if {@code indices} has fewer remaining elements than {@code vars}.
+	 * @since 0.08
+	 */
+	public void setIndices(List<? extends Variable> vars, IntBuffer indices)
+	{
+		final int n = vars.size();
+		assertLength(n, indices.remaining());
+
+		for (int i = 0; i < n; ++i)
+		{
+			setIndex(vars.get(i), indices.get());
+		}
+	}
+
+	/**
+	 * Sets values of scalar real variables.
+	 * <p>
+	 * Sets value of {@code vars.get(i)} to {@code values[i]}, where {@link Double#NaN} removes the value.
+	 * Does not allocate any objects once the data for the variables' graphs has been created.
+	 * <p>
+	 * @throws IllegalArgumentException if {@code values} is shorter than {@code vars}.
+	 * @since 0.08
+	 */
+	public void setDoubles(List<? extends Variable> vars, double[] values)
+	{
+		final int n = vars.size();
+		assertLength(n, values.length);
+
+		for (int i = 0; i < n; ++i)
+		{
+			setDouble(vars.get(i), values[i]);
+		}
+	}
+
+	/**
+	 * Sets values of scalar real variables read from buffer.
+	 * <p>
+	 * Like {@link #setDoubles(List, double[])} but reads the values using relative {@link DoubleBuffer#get()},
+	 * so the buffer's position will be advanced by the number of variables.
+	 * <p>
+	 * @throws IllegalArgumentException if {@code values} has fewer remaining elements than {@code vars}.
+	 * @since 0.08
+	 */
+	public void setDoubles(List<? extends Variable> vars, DoubleBuffer values)
+	{
+		final int n = vars.size();
+		assertLength(n, values.remaining());
+
+		for (int i = 0; i < n; ++i)
+		{
+			setDouble(vars.get(i), values.get());
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private static void assertLength(int nVars, int nValues)
+	{
+		if (nValues < nVars)
+		{
+			throw new IllegalArgumentException(format("Expected %d values but only got %d", nVars, nValues));
+		}
+	}
+
+	private static int localIndex(Variable var)
+	{
+		return Ids.indexFromLocalId(var.getLocalId());
+	}
+}
@@ -0,0 +1,394 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.data;
+
+import static java.util.Objects.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.collect.IntArrayIterable;
+import com.analog.lyric.collect.PrimitiveIterable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.Ids;
+import com.analog.lyric.dimple.model.domains.Domain;
+import com.analog.lyric.dimple.model.domains.RealDomain;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.util.misc.Internal;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Holds variable values for a single graph in primitive arrays instead of {@link Value} objects.
+ * <p>
+ * Values of discrete variables are stored as domain element indices in an {@code int[]} and values
+ * of scalar real variables are stored in a {@code double[]}, both indexed by the variable's local index.
+ * Setting values through the primitive setters such as {@link #setIndexByLocalIndex} does not allocate any
+ * objects, which makes this suitable for loading large amounts of evidence.
+ * <p>
+ * Because no {@link Value} objects are stored, {@link #getByLocalIndex} and the other {@link java.util.Map}
+ * methods will return a newly allocated {@link Value} on each call, and modifications to the returned object
+ * will not be reflected in this object. Use {@link #getValueInto} or the primitive getters to avoid allocation.
+ * <p>
+ * Other kinds of variable (e.g. {@link com.analog.lyric.dimple.model.variables.RealJoint}) are not supported.
+ * <p>
+ * @since 0.08
+ * @see ColumnarDataLayer
+ */
+@NotThreadSafe
+public class ColumnarFactorGraphData extends FactorGraphData<Variable, Value>
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Domain indices for discrete variables, with -1 for missing values. Also -1 for real variables.
+	 */
+	private int[] _indices;
+
+	/**
+	 * Values for real variables.
+	 */
+	private double[] _reals;
+
+	/**
+	 * Indicates which entries of {@link #_reals} are set.
+	 */
+	private final BitSet _hasReal;
+
+	private int _size;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public ColumnarFactorGraphData(DataLayerBase<Variable, ? super Value> layer, FactorGraph graph)
+	{
+		super(layer, graph, Variable.class, Value.class);
+		final int capacity = graph.getOwnedVariableCount();
+		_indices = new int[capacity];
+		Arrays.fill(_indices, -1);
+		_reals = new double[0];
+		_hasReal = new BitSet();
+	}
+
+	protected ColumnarFactorGraphData(DataLayerBase<Variable, ? super Value> layer, ColumnarFactorGraphData other)
+	{
+		super(layer, other._graph, Variable.class, Value.class);
+		_indices = other._indices.clone();
+		_reals = other._reals.clone();
+		_hasReal = (BitSet)other._hasReal.clone();
+		_size = other._size;
+	}
+
+	/**
+	 * @category internal
+	 */
+	@Internal
+	@Override
+	public ColumnarFactorGraphData clone(DataLayerBase<Variable, ? super Value> newLayer)
+	{
+		return new ColumnarFactorGraphData(newLayer, this);
+	}
+
+	public static Constructor<Variable,Value> constructor()
+	{
+		return new Constructor<Variable,Value> () {
+			@Override
+			public FactorGraphData<Variable,Value> apply(DataLayerBase<Variable, ? super Value> layer, FactorGraph graph)
+			{
+				return new ColumnarFactorGraphData(layer, graph);
+			}
+
+			@Override
+			public boolean createOnRead()
+			{
+				return false;
+			}
+
+			@Override
+			public Class<Variable> keyType()
+			{
+				return Variable.class;
+			}
+
+			@Override
+			public Class<Value> baseType()
+			{
+				return Value.class;
+			}
+		};
+	}
+
+	/*-------------
+	 * Map methods
+	 */
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(_indices, -1);
+		_hasReal.clear();
+		_size = 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return _size;
+	}
+
+	/*-------------------------
+	 * FactorGraphData methods
+	 */
+
+	@Override
+	public boolean containsLocalIndex(int index)
+	{
+		return index >= 0 && (index < _indices.length && _indices[index] >= 0 || _hasReal.get(index));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This allocates a new {@link Value} object on every call. Use {@link #getValueInto} to avoid allocation.
+	 */
+	@Override
+	public @Nullable Value getByLocalIndex(int index)
+	{
+		if (!containsLocalIndex(index))
+		{
+			return null;
+		}
+
+		final Value value = Value.create(variableAt(index).getDomain());
+		getValueInto(index, value);
+		return value;
+	}
+
+	@Override
+	public PrimitiveIterable.OfInt getLocalIndices()
+	{
+		final int[] indices = new int[_size];
+		int n = 0;
+		for (int i = 0, end = Math.max(_indices.length, _hasReal.length()); i < end; ++i)
+		{
+			if (containsLocalIndex(i))
+			{
+				indices[n++] = i;
+			}
+		}
+		return new IntArrayIterable(indices, 0, n);
+	}
+
+	@Override
+	public boolean isView()
+	{
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only the value of {@code datum} is stored, not the object itself. Returns a newly allocated
+	 * {@link Value} for the previous value, if there was one.
+	 * <p>
+	 * @throws IllegalArgumentException if variable at {@code index} is neither discrete nor scalar real.
+	 */
+	@Override
+	public @Nullable Value setByLocalIndex(int index, @Nullable Value datum)
+	{
+		final Value prev = getByLocalIndex(index);
+
+		if (datum == null)
+		{
+			removeByLocalIndex(index);
+		}
+		else if (datum.getDomain().isDiscrete())
+		{
+			setIndexByLocalIndex(index, datum.getIndex());
+		}
+		else
+		{
+			setDoubleByLocalIndex(index, datum.getDouble());
+		}
+
+		return prev;
+	}
+
+	/*---------------------------------
+	 * ColumnarFactorGraphData methods
+	 */
+
+	/**
+	 * Returns domain index of value for discrete variable at given local index, or -1 if none.
+	 * @since 0.08
+	 */
+	public int getIndexByLocalIndex(int index)
+	{
+		return index < _indices.length ? _indices[index] : -1;
+	}
+
+	/**
+	 * Returns value for real variable at given local index, or {@link Double#NaN} if none.
+	 * @since 0.08
+	 */
+	public double getDoubleByLocalIndex(int index)
+	{
+		return _hasReal.get(index) ? _reals[index] : Double.NaN;
+	}
+
+	/**
+	 * Copies value at given local index into {@code value} without allocating anything.
+	 * <p>
+	 * @param value must have a domain compatible with the variable at the given index.
+	 * @return false if there is no value at the given index, in which case {@code value} is not modified.
+	 * @since 0.08
+	 */
+	public boolean getValueInto(int index, Value value)
+	{
+		final int discreteIndex = getIndexByLocalIndex(index);
+		if (discreteIndex >= 0)
+		{
+			value.setIndex(discreteIndex);
+			return true;
+		}
+
+		if (_hasReal.get(index))
+		{
+			value.setDouble(_reals[index]);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Removes value at given local index, if any.
+	 * @since 0.08
+	 */
+	public void removeByLocalIndex(int index)
+	{
+		if (index < _indices.length && _indices[index] >= 0)
+		{
+			_indices[index] = -1;
+			--_size;
+		}
+		else if (_hasReal.get(index))
+		{
+			_hasReal.clear(index);
+			--_size;
+		}
+	}
+
+	/**
+	 * Sets domain index of value for discrete variable at given local index.
+	 * <p>
+	 * Does not allocate any objects unless the graph has grown since this object was created.
+	 * <p>
+	 * @param valueIndex is an index into the variable's discrete domain, or a negative value to remove the
+	 * current value.
+	 * @throws IllegalArgumentException if variable at {@code index} does not have a discrete domain or
+	 * if {@code valueIndex} is not less than the size of the domain.
+	 * @since 0.08
+	 */
+	public void setIndexByLocalIndex(int index, int valueIndex)
+	{
+		if (valueIndex < 0)
+		{
+			removeByLocalIndex(index);
+			return;
+		}
+
+		final Domain domain = variableAt(index).getDomain();
+		if (!domain.isDiscrete())
+		{
+			throw new IllegalArgumentException(String.format("Variable at local index %d is not discrete", index));
+		}
+		if (valueIndex >= requireNonNull(domain.asDiscrete()).size())
+		{
+			throw new IllegalArgumentException(String.format("Index %d out of range for domain %s", valueIndex, domain));
+		}
+
+		if (index >= _indices.length)
+		{
+			final int oldLength = _indices.length;
+			_indices = Arrays.copyOf(_indices, Math.max(index + 1, oldLength * 2));
+			Arrays.fill(_indices, oldLength, _indices.length, -1);
+		}
+
+		if (_indices[index] < 0)
+		{
+			++_size;
+		}
+		_indices[index] = valueIndex;
+	}
+
+	/**
+	 * Sets value for scalar real variable at given local index.
+	 * <p>
+	 * Does not allocate any objects after the first real value has been set, unless the graph has grown
+	 * since then.
+	 * <p>
+	 * @param value is the new value, or {@link Double#NaN} to remove the current value.
+	 * @throws IllegalArgumentException if variable at {@code index} does not have a {@link RealDomain}.
+	 * @since 0.08
+	 */
+	public void setDoubleByLocalIndex(int index, double value)
+	{
+		if (Double.isNaN(value))
+		{
+			removeByLocalIndex(index);
+			return;
+		}
+
+		if (!(variableAt(index).getDomain() instanceof RealDomain))
+		{
+			throw new IllegalArgumentException(String.format("Variable at local index %d is not a scalar real", index));
+		}
+
+		if (index >= _reals.length)
+		{
+			_reals = Arrays.copyOf(_reals, Math.max(index + 1, Math.max(_indices.length, _reals.length * 2)));
+		}
+
+		if (!_hasReal.get(index))
+		{
+			_hasReal.set(index);
+			++_size;
+		}
+		_reals[index] = value;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private Variable variableAt(int index)
+	{
+		final Variable var = (Variable)_graph.getChildByLocalId(Ids.localIdFromParts(_keyTypeIndex, index));
+		if (var == null)
+		{
+			throw new IllegalArgumentException(String.format("No variable with local index %d in %s", index, _graph));
+		}
+		return var;
+	}
+}
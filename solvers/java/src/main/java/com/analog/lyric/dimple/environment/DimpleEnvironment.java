@@ -154,6 +154,11 @@ public class DimpleEnvironment extends DimpleOptionHolder
 		}
 	};
 	
+	/**
+	 * Per-thread override for {@link #activeRandom()}.
+	 */
+	private static final ThreadLocal<DimpleRandom> _threadRandom = new ThreadLocal<>();
+	
 	/**
 	 * Cache of double[] for temporary use.
 	 */
@@ -574,12 +579,46 @@ public class DimpleEnvironment extends DimpleOptionHolder
 
 	/**
 	 * Random generator belonging to the {@link #active} environment.
+	 * <p>
+	 * Returns the generator set by {@link #setThreadRandom} for the current thread, if any.
 	 * @since 0.08
 	 * @see #random()
 	 */
 	public static DimpleRandom activeRandom()
 	{
-		return active().random();
+		final @Nullable DimpleRandom rand = _threadRandom.get();
+		return rand != null ? rand : active().random();
+	}
+	
+	/**
+	 * Sets random generator to be returned by {@link #activeRandom()} on the current thread.
+	 * <p>
+	 * Because {@link DimpleRandom} is not thread-safe, code that samples concurrently from multiple threads
+	 * should give each thread its own generator, e.g. one obtained from {@link DimpleRandom#split()}. Callers
+	 * should restore the previous value when done:
+	 * <blockquote>
+	 * <pre>
+	 * DimpleRandom prev = DimpleEnvironment.setThreadRandom(rand);
+	 * try { ... } finally { DimpleEnvironment.setThreadRandom(prev); }
+	 * </pre>
+	 * </blockquote>
+	 * @param rand is the generator to use on the current thread, or null to use the one belonging to the
+	 * {@link #active} environment.
+	 * @return the previous value set for the current thread, if any.
+	 * @since 0.08
+	 */
+	public static @Nullable DimpleRandom setThreadRandom(@Nullable DimpleRandom rand)
+	{
+		final @Nullable DimpleRandom prev = _threadRandom.get();
+		if (rand != null)
+		{
+			_threadRandom.set(rand);
+		}
+		else
+		{
+			_threadRandom.remove();
+		}
+		return prev;
 	}
 	
 	/**
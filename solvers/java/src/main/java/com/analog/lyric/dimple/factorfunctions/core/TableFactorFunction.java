@@ -29,6 +29,7 @@ import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Discrete;
+import com.google.common.base.Supplier;
 
 /**
  * A factor function based on a factor table.
@@ -40,7 +41,17 @@ public class TableFactorFunction extends FactorFunction
 	 * State
 	 */
 	
-	private final IFactorTable _factorTable;
+	private volatile @Nullable IFactorTable _factorTable;
+	
+	/**
+	 * Creates {@link #_factorTable} on first use, if not null.
+	 */
+	private @Nullable Supplier<IFactorTable> _tableSupplier;
+	
+	/**
+	 * Domains of table, used to avoid creating table until it is needed.
+	 */
+	private final JointDomainIndexer _domains;
 	
 	private final int[] _argNumberToTableDimension;
 	private final @Nullable Value[] _constants;
@@ -53,6 +64,7 @@ public class TableFactorFunction extends FactorFunction
 	{
 		super();
 		_factorTable = factorTable;
+		_domains = factorTable.getDomainIndexer();
 		_argNumberToTableDimension = argNumberToTableDimension;
 		_constants = constants.toArray(new Value[constants.size()]);
 	}
@@ -61,6 +73,27 @@ public class TableFactorFunction extends FactorFunction
 	{
 		super(name);
 		_factorTable = factorTable;
+		_domains = factorTable.getDomainIndexer();
+		_argNumberToTableDimension = ArrayUtil.EMPTY_INT_ARRAY;
+		_constants = null;
+	}
+	
+	/**
+	 * Construct function whose table will be created on first use.
+	 * <p>
+	 * This may be used to defer the cost of loading or computing large tables until they
+	 * are actually needed by a solver.
+	 * <p>
+	 * @param domains are the domains of the table that will be produced by {@code tableSupplier}.
+	 * @param tableSupplier will be invoked at most once to produce the table.
+	 * @since 0.08
+	 */
+	public TableFactorFunction(String name, JointDomainIndexer domains, Supplier<IFactorTable> tableSupplier)
+	{
+		super(name);
+		_factorTable = null;
+		_tableSupplier = tableSupplier;
+		_domains = domains;
 		_argNumberToTableDimension = ArrayUtil.EMPTY_INT_ARRAY;
 		_constants = null;
 	}
@@ -92,7 +125,7 @@ public class TableFactorFunction extends FactorFunction
     	
     	if (oldDomains != null && newDomains != null)
     	{
-    		_factorTable.setConditional(Objects.requireNonNull(newDomains.getOutputSet()));
+    		factorTable().setConditional(Objects.requireNonNull(newDomains.getOutputSet()));
     		converted = true;
     	}
     	
@@ -102,7 +135,7 @@ public class TableFactorFunction extends FactorFunction
     @Override
 	public boolean factorTableExists(@Nullable JointDomainIndexer domains)
 	{
-    	if (domains ==null || domains.size() != _factorTable.getDimensions())
+    	if (domains ==null || domains.size() != _domains.size())
     	{
     		return false;
     	}
@@ -117,7 +150,7 @@ public class TableFactorFunction extends FactorFunction
 		
 		if (argToTableDimension.length > 0)
 		{
-			final int nDims = _factorTable.getDimensions();
+			final int nDims = factorTable().getDimensions();
 			Value[] tmp = new Value[nDims];
 			for (int i = argToTableDimension.length; --i>=0;)
 			{
@@ -139,18 +172,30 @@ public class TableFactorFunction extends FactorFunction
 			input = tmp;
 		}
 		
-		return _factorTable.getEnergyForValues(input);
+		return factorTable().getEnergyForValues(input);
 	}
 	
 	@Override
 	public JointDomainIndexer getDomains()
 	{
-		return _factorTable.getDomainIndexer();
+		final IFactorTable table = _factorTable;
+		return table != null ? table.getDomainIndexer() : _domains;
 	}
 
 	public IFactorTable getFactorTable()
 	{
-		return _factorTable;
+		return factorTable();
+	}
+	
+	/**
+	 * True if the factor table has been created.
+	 * <p>
+	 * This is only false if the function was constructed with a table supplier that has not yet been invoked.
+	 * @since 0.08
+	 */
+	public boolean hasFactorTable()
+	{
+		return _factorTable != null;
 	}
 	
     @Override
@@ -164,37 +209,38 @@ public class TableFactorFunction extends FactorFunction
     	
     	//first step, convert domains to DiscreteDOmains
     	//make sure domain lists match
-    	if (domains.size() != _factorTable.getDimensions())
+    	if (domains.size() != _domains.size())
     		throw new RuntimeException("domain lists don't match sizes.  argument size: " + domains.size() +
-    			" factorTable's domain size: " + _factorTable.getDimensions());
+    			" factorTable's domain size: " + _domains.size());
     	    	
-    	return _factorTable;
+    	return factorTable();
     }
     
     @Override
 	public @Nullable IFactorTable getFactorTableIfExists(@Nullable JointDomainIndexer domains)
     {
-    	return factorTableExists(domains) ? _factorTable : null;
+    	return factorTableExists(domains) ? factorTable() : null;
     }
     
 	// For directed factors...
 	@Override
 	public boolean isDirected()
 	{
-		return _factorTable.isDirected();
+		final IFactorTable table = _factorTable;
+		return table != null ? table.isDirected() : _domains.isDirected();
 	}
 	
 	@Override
 	protected @Nullable int[] getDirectedToIndices()
 	{
 		// FIXME Constant - convert to arg indices
-		return _factorTable.getDomainIndexer().getOutputDomainIndices();
+		return getDomains().getOutputDomainIndices();
 	}
 	
 	// For deterministic directed factors...
 	// This means that for any given input, only one of its outputs has non-zero value (equivalently, finite energy)
 	@Override
-	public boolean isDeterministicDirected() {return _factorTable.isDeterministicDirected();}
+	public boolean isDeterministicDirected() {return factorTable().isDeterministicDirected();}
 	
 	// For deterministic directed factors, evaluate the deterministic function output(s) given only the inputs
 	// The arguments are in the same order as eval and evalEnergy, but in this case the output values should be overridden by new values
@@ -205,7 +251,7 @@ public class TableFactorFunction extends FactorFunction
 		
 		if (argToTableDimension.length > 0)
 		{
-			final int nDims = _factorTable.getDimensions();
+			final int nDims = factorTable().getDimensions();
 			final Value[] tmp = new Value[nDims];
 			for (int i = argToTableDimension.length; --i>=0;)
 			{
@@ -218,7 +264,28 @@ public class TableFactorFunction extends FactorFunction
 			arguments = tmp;
 		}
 		
-		_factorTable.evalDeterministic(arguments);
+		factorTable().evalDeterministic(arguments);
 	}
 	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private IFactorTable factorTable()
+	{
+		IFactorTable table = _factorTable;
+		if (table == null)
+		{
+			synchronized (this)
+			{
+				table = _factorTable;
+				if (table == null)
+				{
+					_factorTable = table = requireNonNull(_tableSupplier).get();
+					_tableSupplier = null;
+				}
+			}
+		}
+		return table;
+	}
 }
@@ -16,10 +16,17 @@
 
 package com.analog.lyric.dimple.matlabproxy;
 
+import java.util.Arrays;
+
+import com.analog.lyric.dimple.data.IDatum;
+import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.model.core.Node;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.core.SDiscreteVariableBase;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessage;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
 import com.analog.lyric.util.misc.Matlab;
 
 
@@ -162,6 +169,143 @@ public class PDiscreteVariableVector extends PVariableVector
 		return valueIndices;
 	}
 	
+	/*--------------------------
+	 * Flat array bulk transfer
+	 */
+	
+	/**
+	 * Offsets of variables in the flat arrays used by {@link #getBeliefsFlat}, {@link #getInputFlat}
+	 * and {@link #setInputFlat}.
+	 * <p>
+	 * The values for {@code indices[i]} occupy entries {@code offsets[i]} up to but not including
+	 * {@code offsets[i+1]}, so the last entry of the returned array, which has length
+	 * {@code indices.length + 1}, is the total length of the flat array. Variables may have
+	 * domains of different sizes.
+	 * @since 0.08
+	 */
+	public int[] getDomainOffsets(int[] indices)
+	{
+		final int[] offsets = new int[indices.length + 1];
+		for (int i = 0; i < indices.length; i++)
+			offsets[i + 1] = offsets[i] + getDiscreteVariable(indices[i]).getDomain().size();
+		return offsets;
+	}
+	
+	/**
+	 * Beliefs of variables with given indices concatenated into a single array.
+	 * <p>
+	 * Beliefs are written directly into the array by the solver variable when supported,
+	 * so this avoids allocating an array per variable.
+	 * @see #getDomainOffsets
+	 * @since 0.08
+	 */
+	public double[] getBeliefsFlat(int[] indices)
+	{
+		final int[] offsets = getDomainOffsets(indices);
+		final double[] beliefs = new double[offsets[indices.length]];
+		
+		for (int i = 0; i < indices.length; i++)
+		{
+			final Discrete var = getDiscreteVariable(indices[i]);
+			final ISolverVariable svar = var.getSolver();
+			if (svar instanceof SDiscreteVariableBase)
+			{
+				((SDiscreteVariableBase)svar).getBelief(beliefs, offsets[i]);
+			}
+			else
+			{
+				final double[] belief = var.getBelief();
+				System.arraycopy(belief, 0, beliefs, offsets[i], belief.length);
+			}
+		}
+		
+		return beliefs;
+	}
+	
+	/**
+	 * Sets priors of variables with given indices from weights concatenated into a single array.
+	 * @param inputs has the layout described by {@link #getDomainOffsets}.
+	 * @since 0.08
+	 */
+	public void setInputFlat(int[] indices, double[] inputs)
+	{
+		final int[] offsets = getDomainOffsets(indices);
+		if (inputs.length != offsets[indices.length])
+		{
+			throw new DimpleException("Expected %d input values but got %d", offsets[indices.length], inputs.length);
+		}
+		
+		for (int i = 0; i < indices.length; i++)
+			getDiscreteVariable(indices[i]).setPrior(Arrays.copyOfRange(inputs, offsets[i], offsets[i + 1]));
+	}
+	
+	/**
+	 * Priors of variables with given indices as weights concatenated into a single array.
+	 * <p>
+	 * Fixed values are represented with a weight of one for the value and zero otherwise,
+	 * and variables without a prior have uniform weights.
+	 * @see #getDomainOffsets
+	 * @since 0.08
+	 */
+	public double[] getInputFlat(int[] indices)
+	{
+		final int[] offsets = getDomainOffsets(indices);
+		final double[] inputs = new double[offsets[indices.length]];
+		
+		for (int i = 0; i < indices.length; i++)
+		{
+			final Discrete var = getDiscreteVariable(indices[i]);
+			final IDatum prior = var.getPrior();
+			final int offset = offsets[i];
+			final int size = offsets[i + 1] - offset;
+			
+			if (prior instanceof Value)
+			{
+				inputs[offset + ((Value)prior).getIndex()] = 1.0;
+			}
+			else if (prior instanceof DiscreteMessage)
+			{
+				final DiscreteMessage message = (DiscreteMessage)prior;
+				for (int j = 0; j < size; j++)
+					inputs[offset + j] = message.getWeight(j);
+			}
+			else if (prior == null)
+			{
+				Arrays.fill(inputs, offset, offset + size, 1.0 / size);
+			}
+			else
+			{
+				@SuppressWarnings("deprecation")
+				final double[] input = var.getInput();
+				System.arraycopy(input, 0, inputs, offset, size);
+			}
+		}
+		
+		return inputs;
+	}
+	
+	/**
+	 * Fixes variables with given indices to the values with given domain indices. A negative
+	 * value index removes the variable's prior instead.
+	 * <p>
+	 * Unlike {@link #setFixedValueIndices}, this allows a single call to apply a full assignment of
+	 * observations in which some variables are unobserved. Current values can be obtained
+	 * using {@link #getFixedValueIndices}.
+	 * @since 0.08
+	 */
+	public void setPriorIndices(int[] indices, int[] valueIndices)
+	{
+		for (int i = 0; i < indices.length; i++)
+		{
+			final Discrete var = getDiscreteVariable(indices[i]);
+			final int valueIndex = valueIndices[i];
+			if (valueIndex >= 0)
+				var.setPriorIndex(valueIndex);
+			else
+				var.setPrior((IDatum)null);
+		}
+	}
+	
 	@Deprecated
 	public double [][] getInput(int [] indices)
 	{
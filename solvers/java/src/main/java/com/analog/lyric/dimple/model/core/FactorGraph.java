@@ -1004,6 +1004,7 @@ public class FactorGraph extends FactorBase
 		assertGraphNotFrozen();
 		
 		_eventAndOptionParent = parent;
+		incrementGlobalOptionVersion();
 	}
 	
 	/*---------------
@@ -1029,6 +1030,7 @@ public class FactorGraph extends FactorBase
 		{
 			_eventAndOptionParent = _env;
 		}
+		incrementGlobalOptionVersion();
 	}
 	
 	/*==============
@@ -1348,6 +1350,20 @@ public class FactorGraph extends FactorBase
 		return streams;
 	}
 
+	/**
+	 * {@link VariableStreamBase Variable streams} used by {@link #getFactorGraphStreams() repeated factors}.
+	 * @since 0.08
+	 */
+	public Set<VariableStreamBase<?>> getVariableStreams()
+	{
+		Set<VariableStreamBase<?>> streams = _variableStreams;
+		if (streams == null)
+		{
+			streams = Collections.emptySet();
+		}
+		return streams;
+	}
+
 	/**
 	 * Adds a new constant value.
 	 * <p>
@@ -2275,6 +2291,13 @@ public class FactorGraph extends FactorBase
 	 * Add a new subgraph generated from specified template graph
 	 * attached to given boundary variables.
 	 * <p>
+	 * If the template graph has been {@linkplain #freezeGraphTree() frozen}, the factors in the new
+	 * subgraph will share their domain lists and other immutable state derived from their layout
+	 * with the corresponding template factors, which can greatly reduce memory use for models
+	 * with many copies of the same template. Sharing stops for any factor whose connections,
+	 * arguments or function are subsequently changed. Factor tables are not shared through the
+	 * template, since they may be modified in place.
+	 * <p>
 	 * @param subGraphTemplate
 	 * @param boundaryVariables
 	 * @return newly created subgraph
@@ -2380,6 +2403,9 @@ public class FactorGraph extends FactorBase
 		// Add mapping from template to this graph
 		old2newObjs.put(templateGraph, this);
 		
+		// Factors copied from a frozen template can share state derived from their layout with the template.
+		final boolean instanced = templateGraph.frozen();
+		
 		// Copy owned variables
 		for (Variable vTemplate : templateGraph._ownedVariables)
 		{
@@ -2482,6 +2508,31 @@ public class FactorGraph extends FactorBase
 				}
 				((Node)fCopy).setArguments(argids);
 			}
+			
+			if (instanced)
+			{
+				fCopy.setInstanceTemplate(fTemplate);
+			}
+		}
+		
+		if (instanced)
+		{
+			// Layout of instances of a frozen template will not change, so shrink arrays to the
+			// minimum required size as was done for the template.
+			_edges.trimToSize();
+			_ownedFactors.trimToSize();
+			_ownedVariables.trimToSize();
+			for (Node factor : _ownedFactors)
+			{
+				factor.trimToSize();
+			}
+			for (Variable var : _ownedVariables)
+			{
+				if (!isBoundaryVariable(var))
+				{
+					var.trimToSize();
+				}
+			}
 		}
 
 		// Copy options from template
@@ -92,6 +92,7 @@ public class DiscreteFactor extends Factor
 	@Override
 	protected void notifyConnectionsChanged()
 	{
+		super.notifyConnectionsChanged();
 		_domainList = null;
 		_factorArgumentDomains = null;
 		_factorTable = null;
@@ -108,6 +109,12 @@ public class DiscreteFactor extends Factor
 		
 		if (domainList == null)
 		{
+			final DiscreteFactor template = instanceTemplate();
+			if (template != null && (domainList = template._domainList) != null)
+			{
+				return _domainList = domainList;
+			}
+			
 			int numVariables = getSiblingCount();
 
 			DiscreteDomain[] domains = new DiscreteDomain[numVariables];
@@ -119,6 +126,10 @@ public class DiscreteFactor extends Factor
 
 			domainList = JointDomainIndexer.create(getDirectedTo(), domains);
 			_domainList = domainList;
+			if (template != null)
+			{
+				template._domainList = domainList;
+			}
 		}
 		
 		return domainList;
@@ -131,6 +142,12 @@ public class DiscreteFactor extends Factor
 		
 		if (domainList == null)
 		{
+			final DiscreteFactor template = instanceTemplate();
+			if (template != null && (domainList = template._factorArgumentDomains) != null)
+			{
+				return _factorArgumentDomains = domainList;
+			}
+			
 			super.getArgumentDomains();
 			int numArgs = getArgumentCount();
 
@@ -152,6 +169,10 @@ public class DiscreteFactor extends Factor
 
 			domainList = JointDomainIndexer.create(getDirectedTo(), domains);
 			_factorArgumentDomains = domainList;
+			if (template != null)
+			{
+				template._factorArgumentDomains = domainList;
+			}
 		}
 		
 		return domainList;
@@ -163,6 +184,7 @@ public class DiscreteFactor extends Factor
 		IFactorTable table = _factorTable;
 		if (table == null)
 		{
+			// Tables are not shared with the instance template, since they may be modified in place.
 			final FactorFunction func = getFactorFunction();
 			if (func instanceof TableFactorFunction)
 			{
@@ -317,4 +339,16 @@ public class DiscreteFactor extends Factor
 		}
 	}
 	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Returns {@linkplain #getInstanceTemplate() instance template} through which cached
+	 * domain lists may be shared, if any.
+	 */
+	private @Nullable DiscreteFactor instanceTemplate()
+	{
+		return (DiscreteFactor)getInstanceTemplate();
+	}
 }
@@ -105,6 +105,16 @@ public class Factor extends FactorBase implements Cloneable
 	 */
 	private int[] _edgeToArgNumber = NOT_YET_SET;
 	
+	/**
+	 * Factor in a {@linkplain FactorGraph#frozen() frozen} template graph from which this factor was instantiated,
+	 * if any.
+	 * <p>
+	 * State derived from the factor function, constants and layout of the factor, which is the same for all
+	 * instances of the template, will be shared through the template. This is cleared if the connections,
+	 * arguments or function of this factor are changed.
+	 */
+	private @Nullable Factor _instanceTemplate = null;
+	
 	/*--------------
 	 * Construction
 	 */
@@ -130,14 +140,20 @@ public class Factor extends FactorBase implements Cloneable
 		// Note that this does not copy the constants or the edges
 		_argids = _siblingEdges;
 		int[] directedTo = _directedTo = that._directedTo;
-		if (directedTo != null && directedTo != NOT_YET_SET && directedTo != ArrayUtil.EMPTY_INT_ARRAY)
-		{
-			_directedTo = directedTo.clone();
-		}
 		int[] directedFrom = _directedFrom = that._directedFrom;
-		if (directedFrom != null && directedFrom != ArrayUtil.EMPTY_INT_ARRAY)
+		final FactorGraph thatGraph = that.getContainingGraph();
+		if (thatGraph == null || !thatGraph.frozen())
 		{
-			_directedFrom = directedFrom.clone();
+			// Direction arrays are not modified in place, so they only need to be copied if the
+			// original could be modified.
+			if (directedTo != null && directedTo != NOT_YET_SET && directedTo != ArrayUtil.EMPTY_INT_ARRAY)
+			{
+				_directedTo = directedTo.clone();
+			}
+			if (directedFrom != null && directedFrom != ArrayUtil.EMPTY_INT_ARRAY)
+			{
+				_directedFrom = directedFrom.clone();
+			}
 		}
 	}
 	
@@ -1101,6 +1117,7 @@ public class Factor extends FactorBase implements Cloneable
 	{
 		assertNotFrozen();
 		
+		_instanceTemplate = null;
 		_factorFunction = function;
 		if (_factorFunction.isDirected())
 		{
@@ -1119,6 +1136,11 @@ public class Factor extends FactorBase implements Cloneable
 	{
 		assertNotFrozen();
 		
+		if (_instanceTemplate != null)
+		{
+			// Stop sharing state with template before changing direction.
+			notifyConnectionsChanged();
+		}
 		_directedTo = null;
 		_directedFrom = null;
 		if (hasFactorTable())
@@ -1180,6 +1202,55 @@ public class Factor extends FactorBase implements Cloneable
 		return true;
 	}
 	
+	/**
+	 * The factor in a {@linkplain FactorGraph#frozen() frozen} template graph from which this factor
+	 * was instantiated, or null if not an instance or if it has been modified since it was instantiated.
+	 * <p>
+	 * Subclasses may use this to share state that is derived from the factor's function, constants and
+	 * argument layout with the template and its other instances.
+	 * <p>
+	 * @since 0.08
+	 * @category internal
+	 */
+	@Internal
+	protected @Nullable Factor getInstanceTemplate()
+	{
+		return _instanceTemplate;
+	}
+	
+	@Override
+	protected void notifyConnectionsChanged()
+	{
+		super.notifyConnectionsChanged();
+		_instanceTemplate = null;
+	}
+	
+	/**
+	 * Links this factor to the factor in a frozen template graph from which it was copied.
+	 * <p>
+	 * Invoked when instantiating a {@linkplain FactorGraph#frozen() frozen} template graph after the
+	 * edges and arguments of this factor have been set. This resolves the direction of the factor
+	 * and makes it available to the template, so that later instances do not need to recompute it.
+	 * <p>
+	 * @param template is the factor from which this was copied. Its class, function and argument layout
+	 * must match this factor's.
+	 * @since 0.08
+	 * @category internal
+	 */
+	@Internal
+	public void setInstanceTemplate(Factor template)
+	{
+		ensureDirectedToSet();
+		if (template._directedTo == NOT_YET_SET)
+		{
+			// Direction depends only on the function and the argument layout, which are the same
+			// for all instances.
+			template._directedTo = _directedTo;
+			template._directedFrom = _directedFrom;
+		}
+		_instanceTemplate = template;
+	}
+	
 	/**
 	 * @category internal
 	 */
@@ -1310,6 +1381,16 @@ public class Factor extends FactorBase implements Cloneable
 				return false;
 			}
 			
+			final Factor template = _instanceTemplate;
+			if (template != null)
+			{
+				// Instances of template have the same argument layout.
+				final boolean hasConstants = template.computeConstantInfo();
+				_edgeToArgNumber = template._edgeToArgNumber;
+				_argToEdge = template._argToEdge;
+				return hasConstants;
+			}
+			
 			final int nEdges = _siblingEdges.size();
 			final int nArgs = factorArguments.size();
 			final int[] edgeToArgNumber = new int[nArgs];
@@ -1355,5 +1436,6 @@ public class Factor extends FactorBase implements Cloneable
 	{
 		_edgeToArgNumber = NOT_YET_SET;
 		_argToEdge = NOT_YET_SET;
+		_instanceTemplate = null;
 	}
 }
@@ -0,0 +1,176 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.repeated;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.environment.DimpleThread;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Pushes data to another data sink from a background thread.
+ * <p>
+ * {@link #push} only blocks when more than a fixed number of values are waiting to be delivered.
+ * {@link #close} waits until all values have been delivered to the underlying sink.
+ * <p>
+ * @since 0.08
+ */
+final class AsyncDataSink implements IDataSink
+{
+	/*-------
+	 * State
+	 */
+
+	private static final Object END = new Object();
+
+	private final IDataSink _sink;
+	private final BlockingQueue<Object> _queue;
+	private final Thread _consumer;
+	private volatile @Nullable Throwable _error = null;
+
+	/*--------------
+	 * Construction
+	 */
+
+	AsyncDataSink(IDataSink sink, int capacity)
+	{
+		_sink = sink;
+		_queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+		_consumer = new DimpleThread(new Runnable() {
+			@Override
+			public void run()
+			{
+				consume();
+			}
+		});
+		_consumer.setName("Dimple data sink");
+		_consumer.setDaemon(true);
+		_consumer.start();
+	}
+
+	/*-------------------
+	 * IDataSink methods
+	 */
+
+	@Override
+	public void push(Object data)
+	{
+		checkError();
+		put(data);
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	/**
+	 * Waits for all pushed values to be delivered and stops background thread.
+	 * <p>
+	 * @throws RuntimeException if the underlying sink threw an exception.
+	 */
+	void close()
+	{
+		put(END);
+
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				_consumer.join();
+				break;
+			}
+			catch (InterruptedException ex)
+			{
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		checkError();
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void checkError()
+	{
+		final Throwable error = _error;
+		if (error instanceof RuntimeException)
+		{
+			throw (RuntimeException)error;
+		}
+		else if (error != null)
+		{
+			throw new DimpleException(error, "Error writing to data sink: %s", error);
+		}
+	}
+
+	private void put(Object data)
+	{
+		try
+		{
+			_queue.put(data);
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new DimpleException("Interrupted while writing data");
+		}
+	}
+
+	private void consume()
+	{
+		while (true)
+		{
+			final Object data;
+			try
+			{
+				data = _queue.take();
+			}
+			catch (InterruptedException ex)
+			{
+				return;
+			}
+
+			if (data == END)
+			{
+				return;
+			}
+
+			// After an error, keep draining so that the producer does not block.
+			if (_error == null)
+			{
+				try
+				{
+					_sink.push(data);
+				}
+				catch (Throwable ex)
+				{
+					_error = ex;
+				}
+			}
+		}
+	}
+}
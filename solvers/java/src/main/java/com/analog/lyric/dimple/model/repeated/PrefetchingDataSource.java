@@ -0,0 +1,323 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.repeated;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.environment.DimpleThread;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+
+/**
+ * Reads ahead from another data source in a background thread.
+ * <p>
+ * While {@linkplain #start started}, a producer thread reads up to a fixed number of samples
+ * ahead from the underlying source. Once {@linkplain #stop stopped}, any samples that were
+ * read but not yet consumed are returned first, followed by samples read directly from the
+ * underlying source, so that no data is lost or reordered when switching between modes.
+ * <p>
+ * Only the consumer side ({@link #hasNext()} and {@link #getNext()}) may be invoked while
+ * started, and only from a single thread.
+ * <p>
+ * @since 0.08
+ */
+final class PrefetchingDataSource implements IDataSource
+{
+	/*-------
+	 * State
+	 */
+
+	private static final Object END = new Object();
+
+	private static final class Failure
+	{
+		private final Throwable _error;
+
+		private Failure(Throwable error)
+		{
+			_error = error;
+		}
+	}
+
+	private final IDataSource _source;
+
+	/**
+	 * Samples that were read from the source but not consumed before the producer was stopped.
+	 */
+	private final ArrayDeque<Object> _leftover = new ArrayDeque<>();
+
+	private @Nullable BlockingQueue<Object> _queue = null;
+	private @Nullable Thread _producer = null;
+	private volatile boolean _stopping = false;
+
+	/**
+	 * Sample read from the source by the producer while it was being stopped.
+	 */
+	private @Nullable Object _pending = null;
+
+	/**
+	 * Error from the source that the producer could not queue because it was being stopped.
+	 */
+	private volatile @Nullable Throwable _pendingError = null;
+
+	/**
+	 * Next sample to be returned by {@link #getNext()}, or null if not yet fetched.
+	 */
+	private @Nullable Object _head = null;
+
+	/*--------------
+	 * Construction
+	 */
+
+	PrefetchingDataSource(IDataSource source)
+	{
+		_source = source;
+	}
+
+	/*---------------------
+	 * IDataSource methods
+	 */
+
+	@Override
+	public boolean hasNext()
+	{
+		Object head = _head;
+		if (head == null)
+		{
+			_head = head = fetch();
+		}
+		return head != END;
+	}
+
+	@Override
+	public Object getNext()
+	{
+		if (!hasNext())
+		{
+			throw new DimpleException("out of data");
+		}
+		final Object next = _head;
+		_head = null;
+		return next;
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	/**
+	 * True if there are samples that were read from the underlying source but not yet consumed.
+	 * Only valid when not started.
+	 */
+	boolean hasBufferedData()
+	{
+		return _head != null || !_leftover.isEmpty();
+	}
+	
+	/**
+	 * Starts producer thread that reads up to {@code capacity} samples ahead of the consumer.
+	 * Does nothing if already started.
+	 */
+	void start(int capacity)
+	{
+		if (_producer != null)
+		{
+			return;
+		}
+
+		final BlockingQueue<Object> queue = _queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+		_stopping = false;
+
+		final Thread producer = _producer = new DimpleThread(new Runnable() {
+			@Override
+			public void run()
+			{
+				produce(queue);
+			}
+		});
+		producer.setName("Dimple data source prefetch");
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/**
+	 * Stops producer thread, if started, and waits for it to finish.
+	 * <p>
+	 * Samples read before an error are kept.
+	 * <p>
+	 * @throws RuntimeException if reading from the underlying source failed and the error has not already
+	 * been thrown by {@link #getNext()}. The producer will still have been stopped.
+	 */
+	void stop()
+	{
+		final Thread producer = _producer;
+		final BlockingQueue<Object> queue = _queue;
+		if (producer == null || queue == null)
+		{
+			return;
+		}
+
+		_stopping = true;
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				producer.join();
+				break;
+			}
+			catch (InterruptedException ex)
+			{
+				interrupted = true;
+			}
+		}
+
+		// Keep everything that was read from the underlying source, in order. An end marker
+		// is not kept since the source may be given more data before the next read.
+		Throwable error = _pendingError;
+		_pendingError = null;
+		for (Object sample; (sample = queue.poll()) != null;)
+		{
+			if (sample instanceof Failure)
+			{
+				error = ((Failure)sample)._error;
+			}
+			else if (sample != END)
+			{
+				_leftover.add(sample);
+			}
+		}
+		final Object pending = _pending;
+		if (pending != null)
+		{
+			_leftover.add(pending);
+			_pending = null;
+		}
+		if (_head == END)
+		{
+			_head = null;
+		}
+
+		_producer = null;
+		_queue = null;
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+		
+		if (error != null)
+		{
+			throw sourceError(error);
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private Object fetch()
+	{
+		if (!_leftover.isEmpty())
+		{
+			return _leftover.poll();
+		}
+
+		final BlockingQueue<Object> queue = _queue;
+		if (queue == null)
+		{
+			return _source.hasNext() ? _source.getNext() : END;
+		}
+
+		final Object next;
+		try
+		{
+			next = queue.take();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new DimpleException("Interrupted while waiting for data");
+		}
+
+		if (next instanceof Failure)
+		{
+			throw sourceError(((Failure)next)._error);
+		}
+
+		return next;
+	}
+
+	private static RuntimeException sourceError(Throwable error)
+	{
+		if (error instanceof RuntimeException)
+		{
+			return (RuntimeException)error;
+		}
+		return new DimpleException(error, "Error reading from data source: %s", error);
+	}
+
+	private void produce(BlockingQueue<Object> queue)
+	{
+		try
+		{
+			while (!_stopping)
+			{
+				final Object sample = _source.hasNext() ? _source.getNext() : END;
+				while (!queue.offer(sample, 10, TimeUnit.MILLISECONDS))
+				{
+					if (_stopping)
+					{
+						if (sample != END)
+						{
+							_pending = sample;
+						}
+						return;
+					}
+				}
+				if (sample == END)
+				{
+					return;
+				}
+			}
+		}
+		catch (Throwable ex)
+		{
+			// Deliver error to consumer.
+			final Failure failure = new Failure(ex);
+			try
+			{
+				while (!queue.offer(failure, 10, TimeUnit.MILLISECONDS))
+				{
+					if (_stopping)
+					{
+						_pendingError = ex;
+						return;
+					}
+				}
+			}
+			catch (InterruptedException ex2)
+			{
+				_pendingError = ex;
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.repeated;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import com.analog.lyric.dimple.options.SolverOptions;
+
+/**
+ * Overlaps reading and writing of streaming data with solving of a rolled-up graph.
+ * <p>
+ * While started, each {@link VariableStreamBase} reads ahead from its {@link IDataSource} in a
+ * background thread, and beliefs that are pushed to its {@link IDataSink} as the stream advances are
+ * delivered from another background thread, so that the solver thread only blocks when data is not
+ * yet available or too many beliefs are waiting to be delivered. The order in which values are read and
+ * written and the values themselves are exactly the same as without the pipeline.
+ * <p>
+ * This is used by {@link com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph#continueSolve()
+ * continueSolve} when {@link SolverOptions#pipelineStreams} is enabled.
+ * <p>
+ * @since 0.08
+ */
+public final class StreamPipeline
+{
+	/*-------
+	 * State
+	 */
+
+	private final ArrayList<VariableStreamBase<?>> _streams;
+
+	/*--------------
+	 * Construction
+	 */
+
+	private StreamPipeline(Collection<? extends VariableStreamBase<?>> streams)
+	{
+		_streams = new ArrayList<VariableStreamBase<?>>(streams);
+	}
+
+	/**
+	 * Starts background reading and writing for given streams.
+	 * <p>
+	 * @param streams are the variable streams whose data sources and sinks should be pipelined.
+	 * @param capacity is the maximum number of values that will be read ahead of the solver from each data
+	 * source or held for delivery to each data sink.
+	 * @since 0.08
+	 */
+	public static StreamPipeline start(Collection<? extends VariableStreamBase<?>> streams, int capacity)
+	{
+		final StreamPipeline pipeline = new StreamPipeline(streams);
+		for (VariableStreamBase<?> stream : pipeline._streams)
+		{
+			stream.startPipeline(capacity);
+		}
+		return pipeline;
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	/**
+	 * Stops background threads after delivering all pending values to data sinks.
+	 * <p>
+	 * Values read ahead from data sources are retained by the stream and will be used by subsequent steps.
+	 * <p>
+	 * @throws RuntimeException if a data sink threw an exception. All streams will still be stopped.
+	 * @since 0.08
+	 */
+	public void stop()
+	{
+		RuntimeException error = null;
+		for (VariableStreamBase<?> stream : _streams)
+		{
+			try
+			{
+				stream.stopPipeline();
+			}
+			catch (RuntimeException ex)
+			{
+				if (error == null)
+				{
+					error = ex;
+				}
+			}
+		}
+		if (error != null)
+		{
+			throw error;
+		}
+	}
+}
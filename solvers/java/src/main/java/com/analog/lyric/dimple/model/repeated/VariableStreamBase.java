@@ -38,6 +38,17 @@ public abstract class VariableStreamBase<V extends Variable> implements IVariabl
 	private ArrayList<VariableStreamSlice<V>> _slices = new ArrayList<>();
 	private VariableStreamSlice<V> _slice;
 	private final @Nullable String _namePrefix;
+	
+	/**
+	 * Reads ahead from {@link #_dataSource} when using a {@link StreamPipeline}. Retained after the
+	 * pipeline is stopped until all of the samples it read have been consumed.
+	 */
+	private @Nullable PrefetchingDataSource _prefetcher = null;
+	
+	/**
+	 * Delivers to {@link #_dataSink} while a {@link StreamPipeline} is started.
+	 */
+	private @Nullable AsyncDataSink _asyncSink = null;
 
 	protected VariableStreamBase(Domain domain, @Nullable String namePrefix)
 	{
@@ -71,7 +82,7 @@ public abstract class VariableStreamBase<V extends Variable> implements IVariabl
 	@SuppressWarnings("deprecation")
 	public void advanceState()
 	{
-		final IDataSink dataSink = _dataSink;
+		final IDataSink dataSink = _asyncSink != null ? _asyncSink : _dataSink;
 		if (dataSink != null)
 		{
 			Object output = _variables.get(0).getBeliefObject();
@@ -90,7 +101,7 @@ public abstract class VariableStreamBase<V extends Variable> implements IVariabl
 		Variable lastVar = _variables.get(_variables.size()-1);
 		lastVar.requireSolver("advanceState").createNonEdgeSpecificState();
 
-		final IDataSource dataSource = _dataSource;
+		final IDataSource dataSource = activeDataSource();
 		if (dataSource != null)
 		{
 			Object input = dataSource.getNext();
@@ -128,6 +139,13 @@ public abstract class VariableStreamBase<V extends Variable> implements IVariabl
 	@SuppressWarnings("deprecation")
 	public void setDataSource(IDataSource source)
 	{
+		final PrefetchingDataSource prefetcher = _prefetcher;
+		if (prefetcher != null)
+		{
+			prefetcher.stop();
+			_prefetcher = null;
+		}
+		
 		_dataSource = source;
 		
 		//fill variables with data
@@ -164,7 +182,7 @@ public abstract class VariableStreamBase<V extends Variable> implements IVariabl
 			tmp.setName(_namePrefix + index);
 		}
 		
-		final IDataSource dataSource = _dataSource;
+		final IDataSource dataSource = activeDataSource();
 		if (dataSource != null)
 		{
 			
@@ -227,7 +245,7 @@ public abstract class VariableStreamBase<V extends Variable> implements IVariabl
 
 	public boolean hasNext()
 	{
-		final IDataSource dataSource = _dataSource;
+		final IDataSource dataSource = activeDataSource();
 		if (dataSource == null)
 			return true;
 		else
@@ -247,6 +265,68 @@ public abstract class VariableStreamBase<V extends Variable> implements IVariabl
 	}
 	
 
+	/**
+	 * Starts reading ahead from data source and writing to data sink in background threads.
+	 * @see StreamPipeline
+	 */
+	void startPipeline(int capacity)
+	{
+		final IDataSource dataSource = _dataSource;
+		if (dataSource != null)
+		{
+			PrefetchingDataSource prefetcher = _prefetcher;
+			if (prefetcher == null)
+			{
+				_prefetcher = prefetcher = new PrefetchingDataSource(dataSource);
+			}
+			prefetcher.start(capacity);
+		}
+		
+		final IDataSink dataSink = _dataSink;
+		if (dataSink != null && _asyncSink == null)
+		{
+			_asyncSink = new AsyncDataSink(dataSink, capacity);
+		}
+	}
+	
+	/**
+	 * Stops background threads started by {@link #startPipeline}.
+	 */
+	void stopPipeline()
+	{
+		final PrefetchingDataSource prefetcher = _prefetcher;
+		try
+		{
+			if (prefetcher != null)
+			{
+				prefetcher.stop();
+			}
+		}
+		finally
+		{
+			if (prefetcher != null && !prefetcher.hasBufferedData())
+			{
+				_prefetcher = null;
+			}
+
+			final AsyncDataSink asyncSink = _asyncSink;
+			if (asyncSink != null)
+			{
+				_asyncSink = null;
+				asyncSink.close();
+			}
+		}
+	}
+	
+	/**
+	 * The source from which the next sample should be read.
+	 */
+	private @Nullable IDataSource activeDataSource()
+	{
+		final PrefetchingDataSource prefetcher = _prefetcher;
+		return prefetcher != null ? prefetcher : _dataSource;
+	}
+	
 	int indexOf(Variable vb)
 	{
 		return _variables.indexOf(vb);
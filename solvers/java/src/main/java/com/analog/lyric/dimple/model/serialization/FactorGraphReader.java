@@ -0,0 +1,520 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.serialization;
+
+import static com.analog.lyric.dimple.model.serialization.SnapshotFormat.*;
+import static java.util.Objects.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.CustomFactorFunctionWrapper;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTableRepresentation;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.TableFactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.Domain;
+import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.google.common.base.Supplier;
+
+/**
+ * Reconstructs a factor graph tree from a snapshot produced by {@link FactorGraphWriter}.
+ * <p>
+ * When reading from a file, the file is memory-mapped and factor tables are decoded from the mapped
+ * buffer the first time they are used, so loading a model with many large tables does not require reading
+ * the tables into memory up front. Table payloads are accessed through read-only views of the buffer,
+ * so the same buffer may be used to load multiple independent copies of the graph.
+ * <p>
+ * The reconstructed root graph will use the {@linkplain DimpleEnvironment#defaultSolver() default solver}
+ * of the active environment, just as a newly constructed {@link FactorGraph} would. Its nodes will have the
+ * same names, order and structure as the original, but their local ids will be compacted as if by
+ * {@link FactorGraph#reindexGraphTree()}.
+ * <p>
+ * @since 0.08
+ * @see FactorGraphWriter
+ */
+public final class FactorGraphReader
+{
+	/*-------
+	 * State
+	 */
+
+	private final ByteBuffer _in;
+	private final ByteBuffer _payload;
+	private final int _functionLength;
+	private final Object[] _pool;
+	private final List<FactorFunction> _functions = new ArrayList<>();
+	/**
+	 * Indicates which functions in {@link #_functions} are table functions that need to be converted using
+	 * {@link TableFactorFunction#forFactor} for factors with constants.
+	 */
+	private final List<Boolean> _perFactorTable = new ArrayList<>();
+	private final List<Variable> _variables = new ArrayList<>();
+	private final List<FactorGraph> _graphs = new ArrayList<>();
+
+	/*--------------
+	 * Construction
+	 */
+
+	private FactorGraphReader(ByteBuffer buffer) throws IOException
+	{
+		final ByteBuffer in = _in = buffer.duplicate();
+
+		if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC)
+		{
+			throw new IOException("Not a factor graph snapshot");
+		}
+		final int version = in.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException(String.format("Unsupported factor graph snapshot version %d", version));
+		}
+
+		final int poolLength = in.getInt();
+		final int functionLength = _functionLength = in.getInt();
+		final int graphLength = in.getInt();
+
+		final byte[] poolBytes = new byte[poolLength];
+		in.get(poolBytes);
+		try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(poolBytes)))
+		{
+			_pool = (Object[])objects.readObject();
+		}
+		catch (ClassNotFoundException ex)
+		{
+			throw new IOException(ex);
+		}
+
+		final int payloadStart = buffer.position() + align8(HEADER_SIZE + poolLength + functionLength + graphLength);
+		final ByteBuffer payload = buffer.duplicate();
+		payload.position(Math.min(payloadStart, payload.limit()));
+		_payload = payload.slice().asReadOnlyBuffer();
+	}
+
+	/*----------------
+	 * Static methods
+	 */
+
+	/**
+	 * Reads graph tree from snapshot file written by {@link FactorGraphWriter#write(FactorGraph, Path)}.
+	 * <p>
+	 * The file will be memory-mapped and will be accessed again when factor tables are first used.
+	 * Because the file is mapped into a single buffer, it may not be larger than 2GB.
+	 * <p>
+	 * @return the root graph of the tree.
+	 * @throws IOException if the file cannot be read, is too large or is not a valid snapshot.
+	 * @throws DimpleException if an element of the graph cannot be constructed.
+	 * @since 0.08
+	 */
+	public static FactorGraph read(Path file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException(String.format("Factor graph snapshot %s is too large to map (%d bytes)",
+					file, channel.size()));
+			}
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Reads graph tree from snapshot starting at current position of {@code buffer}.
+	 * <p>
+	 * The position of {@code buffer} is not modified. The buffer will be accessed again when factor tables
+	 * are first used, so its contents should not be modified.
+	 * <p>
+	 * @return the root graph of the tree.
+	 * @since 0.08
+	 * @see #read(Path)
+	 */
+	public static FactorGraph read(ByteBuffer buffer) throws IOException
+	{
+		return new FactorGraphReader(buffer).readRoot();
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private FactorGraph readRoot()
+	{
+		for (int end = _in.position() + _functionLength; _in.position() < end;)
+		{
+			readFunction();
+		}
+
+		final FactorGraph root = readGraphStructure(null);
+
+		for (FactorGraph graph : _graphs)
+		{
+			readGraphFactors(graph);
+		}
+
+		root.setSolverFactory(root.getEnvironment().defaultSolver());
+
+		return root;
+	}
+
+	private FactorGraph readGraphStructure(@Nullable FactorGraph parent)
+	{
+		final ByteBuffer in = _in;
+
+		final String name = (String)object(in.getInt());
+
+		final int nVars = in.getInt();
+		final Variable[] vars = new Variable[nVars];
+		for (int i = 0; i < nVars; ++i)
+		{
+			vars[i] = readVariable();
+		}
+
+		final int nBoundary = in.getInt();
+		final Variable[] boundary = new Variable[nBoundary];
+		for (int i = 0; i < nBoundary; ++i)
+		{
+			boundary[i] = _variables.get(in.getInt());
+		}
+
+		final FactorGraph graph;
+		if (parent == null)
+		{
+			graph = new FactorGraph(boundary, name, null);
+		}
+		else
+		{
+			// Use an empty template with matching boundary variables to avoid copying anything.
+			final Variable[] templateBoundary = new Variable[nBoundary];
+			for (int i = 0; i < nBoundary; ++i)
+			{
+				templateBoundary[i] = boundary[i].clone();
+			}
+			graph = parent.addGraph(new FactorGraph(templateBoundary, name, null), boundary);
+		}
+		_graphs.add(graph);
+
+		for (Variable var : vars)
+		{
+			if (!var.hasParentGraph())
+			{
+				graph.addVariables(var);
+			}
+		}
+
+		final int nSubgraphs = in.getInt();
+		for (int i = 0; i < nSubgraphs; ++i)
+		{
+			readGraphStructure(graph);
+		}
+
+		return graph;
+	}
+
+	private Variable readVariable()
+	{
+		final ByteBuffer in = _in;
+
+		final Class<?> variableClass = loadClass((String)object(in.getInt()));
+		final Domain domain = (Domain)requireNonNull(object(in.getInt()));
+		final Variable var = SnapshotFormat.createVariable(variableClass, domain);
+
+		final String name = (String)object(in.getInt());
+		if (name != null)
+		{
+			var.setName(name);
+		}
+
+		switch (in.get())
+		{
+		case PRIOR_OBJECT:
+			var.setPrior(object(in.getInt()));
+			break;
+		case PRIOR_FUNCTION:
+			var.setPrior(_functions.get(in.getInt()));
+			break;
+		}
+
+		_variables.add(var);
+		return var;
+	}
+
+	private void readGraphFactors(FactorGraph graph)
+	{
+		final ByteBuffer in = _in;
+
+		for (int i = 0, nFactors = in.getInt(); i < nFactors; ++i)
+		{
+			final int functionIndex = in.getInt();
+			final String name = (String)object(in.getInt());
+			final int nArgs = in.getInt();
+			final Object[] args = new Object[nArgs];
+			for (int j = 0; j < nArgs; ++j)
+			{
+				final int ref = in.getInt();
+				args[j] = ref >= 0 ? _variables.get(ref) : requireNonNull(object(-1 - ref));
+			}
+
+			final FactorFunction function = _functions.get(functionIndex);
+			final Factor factor = graph.addFactor(function, args);
+			if (_perFactorTable.get(functionIndex))
+			{
+				factor.setFactorFunction(
+					TableFactorFunction.forFactor(factor, ((TableFactorFunction)function).getFactorTable()));
+			}
+
+			if (name != null)
+			{
+				factor.setName(name);
+			}
+
+			final int nDirectedTo = in.getInt();
+			if (nDirectedTo >= 0)
+			{
+				final int[] directedTo = new int[nDirectedTo];
+				for (int j = 0; j < nDirectedTo; ++j)
+				{
+					directedTo[j] = in.getInt();
+				}
+				final int[] curDirectedTo = factor.isDirected() ? factor.getDirectedTo() : null;
+				if (curDirectedTo == null || !Arrays.equals(curDirectedTo, directedTo))
+				{
+					factor.setDirectedTo(directedTo);
+				}
+			}
+		}
+
+		for (int i = 0, nBlocks = in.getInt(); i < nBlocks; ++i)
+		{
+			final Variable[] vars = new Variable[in.getInt()];
+			for (int j = 0; j < vars.length; ++j)
+			{
+				vars[j] = _variables.get(in.getInt());
+			}
+			graph.addVariableBlock(vars);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readFunction()
+	{
+		final ByteBuffer in = _in;
+
+		FactorFunction function;
+		boolean perFactorTable = false;
+
+		final byte kind = in.get();
+		switch (kind)
+		{
+		case FUNCTION_TABLE:
+		{
+			final String name = (String)requireNonNull(object(in.getInt()));
+			perFactorTable = in.get() != 0;
+			final TableSupplier supplier = readTable();
+			function = new TableFactorFunction(name, supplier._domains, supplier);
+			break;
+		}
+
+		case FUNCTION_CUSTOM:
+			function = new CustomFactorFunctionWrapper((String)requireNonNull(object(in.getInt())));
+			break;
+
+		case FUNCTION_OBJECT:
+			function = (FactorFunction)requireNonNull(object(in.getInt()));
+			break;
+
+		case FUNCTION_PARAMETRIC:
+		{
+			final Class<?> functionClass = loadClass((String)object(in.getInt()));
+			final Map<String,Object> parameters = (Map<String,Object>)requireNonNull(object(in.getInt()));
+			try
+			{
+				function = (FactorFunction)functionClass.getConstructor(Map.class).newInstance(parameters);
+			}
+			catch (ReflectiveOperationException ex)
+			{
+				throw new DimpleException(ex);
+			}
+			break;
+		}
+
+		case FUNCTION_CLASS:
+		{
+			final Class<?> functionClass = loadClass((String)object(in.getInt()));
+			try
+			{
+				function = (FactorFunction)functionClass.getConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException ex)
+			{
+				throw new DimpleException(ex);
+			}
+			break;
+		}
+
+		default:
+			throw new DimpleException("Unknown factor function kind %d in snapshot", kind);
+		}
+
+		_functions.add(function);
+		_perFactorTable.add(perFactorTable);
+	}
+
+	private TableSupplier readTable()
+	{
+		final ByteBuffer in = _in;
+
+		final JointDomainIndexer domains = (JointDomainIndexer)requireNonNull(object(in.getInt()));
+		final FactorTableRepresentation representation = FactorTableRepresentation.values()[in.getInt()];
+		final byte layout = in.get();
+		final int size = in.getInt();
+		final long offset = in.getLong();
+
+		// Sparse tables store their indices, padded to a multiple of eight bytes, before the values.
+		long nIndices = 0;
+		if ((layout & TABLE_SPARSE) != 0)
+		{
+			nIndices = domains.supportsJointIndexing() ? size : (long)size * domains.size();
+		}
+		final long length = align8(nIndices * 4) + (long)size * 8;
+
+		// The payload is addressed by a single buffer, so data beyond its int-sized limit cannot be valid.
+		if (size < 0 || offset < 0 || offset + length > _payload.limit())
+		{
+			throw new DimpleException("Factor table of %d bytes at offset %d is outside of %d byte snapshot payload",
+				length, offset, _payload.limit());
+		}
+
+		return new TableSupplier(_payload, (int)offset, domains, representation, layout, size);
+	}
+
+	private @Nullable Object object(int ref)
+	{
+		return ref < 0 ? null : _pool[ref];
+	}
+
+	private static Class<?> loadClass(@Nullable String name)
+	{
+		try
+		{
+			return Class.forName(requireNonNull(name));
+		}
+		catch (ClassNotFoundException ex)
+		{
+			throw new DimpleException(ex);
+		}
+	}
+
+	/*---------------
+	 * Inner classes
+	 */
+
+	/**
+	 * Decodes factor table from payload buffer on demand.
+	 */
+	private static final class TableSupplier implements Supplier<IFactorTable>
+	{
+		private final ByteBuffer _payload;
+		private final int _offset;
+		private final JointDomainIndexer _domains;
+		private final FactorTableRepresentation _representation;
+		private final byte _layout;
+		private final int _size;
+
+		private TableSupplier(ByteBuffer payload, int offset, JointDomainIndexer domains,
+			FactorTableRepresentation representation, byte layout, int size)
+		{
+			_payload = payload;
+			_offset = offset;
+			_domains = domains;
+			_representation = representation;
+			_layout = layout;
+			_size = size;
+		}
+
+		@Override
+		public IFactorTable get()
+		{
+			final IFactorTable table = FactorTable.create(_domains);
+			final boolean weights = (_layout & TABLE_WEIGHTS) != 0;
+			final int size = _size;
+
+			final ByteBuffer buffer = _payload.duplicate();
+			buffer.position(_offset);
+
+			if ((_layout & TABLE_SPARSE) != 0)
+			{
+				final boolean joint = _domains.supportsJointIndexing();
+				final int[] indices = new int[joint ? size : size * _domains.size()];
+				buffer.asIntBuffer().get(indices);
+				buffer.position(_offset + align8(indices.length * 4));
+				final double[] values = new double[size];
+				buffer.asDoubleBuffer().get(values);
+
+				if (joint)
+				{
+					if (weights)
+						table.setWeightsSparse(indices, values);
+					else
+						table.setEnergiesSparse(indices, values);
+				}
+				else
+				{
+					final int nDims = _domains.size();
+					final int[][] indicesArray = new int[size][nDims];
+					for (int si = 0; si < size; ++si)
+					{
+						System.arraycopy(indices, si * nDims, indicesArray[si], 0, nDims);
+					}
+					if (weights)
+						table.setWeightsSparse(indicesArray, values);
+					else
+						table.setEnergiesSparse(indicesArray, values);
+				}
+			}
+			else
+			{
+				final double[] values = new double[size];
+				buffer.asDoubleBuffer().get(values);
+				if (weights)
+					table.setWeightsDense(values);
+				else
+					table.setEnergiesDense(values);
+			}
+
+			table.setRepresentation(_representation);
+			return table;
+		}
+	}
+}
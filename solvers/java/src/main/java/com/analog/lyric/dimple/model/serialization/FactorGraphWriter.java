@@ -0,0 +1,472 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.serialization;
+
+import static com.analog.lyric.dimple.model.serialization.SnapshotFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.data.IDatum;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.CustomFactorFunctionWrapper;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IParametricFactorFunction;
+import com.analog.lyric.dimple.factorfunctions.core.TableFactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
+import com.analog.lyric.dimple.model.factors.DiscreteFactor;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Constant;
+import com.analog.lyric.dimple.model.variables.IConstantOrVariable;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.model.variables.VariableBlock;
+
+/**
+ * Writes a binary snapshot of a factor graph tree.
+ * <p>
+ * The snapshot contains the structure of the entire graph tree, including variables and their
+ * domains, names and priors, boundary variables, subgraphs, constants, variable blocks, factors and
+ * their factor functions and directions. Factor tables are written to a separate payload section of the
+ * snapshot, which {@link FactorGraphReader} will only decode when the table is first used. Solvers,
+ * schedulers, options, data layers and event listeners are not saved.
+ * <p>
+ * Factor functions are saved by reference rather than by value where possible, in the following order
+ * of preference:
+ * <ul>
+ * <li>{@link TableFactorFunction}: the table is written to the payload section.
+ * <li>{@link CustomFactorFunctionWrapper}: the name is saved.
+ * <li>{@link Serializable} functions are saved using Java serialization.
+ * <li>{@link IParametricFactorFunction}s with {@linkplain IParametricFactorFunction#hasConstantParameters()
+ * constant parameters} are saved as their class and parameter map, and will be reconstructed using the constructor
+ * that takes a {@code Map<String,Object>} argument.
+ * <li>All other functions are saved by class and will be reconstructed using the class's public no-argument
+ * constructor. Functions whose state is not fully determined by that constructor should implement one of
+ * the previous options.
+ * </ul>
+ * Each distinct function instance is only written once, so graphs containing many subgraphs generated from
+ * the same template will share their functions and tables.
+ * <p>
+ * Other values that need to be saved, such as domains, constants and variable priors, must be
+ * {@link Serializable}.
+ * <p>
+ * @since 0.08
+ * @see FactorGraphReader
+ */
+public final class FactorGraphWriter
+{
+	/*-------
+	 * State
+	 */
+
+	private final List<Object> _pool = new ArrayList<>();
+	private final Map<Object,Integer> _poolIndex = new HashMap<>();
+
+	private final IdentityHashMap<Variable,Integer> _variableIndex = new IdentityHashMap<>();
+	private final IdentityHashMap<FactorFunction,Integer> _functionIndex = new IdentityHashMap<>();
+
+	private final ByteArrayOutputStream _functionBytes = new ByteArrayOutputStream();
+	private final DataOutputStream _functions = new DataOutputStream(_functionBytes);
+	private final ByteArrayOutputStream _graphBytes = new ByteArrayOutputStream();
+	private final DataOutputStream _graphs = new DataOutputStream(_graphBytes);
+	private final ByteArrayOutputStream _payloadBytes = new ByteArrayOutputStream();
+	private final DataOutputStream _payload = new DataOutputStream(_payloadBytes);
+
+	/*--------------
+	 * Construction
+	 */
+
+	private FactorGraphWriter()
+	{
+	}
+
+	/*----------------
+	 * Static methods
+	 */
+
+	/**
+	 * Writes snapshot of graph tree containing {@code graph} to given file.
+	 * <p>
+	 * The {@linkplain FactorGraph#getRootGraph() root} of the tree will be written regardless of
+	 * which graph in the tree is specified.
+	 * <p>
+	 * @throws IOException if file cannot be written or if an object that needs to be saved is not serializable.
+	 * @throws DimpleException if graph contains an element that cannot be saved.
+	 * @since 0.08
+	 */
+	public static void write(FactorGraph graph, Path file) throws IOException
+	{
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file)))
+		{
+			write(graph, out);
+		}
+	}
+
+	/**
+	 * Writes snapshot of graph tree containing {@code graph} to given stream.
+	 * <p>
+	 * Same as {@link #write(FactorGraph, Path)} except that the stream is neither buffered nor closed.
+	 * @since 0.08
+	 */
+	public static void write(FactorGraph graph, OutputStream out) throws IOException
+	{
+		new FactorGraphWriter().writeRoot(graph.getRootGraph(), out);
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void writeRoot(FactorGraph root, OutputStream out) throws IOException
+	{
+		final List<FactorGraph> graphs = new ArrayList<>();
+		writeGraphStructure(root, graphs);
+		for (FactorGraph graph : graphs)
+		{
+			writeGraphFactors(graph);
+		}
+
+		_functions.flush();
+		_graphs.flush();
+		_payload.flush();
+		if (_payload.size() == Integer.MAX_VALUE)
+		{
+			// DataOutputStream.size() saturates instead of overflowing, so table offsets would be wrong
+			throw new IOException("Factor graph snapshot payload is larger than 2GB");
+		}
+
+		final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream objects = new ObjectOutputStream(poolBytes))
+		{
+			objects.writeObject(_pool.toArray());
+		}
+
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(poolBytes.size());
+		data.writeInt(_functionBytes.size());
+		data.writeInt(_graphBytes.size());
+		poolBytes.writeTo(data);
+		_functionBytes.writeTo(data);
+		_graphBytes.writeTo(data);
+
+		final long size = (long)HEADER_SIZE + poolBytes.size() + _functionBytes.size() + _graphBytes.size();
+		for (long i = size, end = align8(size); i < end; ++i)
+		{
+			data.writeByte(0);
+		}
+		_payloadBytes.writeTo(data);
+		data.flush();
+	}
+
+	/**
+	 * Writes variables, boundary variables and subgraphs of {@code graph} and its subgraphs,
+	 * appending each graph to {@code graphs} in the order written.
+	 */
+	private void writeGraphStructure(FactorGraph graph, List<FactorGraph> graphs) throws IOException
+	{
+		final DataOutputStream out = _graphs;
+
+		graphs.add(graph);
+
+		out.writeInt(objectRef(graph.getExplicitName()));
+
+		out.writeInt(graph.getOwnedVariableCount());
+		for (Variable var : graph.getOwnedVariables())
+		{
+			writeVariable(var);
+		}
+
+		out.writeInt(graph.getBoundaryVariableCount());
+		for (Variable var : graph.getBoundaryVariables())
+		{
+			out.writeInt(variableRef(var));
+		}
+
+		out.writeInt(graph.getOwnedGraphs().size());
+		for (FactorGraph subgraph : graph.getOwnedGraphs())
+		{
+			writeGraphStructure(subgraph, graphs);
+		}
+	}
+
+	private void writeVariable(Variable var) throws IOException
+	{
+		final DataOutputStream out = _graphs;
+
+		SnapshotFormat.variableConstructor(var.getClass(), var.getDomain());
+
+		_variableIndex.put(var, _variableIndex.size());
+		out.writeInt(objectRef(var.getClass().getName()));
+		out.writeInt(objectRef(var.getDomain()));
+		out.writeInt(objectRef(var.getExplicitName()));
+
+		final IDatum prior = var.getPrior();
+		if (prior == null)
+		{
+			out.writeByte(PRIOR_NONE);
+		}
+		else if (prior instanceof FactorFunction)
+		{
+			out.writeByte(PRIOR_FUNCTION);
+			out.writeInt(functionRef((FactorFunction)prior, null));
+		}
+		else
+		{
+			out.writeByte(PRIOR_OBJECT);
+			out.writeInt(objectRef(prior));
+		}
+	}
+
+	private void writeGraphFactors(FactorGraph graph) throws IOException
+	{
+		final DataOutputStream out = _graphs;
+
+		out.writeInt(graph.getOwnedFactors().size());
+		for (Factor factor : graph.getOwnedFactors())
+		{
+			final Class<?> factorClass = factor.getClass();
+			if (factorClass != Factor.class && factorClass != DiscreteFactor.class)
+			{
+				throw new DimpleException("Cannot save factor '%s' of type %s", factor, factorClass.getName());
+			}
+
+			out.writeInt(functionRef(factor.getFactorFunction(), factor));
+			out.writeInt(objectRef(factor.getExplicitName()));
+
+			final int nArgs = factor.getArgumentCount();
+			out.writeInt(nArgs);
+			for (int i = 0; i < nArgs; ++i)
+			{
+				final IConstantOrVariable arg = factor.getArgument(i);
+				if (arg instanceof Constant)
+				{
+					out.writeInt(-1 - objectRef(((Constant)arg).value()));
+				}
+				else
+				{
+					out.writeInt(variableRef((Variable)arg));
+				}
+			}
+
+			final int[] directedTo = factor.isDirected() ? factor.getDirectedTo() : null;
+			if (directedTo == null)
+			{
+				out.writeInt(-1);
+			}
+			else
+			{
+				out.writeInt(directedTo.length);
+				for (int edge : directedTo)
+				{
+					out.writeInt(edge);
+				}
+			}
+		}
+
+		out.writeInt(graph.getOwnedVariableBlocks().size());
+		for (VariableBlock block : graph.getOwnedVariableBlocks())
+		{
+			out.writeInt(block.size());
+			for (Variable var : block)
+			{
+				out.writeInt(variableRef(var));
+			}
+		}
+	}
+
+	private int variableRef(Variable var)
+	{
+		final Integer index = _variableIndex.get(var);
+		if (index == null)
+		{
+			throw new DimpleException("Cannot save reference to variable '%s', which is not yet defined", var);
+		}
+		return index;
+	}
+
+	private int objectRef(@Nullable Object object)
+	{
+		if (object == null)
+		{
+			return -1;
+		}
+
+		Integer index = _poolIndex.get(object);
+		if (index == null)
+		{
+			index = _pool.size();
+			_pool.add(object);
+			_poolIndex.put(object, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @param factor is the factor using the function or null if the function is being used as a prior.
+	 */
+	private int functionRef(FactorFunction function, @Nullable Factor factor) throws IOException
+	{
+		Integer index = _functionIndex.get(function);
+		if (index != null)
+		{
+			return index;
+		}
+
+		final DataOutputStream out = _functions;
+		final Class<?> functionClass = function.getClass();
+
+		if (functionClass == TableFactorFunction.class)
+		{
+			final IFactorTable table = ((TableFactorFunction)function).getFactorTable();
+			out.writeByte(FUNCTION_TABLE);
+			out.writeInt(objectRef(function.getName()));
+			// A table function created for a factor with constants only covers the factor's variables.
+			out.writeBoolean(factor != null && factor.hasConstants() &&
+				table.getDimensions() != factor.getArgumentCount());
+			writeTable(table);
+		}
+		else if (functionClass == CustomFactorFunctionWrapper.class)
+		{
+			out.writeByte(FUNCTION_CUSTOM);
+			out.writeInt(objectRef(function.getName()));
+		}
+		else if (function instanceof Serializable)
+		{
+			out.writeByte(FUNCTION_OBJECT);
+			out.writeInt(objectRef(function));
+		}
+		else if (function instanceof IParametricFactorFunction &&
+			((IParametricFactorFunction)function).hasConstantParameters())
+		{
+			final Map<String,Object> parameters = new LinkedHashMap<>();
+			((IParametricFactorFunction)function).copyParametersInto(parameters);
+			try
+			{
+				functionClass.getConstructor(Map.class);
+			}
+			catch (NoSuchMethodException ex)
+			{
+				throw new DimpleException("Cannot save %s: no public constructor taking parameter map",
+					functionClass.getName());
+			}
+			out.writeByte(FUNCTION_PARAMETRIC);
+			out.writeInt(objectRef(functionClass.getName()));
+			out.writeInt(objectRef(parameters));
+		}
+		else
+		{
+			try
+			{
+				functionClass.getConstructor();
+			}
+			catch (NoSuchMethodException ex)
+			{
+				throw new DimpleException("Cannot save %s: no public no-argument constructor", functionClass.getName());
+			}
+			out.writeByte(FUNCTION_CLASS);
+			out.writeInt(objectRef(functionClass.getName()));
+		}
+
+		index = _functionIndex.size();
+		_functionIndex.put(function, index);
+		return index;
+	}
+
+	/**
+	 * Writes table descriptor to function section and table values to payload section.
+	 */
+	private void writeTable(IFactorTable table) throws IOException
+	{
+		final DataOutputStream out = _functions;
+		final DataOutputStream payload = _payload;
+		final JointDomainIndexer domains = table.getDomainIndexer();
+
+		final boolean sparse = table.hasSparseRepresentation();
+		final boolean weights = sparse ?
+			!table.hasSparseEnergies() && table.hasSparseWeights() : !table.hasDenseEnergies();
+		final int size = sparse ? table.sparseSize() : table.jointSize();
+
+		out.writeInt(objectRef(domains));
+		out.writeInt(table.getRepresentation().ordinal());
+		out.writeByte((sparse ? TABLE_SPARSE : TABLE_DENSE) | (weights ? TABLE_WEIGHTS : 0));
+		out.writeInt(size);
+		padPayload();
+		out.writeLong(payload.size());
+
+		if (sparse)
+		{
+			if (domains.supportsJointIndexing())
+			{
+				for (int si = 0; si < size; ++si)
+				{
+					payload.writeInt(table.sparseIndexToJointIndex(si));
+				}
+			}
+			else
+			{
+				final int[] indices = new int[domains.size()];
+				for (int si = 0; si < size; ++si)
+				{
+					table.sparseIndexToIndices(si, indices);
+					for (int index : indices)
+					{
+						payload.writeInt(index);
+					}
+				}
+			}
+			padPayload();
+			for (int si = 0; si < size; ++si)
+			{
+				payload.writeDouble(weights ? table.getWeightForSparseIndex(si) : table.getEnergyForSparseIndex(si));
+			}
+		}
+		else
+		{
+			for (int ji = 0; ji < size; ++ji)
+			{
+				payload.writeDouble(weights ? table.getWeightForJointIndex(ji) : table.getEnergyForJointIndex(ji));
+			}
+		}
+	}
+
+	private void padPayload() throws IOException
+	{
+		final DataOutputStream payload = _payload;
+		for (int i = payload.size(), end = align8(i); i < end; ++i)
+		{
+			payload.writeByte(0);
+		}
+	}
+}
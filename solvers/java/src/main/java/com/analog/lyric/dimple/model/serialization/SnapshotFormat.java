@@ -0,0 +1,150 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.model.serialization;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.domains.Domain;
+import com.analog.lyric.dimple.model.variables.Variable;
+
+/**
+ * Constants and helpers shared by {@link FactorGraphWriter} and {@link FactorGraphReader}.
+ * <p>
+ * A snapshot has the following layout, using big-endian encoding throughout:
+ * <pre>
+ *     int      MAGIC
+ *     int      VERSION
+ *     int      length of object pool
+ *     int      length of function section
+ *     int      length of graph section
+ *     byte[]   object pool: Java serialized {@code Object[]} referenced by index from other sections
+ *     byte[]   function section: factor function descriptors
+ *     byte[]   graph section: graph tree structure followed by factors and blocks for each graph
+ *     byte[]   padding to multiple of 8 bytes
+ *     byte[]   factor table payloads, each starting on a multiple of 8 bytes
+ * </pre>
+ * Object references are indexes into the object pool, with -1 representing null. Variable references
+ * are the order in which the variables' definitions appear in the graph section.
+ * <p>
+ * @since 0.08
+ */
+final class SnapshotFormat
+{
+	static final int MAGIC = 0x44475246; // "DGRF"
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 20;
+
+	/*
+	 * Factor function kinds
+	 */
+
+	/** Function is a {@code TableFactorFunction} whose table is in the payload section */
+	static final byte FUNCTION_TABLE = 1;
+	/** Function is Java serialized in object pool */
+	static final byte FUNCTION_OBJECT = 2;
+	/** Function is constructed from class name and parameter map */
+	static final byte FUNCTION_PARAMETRIC = 3;
+	/** Function is constructed from class name using no-argument constructor */
+	static final byte FUNCTION_CLASS = 4;
+	/** Function is a {@code CustomFactorFunctionWrapper} */
+	static final byte FUNCTION_CUSTOM = 5;
+
+	/*
+	 * Prior kinds
+	 */
+
+	static final byte PRIOR_NONE = 0;
+	static final byte PRIOR_OBJECT = 1;
+	static final byte PRIOR_FUNCTION = 2;
+
+	/*
+	 * Table payload layouts
+	 */
+
+	static final byte TABLE_DENSE = 0;
+	static final byte TABLE_SPARSE = 1;
+	/** Flag indicating payload values are weights instead of energies */
+	static final byte TABLE_WEIGHTS = 2;
+
+	private SnapshotFormat()
+	{
+	}
+
+	static int align8(int n)
+	{
+		return (n + 7) & ~7;
+	}
+
+	static long align8(long n)
+	{
+		return (n + 7) & ~7L;
+	}
+
+	/**
+	 * Returns public constructor for variable class that takes a single domain argument
+	 * compatible with {@code domain}, or else the public no-argument constructor.
+	 *
+	 * @throws DimpleException if class does not have such a constructor
+	 */
+	static Constructor<?> variableConstructor(Class<?> variableClass, Domain domain)
+	{
+		@Nullable Constructor<?> noArg = null;
+
+		if (Modifier.isPublic(variableClass.getModifiers()) && !Modifier.isAbstract(variableClass.getModifiers()))
+		{
+			for (Constructor<?> constructor : variableClass.getConstructors())
+			{
+				final Class<?>[] types = constructor.getParameterTypes();
+				if (types.length == 1 && Domain.class.isAssignableFrom(types[0]) && types[0].isInstance(domain))
+				{
+					return constructor;
+				}
+				else if (types.length == 0)
+				{
+					noArg = constructor;
+				}
+			}
+		}
+
+		if (noArg == null)
+		{
+			throw new DimpleException("Cannot save variables of type %s: no public constructor taking a domain",
+				variableClass.getName());
+		}
+
+		return noArg;
+	}
+
+	static Variable createVariable(Class<?> variableClass, Domain domain)
+	{
+		final Constructor<?> constructor = variableConstructor(variableClass, domain);
+		try
+		{
+			return (Variable)(constructor.getParameterTypes().length == 0 ?
+				constructor.newInstance() : constructor.newInstance(domain));
+		}
+		catch (ReflectiveOperationException ex)
+		{
+			throw new DimpleException(ex);
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ *   Copyright 2015 Analog Devices, Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ ********************************************************************************/
+
+/**
+ * Binary snapshots of factor graph models.
+ * <p>
+ * A graph tree written by {@link com.analog.lyric.dimple.model.serialization.FactorGraphWriter} can be
+ * reconstructed by {@link com.analog.lyric.dimple.model.serialization.FactorGraphReader} without rerunning
+ * the code that originally built the model.
+ * <p>
+ * @since 0.08
+ */
+@NonNullByDefault
+package com.analog.lyric.dimple.model.serialization;
+import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -22,6 +22,7 @@ import com.analog.lyric.dimple.schedulers.validator.AllEdgeScheduleValidator;
 import com.analog.lyric.dimple.schedulers.validator.ScheduleValidatorOptionKey;
 import com.analog.lyric.dimple.solvers.core.SNode;
 import com.analog.lyric.dimple.solvers.optimizedupdate.UpdateApproach;
+import com.analog.lyric.options.BooleanOptionKey;
 import com.analog.lyric.options.DoubleListOptionKey;
 import com.analog.lyric.options.DoubleOptionKey;
 import com.analog.lyric.options.EnumOptionKey;
@@ -134,6 +135,21 @@ public class BPOptions extends SolverOptions
 	public static final DoubleOptionKey optimizedUpdateSparseThreshold = new DoubleOptionKey(BPOptions.class,
 			"optimizedUpdateSparseThreshold", 1.0, 0.0, 1.0);
 
+	/**
+	 * Residual threshold for the residual multithreading mode.
+	 * <p>
+	 * When solving using {@link com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingMode#Residual},
+	 * a node is only updated when the accumulated change in its incoming messages is at least this large,
+	 * and solving stops early once no node is above the threshold. Changes are measured as the largest
+	 * absolute difference for discrete messages and as KL divergence for parameterized messages.
+	 * <p>
+	 * Must be non-negative. Default is 1e-6.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey residualTolerance = new DoubleOptionKey(BPOptions.class,
+		"residualTolerance", 1e-6, 0.0, Double.POSITIVE_INFINITY);
+
 	/**
 	 * Specifies schedule validation that should be applied for BP solvers.
 	 * <p>
@@ -153,4 +169,24 @@ public class BPOptions extends SolverOptions
 	public static final SchedulerOptionKey scheduler =
 		new SchedulerOptionKey(BPOptions.class, "scheduler", DefaultScheduler.class, scheduleValidator);
 
+	/**
+	 * Specifies whether to overlap forward and backward updates when solving rolled-up graphs.
+	 * <p>
+	 * When true, each step of {@linkplain com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph#continueSolve()
+	 * continueSolve} on a graph with {@linkplain com.analog.lyric.dimple.model.core.FactorGraph#addRepeatedFactor
+	 * repeated factors} does not run the graph's schedule as is. Instead, in each iteration the updates for the
+	 * newest slice of each stream are run in schedule order concurrently with the updates for the older slices,
+	 * which are run from newest to oldest, after which the variables connecting the two are updated. Messages
+	 * therefore only cross from the newest slice into the older ones once per iteration, so the beliefs will
+	 * generally differ from those of the sequential schedule unless enough {@link #iterations} are run for
+	 * the messages to converge. The results do not depend on the number of threads.
+	 * <p>
+	 * Requires a fixed schedule. Multithreading of the schedule itself is not used in this mode.
+	 * <p>
+	 * @since 0.08
+	 * @see SolverOptions#pipelineStreams
+	 */
+	public static final BooleanOptionKey pipelineSlices =
+		new BooleanOptionKey(BPOptions.class, "pipelineSlices", false);
+
 }
@@ -65,4 +65,30 @@ public class SolverOptions extends DimpleOptions
 	 */
 	public static final IntegerOptionKey maxAutomaticFactorTableSize =
 		new IntegerOptionKey(SolverOptions.class, "maxAutomaticFactorTableSize", Integer.MAX_VALUE);
+
+	/**
+	 * Specifies whether to read and write streaming data in background threads.
+	 * <p>
+	 * When true, {@linkplain com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph#continueSolve()
+	 * continueSolve} on a graph with {@linkplain com.analog.lyric.dimple.model.core.FactorGraph#addRepeatedFactor
+	 * repeated factors} reads ahead from the data sources of its variable streams in background threads while
+	 * the solver works on the current step, and delivers beliefs to the data sinks of the streams from other
+	 * background threads. This can improve throughput when data sources or sinks are slow, for instance when
+	 * they read or write files. The results are the same as when this option is false.
+	 * <p>
+	 * @since 0.08
+	 * @see com.analog.lyric.dimple.model.repeated.StreamPipeline
+	 * @see #streamPipelineCapacity
+	 */
+	public static final BooleanOptionKey pipelineStreams =
+		new BooleanOptionKey(SolverOptions.class, "pipelineStreams", false);
+
+	/**
+	 * Maximum number of values to read ahead from each data source or hold for delivery to each data sink
+	 * when {@link #pipelineStreams} is enabled.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey streamPipelineCapacity =
+		new IntegerOptionKey(SolverOptions.class, "streamPipelineCapacity", 16, 1, Integer.MAX_VALUE);
 }
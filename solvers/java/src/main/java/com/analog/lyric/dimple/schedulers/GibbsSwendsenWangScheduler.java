@@ -0,0 +1,89 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.schedulers;
+
+import java.util.List;
+import java.util.Map;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.schedulers.schedule.IGibbsSchedule;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.BlockScheduleEntry;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.block.SwendsenWangSampler;
+
+/**
+ * Gibbs scheduler that updates variables with attractive pairwise couplings using Swendsen-Wang
+ * cluster updates.
+ * <p>
+ * Creates a sequential scan schedule in which all of the variables returned by
+ * {@link SwendsenWangSampler#findClusterVariables} are replaced by a single block entry using
+ * {@link SwendsenWangSampler}, except for those in blocks added to this scheduler. The remaining variables
+ * are updated as in {@link GibbsSequentialScanScheduler}.
+ * <p>
+ * To use, set {@link com.analog.lyric.dimple.solvers.gibbs.GibbsOptions#scheduler} to this class.
+ * <p>
+ * @since 0.08
+ */
+public class GibbsSwendsenWangScheduler extends GibbsSequentialScanScheduler
+{
+	private static final long serialVersionUID = 1L;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public GibbsSwendsenWangScheduler()
+	{
+		super();
+	}
+
+	protected GibbsSwendsenWangScheduler(GibbsSwendsenWangScheduler other, Map<Object,Object> old2NewMap,
+		boolean copyToRoot)
+	{
+		super(other, old2NewMap, copyToRoot);
+	}
+
+	/*--------------------
+	 * IScheduler methods
+	 */
+
+	@Override
+	public IScheduler copy(Map<Object, Object> old2NewMap, boolean copyToRoot)
+	{
+		return new GibbsSwendsenWangScheduler(this, old2NewMap, copyToRoot);
+	}
+
+	@Override
+	public IGibbsSchedule createSchedule(FactorGraph g)
+	{
+		final IGibbsSchedule schedule = super.createSchedule(g);
+
+		// Leave variables in user-specified blocks alone
+		final List<Variable> clusterVars = SwendsenWangSampler.findClusterVariables(g);
+		for (BlockScheduleEntry entry : _blockEntries)
+		{
+			clusterVars.removeAll(entry.getBlock());
+		}
+		if (clusterVars.size() > 1)
+		{
+			schedule.addBlockScheduleEntry(
+				new BlockScheduleEntry(new SwendsenWangSampler(), g.addVariableBlock(clusterVars)));
+		}
+
+		return schedule;
+	}
+}
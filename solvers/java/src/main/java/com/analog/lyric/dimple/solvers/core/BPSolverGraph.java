@@ -61,4 +61,19 @@ public abstract class BPSolverGraph
 	{
 		return BPOptions.scheduler;
 	}
+	
+	/*--------------------------
+	 * SFactorGraphBase methods
+	 */
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Returns a pipeline if {@link BPOptions#pipelineSlices} is enabled.
+	 */
+	@Override
+	@Nullable SlicePipeline createSlicePipeline()
+	{
+		return getOptionOrDefault(BPOptions.pipelineSlices) ? SlicePipeline.create(this) : null;
+	}
 }
@@ -0,0 +1,457 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import static java.util.Objects.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.data.IDatum;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.TableFactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.dimple.solvers.interfaces.IFactorGraphFactory;
+
+/**
+ * Baum-Welch parameter estimation that runs restarts and the expectation step in parallel.
+ * <p>
+ * Each restart works on its own {@linkplain FactorGraph#copyRoot() copy} of the factor graph whose
+ * factors refer to private copies of the tables being learned, so restarts can run concurrently.
+ * <p>
+ * Training data consisting of multiple independent observation sequences may be provided using
+ * {@link #setData}. The expectation step then solves the graph once for each sequence and sums the
+ * factor beliefs into expected counts for each table. When there is only one restart, the sequences
+ * are divided into contiguous ranges that are solved concurrently on separate copies of the graph.
+ * Counts are summed in range order, so results do not depend on thread scheduling. Without data,
+ * the graph is solved using whatever inputs are currently set on it, as in {@link ParameterEstimator.BaumWelch}.
+ * <p>
+ * Restarts are scored by the {@linkplain FactorGraph#getBetheFreeEnergy() Bethe free energy} summed over
+ * all sequences, and the tables from the best restart are copied into the original tables when
+ * {@link #run} returns. As with {@link ParameterEstimator#run}, the original tables are kept if no
+ * restart improves on them unless {@link #setForceKeep} is set.
+ * <p>
+ * Tasks are run using {@link ThreadPool}.
+ * <p>
+ * @since 0.08
+ */
+public class ParallelBaumWelch extends ParameterEstimator.BaumWelch
+{
+	/*-------
+	 * State
+	 */
+
+	private Variable[] _observed = new Variable[0];
+	private @Nullable int[][] _data = null;
+	private int _numWorkers = 0;
+	private double _bestScore = Double.NaN;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public ParallelBaumWelch(FactorGraph fg, IFactorTable[] tables, Random r)
+	{
+		super(fg, tables, r);
+	}
+
+	/*---------------------------
+	 * ParallelBaumWelch methods
+	 */
+
+	/**
+	 * Sets observation sequences used for training.
+	 * <p>
+	 * @param observed are the observed variables, which must be {@link Discrete} variables in the graph.
+	 * @param data contains one row per sequence with one domain index per observed variable, or -1 if
+	 * the variable is not observed in that sequence, in which case its prior is left as is.
+	 * @throws DimpleException if arguments are not consistent with each other.
+	 */
+	public void setData(Variable[] observed, int[][] data)
+	{
+		for (Variable var : observed)
+		{
+			if (!(var instanceof Discrete))
+			{
+				throw new DimpleException("Observed variable '%s' is not discrete", var);
+			}
+		}
+
+		for (int[] row : data)
+		{
+			if (row.length != observed.length)
+			{
+				throw new DimpleException("Data row has %d values but there are %d observed variables",
+					row.length, observed.length);
+			}
+			for (int i = 0; i < row.length; ++i)
+			{
+				if (row[i] < -1 || row[i] >= ((Discrete)observed[i]).getDomain().size())
+				{
+					throw new DimpleException("Data value %d out of range for variable '%s'", row[i], observed[i]);
+				}
+			}
+		}
+
+		_observed = observed.clone();
+		_data = data;
+	}
+
+	/**
+	 * Removes data set by {@link #setData}, so that the graph is solved with its current inputs.
+	 */
+	public void clearData()
+	{
+		_observed = new Variable[0];
+		_data = null;
+	}
+
+	/**
+	 * The maximum number of copies of the graph used to divide up the sequences for the
+	 * expectation step when there is only one restart. If not positive, the number of threads
+	 * in the {@link ThreadPool} will be used.
+	 * <p>
+	 * Defaults to zero.
+	 */
+	public int getNumWorkers()
+	{
+		return _numWorkers;
+	}
+
+	/**
+	 * Sets value of {@link #getNumWorkers()}.
+	 */
+	public void setNumWorkers(int numWorkers)
+	{
+		_numWorkers = numWorkers;
+	}
+
+	/**
+	 * The total Bethe free energy of the tables selected by the last invocation of {@link #run},
+	 * or NaN if not yet run.
+	 */
+	public double getBestScore()
+	{
+		return _bestScore;
+	}
+
+	/*-----------------------------
+	 * ParameterEstimator methods
+	 */
+
+	@Override
+	public void run(int numRestarts, final int numSteps)
+	{
+		final IFactorTable[] tables = unique(getTables());
+
+		// Representations of tables shared by copies of the graph must not be changed while solving.
+		for (Factor factor : getFactorGraph().getFactors())
+		{
+			if (factor.isDiscrete())
+			{
+				prepareForSharing(factor.getFactorTable());
+			}
+		}
+
+		final int[][] data = _data;
+		final int nSequences = data != null ? data.length : 1;
+		final int nRestarts = numRestarts + 1;
+		int nWorkers = 1;
+		if (nRestarts == 1)
+		{
+			nWorkers = _numWorkers > 0 ? _numWorkers : Math.max(1, numThreads());
+			nWorkers = Math.max(1, Math.min(nWorkers, nSequences));
+		}
+
+		// Copying graphs is not thread safe, so set everything up first.
+		final List<Restart> restarts = new ArrayList<Restart>(nRestarts);
+		for (int i = 0; i < nRestarts; ++i)
+		{
+			restarts.add(new Restart(tables, i == 0 ? null : new Random(getRandom().nextLong()), nWorkers, nSequences));
+		}
+
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(nRestarts);
+		for (final Restart restart : restarts)
+		{
+			tasks.add(new Callable<Object>() {
+				@Override
+				public @Nullable Object call()
+				{
+					restart.run(numSteps);
+					return null;
+				}
+			});
+		}
+		ThreadPool.invokeAll(tasks);
+
+		// The first restart starts from the original tables, so its initial score is theirs.
+		@Nullable Restart best = null;
+		double bestScore = restarts.get(0)._initialScore;
+		for (Restart restart : restarts)
+		{
+			if (restart._finalScore < bestScore || getForceKeep())
+			{
+				best = restart;
+				bestScore = restart._finalScore;
+			}
+		}
+
+		if (best != null)
+		{
+			for (int i = 0; i < tables.length; ++i)
+			{
+				tables[i].copy(best._tables[i]);
+			}
+		}
+
+		_bestScore = bestScore;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private static int numThreads()
+	{
+		ThreadPool.getThreadPool();
+		return ThreadPool.getNumThreads();
+	}
+
+	private static void prepareForSharing(IFactorTable table)
+	{
+		table.getIndicesSparseUnsafe();
+		table.getWeightsSparseUnsafe();
+		table.getEnergiesSparseUnsafe();
+	}
+
+	/**
+	 * State for one restart, which learns its own copy of the tables.
+	 */
+	private final class Restart
+	{
+		private final IFactorTable[] _originalTables;
+		private final IFactorTable[] _tables;
+		private final Worker[] _workers;
+		private double _initialScore = Double.POSITIVE_INFINITY;
+		private double _finalScore = Double.POSITIVE_INFINITY;
+
+		private Restart(IFactorTable[] tables, @Nullable Random rand, int nWorkers, int nSequences)
+		{
+			_originalTables = tables;
+			_tables = saveFactorTables(tables);
+
+			if (rand != null)
+			{
+				for (IFactorTable table : _tables)
+				{
+					table.randomizeWeights(rand);
+					if (table.isDirected())
+						table.normalizeConditional();
+				}
+			}
+
+			for (IFactorTable table : _tables)
+			{
+				prepareForSharing(table);
+			}
+
+			_workers = new Worker[nWorkers];
+			for (int i = 0; i < nWorkers; ++i)
+			{
+				_workers[i] = new Worker(this, nSequences * i / nWorkers, nSequences * (i + 1) / nWorkers);
+			}
+		}
+
+		private void run(int numSteps)
+		{
+			for (int step = 0; ; ++step)
+			{
+				final boolean last = step == numSteps;
+
+				// Expectation
+				ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(_workers.length);
+				for (final Worker worker : _workers)
+				{
+					tasks.add(new Callable<Object>() {
+						@Override
+						public @Nullable Object call()
+						{
+							worker.expect(!last);
+							return null;
+						}
+					});
+				}
+
+				ThreadPool.invokeAll(tasks);
+
+				double score = 0.0;
+				for (Worker worker : _workers)
+				{
+					score += worker._score;
+				}
+				if (step == 0)
+				{
+					_initialScore = score;
+				}
+				if (last)
+				{
+					_finalScore = score;
+					break;
+				}
+
+				// Maximization
+				for (int i = 0; i < _tables.length; ++i)
+				{
+					final List<Factor> factors = getTable2Factors().get(_originalTables[i]);
+					if (factors != null)
+					{
+						final double[] counts = new double[_tables[i].sparseSize()];
+						for (Worker worker : _workers)
+						{
+							final double[] workerCounts = worker._counts[i];
+							for (int j = 0; j < counts.length; ++j)
+							{
+								counts[j] += workerCounts[j];
+							}
+						}
+						setWeightsFromCounts(_tables[i], counts, factors.get(0));
+						prepareForSharing(_tables[i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy of the graph used to solve a range of sequences.
+	 */
+	private final class Worker
+	{
+		private final FactorGraph _graph;
+		private final Factor[][] _factors;
+		private final IFactorTable[] _tables;
+		private final Discrete[] _observedCopies;
+		private final @Nullable IDatum[] _priors;
+		private final int _begin;
+		private final int _end;
+		private final double[][] _counts;
+		private double _score;
+
+		private Worker(Restart restart, int begin, int end)
+		{
+			final FactorGraph fg = getFactorGraph();
+			final Map<Object,Object> old2new = new HashMap<Object,Object>();
+			_graph = fg.copyRoot(old2new);
+			final IFactorGraphFactory<?> solverFactory = fg.getFactorGraphFactory();
+			if (solverFactory != null)
+			{
+				_graph.setSolverFactory(solverFactory);
+			}
+
+			final IFactorTable[] tables = _tables = restart._tables;
+			_factors = new Factor[tables.length][];
+			_counts = new double[tables.length][];
+			for (int i = 0; i < tables.length; ++i)
+			{
+				final List<Factor> factors = getTable2Factors().get(restart._originalTables[i]);
+				final int nFactors = factors != null ? factors.size() : 0;
+				final TableFactorFunction function = new TableFactorFunction("table", tables[i]);
+				_factors[i] = new Factor[nFactors];
+				for (int j = 0; j < nFactors; ++j)
+				{
+					Factor factor = (Factor)requireNonNull(old2new.get(requireNonNull(factors).get(j)));
+					factor.setFactorFunction(function);
+					_factors[i][j] = factor;
+				}
+			}
+
+			final Variable[] observed = ParallelBaumWelch.this._observed;
+			_observedCopies = new Discrete[observed.length];
+			_priors = new IDatum[observed.length];
+			for (int i = 0; i < observed.length; ++i)
+			{
+				_observedCopies[i] = (Discrete)requireNonNull(old2new.get(observed[i]));
+				_priors[i] = _observedCopies[i].getPrior();
+			}
+
+			_begin = begin;
+			_end = end;
+		}
+
+		private void expect(boolean computeCounts)
+		{
+			final int[][] data = _data;
+
+			if (computeCounts)
+			{
+				for (int i = 0; i < _counts.length; ++i)
+				{
+					_counts[i] = new double[_tables[i].sparseSize()];
+				}
+			}
+
+			double score = 0.0;
+			for (int sequence = _begin; sequence < _end; ++sequence)
+			{
+				if (data != null)
+				{
+					final int[] row = data[sequence];
+					for (int i = 0; i < row.length; ++i)
+					{
+						if (row[i] >= 0)
+							_observedCopies[i].setPriorIndex(row[i]);
+						else
+							_observedCopies[i].setPrior(_priors[i]);
+					}
+				}
+
+				_graph.solve();
+				score += _graph.getBetheFreeEnergy();
+
+				if (computeCounts)
+				{
+					for (int i = 0; i < _factors.length; ++i)
+					{
+						final double[] counts = _counts[i];
+						for (Factor factor : _factors[i])
+						{
+							final double[] belief = (double[])requireNonNull(factor.getSolver()).getBelief();
+							for (int j = 0; j < counts.length; ++j)
+							{
+								counts[j] += belief[j];
+							}
+						}
+					}
+				}
+			}
+
+			_score = score;
+		}
+	}
+
+}
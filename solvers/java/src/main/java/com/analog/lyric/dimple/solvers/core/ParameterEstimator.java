@@ -64,6 +64,11 @@ public abstract class ParameterEstimator
 		_r = r;
 	}
 	
+	public Random getRandom()
+	{
+		return _r;
+	}
+	
 	public HashMap<IFactorTable,ArrayList<Factor>> getTable2Factors()
 	{
 		return _table2factors;
@@ -106,6 +111,11 @@ public abstract class ParameterEstimator
 	{
 		_forceKeep = val;
 	}
+	
+	public boolean getForceKeep()
+	{
+		return _forceKeep;
+	}
 
 	public void run(int numRestarts, int numSteps)
 	{
@@ -223,18 +233,24 @@ public abstract class ParameterEstimator
 				}
 
 
-				//Get first directionality
-				Factor firstFactor = factors.get(0);
-				int [] directedTo = firstFactor.getDirectedTo();
-				int [] directedFrom = firstFactor.getDirectedFrom();
+				setWeightsFromCounts(ft, sum, factors.get(0));
+			}
+		}
+		
+		//Set the weights to the expected counts, normalized according to the
+		//direction of the given factor.
+		static void setWeightsFromCounts(IFactorTable ft, double [] counts, Factor firstFactor)
+		{
+			//Get first directionality
+			int [] directedTo = firstFactor.getDirectedTo();
+			int [] directedFrom = firstFactor.getDirectedFrom();
 
-				//Set the weights to that
-				ft.replaceWeightsSparse(sum);
-				if (directedTo != null && directedFrom != null)
-				{
-					ft.makeConditional(BitSetUtil.bitsetFromIndices(directedTo.length + directedFrom.length, directedTo));
-				}
-	}
+			//Set the weights to that
+			ft.replaceWeightsSparse(counts);
+			if (directedTo != null && directedFrom != null)
+			{
+				ft.makeConditional(BitSetUtil.bitsetFromIndices(directedTo.length + directedFrom.length, directedTo));
+			}
 		}
 	}
 }
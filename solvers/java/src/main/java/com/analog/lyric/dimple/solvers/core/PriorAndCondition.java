@@ -22,15 +22,22 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jdt.annotation.Nullable;
 
+import com.analog.lyric.dimple.data.ColumnarDataLayer;
 import com.analog.lyric.dimple.data.IDatum;
+import com.analog.lyric.dimple.model.domains.Domain;
+import com.analog.lyric.dimple.model.domains.RealDomain;
+import com.analog.lyric.dimple.model.values.RealValue;
 import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Variable;
 
 /**
  * Holds prior and condition values for a solver variable.
  * <p>
  * This is primarily intended for internal use in solver variable implementations.
  * <p>
- * Note that {@link #release()} can be used to return instance for reuse.
+ * Note that {@link #release()} can be used to return instance for reuse. Because values read from a
+ * {@link ColumnarDataLayer} are held in a {@link Value} object owned by the instance, such values should
+ * not be used after the instance has been released.
  * <p>
  * @since 0.08
  * @author Christopher Barber
@@ -52,6 +59,12 @@ public final class PriorAndCondition extends AbstractList<IDatum>
 	 */
 	private int _mask;
 	
+	/**
+	 * Reusable holders for conditions read from a {@link ColumnarDataLayer}.
+	 */
+	private @Nullable Value _discreteCondition;
+	private @Nullable RealValue _realCondition;
+	
 	private static final AtomicReference<PriorAndCondition> _reusableInstance = new AtomicReference<>();
 
 	/*---------------
@@ -74,18 +87,71 @@ public final class PriorAndCondition extends AbstractList<IDatum>
 	 * @since 0.08
 	 */
 	public static PriorAndCondition create(@Nullable IDatum prior, @Nullable IDatum condition)
+	{
+		return obtain().set(prior, condition);
+	}
+	
+	/**
+	 * Returns an instance with given prior and condition read from a columnar layer.
+	 * <p>
+	 * This is the same as {@link #create(IDatum, IDatum)} with the condition set to the value of {@code var}
+	 * in {@code conditioning}, but the value is copied into a {@link Value} object that is owned by the
+	 * returned instance and reused, so that no allocation is required.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static PriorAndCondition create(@Nullable IDatum prior, ColumnarDataLayer conditioning, Variable var)
+	{
+		final PriorAndCondition instance = obtain();
+		
+		final Domain domain = var.getDomain();
+		final Value condition;
+		
+		if (domain.isDiscrete())
+		{
+			Value discreteCondition = instance._discreteCondition;
+			if (discreteCondition == null || !discreteCondition.getDomain().equals(domain))
+			{
+				instance._discreteCondition = discreteCondition = Value.create(domain);
+			}
+			condition = discreteCondition;
+		}
+		else if (domain instanceof RealDomain)
+		{
+			RealValue realCondition = instance._realCondition;
+			if (realCondition == null)
+			{
+				instance._realCondition = realCondition = RealValue.create();
+			}
+			condition = realCondition;
+		}
+		else
+		{
+			// Not supported by columnar data, so fall back on normal lookup
+			return instance.set(prior, conditioning.get(var));
+		}
+		
+		return instance.set(prior, conditioning.getValueInto(var, condition) ? condition : null);
+	}
+	
+	private static PriorAndCondition obtain()
 	{
 		PriorAndCondition instance = _reusableInstance.getAndSet(null);
 		if (instance == null)
 		{
 			instance = new PriorAndCondition();
 		}
-		instance._data[0] = prior;
-		instance._data[1] = condition;
-		instance._mask = (prior == null ? 0 : 1) | (condition == null ? 0 : 1) << 1;
 		return instance;
 	}
 	
+	private PriorAndCondition set(@Nullable IDatum prior, @Nullable IDatum condition)
+	{
+		_data[0] = prior;
+		_data[1] = condition;
+		_mask = (prior == null ? 0 : 1) | (condition == null ? 0 : 1) << 1;
+		return this;
+	}
+	
 	/**
 	 * Returns this instance for reuse.
 	 * <p>
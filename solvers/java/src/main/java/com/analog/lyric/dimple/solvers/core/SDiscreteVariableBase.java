@@ -57,6 +57,22 @@ public abstract class SDiscreteVariableBase extends SVariableBase<Discrete> impl
 	@Override
 	public abstract double[] getBelief();
 	
+	/**
+	 * Writes the {@linkplain #getBelief() belief} into {@code beliefs} starting at {@code offset}.
+	 * <p>
+	 * The default implementation copies the result of {@link #getBelief()}. Subclasses may override
+	 * this to compute the belief in place when that avoids allocating an array per variable.
+	 * <p>
+	 * @param beliefs must have room for {@linkplain DiscreteDomain#size() domain size} values starting
+	 * at {@code offset}.
+	 * @since 0.08
+	 */
+	public void getBelief(double[] beliefs, int offset)
+	{
+		final double[] belief = getBelief();
+		System.arraycopy(belief, 0, beliefs, offset, belief.length);
+	}
+	
 	@Override
 	public DiscreteDomain getDomain()
 	{
@@ -75,11 +91,13 @@ public abstract class SDiscreteVariableBase extends SVariableBase<Discrete> impl
 	{
 		PriorAndCondition known = getPriorAndCondition();
 		final Value value = known.value();
+		// Value may be owned by the instance, so get the index before releasing it.
+		final int knownIndex = value != null ? value.getIndex() : -1;
 		known = known.release();
 		
-		if (value != null)
+		if (knownIndex >= 0)
 		{
-			return value.getIndex();
+			return knownIndex;
 		}
 					
 		double[] belief = getBelief();
@@ -46,6 +46,7 @@ import com.analog.lyric.dimple.model.core.Node;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.factors.FactorBase;
 import com.analog.lyric.dimple.model.repeated.BlastFromThePastFactor;
+import com.analog.lyric.dimple.model.repeated.StreamPipeline;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.model.variables.VariableBlock;
@@ -108,6 +109,11 @@ public abstract class SFactorGraphBase
 	private @Nullable MultiThreadingManager _multithreader; // = new MultiThreadingManager();
 	protected boolean _useMultithreading = false;
 	
+	/**
+	 * Pipelined schedule used by {@link #update()} while {@link #continueSolve()} is running, if any.
+	 */
+	private @Nullable SlicePipeline _slicePipeline = null;
+	
 	/**
 	 * Solver factors belonging to {@link this} indexed by {@link Factor}s local index.
 	 */
@@ -131,6 +137,11 @@ public abstract class SFactorGraphBase
 
 	protected @Nullable ISchedule _schedule;
 	
+	/**
+	 * Option lookups shared by this graph and its solver nodes.
+	 */
+	private final SolverOptionCache _optionCache = new SolverOptionCache(this);
+	
 	/*--------------
 	 * Construction
 	 */
@@ -209,6 +220,7 @@ public abstract class SFactorGraphBase
 		_parent = parent;
 		_solverNodeMapping = parent.getSolverMapping();
 		_solverNodeMapping.addSolverGraph(this);
+		incrementGlobalOptionVersion();
 	}
 	
 	@Override
@@ -673,6 +685,13 @@ public abstract class SFactorGraphBase
 	@Override
 	public void update()
 	{
+		final SlicePipeline slices = _slicePipeline;
+		if (slices != null)
+		{
+			slices.update();
+			return;
+		}
+		
 		for (IScheduleEntry entry : getSchedule())
 		{
 			runScheduleEntry(entry);
@@ -696,7 +715,7 @@ public abstract class SFactorGraphBase
 	public void iterate(int numIters)
 	{
 		final MultiThreadingManager multithreader = _multithreader;
-		if (multithreader == null || ! _useMultithreading)
+		if (multithreader == null || ! _useMultithreading || _slicePipeline != null)
 		{
 			// *** Single thread
 			for (int iterNum = 0; iterNum < numIters; iterNum++)
@@ -741,18 +760,44 @@ public abstract class SFactorGraphBase
 		int maxSteps = _model.getNumSteps();
 		boolean infinite = _model.getNumStepsInfinite();
 		
-		while (getModel().hasNext())
+		_slicePipeline = createSlicePipeline();
+		final @Nullable StreamPipeline pipeline = getOptionOrDefault(SolverOptions.pipelineStreams) ?
+			StreamPipeline.start(_model.getVariableStreams(), getOptionOrDefault(SolverOptions.streamPipelineCapacity)) :
+			null;
+		
+		try
 		{
-			if (!infinite && i >= maxSteps)
-				break;
-			
-			getModel().advance();
-			solveOneStep();
-			
-			i++;
+			while (getModel().hasNext())
+			{
+				if (!infinite && i >= maxSteps)
+					break;
+
+				getModel().advance();
+				solveOneStep();
+
+				i++;
+			}
+		}
+		finally
+		{
+			_slicePipeline = null;
+			if (pipeline != null)
+			{
+				pipeline.stop();
+			}
 		}
 	}
 
+	/**
+	 * Pipelined schedule to be used by {@link #update()} during {@link #continueSolve()}, if any.
+	 * <p>
+	 * The default implementation returns null.
+	 */
+	@Nullable SlicePipeline createSlicePipeline()
+	{
+		return null;
+	}
+	
 	@Override
 	public double getBetheFreeEnergy()
 	{
@@ -1011,6 +1056,8 @@ public abstract class SFactorGraphBase
 	 * <p>
 	 * Default implementation does the following:
 	 * <ul>
+	 * <li>Discards cached option lookups, so that option settings are resolved once per initialization
+	 * and then shared by the graph's solver nodes.
 	 * <li>Initializes {@linkplain #getNumIterations() iterations} and multithreading from options.
 	 * <li>Builds and {@linkplain #validateSchedule(ISchedule) validates} the schedule.
 	 * <li>{@linkplain #initializeSolverEdges() Initializes solver edge state}.
@@ -1027,6 +1074,7 @@ public abstract class SFactorGraphBase
 	@Override
 	public void initialize()
 	{
+		_optionCache.clear();
 		_numIterations = getOptionOrDefault(BPOptions.iterations);
 		_useMultithreading = getOptionOrDefault(SolverOptions.enableMultithreading);
 
@@ -1135,6 +1183,26 @@ public abstract class SFactorGraphBase
 			getSolverName(), var.getClass().getSimpleName());
 	}
 	
+	/*-----------------------
+	 * Package SNode methods
+	 */
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A solver graph uses its own option cache.
+	 */
+	@Override
+	SFactorGraphBase<?,?,?,?> getOptionCacheGraph()
+	{
+		return this;
+	}
+	
+	SolverOptionCache getOptionCache()
+	{
+		return _optionCache;
+	}
+	
 	/*---------------
 	 * Inner classes
 	 * 
@@ -16,6 +16,7 @@
 
 package com.analog.lyric.dimple.solvers.core;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -28,6 +29,8 @@ import com.analog.lyric.dimple.solvers.core.parameterizedMessages.IParameterized
 import com.analog.lyric.dimple.solvers.interfaces.ISolverEdgeState;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
+import com.analog.lyric.options.IOptionHolder;
+import com.analog.lyric.options.IOptionKey;
 
 /**
  * Abstract base implementation of {@link ISolverNode}
@@ -70,6 +73,60 @@ public abstract class SNode<MNode extends Node> extends SChild<MNode> implements
 		return String.format("[%s %s]", getClass().getSimpleName(), _model.getQualifiedName());
 	}
 	
+	/*-----------------------
+	 * IOptionHolder methods
+	 */
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If neither this node nor its model node has a local setting for a non-local {@code key},
+	 * the remainder of the lookup is served from an option cache held by the {@linkplain
+	 * #getParentGraph() parent solver graph}, which is shared by all of the nodes in the graph and
+	 * is discarded when the graph is {@linkplain SFactorGraphBase#initialize() initialized} or
+	 * when any option setting changes.
+	 */
+	@Override
+	public @Nullable <T extends Serializable> T getOptionAndSource(IOptionKey<T> key, @Nullable IOptionHolder[] source)
+	{
+		final SFactorGraphBase<?,?,?,?> cacheGraph = getOptionCacheGraph();
+		if (cacheGraph == null || key.local())
+		{
+			return super.getOptionAndSource(key, source);
+		}
+		
+		IOptionHolder delegate = this;
+		T result = getLocalOption(key);
+		
+		if (result == null && cacheGraph != this)
+		{
+			delegate = _model;
+			result = _model.getLocalOption(key);
+			if (result != null && !key.validForDelegator(result, this))
+			{
+				result = null;
+			}
+		}
+		
+		if (result != null)
+		{
+			if (source != null && source.length > 0)
+			{
+				source[0] = delegate;
+			}
+			return result;
+		}
+		
+		result = cacheGraph.getOptionCache().get(key, source);
+		if (result != null && !key.validForDelegator(result, this))
+		{
+			// Setting is not valid for this node, so look further down the chain.
+			result = super.getOptionAndSource(key, source);
+		}
+		
+		return result;
+	}
+	
 	/*---------------------
 	 * ISolverNode methods
 	 */
@@ -211,6 +268,17 @@ public abstract class SNode<MNode extends Node> extends SChild<MNode> implements
 	 * Protected SNode methods
 	 */
 	
+	/**
+	 * Returns solver graph whose option cache is used for option lookups on this node, or null
+	 * if lookups should not use a cache. This is the parent graph if it extends {@link SFactorGraphBase}.
+	 * @since 0.08
+	 */
+	@Nullable SFactorGraphBase<?,?,?,?> getOptionCacheGraph()
+	{
+		final ISolverFactorGraph parent = getParentGraph();
+		return parent instanceof SFactorGraphBase ? (SFactorGraphBase<?,?,?,?>)parent : null;
+	}
+	
 	/**
 	 * Returns a clone of outgoing message for given {@code edge}.
 	 * <p>
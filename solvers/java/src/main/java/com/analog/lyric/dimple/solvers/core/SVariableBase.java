@@ -18,6 +18,7 @@ package com.analog.lyric.dimple.solvers.core;
 
 import org.eclipse.jdt.annotation.Nullable;
 
+import com.analog.lyric.dimple.data.ColumnarDataLayer;
 import com.analog.lyric.dimple.data.DataLayer;
 import com.analog.lyric.dimple.data.IDatum;
 import com.analog.lyric.dimple.events.SolverEvent;
@@ -363,6 +364,13 @@ public abstract class SVariableBase<MVariable extends Variable>
 	 */
 	public PriorAndCondition getPriorAndCondition()
 	{
+		final DataLayer<?> layer = _parent.getConditioningLayer();
+		if (layer instanceof ColumnarDataLayer)
+		{
+			// Avoid materializing a Value object for the condition.
+			return PriorAndCondition.create(_model.getPrior(), (ColumnarDataLayer)layer, _model);
+		}
+		
 		return PriorAndCondition.create(_model.getPrior(), getCondition());
 	}
 	
@@ -0,0 +1,314 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.INode;
+import com.analog.lyric.dimple.model.repeated.FactorGraphStream;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.schedulers.schedule.FixedSchedule;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.BlockScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.EdgeScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.IScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.NodeScheduleEntry;
+import com.analog.lyric.dimple.schedulers.scheduleEntry.SubgraphScheduleEntry;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+
+/**
+ * Pipelined schedule for one step of a rolled-up graph.
+ * <p>
+ * The schedule entries of the graph are split into three groups:
+ * <ul>
+ * <li><b>forward</b>: entries for nodes that only touch the newest slice of each
+ * {@link FactorGraphStream}, run in schedule order.
+ * <li><b>backward</b>: entries for nodes that only touch older slices or the root graph, run from the
+ * second newest slice back to the oldest.
+ * <li><b>boundary</b>: entries for variables that are connected to both of the other groups.
+ * </ul>
+ * Each {@linkplain #update() update} runs the forward and backward groups concurrently and then runs
+ * the boundary group. Because no message written by one of the concurrent groups is read or written by
+ * the other, the result does not depend on how the threads are scheduled, but it does differ from running
+ * the graph's schedule sequentially, since messages across the boundary are only exchanged once per
+ * iteration.
+ * <p>
+ * @since 0.08
+ * @see BPOptions#pipelineSlices
+ */
+final class SlicePipeline
+{
+	/*-------
+	 * State
+	 */
+
+	private static final int FORWARD = 0;
+	private static final int BACKWARD = 1;
+	private static final int BOUNDARY = 2;
+
+	private final SFactorGraphBase<?,?,?,?> _sgraph;
+	private final IScheduleEntry[] _forward;
+	private final IScheduleEntry[] _backward;
+	private final IScheduleEntry[] _boundary;
+
+	/**
+	 * Entry in schedule with its position and sort keys for the backward group.
+	 */
+	private static final class Item
+	{
+		private final IScheduleEntry _entry;
+		private final int _order;
+		private final int _slice;
+		private final boolean _inSlice;
+
+		private Item(IScheduleEntry entry, int order, int slice, boolean inSlice)
+		{
+			_entry = entry;
+			_order = order;
+			_slice = slice;
+			_inSlice = inSlice;
+		}
+	}
+
+	/*--------------
+	 * Construction
+	 */
+
+	private SlicePipeline(SFactorGraphBase<?,?,?,?> sgraph, IScheduleEntry[] forward, IScheduleEntry[] backward,
+		IScheduleEntry[] boundary)
+	{
+		_sgraph = sgraph;
+		_forward = forward;
+		_backward = backward;
+		_boundary = boundary;
+	}
+
+	/**
+	 * Creates pipeline for the current schedule of {@code sgraph}.
+	 * <p>
+	 * Returns null if the graph has no {@linkplain FactorGraph#getFactorGraphStreams() repeated factors}.
+	 * <p>
+	 * @throws DimpleException if the schedule is not a {@link FixedSchedule} or contains custom entries.
+	 */
+	static @Nullable SlicePipeline create(SFactorGraphBase<?,?,?,?> sgraph)
+	{
+		final FactorGraph model = sgraph.getModel();
+		final List<FactorGraphStream> streams = model.getFactorGraphStreams();
+		if (streams.isEmpty())
+		{
+			return null;
+		}
+
+		// Index of slice for each nested graph, or -1 for the newest slice of its stream.
+		final IdentityHashMap<FactorGraph, Integer> slices = new IdentityHashMap<>();
+		for (FactorGraphStream stream : streams)
+		{
+			final List<FactorGraph> nestedGraphs = stream.getNestedGraphs();
+			for (int i = 0, n = nestedGraphs.size(); i < n; ++i)
+			{
+				slices.put(nestedGraphs.get(i), i == n - 1 ? -1 : i);
+			}
+		}
+
+		final List<IScheduleEntry> entries = new ArrayList<>();
+		flatten(sgraph, sgraph.getSchedule(), entries);
+
+		final List<IScheduleEntry> forward = new ArrayList<>();
+		final List<Item> backward = new ArrayList<>();
+		final List<IScheduleEntry> boundary = new ArrayList<>();
+
+		for (int order = 0, n = entries.size(); order < n; ++order)
+		{
+			final IScheduleEntry entry = entries.get(order);
+			final INode node = entry.type() == IScheduleEntry.Type.EDGE ?
+				((EdgeScheduleEntry)entry).getNode() : ((NodeScheduleEntry)entry).getNode();
+
+			int slice = sliceOf(node, slices);
+			final boolean inSlice = slice != Integer.MIN_VALUE;
+			int group;
+			if (node.isFactor())
+			{
+				group = slice == -1 ? FORWARD : BACKWARD;
+			}
+			else if (slice == -1)
+			{
+				// Variable inside newest slice.
+				group = FORWARD;
+			}
+			else if (inSlice)
+			{
+				group = BACKWARD;
+			}
+			else
+			{
+				// Variable in root graph belongs to the group of its factors, if they agree.
+				group = -1;
+				for (int i = 0, nSiblings = node.getSiblingCount(); i < nSiblings; ++i)
+				{
+					final int factorSlice = sliceOf(node.getSibling(i), slices);
+					final int factorGroup = factorSlice == -1 ? FORWARD : BACKWARD;
+					group = group < 0 || group == factorGroup ? factorGroup : BOUNDARY;
+					slice = Math.max(slice, factorSlice == -1 ? Integer.MAX_VALUE : factorSlice);
+				}
+				if (group < 0)
+				{
+					group = BACKWARD;
+				}
+			}
+
+			switch (group)
+			{
+			case FORWARD:
+				forward.add(entry);
+				break;
+			case BACKWARD:
+				backward.add(new Item(entry, order, slice, inSlice));
+				break;
+			default:
+				boundary.add(entry);
+				break;
+			}
+		}
+
+		// Newest to oldest slice. Within a slice, nodes inside the slice before root variables connecting it
+		// to the previous slice, each in reverse schedule order.
+		Collections.sort(backward, new Comparator<Item>() {
+			@Override
+			public int compare(Item item1, Item item2)
+			{
+				int result = Integer.compare(item2._slice, item1._slice);
+				if (result == 0)
+				{
+					result = Boolean.compare(item2._inSlice, item1._inSlice);
+					if (result == 0)
+					{
+						result = Integer.compare(item2._order, item1._order);
+					}
+				}
+				return result;
+			}
+		});
+		final IScheduleEntry[] backwardEntries = new IScheduleEntry[backward.size()];
+		for (int i = 0; i < backwardEntries.length; ++i)
+		{
+			backwardEntries[i] = backward.get(i)._entry;
+		}
+
+		return new SlicePipeline(sgraph, forward.toArray(new IScheduleEntry[forward.size()]), backwardEntries,
+			boundary.toArray(new IScheduleEntry[boundary.size()]));
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	/**
+	 * Runs one pipelined iteration.
+	 */
+	void update()
+	{
+		ThreadPool.invokeAll(Arrays.asList(task(_forward), task(_backward)));
+		run(_boundary);
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private Callable<Object> task(final IScheduleEntry[] entries)
+	{
+		return new Callable<Object>() {
+			@Override
+			public @Nullable Object call()
+			{
+				run(entries);
+				return null;
+			}
+		};
+	}
+
+	private void run(IScheduleEntry[] entries)
+	{
+		final SFactorGraphBase<?,?,?,?> sgraph = _sgraph;
+		for (IScheduleEntry entry : entries)
+		{
+			sgraph.runScheduleEntry(entry);
+		}
+	}
+
+	/**
+	 * Appends node and edge entries of {@code schedule} to {@code entries}, expanding subgraph and block entries.
+	 */
+	@SuppressWarnings("deprecation") // for SUBSCHEDULE
+	private static void flatten(SFactorGraphBase<?,?,?,?> sgraph, Iterable<? extends IScheduleEntry> schedule,
+		List<IScheduleEntry> entries)
+	{
+		if (!(schedule instanceof FixedSchedule) && !(schedule instanceof List))
+		{
+			throw new DimpleException("Pipelined slices require a fixed schedule");
+		}
+
+		for (IScheduleEntry entry : schedule)
+		{
+			switch (entry.type())
+			{
+			case SUBGRAPH:
+				flatten(sgraph, ((SubgraphScheduleEntry)entry).getSubgraphSchedule(sgraph), entries);
+				break;
+			case SUBSCHEDULE:
+				flatten(sgraph, ((com.analog.lyric.dimple.schedulers.scheduleEntry.SubScheduleEntry)entry).getSchedule(),
+					entries);
+				break;
+			case VARIABLE_BLOCK:
+				flatten(sgraph, ((BlockScheduleEntry)entry).toNodeEntries(), entries);
+				break;
+			case NODE:
+			case EDGE:
+				entries.add(entry);
+				break;
+			case CUSTOM:
+				throw new DimpleException("Pipelined slices do not support custom schedule entries");
+			}
+		}
+	}
+
+	/**
+	 * Index of slice containing {@code node}, -1 if it is in the newest slice, or {@link Integer#MIN_VALUE}
+	 * if it is not in any slice.
+	 */
+	private static int sliceOf(INode node, IdentityHashMap<FactorGraph, Integer> slices)
+	{
+		for (FactorGraph graph = node.getParentGraph(); graph != null; graph = graph.getParentGraph())
+		{
+			final Integer slice = slices.get(graph);
+			if (slice != null)
+			{
+				return slice;
+			}
+		}
+		return Integer.MIN_VALUE;
+	}
+}
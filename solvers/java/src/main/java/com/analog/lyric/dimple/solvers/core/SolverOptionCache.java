@@ -0,0 +1,150 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.collect.ReleasableIterator;
+import com.analog.lyric.options.IOptionHolder;
+import com.analog.lyric.options.IOptionKey;
+import com.analog.lyric.options.LocalOptionHolder;
+
+/**
+ * Caches option lookups resolved from a solver graph's delegation chain.
+ * <p>
+ * A solver node that has no local setting on either itself or its model node sees the
+ * same option settings as its parent solver graph, so the result of walking the graph's
+ * {@linkplain IOptionHolder#getOptionDelegates() option delegates} can be shared by every
+ * node in the graph. Each entry records the {@linkplain LocalOptionHolder#getGlobalOptionVersion()
+ * global option version} at which it was resolved and is ignored once that version changes.
+ * <p>
+ * @since 0.08
+ */
+final class SolverOptionCache
+{
+	/*-------
+	 * State
+	 */
+
+	private final SFactorGraphBase<?,?,?,?> _graph;
+
+	private final ConcurrentMap<IOptionKey<?>, Entry> _entries = new ConcurrentHashMap<>();
+
+	private static final class Entry
+	{
+		private final long _version;
+		private final @Nullable Object _value;
+		private final @Nullable IOptionHolder _source;
+
+		private Entry(long version, @Nullable Object value, @Nullable IOptionHolder source)
+		{
+			_version = version;
+			_value = value;
+			_source = source;
+		}
+	}
+
+	/*--------------
+	 * Construction
+	 */
+
+	SolverOptionCache(SFactorGraphBase<?,?,?,?> graph)
+	{
+		_graph = graph;
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	/**
+	 * Discards all cached entries.
+	 */
+	void clear()
+	{
+		_entries.clear();
+	}
+
+	/**
+	 * Returns number of cached entries, including ones that may no longer be current.
+	 */
+	int size()
+	{
+		return _entries.size();
+	}
+
+	/**
+	 * Returns first setting of option {@code key} in the graph's delegation chain, or null if not set.
+	 * <p>
+	 * Unlike {@link IOptionHolder#getOptionAndSource}, this does not check whether the setting is
+	 * {@linkplain IOptionKey#validForDelegator valid for the delegator}, since that depends on which
+	 * node is doing the lookup. If the caller finds that the returned value is not valid for it,
+	 * it should fall back on a full lookup.
+	 * <p>
+	 * @param key is a non-local option key.
+	 * @param source if non-null with positive length and the return value is not null, the first
+	 * element will be set to the option holder that supplied the value.
+	 */
+	@Nullable <T extends Serializable> T get(IOptionKey<T> key, @Nullable IOptionHolder[] source)
+	{
+		final long version = LocalOptionHolder.getGlobalOptionVersion();
+
+		Entry entry = _entries.get(key);
+		if (entry == null || entry._version != version)
+		{
+			entry = resolve(key, version);
+			_entries.put(key, entry);
+		}
+
+		final Object value = entry._value;
+		if (value != null && source != null && source.length > 0)
+		{
+			source[0] = entry._source;
+		}
+
+		return key.type().cast(value);
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private Entry resolve(IOptionKey<?> key, long version)
+	{
+		Object value = null;
+		IOptionHolder source = null;
+
+		final ReleasableIterator<? extends IOptionHolder> delegates = _graph.getOptionDelegates();
+		while (delegates.hasNext())
+		{
+			final IOptionHolder delegate = delegates.next();
+			value = delegate.getLocalOption(key);
+			if (value != null)
+			{
+				source = delegate;
+				break;
+			}
+		}
+		delegates.release();
+
+		return new Entry(version, value, source);
+	}
+}
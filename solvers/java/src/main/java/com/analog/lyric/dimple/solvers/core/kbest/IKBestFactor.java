@@ -19,6 +19,7 @@ package com.analog.lyric.dimple.solvers.core.kbest;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
 import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessage;
 
 /*
  * Solver Factors that need to support kbest can implement this interface
@@ -29,6 +30,12 @@ public interface IKBestFactor
 	//ArrayList<Port> getPorts();
 	public double [][] getInPortMsgs();
 	public double[] getInPortMsg(int edgeNumber);
+	/**
+	 * Incoming message for given edge, whose {@linkplain DiscreteMessage#representation() representation}
+	 * is the same array returned by {@link #getInPortMsg(int)}.
+	 * @since 0.08
+	 */
+	public DiscreteMessage getInPortMessage(int edgeNumber);
 	public double [][] getOutPortMsgs();
 	public double[] getOutPortMsg(int edgeNumber);
 	public Factor getFactor();
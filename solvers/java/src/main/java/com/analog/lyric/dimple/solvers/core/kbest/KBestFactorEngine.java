@@ -192,5 +192,14 @@ public class KBestFactorEngine
 	{
 		return _kbestFactor;
 	}
+	
+	/**
+	 * Maximum number of elements of each input message that will be used in updates.
+	 * @since 0.08
+	 */
+	protected int getK()
+	{
+		return _k;
+	}
 
 }
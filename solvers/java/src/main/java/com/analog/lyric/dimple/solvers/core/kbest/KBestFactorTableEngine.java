@@ -16,23 +16,266 @@
 
 package com.analog.lyric.dimple.solvers.core.kbest;
 
-public class KBestFactorTableEngine extends KBestFactorEngine 
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.collect.ArrayUtil;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessage;
+
+/*
+ * K-best updates for factors with factor tables.
+ *
+ * Each input message is reduced to a sparse list of (index, value) pairs holding its k best
+ * entries using DiscreteMessage.getKBest. Output messages are then computed either by iterating
+ * over all combinations of surviving input indices, looking up the table entry for each output
+ * value by joint index, or by a single pass over the sparse table entries that skips entries
+ * with an input index that did not survive. Whichever visits fewer table entries is used.
+ *
+ * The table values are assumed to be in the same form, weights or energies, as the messages.
+ */
+public class KBestFactorTableEngine extends KBestFactorEngine
 {
-	public KBestFactorTableEngine(IKBestFactor f) 
+	/*-------
+	 * State
+	 */
+
+	// For each port, the first _keptCounts[i] entries hold the surviving indices of the
+	// input message in increasing order and the corresponding message values.
+	private int[][] _keptIndices = ArrayUtil.EMPTY_INT_ARRAY_ARRAY;
+	private double[][] _keptValues = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	private int[] _keptCounts = ArrayUtil.EMPTY_INT_ARRAY;
+
+	// Per port flags indicating which indices survive. Only set during a pass over table entries.
+	private boolean[][] _keptMasks = new boolean[0][];
+
+	// Scratch space for iterating over combinations of surviving indices.
+	private int[] _positions = ArrayUtil.EMPTY_INT_ARRAY;
+	private int[] _strides = ArrayUtil.EMPTY_INT_ARRAY;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public KBestFactorTableEngine(IKBestFactor f)
 	{
 		super(f);
 	}
-	
-	/*
-	 * retrieves weights from the factor table
+
+	/*---------------------------
+	 * KBestFactorEngine methods
 	 */
-	protected double getFactorFunctionValueForIndices(int [] inputIndices, Object [][] domains)
+
+	@Override
+	public void update()
 	{
+		final int nPorts = getIKBestFactor().getFactor().getSiblingCount();
+
+		// The surviving indices of each input message are the same for every output edge.
+		computeKBest(nPorts, -1);
+
+		for (int outPortNum = 0; outPortNum < nPorts; ++outPortNum)
+		{
+			updateEdgeFromKBest(outPortNum);
+		}
+	}
+
+	@Override
+	public void updateEdge(int outPortNum)
+	{
+		computeKBest(getIKBestFactor().getFactor().getSiblingCount(), outPortNum);
+		updateEdgeFromKBest(outPortNum);
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void computeKBest(int nPorts, int skipPort)
+	{
+		final IKBestFactor f = getIKBestFactor();
+		final int k = Math.max(1, getK());
+
+		if (_keptCounts.length != nPorts)
+		{
+			_keptIndices = new int[nPorts][];
+			_keptValues = new double[nPorts][];
+			_keptCounts = new int[nPorts];
+			_keptMasks = new boolean[nPorts][];
+			_positions = new int[nPorts];
+			_strides = new int[nPorts];
+		}
+
+		for (int i = 0; i < nPorts; ++i)
+		{
+			if (i == skipPort)
+			{
+				continue;
+			}
+
+			final DiscreteMessage msg = f.getInPortMessage(i);
+			final int size = Math.min(k, msg.size());
+			int[] indices = _keptIndices[i];
+			if (indices == null || indices.length < size)
+			{
+				_keptIndices[i] = indices = new int[size];
+				_keptValues[i] = new double[size];
+			}
+			_keptCounts[i] = msg.getKBest(k, indices, _keptValues[i]);
+		}
+	}
 
-		int index = getIKBestFactor().getFactorTable().sparseIndexFromIndices(inputIndices);
-		if (index < 0)
-			return Double.POSITIVE_INFINITY;
+	private void updateEdgeFromKBest(int outPortNum)
+	{
+		final IKBestFactor f = getIKBestFactor();
+		final IFactorTable table = f.getFactorTable();
+		final boolean useWeights = f.getInPortMessage(outPortNum).storesWeights();
+		final double[] outputMsg = f.getOutPortMsg(outPortNum);
+
+		f.initMsg(outputMsg);
+
+		double nCombinations = outputMsg.length;
+		for (int i = _keptCounts.length; --i>=0;)
+		{
+			if (i != outPortNum)
+			{
+				nCombinations *= _keptCounts[i];
+			}
+		}
+
+		final double[] dense = useWeights ?
+			(table.hasDenseWeights() ? table.getWeightsDenseUnsafe() : null) :
+			(table.hasDenseEnergies() ? table.getEnergiesDenseUnsafe() : null);
+
+		final int sparseSize = table.hasSparseRepresentation() ? table.sparseSize() : Integer.MAX_VALUE;
+
+		// Looking up entries by joint index in a table without a dense representation requires a search.
+		final double lookupCost = dense != null ? 1 : 1 + Math.log(sparseSize) / Math.log(2);
+
+		if (table.supportsJointIndexing() && nCombinations * lookupCost <= sparseSize)
+		{
+			updateByCombinations(outPortNum, outputMsg, table, useWeights, dense);
+		}
 		else
-			return getIKBestFactor().getFactorTableValue(index);
+		{
+			updateBySparseEntries(outPortNum, outputMsg, table, useWeights);
+		}
+
+		f.normalize(outputMsg);
+	}
+
+	private void updateByCombinations(int outPortNum, double[] outputMsg, IFactorTable table, boolean useWeights,
+		@Nullable double[] dense)
+	{
+		final IKBestFactor f = getIKBestFactor();
+		final JointDomainIndexer indexer = table.getDomainIndexer();
+		final int nPorts = _keptCounts.length;
+		final int outSize = outputMsg.length;
+		final int[] positions = _positions;
+		final int[] strides = _strides;
+
+		for (int i = 0; i < nPorts; ++i)
+		{
+			positions[i] = 0;
+			strides[i] = indexer.getStride(i);
+		}
+		final int outStride = strides[outPortNum];
+
+		while (true)
+		{
+			int baseJoint = 0;
+			double partial = f.initAccumulator();
+			for (int i = 0; i < nPorts; ++i)
+			{
+				if (i != outPortNum)
+				{
+					final int position = positions[i];
+					baseJoint += _keptIndices[i][position] * strides[i];
+					partial = f.accumulate(partial, _keptValues[i][position]);
+				}
+			}
+
+			// Entries that are not in the table have zero weight (infinite energy) and therefore
+			// do not change the output.
+			for (int outIndex = 0, joint = baseJoint; outIndex < outSize; ++outIndex, joint += outStride)
+			{
+				final double value = dense != null ? dense[joint] :
+					useWeights ? table.getWeightForJointIndex(joint) : table.getEnergyForJointIndex(joint);
+				outputMsg[outIndex] = f.combine(outputMsg[outIndex], f.accumulate(partial, value));
+			}
+
+			// Advance to next combination of surviving input indices
+			int i = nPorts;
+			while (--i >= 0)
+			{
+				if (i != outPortNum)
+				{
+					if (++positions[i] < _keptCounts[i])
+					{
+						break;
+					}
+					positions[i] = 0;
+				}
+			}
+			if (i < 0)
+			{
+				break;
+			}
+		}
+	}
+
+	private void updateBySparseEntries(int outPortNum, double[] outputMsg, IFactorTable table, boolean useWeights)
+	{
+		final IKBestFactor f = getIKBestFactor();
+		final int[][] rows = table.getIndicesSparseUnsafe();
+		final double[] values = useWeights ? table.getWeightsSparseUnsafe() : table.getEnergiesSparseUnsafe();
+		final double[][] inputMsgs = f.getInPortMsgs();
+		final int nPorts = _keptCounts.length;
+
+		setMasks(outPortNum, inputMsgs, true);
+
+		entries:
+		for (int entry = 0, nEntries = rows.length; entry < nEntries; ++entry)
+		{
+			final int[] row = rows[entry];
+			double partial = f.initAccumulator();
+			for (int i = 0; i < nPorts; ++i)
+			{
+				if (i != outPortNum)
+				{
+					final int index = row[i];
+					if (!_keptMasks[i][index])
+					{
+						continue entries;
+					}
+					partial = f.accumulate(partial, inputMsgs[i][index]);
+				}
+			}
+			partial = f.accumulate(partial, values[entry]);
+			final int outIndex = row[outPortNum];
+			outputMsg[outIndex] = f.combine(outputMsg[outIndex], partial);
+		}
+
+		setMasks(outPortNum, inputMsgs, false);
+	}
+
+	private void setMasks(int outPortNum, double[][] inputMsgs, boolean value)
+	{
+		for (int i = _keptCounts.length; --i>=0;)
+		{
+			if (i != outPortNum)
+			{
+				boolean[] mask = _keptMasks[i];
+				if (mask == null || mask.length != inputMsgs[i].length)
+				{
+					_keptMasks[i] = mask = new boolean[inputMsgs[i].length];
+				}
+				final int[] indices = _keptIndices[i];
+				for (int j = _keptCounts[i]; --j>=0;)
+				{
+					mask[indices[j]] = value;
+				}
+			}
+		}
 	}
 }
@@ -17,12 +17,17 @@
 package com.analog.lyric.dimple.solvers.core.multithreading;
 
 /**
- * Provides two multithreading options.
- * 
+ * Provides three multithreading options.
+ * <ul>
+ * <li>{@link #Phase} updates independent groups of schedule entries in parallel.
+ * <li>{@link #SingleQueue} updates schedule entries as soon as their dependencies are satisfied.
+ * <li>{@link #Residual} ignores the schedule and asynchronously updates nodes in order of the
+ * change in their incoming messages.
+ * </ul>
  * @author shershey
  *
  */
 public enum MultithreadingMode 
 {
-	Phase, SingleQueue;	
+	Phase, SingleQueue, Residual;	
 }
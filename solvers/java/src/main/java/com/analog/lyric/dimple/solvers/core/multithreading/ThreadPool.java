@@ -16,8 +16,13 @@
 
 package com.analog.lyric.dimple.solvers.core.multithreading;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -79,6 +84,57 @@ public class ThreadPool
 		return _numThreads;
 	}
 	
+	/**
+	 * Runs tasks on the thread pool and waits for all of them to complete.
+	 * <p>
+	 * The tasks are simply run in order on the calling thread if there is only one task
+	 * or the pool only has one thread. Because the pool has a fixed size, tasks must not
+	 * themselves wait on other tasks submitted to the pool.
+	 * <p>
+	 * @return results of tasks in same order as {@code tasks}.
+	 * @throws RuntimeException thrown by any task, or else a {@link DimpleException} wrapping
+	 * any other exception.
+	 * @since 0.08
+	 */
+	public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks)
+	{
+		final ExecutorService service = getThreadPool();
+		final List<T> results = new ArrayList<T>(tasks.size());
+		
+		try
+		{
+			if (tasks.size() <= 1 || getNumThreads() <= 1)
+			{
+				for (Callable<T> task : tasks)
+					results.add(task.call());
+			}
+			else
+			{
+				for (Future<T> future : service.invokeAll(tasks))
+					results.add(future.get());
+			}
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new DimpleException(e);
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new DimpleException(e);
+		}
+		
+		return results;
+	}
+	
 	private static void cleanupService()
 	{
 		final ExecutorService service = _service;
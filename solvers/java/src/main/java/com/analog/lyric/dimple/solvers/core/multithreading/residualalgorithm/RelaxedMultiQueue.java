@@ -0,0 +1,135 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.residualalgorithm;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Concurrent priority queue that only approximately returns entries in priority order.
+ * <p>
+ * Entries are spread randomly across a number of independently locked priority queues. Removal takes
+ * the better of the highest priority entries from two randomly chosen queues, so threads rarely contend
+ * for the same lock, while entries with high priority are still likely to be removed early.
+ * <p>
+ * @since 0.08
+ */
+final class RelaxedMultiQueue
+{
+	/*-------
+	 * State
+	 */
+
+	static final class Entry
+	{
+		final int node;
+		final double priority;
+
+		Entry(int node, double priority)
+		{
+			this.node = node;
+			this.priority = priority;
+		}
+	}
+
+	private static final Comparator<Entry> HIGHEST_FIRST = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry e1, Entry e2)
+		{
+			return Double.compare(e2.priority, e1.priority);
+		}
+	};
+
+	private static final class SubQueue
+	{
+		private final PriorityQueue<Entry> _queue = new PriorityQueue<>(16, HIGHEST_FIRST);
+
+		/**
+		 * Priority of head of queue, or negative infinity if empty. May be read without holding lock.
+		 */
+		private volatile double _top = Double.NEGATIVE_INFINITY;
+
+		private synchronized void add(Entry entry)
+		{
+			_queue.add(entry);
+			_top = _queue.peek().priority;
+		}
+
+		private synchronized @Nullable Entry poll()
+		{
+			final Entry entry = _queue.poll();
+			final Entry head = _queue.peek();
+			_top = head != null ? head.priority : Double.NEGATIVE_INFINITY;
+			return entry;
+		}
+	}
+
+	private final SubQueue[] _queues;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs empty queue for use by {@code nThreads} concurrent threads.
+	 */
+	RelaxedMultiQueue(int nThreads)
+	{
+		_queues = new SubQueue[Math.max(2, 2 * nThreads)];
+		for (int i = 0; i < _queues.length; ++i)
+		{
+			_queues[i] = new SubQueue();
+		}
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	void add(Entry entry)
+	{
+		_queues[ThreadLocalRandom.current().nextInt(_queues.length)].add(entry);
+	}
+
+	/**
+	 * Removes an entry with high priority.
+	 * <p>
+	 * @return null if all of the queues were observed to be empty.
+	 */
+	@Nullable Entry poll()
+	{
+		final ThreadLocalRandom rand = ThreadLocalRandom.current();
+		final int n = _queues.length;
+		final SubQueue q1 = _queues[rand.nextInt(n)];
+		final SubQueue q2 = _queues[rand.nextInt(n)];
+
+		Entry entry = q1._top >= q2._top ? q1.poll() : q2.poll();
+		if (entry == null)
+		{
+			// Queues are nearly empty, so look at all of them.
+			final int start = rand.nextInt(n);
+			for (int i = 0; i < n && entry == null; ++i)
+			{
+				entry = _queues[(start + i) % n].poll();
+			}
+		}
+		return entry;
+	}
+}
@@ -0,0 +1,395 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.residualalgorithm;
+
+import static java.util.Objects.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessage;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.IParameterizedMessage;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverEdgeState;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+
+/**
+ * Node adjacency, residuals, locks and message snapshots used by {@link ResidualMultithreadingAlgorithm}.
+ * <p>
+ * Nodes are identified by their index in {@link #_nodes}. The residual of a node is the sum of the
+ * changes in its incoming messages since it was last updated.
+ * <p>
+ * @since 0.08
+ */
+final class ResidualGraph
+{
+	/*-------
+	 * State
+	 */
+
+	private final ISolverNode[] _nodes;
+
+	/**
+	 * For each node, the node index of each sibling, in sibling order.
+	 */
+	private final int[][] _siblings;
+
+	/**
+	 * For each node, the sorted distinct indexes into {@link #_locks} that must be held to update it,
+	 * which covers the node and its siblings.
+	 */
+	private final int[][] _lockIndices;
+
+	private final ReentrantLock[] _locks;
+
+	/**
+	 * Residuals stored as {@link Double#doubleToRawLongBits} values.
+	 */
+	private final AtomicLongArray _residuals;
+
+	/**
+	 * Non-zero for nodes that currently have an entry in the work queue.
+	 */
+	private final AtomicIntegerArray _queued;
+
+	private final int _maxSiblingCount;
+
+	/**
+	 * For each node and sibling, copy of the outgoing message taken before the node is updated. Only
+	 * accessed while holding the node's locks.
+	 */
+	private final @Nullable Object[][] _snapshots;
+
+	/*--------------
+	 * Construction
+	 */
+
+	ResidualGraph(FactorGraph fg, int nWorkers)
+	{
+		final ArrayList<ISolverNode> nodes = new ArrayList<>();
+		for (Variable var : fg.getVariables(Integer.MAX_VALUE, !fg.hasParentGraph()))
+		{
+			nodes.add(requireNonNull(var.getSolver()));
+		}
+		for (Factor factor : fg.getFactors())
+		{
+			nodes.add(requireNonNull(factor.getSolver()));
+		}
+
+		final int nNodes = nodes.size();
+		_nodes = nodes.toArray(new ISolverNode[nNodes]);
+
+		final IdentityHashMap<ISolverNode, Integer> indexOf = new IdentityHashMap<>(nNodes);
+		for (int i = 0; i < nNodes; ++i)
+		{
+			indexOf.put(_nodes[i], i);
+		}
+
+		// Enough stripes that contention between workers on unrelated nodes is rare.
+		final int nLocks = Math.max(1, Math.min(nNodes, 64 * nWorkers));
+		_locks = new ReentrantLock[nLocks];
+		for (int i = 0; i < nLocks; ++i)
+		{
+			_locks[i] = new ReentrantLock();
+		}
+
+		int maxSiblingCount = 0;
+		_siblings = new int[nNodes][];
+		_lockIndices = new int[nNodes][];
+		_snapshots = new Object[nNodes][];
+		for (int i = 0; i < nNodes; ++i)
+		{
+			final ISolverNode node = _nodes[i];
+			final int nSiblings = node.getSiblingCount();
+			maxSiblingCount = Math.max(maxSiblingCount, nSiblings);
+			final int[] siblings = _siblings[i] = new int[nSiblings];
+			final int[] lockIndices = new int[nSiblings + 1];
+			lockIndices[nSiblings] = i % nLocks;
+			for (int j = 0; j < nSiblings; ++j)
+			{
+				final Integer index = indexOf.get(node.getSibling(j));
+				// Siblings outside of the graph are never updated by this algorithm.
+				siblings[j] = index != null ? index : -1;
+				lockIndices[j] = index != null ? index % nLocks : lockIndices[nSiblings];
+			}
+			Arrays.sort(lockIndices);
+			int nDistinct = 0;
+			for (int j = 0; j < lockIndices.length; ++j)
+			{
+				if (j == 0 || lockIndices[j] != lockIndices[j - 1])
+				{
+					lockIndices[nDistinct++] = lockIndices[j];
+				}
+			}
+			_lockIndices[i] = Arrays.copyOf(lockIndices, nDistinct);
+			_snapshots[i] = new Object[nSiblings];
+		}
+
+		_maxSiblingCount = maxSiblingCount;
+		_residuals = new AtomicLongArray(nNodes);
+		_queued = new AtomicIntegerArray(nNodes);
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	int size()
+	{
+		return _nodes.length;
+	}
+
+	int maxSiblingCount()
+	{
+		return _maxSiblingCount;
+	}
+
+	/**
+	 * Sets residual of every node to positive infinity and marks it as queued, so that all will be updated.
+	 */
+	void reset()
+	{
+		final long infinity = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+		for (int i = _nodes.length; --i>=0;)
+		{
+			_residuals.set(i, infinity);
+			_queued.set(i, 1);
+		}
+	}
+
+	/**
+	 * Marks node as having an entry in the work queue.
+	 * <p>
+	 * @return false if the node was already marked, in which case no new entry should be added.
+	 */
+	boolean markQueued(int node)
+	{
+		return _queued.compareAndSet(node, 0, 1);
+	}
+
+	/**
+	 * Indicates that node's entry has been removed from the work queue. This must be done before
+	 * {@linkplain #takeResidual taking its residual}, so that changes made after that will requeue the node.
+	 */
+	void clearQueued(int node)
+	{
+		_queued.set(node, 0);
+	}
+
+	/**
+	 * Adds {@code delta} to residual of node and returns the new value.
+	 */
+	double addResidual(int node, double delta)
+	{
+		while (true)
+		{
+			final long oldBits = _residuals.get(node);
+			final double newValue = Double.longBitsToDouble(oldBits) + delta;
+			if (_residuals.compareAndSet(node, oldBits, Double.doubleToRawLongBits(newValue)))
+			{
+				return newValue;
+			}
+		}
+	}
+
+	/**
+	 * Sets residual of node to zero and returns its previous value.
+	 */
+	double takeResidual(int node)
+	{
+		return Double.longBitsToDouble(_residuals.getAndSet(node, 0L));
+	}
+
+	/**
+	 * Index of sibling node, or -1 if the sibling is not part of this graph.
+	 */
+	int[] getSiblings(int node)
+	{
+		return _siblings[node];
+	}
+
+	/**
+	 * Attempts to acquire locks for the node and its siblings without blocking.
+	 * <p>
+	 * @return true if all of the locks were acquired, in which case they must be released by
+	 * {@link #unlock(int)}.
+	 */
+	boolean tryLock(int node)
+	{
+		final int[] lockIndices = _lockIndices[node];
+		for (int i = 0; i < lockIndices.length; ++i)
+		{
+			if (!_locks[lockIndices[i]].tryLock())
+			{
+				while (--i >= 0)
+				{
+					_locks[lockIndices[i]].unlock();
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	void unlock(int node)
+	{
+		final int[] lockIndices = _lockIndices[node];
+		for (int i = lockIndices.length; --i>=0;)
+		{
+			_locks[lockIndices[i]].unlock();
+		}
+	}
+
+	/**
+	 * Updates all outgoing messages of node and writes the change in each into {@code changes}.
+	 * <p>
+	 * Must be called while holding the node's locks.
+	 */
+	void update(int node, double[] changes)
+	{
+		final ISolverNode snode = _nodes[node];
+		final @Nullable Object[] snapshots = requireNonNull(_snapshots[node]);
+		final boolean isVariable = snode instanceof ISolverVariable;
+		final int nSiblings = snapshots.length;
+
+		for (int i = 0; i < nSiblings; ++i)
+		{
+			snapshots[i] = snapshot(outgoingMessage(snode, i, isVariable), snapshots[i]);
+		}
+
+		snode.update();
+
+		for (int i = 0; i < nSiblings; ++i)
+		{
+			changes[i] = change(outgoingMessage(snode, i, isVariable), snapshots[i]);
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private static @Nullable Object outgoingMessage(ISolverNode node, int sibling, boolean isVariable)
+	{
+		final ISolverEdgeState edge = node.getSiblingEdgeState(sibling);
+		if (edge == null)
+		{
+			return null;
+		}
+		return isVariable ? edge.getVarToFactorMsg() : edge.getFactorToVarMsg();
+	}
+
+	/**
+	 * Copies message into {@code previous} if possible, otherwise into a new object.
+	 */
+	private static @Nullable Object snapshot(@Nullable Object msg, @Nullable Object previous)
+	{
+		if (msg instanceof DiscreteMessage)
+		{
+			return copyArray(((DiscreteMessage)msg).representation(), previous);
+		}
+		else if (msg instanceof IParameterizedMessage)
+		{
+			if (previous != null && previous.getClass() == msg.getClass())
+			{
+				((IParameterizedMessage)previous).setFrom((IParameterizedMessage)msg);
+				return previous;
+			}
+			return ((IParameterizedMessage)msg).clone();
+		}
+		else if (msg instanceof double[])
+		{
+			return copyArray((double[])msg, previous);
+		}
+		return null;
+	}
+
+	private static double[] copyArray(double[] array, @Nullable Object previous)
+	{
+		double[] copy = previous instanceof double[] ? (double[])previous : null;
+		if (copy == null || copy.length != array.length)
+		{
+			copy = new double[array.length];
+		}
+		System.arraycopy(array, 0, copy, 0, array.length);
+		return copy;
+	}
+
+	/**
+	 * Size of change between message and its earlier snapshot.
+	 * <p>
+	 * This is the largest absolute difference between corresponding values for discrete messages and
+	 * the KL divergence for other parameterized messages. Changes that cannot be measured are treated as
+	 * infinite.
+	 */
+	private static double change(@Nullable Object msg, @Nullable Object snapshot)
+	{
+		if (msg instanceof DiscreteMessage && snapshot instanceof double[])
+		{
+			return maxDifference(((DiscreteMessage)msg).representation(), (double[])snapshot);
+		}
+		else if (msg instanceof IParameterizedMessage && snapshot instanceof IParameterizedMessage)
+		{
+			try
+			{
+				final double divergence = ((IParameterizedMessage)msg).computeKLDivergence((IParameterizedMessage)snapshot);
+				return divergence == divergence ? Math.abs(divergence) : Double.POSITIVE_INFINITY;
+			}
+			catch (RuntimeException ex)
+			{
+				return Double.POSITIVE_INFINITY;
+			}
+		}
+		else if (msg instanceof double[] && snapshot instanceof double[])
+		{
+			return maxDifference((double[])msg, (double[])snapshot);
+		}
+		return msg == null ? 0.0 : Double.POSITIVE_INFINITY;
+	}
+
+	private static double maxDifference(double[] values, double[] previous)
+	{
+		if (values.length != previous.length)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double max = 0.0;
+		for (int i = values.length; --i>=0;)
+		{
+			final double a = values[i], b = previous[i];
+			if (a != b) // also true if either is NaN; equal infinities count as no change
+			{
+				final double diff = Math.abs(a - b);
+				if (!(diff <= max))
+				{
+					max = diff != diff ? Double.POSITIVE_INFINITY : diff;
+				}
+			}
+		}
+		return max;
+	}
+}
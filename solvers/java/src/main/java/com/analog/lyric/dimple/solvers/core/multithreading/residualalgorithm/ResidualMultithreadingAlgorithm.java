@@ -0,0 +1,156 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.residualalgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingAlgorithm;
+
+/**
+ * Asynchronous residual belief propagation using a relaxed concurrent priority queue.
+ * <p>
+ * Instead of following the schedule, each worker thread repeatedly takes a node with approximately
+ * the largest residual - the accumulated change in its incoming messages since it was last updated - and
+ * updates all of its outgoing messages. The change in each outgoing message is then added to the residual
+ * of the node that receives it. Only nodes whose residual is at least {@link BPOptions#residualTolerance}
+ * are updated, so work is concentrated on the parts of the graph that have not yet converged.
+ * <p>
+ * Work is shared through a {@link RelaxedMultiQueue} rather than a single queue, so that threads do not
+ * contend for a single lock. A node is only updated while holding striped locks covering it and its
+ * siblings, which prevents two adjacent nodes from being updated at the same time.
+ * <p>
+ * Each call to {@link #iterate(int)} starts by queuing every node and finishes when no node's residual is
+ * above the tolerance, or when the number of node updates reaches {@code numIters} times the number of
+ * nodes in the graph.
+ * <p>
+ * The order of updates is not deterministic, so results will differ slightly between runs unless the
+ * graph has converged.
+ * <p>
+ * @since 0.08
+ */
+public class ResidualMultithreadingAlgorithm extends MultithreadingAlgorithm
+{
+	/*-------
+	 * State
+	 */
+
+	private long _cachedVersion = -1;
+	private int _cachedNumWorkers = -1;
+	private @Nullable ResidualGraph _cachedGraph = null;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public ResidualMultithreadingAlgorithm(MultiThreadingManager manager)
+	{
+		super(manager);
+	}
+
+	/*----------------------------------
+	 * MultithreadingAlgorithm methods
+	 */
+
+	@Override
+	public void iterate(int numIters)
+	{
+		final MultiThreadingManager manager = getManager();
+		final int numWorkers = manager.getNumWorkers();
+		final ResidualGraph graph = getGraph(numWorkers);
+		final int nNodes = graph.size();
+		if (numIters <= 0 || nNodes == 0)
+		{
+			return;
+		}
+
+		final double tolerance = manager.getSolverGraph().getOptionOrDefault(BPOptions.residualTolerance);
+
+		final RelaxedMultiQueue queue = new RelaxedMultiQueue(numWorkers);
+		graph.reset();
+		for (int i = 0; i < nNodes; ++i)
+		{
+			queue.add(new RelaxedMultiQueue.Entry(i, Double.POSITIVE_INFINITY));
+		}
+
+		final AtomicInteger pending = new AtomicInteger(nNodes);
+		final AtomicLong budget = new AtomicLong((long)numIters * nNodes);
+		final AtomicBoolean abort = new AtomicBoolean();
+
+		final List<Callable<Object>> workers = new ArrayList<>(numWorkers);
+		for (int i = 0; i < numWorkers; ++i)
+		{
+			workers.add(new ResidualWorker(graph, queue, tolerance, pending, budget, abort));
+		}
+
+		try
+		{
+			for (Future<Object> future : manager.getService().invokeAll(workers))
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			throw new DimpleException(e);
+		}
+		catch (ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException)cause;
+			}
+			else if (cause instanceof Error)
+			{
+				throw (Error)cause;
+			}
+			throw new DimpleException(e);
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private ResidualGraph getGraph(int numWorkers)
+	{
+		final FactorGraph fg = getManager().getFactorGraph();
+		final long version = fg.structureVersion();
+
+		ResidualGraph graph = _cachedGraph;
+		if (graph == null || version != _cachedVersion || numWorkers != _cachedNumWorkers)
+		{
+			_cachedGraph = graph = new ResidualGraph(fg, numWorkers);
+			_cachedVersion = version;
+			_cachedNumWorkers = numWorkers;
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.core.multithreading.residualalgorithm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Repeatedly updates the node with approximately the highest residual until no node's residual is
+ * above the tolerance or the update budget has been used up.
+ * <p>
+ * @since 0.08
+ */
+final class ResidualWorker implements Callable<Object>
+{
+	/*-------
+	 * State
+	 */
+
+	private final ResidualGraph _graph;
+	private final RelaxedMultiQueue _queue;
+	private final double _tolerance;
+
+	/**
+	 * Number of nodes that are either in the queue or being updated.
+	 */
+	private final AtomicInteger _pending;
+
+	/**
+	 * Number of node updates that may still be performed.
+	 */
+	private final AtomicLong _budget;
+
+	/**
+	 * Set when any worker fails, to stop the others.
+	 */
+	private final AtomicBoolean _abort;
+
+	/*--------------
+	 * Construction
+	 */
+
+	ResidualWorker(ResidualGraph graph, RelaxedMultiQueue queue, double tolerance, AtomicInteger pending,
+		AtomicLong budget, AtomicBoolean abort)
+	{
+		_graph = graph;
+		_queue = queue;
+		_tolerance = tolerance;
+		_pending = pending;
+		_budget = budget;
+		_abort = abort;
+	}
+
+	/*------------------
+	 * Callable methods
+	 */
+
+	@Override
+	public @Nullable Object call()
+	{
+		final ResidualGraph graph = _graph;
+		final RelaxedMultiQueue queue = _queue;
+		final double tolerance = _tolerance;
+		final double[] changes = new double[graph.maxSiblingCount()];
+
+		try
+		{
+			while (_pending.get() > 0 && _budget.get() > 0 && !_abort.get())
+			{
+				final RelaxedMultiQueue.Entry entry = queue.poll();
+				if (entry == null)
+				{
+					// Other workers are still updating nodes, which may add more work.
+					Thread.yield();
+					continue;
+				}
+
+				final int node = entry.node;
+				if (!graph.tryLock(node))
+				{
+					// A neighboring node is being updated, so try again later.
+					queue.add(entry);
+					continue;
+				}
+
+				boolean updated = false;
+				try
+				{
+					graph.clearQueued(node);
+					final double residual = graph.takeResidual(node);
+					if (residual >= tolerance)
+					{
+						if (_budget.getAndDecrement() > 0)
+						{
+							graph.update(node, changes);
+							updated = true;
+						}
+						else
+						{
+							graph.addResidual(node, residual);
+						}
+					}
+				}
+				finally
+				{
+					graph.unlock(node);
+				}
+
+				if (updated)
+				{
+					final int[] siblings = graph.getSiblings(node);
+					for (int i = 0; i < siblings.length; ++i)
+					{
+						final int sibling = siblings[i];
+						final double change = changes[i];
+						if (sibling >= 0 && change > 0)
+						{
+							final double residual = graph.addResidual(sibling, change);
+							if (residual >= tolerance && graph.markQueued(sibling))
+							{
+								_pending.incrementAndGet();
+								queue.add(new RelaxedMultiQueue.Entry(sibling, residual));
+							}
+						}
+					}
+				}
+
+				_pending.decrementAndGet();
+			}
+		}
+		catch (RuntimeException | Error ex)
+		{
+			_abort.set(true);
+			throw ex;
+		}
+
+		return null;
+	}
+}
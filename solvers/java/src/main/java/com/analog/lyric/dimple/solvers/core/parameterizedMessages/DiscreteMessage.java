@@ -447,6 +447,68 @@ public abstract class DiscreteMessage extends ParameterizedMessageBase
 		return _message;
 	}
 	
+	/**
+	 * Sparse representation of the {@code k} most likely elements of the message.
+	 * <p>
+	 * Writes the indices of the {@code k} elements with the largest weights (equivalently the smallest
+	 * energies) into {@code indices} in increasing order, and the corresponding entries of the underlying
+	 * {@linkplain #representation() representation} into {@code values}. Ties are broken in favor of
+	 * lower indices. If {@code k} is not less than {@link #size()}, all elements will be written.
+	 * <p>
+	 * This uses a bounded heap and does not allocate any memory.
+	 * <p>
+	 * @param k is a positive number of elements to keep.
+	 * @param indices must have length at least the smaller of {@code k} and {@link #size()}.
+	 * @param values must have length at least the smaller of {@code k} and {@link #size()}.
+	 * @return the number of elements written, which is the smaller of {@code k} and {@link #size()}.
+	 * @since 0.08
+	 */
+	public int getKBest(int k, int[] indices, double[] values)
+	{
+		final double[] message = _message;
+		final int size = message.length;
+		
+		if (k >= size)
+		{
+			for (int i = 0; i < size; ++i)
+			{
+				indices[i] = i;
+				values[i] = message[i];
+			}
+			return size;
+		}
+		
+		// Keep the k best elements seen so far in a heap whose root is the worst of them. For energies
+		// we negate the values so that in both cases larger heap keys are better.
+		final double sign = storesWeights() ? 1.0 : -1.0;
+		
+		for (int i = 0; i < k; ++i)
+		{
+			indices[i] = i;
+			values[i] = sign * message[i];
+			siftUp(indices, values, i);
+		}
+		
+		for (int i = k; i < size; ++i)
+		{
+			final double key = sign * message[i];
+			if (key > values[0])
+			{
+				indices[0] = i;
+				values[0] = key;
+				siftDown(indices, values, k);
+			}
+		}
+		
+		Arrays.sort(indices, 0, k);
+		for (int i = 0; i < k; ++i)
+		{
+			values[i] = message[indices[i]];
+		}
+		
+		return k;
+	}
+	
 	/**
 	 * True if underlying representation uses weights, false if it uses energies.
 	 * @since 0.06
@@ -485,4 +547,66 @@ public abstract class DiscreteMessage extends ParameterizedMessageBase
 		return weightToEnergy(sumOfWeights());
 	}
 
+	/*-----------------
+	 * Private methods
+	 */
+	
+	/**
+	 * Heap ordered so that the lowest key is at the root. Among equal keys the higher index is
+	 * treated as lower, so that the lowest indices are kept when there are ties.
+	 */
+	private static boolean heapLess(int[] indices, double[] keys, int i, int j)
+	{
+		return keys[i] < keys[j] || keys[i] == keys[j] && indices[i] > indices[j];
+	}
+	
+	private static void heapSwap(int[] indices, double[] keys, int i, int j)
+	{
+		final int index = indices[i];
+		indices[i] = indices[j];
+		indices[j] = index;
+		final double key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+	}
+	
+	private static void siftUp(int[] indices, double[] keys, int i)
+	{
+		while (i > 0)
+		{
+			final int parent = (i - 1) >>> 1;
+			if (!heapLess(indices, keys, i, parent))
+			{
+				break;
+			}
+			heapSwap(indices, keys, i, parent);
+			i = parent;
+		}
+	}
+	
+	private static void siftDown(int[] indices, double[] keys, int size)
+	{
+		int i = 0;
+		while (true)
+		{
+			final int left = 2 * i + 1;
+			if (left >= size)
+			{
+				break;
+			}
+			int child = left;
+			final int right = left + 1;
+			if (right < size && heapLess(indices, keys, right, left))
+			{
+				child = right;
+			}
+			if (!heapLess(indices, keys, child, i))
+			{
+				break;
+			}
+			heapSwap(indices, keys, i, child);
+			i = child;
+		}
+	}
+
 }
@@ -26,8 +26,6 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.math3.linear.EigenDecomposition;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.analog.lyric.collect.ArrayUtil;
@@ -37,6 +35,7 @@ import com.analog.lyric.dimple.model.domains.Domain;
 import com.analog.lyric.dimple.model.domains.RealJointDomain;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.RealJoint;
+import com.analog.lyric.math.Cholesky;
 import com.analog.lyric.math.LyricEigenvalueDecomposition;
 import com.analog.lyric.util.misc.Matlab;
 
@@ -49,9 +48,6 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 	 * State
 	 */
 	
-	// TODO : store eigendecomposition
-	// TODO : use Apache math Matrix implementation
-	
 	private static final long serialVersionUID = 1L;
  
 	// FIXME : can we make this smaller? I set this experimentally on the amount of error
@@ -68,7 +64,28 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 
 	private double [] _mean = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 	
-	private double [][] _matrix = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	/**
+	 * Covariance or information matrix - depending on {@link #_isInInformationForm} - in flat row-major order.
+	 * <p>
+	 * Empty if in compact diagonal form and the full matrix has not been instantiated.
+	 */
+	private double [] _matrix = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+
+	/**
+	 * Inverse of {@link #_matrix} in flat row-major order, i.e. the matrix for the other format.
+	 * <p>
+	 * Only valid if {@link #_hasInverse}, otherwise is simply a buffer that can be reused the next time
+	 * the inverse is computed. Not used in diagonal form.
+	 */
+	private double [] _inverse = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	private boolean _hasInverse = false;
+	
+	/**
+	 * Natural log of determinant of the information matrix, if known, else NaN.
+	 * <p>
+	 * Only used when not in diagonal form. Computed along with {@link #_inverse}.
+	 */
+	private double _informationLogDeterminant = Double.NaN;
 
 	/**
 	 * If known to be diagonal, this is the precision values along the diagonal.
@@ -88,18 +105,18 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 
 	public MultivariateNormalParameters(double[] mean, double[][] covariance)
 	{
-		setMeanAndCovariance(mean.clone(), cloneMatrix(covariance));
+		setMeanAndCovariance(mean, covariance);
 	}
 	
 	public MultivariateNormalParameters(double[] vector, double[][] matrix, boolean informationForm)
 	{
 		if (informationForm)
 		{
-			setInformation(vector.clone(), cloneMatrix(matrix));
+			setInformation(vector, matrix);
 		}
 		else
 		{
-			setMeanAndCovariance(vector.clone(), cloneMatrix(matrix));
+			setMeanAndCovariance(vector, matrix);
 		}
 	}
 	
@@ -150,7 +167,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 		_size = mean.length;
 		_infoVector = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 		_mean = mean.clone();
-		_matrix = cloneMatrix(covariance);
+		setMatrix(covariance);
 		_precision = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 		_variance = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 		_isInInformationForm = false;
@@ -217,7 +234,8 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 			_precision = precisionOrVariance;
 		}
 			
-		_matrix = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+		_matrix = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+		forgetInverse();
 		_isInInformationForm = informationForm;
 		_isDiagonal = true;
 		_isDiagonalComputed = true;
@@ -246,7 +264,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 		_size = informationVector.length;
 		_infoVector = informationVector.clone();
 		_mean = ArrayUtil.EMPTY_DOUBLE_ARRAY;
-		_matrix = cloneMatrix(informationMatrix);
+		setMatrix(informationMatrix);
 		_isInInformationForm = true;
 		_precision = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 		_variance = ArrayUtil.EMPTY_DOUBLE_ARRAY;
@@ -262,7 +280,13 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 		_infoVector = ArrayUtil.cloneNonNullArray(other._infoVector);
 		_precision = ArrayUtil.cloneNonNullArray(other._precision);
 		_variance = ArrayUtil.cloneNonNullArray(other._variance);
-		_matrix = cloneMatrix(other._matrix);
+		_matrix = copyInto(other._matrix, _matrix);
+		_hasInverse = other._hasInverse;
+		if (_hasInverse)
+		{
+			_inverse = copyInto(other._inverse, _inverse);
+		}
+		_informationLogDeterminant = other._informationLogDeterminant;
 		_isInInformationForm = other._isInInformationForm;
 		_isDiagonal = other._isDiagonal;
 		_isDiagonalComputed = other._isDiagonalComputed;
@@ -294,17 +318,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 			}
 			else if (isInInformationForm() == that.isInInformationForm())
 			{
-				final double[][] thisMatrix = _matrix;
-				final double[][] thatMatrix = that._matrix;
-				
-				for (int i = thisMatrix.length; --i>=0;)
-				{
-					if (!Arrays.equals(thisMatrix[i], thatMatrix[i]))
-					{
-						return false;
-					}
-				}
-				return true;
+				return Arrays.equals(_matrix, that._matrix);
 			}
 		}
 		
@@ -319,8 +333,8 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 	public double evalEnergy(Value value)
 	{
 		final int n = _size;
-		final double[] mean = getMean();
-		double[] x = value.getDoubleArray();
+		final double[] mean = meanRef();
+		final double[] x = value.getDoubleArray();
 
 		if (isDiagonal())
 		{
@@ -342,24 +356,8 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 		
 		// TODO - support degenerate covariance case
 		
-		x = x.clone();
-		
-		for (int i = n; --i>=0;)
-			x[i] -= mean[i];
-		
-		final double[][] informationMatrix = getInformationMatrix();
-		
-		double colSum = 0;
-		for (int row = 0; row < n; row++)
-		{
-			double rowSum = 0;
-			final double[] informationMatrixRow = informationMatrix[row];
-			for (int col = 0; col < n; col++)
-				rowSum += informationMatrixRow[col] * x[col];	// Matrix * vector
-			colSum += rowSum * x[row];	// Vector * vector
-		}
-
-		return colSum * .5;
+		toInformationFormat();
+		return quadraticForm(_matrix, x, mean, n) * .5;
 	}
 	
 	/*--------------------
@@ -441,7 +439,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 		}
 		else
 		{
-			final int n = _matrix.length;
+			final int n = _matrix.length == 0 ? 0 : _size;
 			for (int row = 0; row < n; ++row)
 			{
 				if (row > 0)
@@ -455,7 +453,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 					{
 						out.print(',');
 					}
-					out.format("%g", _matrix[row][col]);
+					out.format("%g", _matrix[row * n + col]);
 				}
 			}
 		}
@@ -557,7 +555,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 				_variance[i] = 1.0 / _precision[i];
 				_mean[i] = _infoVector[i] * _variance[i];
 			}
-			_matrix = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+			_matrix = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 			return;
 		}
 		
@@ -567,21 +565,24 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 			for (int i = 0; i < n; ++i)
 			{
 				_infoVector[i] += other._infoVector[i];
-				_matrix[i][i] += other._precision[i];
+				_matrix[i * n + i] += other._precision[i];
 			}
 			_mean = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+			forgetInverse();
 			return;
 		}
 		
 		if (diagonal) // && !otherDiagonal
 		{
-			_matrix = other.getInformationMatrix();
+			other.toInformationFormat();
+			_matrix = copyInto(other._matrix, _matrix);
 			for (int i = 0; i < n; ++i)
 			{
 				_infoVector[i] += other._infoVector[i];
-				_matrix[i][i] += _precision[i];
+				_matrix[i * n + i] += _precision[i];
 			}
 			_mean = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+			forgetInverse();
 			_precision = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 			_variance = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 			_isDiagonal = false;
@@ -592,17 +593,17 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 		
 		toInformationFormat();
 		other.toInformationFormat();
+		final double[] matrix = _matrix, otherMatrix = other._matrix;
 		for (int i = 0; i <n; ++i)
 		{
 			_infoVector[i] += other._infoVector[i];
-			double[] row = _matrix[i];
-			double[] otherRow = other._matrix[i];
-			for (int j = 0; j < n; ++j)
-			{
-				row[j] += otherRow[j];
-			}
+		}
+		for (int i = n * n; --i>=0;)
+		{
+			matrix[i] += otherMatrix[i];
 		}
 		_mean = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+		forgetInverse();
 	}
 	
 	/**
@@ -658,16 +659,22 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 				return kl;
 			}
 
-			// TODO - if we ever start storing the eigendecomposition in this object, we can simply use
-			// the eigenvalues to efficiently compute the trace and determinants. Perhaps it would be worthwhile
-			// to save the eigenvalues if nothing else.
+			// Both forms of the matrix and the log determinant are cached, so once they have been computed
+			// this does not require any factorization or allocation. Note that we hold on to references
+			// to the underlying arrays, which remain valid when the format is toggled, in case P and Q
+			// are the same object.
 			
-			RealVector mP = wrapRealVector(P.getMean());
-			RealVector mQ = wrapRealVector(Q.getMean());
-			RealMatrix CP = wrapRealMatrix(P.getCovariance());
-			RealMatrix CQinv = wrapRealMatrix(Q.getInformationMatrix());
-
-			RealVector mdiff = mQ.subtract(mP);
+			final double[] mP = P.meanRef();
+			final double[] mQ = Q.meanRef();
+			final double logDetInfoP = P.informationLogDeterminant();
+			final double logDetInfoQ = Q.informationLogDeterminant();
+			
+			Q.toInformationFormat();
+			Q.instantiateMatrix();
+			final double[] CQinv = Q._matrix;
+			P.toCovarianceFormat();
+			P.instantiateMatrix();
+			final double[] CP = P._matrix;
 
 			// FIXME: do we need to worry about singular covariance matrices?
 			
@@ -676,13 +683,13 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 			// trace of product of matrices is equivalent to the dot-product of the vectorized versions
 			// of the matrices - this is much faster than doing the actual matrix product
 			// divergence += CQinv.multiply(CP).trace();
-			for (int i = 0; i < K; ++i)
-				for (int j = 0; j < K; ++j)
-					divergence += CQinv.getEntry(i, j) * CP.getEntry(i, j);
+			for (int i = K * K; --i>=0;)
+				divergence += CQinv[i] * CP[i];
 			
-			divergence += CQinv.preMultiply(mdiff).dotProduct(mdiff);
-			divergence -= Math.log(new EigenDecomposition(CP).getDeterminant() *
-				new EigenDecomposition(CQinv).getDeterminant());
+			divergence += quadraticForm(CQinv, mQ, mP, K);
+			
+			// -ln(det(CP) * det(inv(CQ))) == ln(det(inv(CP))) - ln(det(inv(CQ)))
+			divergence += logDetInfoP - logDetInfoQ;
 			return Math.abs(divergence/2); // use abs to guard against precision errors causing this to go negative.
 		}
 		
@@ -753,11 +760,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 	@Matlab
 	public final double[] getMean()
 	{
-		if (_mean.length == 0)
-		{
-			toCovarianceFormat();
-		}
-		return ArrayUtil.cloneNonNullArray(_mean);
+		return ArrayUtil.cloneNonNullArray(meanRef());
 	}
 
 	@Matlab
@@ -765,7 +768,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 	{
 		toCovarianceFormat();
 		instantiateMatrix();
-		return cloneMatrix(_matrix);
+		return toMatrix(_matrix);
 	}
 	
 	
@@ -840,7 +843,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 	{
 		toInformationFormat();
 		instantiateMatrix();
-		return cloneMatrix(_matrix);
+		return toMatrix(_matrix);
 	}
 	
 	public final int getVectorLength()
@@ -859,7 +862,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 	{
 		if (!_isDiagonalComputed)
 		{
-			final double[][] matrix = _matrix;
+			final double[] matrix = _matrix;
 			final int n = _size;
 			boolean isDiagonal = true;
 			
@@ -868,10 +871,10 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 			outer:
 			for (int i = 0; i < n; ++i)
 			{
-				double[] row = matrix[i];
+				final int row = i * n;
 				for (int j = 0; j < i; ++j)
 				{
-					if (row[j] != 0.0)
+					if (matrix[row + j] != 0.0)
 					{
 						isDiagonal = false;
 						break outer;
@@ -885,7 +888,7 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 				double[] array = new double[n];
 				for (int i = 0; i < n; ++i)
 				{
-					array[i] = matrix[i][i];
+					array[i] = matrix[i * n + i];
 				}
 				set(_isInInformationForm ? _infoVector : _mean, array, _isInInformationForm);
 				return true;
@@ -921,7 +924,8 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 			_mean[i] = -_mean[i];
 		for (int i = _infoVector.length; --i>=0;)
 			_infoVector[i] = -_infoVector[i];
-		// Normalization does not depend on mean, so no need to reset it.
+		// Normalization does not depend on mean, so no need to reset it. Likewise the cached inverse matrix
+		// is still valid.
 	}
 	
 	public void setDeterministic(double[] value)
@@ -958,35 +962,115 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 	 * Private
 	 */
 	
-	private final double[][] cloneMatrix(double[][] matrix)
+	/**
+	 * Sets {@link #_matrix} from a copy of {@code matrix} in flat row-major order, reusing the current buffer
+	 * if it is the right size, and invalidates the cached inverse.
+	 */
+	private final void setMatrix(double[][] matrix)
 	{
-		double[][] retval = new double[matrix.length][];
-		for (int i = 0; i < retval.length; i++)
-			retval[i] = matrix[i].clone();
-		
-		return retval;
+		final int n = matrix.length;
+		double[] flat = _matrix;
+		if (flat.length != n * n)
+		{
+			flat = n == 0 ? ArrayUtil.EMPTY_DOUBLE_ARRAY : new double[n * n];
+		}
+		for (int i = 0; i < n; ++i)
+		{
+			System.arraycopy(matrix[i], 0, flat, i * n, n);
+		}
+		_matrix = flat;
+		forgetInverse();
 	}
-
+	
+	/**
+	 * Converts flat row-major matrix to newly allocated two-dimensional array.
+	 */
+	private final double[][] toMatrix(double[] flat)
+	{
+		final int n = _size;
+		final double[][] matrix = new double[n][];
+		for (int i = 0; i < n; ++i)
+		{
+			matrix[i] = Arrays.copyOfRange(flat, i * n, i * n + n);
+		}
+		return matrix;
+	}
+	
+	/**
+	 * Copies {@code source} into {@code target} if it is the same size, otherwise returns a copy.
+	 */
+	private static double[] copyInto(double[] source, double[] target)
+	{
+		if (source.length != target.length)
+		{
+			return ArrayUtil.cloneNonNullArray(source);
+		}
+		System.arraycopy(source, 0, target, 0, source.length);
+		return target;
+	}
+	
+	/**
+	 * Computes (x - mean)' * matrix * (x - mean) for symmetric matrix in flat row-major order without
+	 * allocating a vector for the difference.
+	 */
+	private static double quadraticForm(double[] matrix, double[] x, double[] mean, int n)
+	{
+		double sum = 0;
+		for (int row = 0; row < n; row++)
+		{
+			final int offset = row * n;
+			double rowSum = 0;
+			for (int col = 0; col < n; col++)
+				rowSum += matrix[offset + col] * (x[col] - mean[col]);	// Matrix * vector
+			sum += rowSum * (x[row] - mean[row]);	// Vector * vector
+		}
+		return sum;
+	}
+	
+	/**
+	 * Returns {@link #_mean}, converting to covariance format if not yet computed. The caller must not
+	 * modify the array!
+	 */
+	private final double[] meanRef()
+	{
+		if (_mean.length == 0)
+		{
+			toCovarianceFormat();
+		}
+		return _mean;
+	}
+	
+	/**
+	 * Invalidates {@link #_inverse} and the log determinant. Should be invoked whenever {@link #_matrix}
+	 * changes.
+	 */
+	private final void forgetInverse()
+	{
+		_hasInverse = false;
+		_informationLogDeterminant = Double.NaN;
+	}
+	
 	/**
 	 * Force instantiation of {@link #_matrix} if not already done and in diagonal form.
 	 */
 	private final void instantiateMatrix()
 	{
 		final int n = _size;
-		if (_matrix.length != n && _isDiagonal && _isDiagonalComputed)
+		if (_matrix.length != n * n && _isDiagonal && _isDiagonalComputed)
 		{
-			_matrix = new double[n][n];
+			_matrix = new double[n * n];
 			final double[] diagonal = _isInInformationForm ? _precision : _variance;
 			for (int i = 0; i < n; ++i)
-				_matrix[i][i] = diagonal[i];
+				_matrix[i * n + i] = diagonal[i];
 		}
 	}
 
-	private final boolean isInfiniteIdentity(double[][] m)
+	private final boolean isInfiniteIdentity(double[] m)
 	{
-		for (int i = 0; i < m.length; i++)
+		final int n = _size;
+		for (int i = 0; i < n; i++)
 		{
-			if (!Double.isInfinite(m[i][i]))
+			if (!Double.isInfinite(m[i * n + i]))
 				return false;
 		}
 		return true;
@@ -1012,17 +1096,33 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 		{
 			// TODO - support degenerate covariance
 			
-			double logdet = Math.log(new Jama.Matrix(_matrix).det());
-			
-			if (!_isInInformationForm)
-				logdet = -logdet;
-
-			energy = logdet - _size * LOG_2PI;
+			energy = informationLogDeterminant() - _size * LOG_2PI;
 		}
 		
 		return energy / 2;
 	}
 	
+	/**
+	 * Returns natural log of the determinant of the information matrix.
+	 * <p>
+	 * For non-diagonal matrices, this will compute the inverse matrix if not already cached.
+	 */
+	private double informationLogDeterminant()
+	{
+		if (isDiagonal())
+		{
+			double logdet = 0.0;
+			for (double tau : _precision)
+			{
+				logdet += Math.log(tau);
+			}
+			return logdet;
+		}
+		
+		computeInverse();
+		return _informationLogDeterminant;
+	}
+	
 	private final void toCovarianceFormat()
 	{
 		if (_isInInformationForm)
@@ -1052,25 +1152,22 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 		validateMatrix(_matrix);
 	}
 	
-	private void validateMatrix(double[][] m)
+	private void validateMatrix(double[] m)
 	{
-		final int n = m.length;
+		final int n = m.length == 0 ? 0 : _size;
 		
 		boolean allZero = true;
 		
-		for (double[] row : m )
+		for (double value : m)
 		{
-			for (double value : row)
+			if (value != value)
 			{
-				if (value != value)
-				{
-					throw new DimpleException("Matrix contains a NaN value");
-				}
+				throw new DimpleException("Matrix contains a NaN value");
+			}
 
-				if (value != 0.0)
-				{
-					allZero = false;
-				}
+			if (value != 0.0)
+			{
+				allZero = false;
 			}
 		}
 		
@@ -1081,24 +1178,23 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 
 		boolean infiniteDiagonal = true;
 		
+		if (m.length != n * n)
+		{
+			throw new DimpleException("Matrix is not square");
+		}
+		
 		for (int i = 0; i < n; ++i)
 		{
-			final double[] row = m[i];
-			if (row.length != n)
-			{
-				throw new DimpleException("Matrix is not square");
-			}
-			
 			for (int j = 0; j < n; ++j)
 			{
-				final double vij = row[j];
+				final double vij = m[i * n + j];
 				if (j == i)
 				{
 					infiniteDiagonal &= (vij == Double.POSITIVE_INFINITY);
 				}
 				else
 				{
-					final double vji = m[j][i];
+					final double vji = m[j * n + i];
 					if (Math.abs(vji - vij) > 1e-10)
 					{
 						throw new DimpleException("Matrix is not symmetric at entry (%d,%d)", i, j);
@@ -1114,7 +1210,14 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 
 		if (n > 0)
 		{
-			EigenDecomposition eig = new EigenDecomposition(wrapRealMatrix(m));
+			// A successful Cholesky factorization proves the matrix is positive definite, so we only need
+			// to do the more expensive eigendecomposition if it fails.
+			if (!Double.isNaN(Cholesky.decompose(m, new double[n * n], n, 0.0)))
+			{
+				return;
+			}
+			
+			EigenDecomposition eig = new EigenDecomposition(wrapRealMatrix(toMatrix(m)));
 			for (double value : eig.getRealEigenvalues())
 			{
 				if (value <= 0)
@@ -1133,6 +1236,9 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 	/**
 	 * Toggles between mean/covariance format and information format, which uses the matrix
 	 * inverse of the covariance matrix (this is also known as the precision or concentration matrix)
+	 * <p>
+	 * The inverse is cached, so toggling back and forth without modifying the matrix only
+	 * swaps the arrays.
 	 * 
 	 * @since 0.06
 	 */
@@ -1145,65 +1251,78 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 				// Only need to update the matrix, if present
 				if (_matrix.length != 0)
 				{
+					final int n = _size;
 					final double[] diagonal = _isInInformationForm ? _variance : _precision;
-					for (int i = 0, n = _size; i < n; ++i)
-						_matrix[i][i] = diagonal[i];
+					for (int i = 0; i < n; ++i)
+						_matrix[i * n + i] = diagonal[i];
 				}
 				
 				break outer;
 			}
 			
-			// TODO: consider using EJML or MTJ library instead of Jama
+			computeInverse();
+			
+			final double[] matrix = _matrix;
+			_matrix = _inverse;
+			_inverse = matrix;
+		}
+		
+		_isInInformationForm = !_isInInformationForm;
+	}
+	
+	/**
+	 * Computes {@link #_inverse}, the vector for the other format and {@link #_informationLogDeterminant}
+	 * if not already cached. Must not be in diagonal form.
+	 * <p>
+	 * This uses a Cholesky factorization when the matrix is sufficiently well-conditioned, and
+	 * otherwise falls back on a conditioned eigendecomposition.
+	 */
+	private final void computeInverse()
+	{
+		final int n = _size;
+		final boolean toMean = _isInInformationForm;
+		double[] newVector = toMean ? _mean : _infoVector;
+		
+		if (!_hasInverse)
+		{
+			final double[] inverse = _inverse = copyInto(_matrix, _inverse);
+			double logdet;
 			
-			double[] newVector;
-
 			if (isInfiniteIdentity(_matrix))
 			{
 				//Handle the special case where variances are infinite
-				_matrix = new double[_size][_size];
-				newVector = new double[_size];
+				Arrays.fill(inverse, 0.0);
+				logdet = Double.POSITIVE_INFINITY;
 			}
 			else
 			{
-				// FIXME - replace with Apache version if possible
-				// Currently, attempting to replace with this the equivalent Apache commons implementation
-				// causes the MATLAB Kalman filter tests to fail. Using the colt implementation also breaks
-				// the Kalman tests although the error is not quite as great. I am not sure whether this is
-				// because the Jama implementation is better in some way or because it deals with degenerate
-				// covariance matrices in a more appropriate manner for the Kalman case. [cbarber 2015-07-06]
+				logdet = Cholesky.decompose(inverse, inverse, n, MIN_EIGENVALUE);
 				
-				LyricEigenvalueDecomposition eig = new LyricEigenvalueDecomposition(new Jama.Matrix(_matrix));
-
-				Matrix D = eig.getD();
-				Matrix V = eig.getV();
-
-				int N = D.getColumnDimension();
-
-				for (int i=0; i<N; i++) {
-					//Compute inverse of eigenvalues except for those less than eps we set to large constant.
-
-					double d = D.get(i,i);
-					d = invertEigenvalue(d);
-					D.set(i,i, d);
-
-					assert(d > 0); // Eigenvalues should always be positive for positive definite matrices
+				if (logdet == logdet)
+				{
+					Cholesky.invert(inverse, n);
+				}
+				else
+				{
+					logdet = invertUsingEigendecomposition(inverse);
 				}
-
-				Matrix inv;
-				Matrix vec;
-				
-				inv = V.times(D.times(V.transpose()));
-
-
-				vec = new Matrix(new double [][] {_isInInformationForm ? _infoVector : _mean}).transpose();
-
-				vec = inv.times(vec);
-
-				_matrix = inv.getArray();
-				 newVector = vec.transpose().getArray()[0];
 			}
-
-			if (_isInInformationForm)
+			
+			_informationLogDeterminant = toMean ? logdet : -logdet;
+			_hasInverse = true;
+			newVector = ArrayUtil.EMPTY_DOUBLE_ARRAY; // force recomputation
+		}
+		
+		if (newVector.length != n)
+		{
+			newVector = new double[n];
+			
+			if (!isInfiniteIdentity(_matrix))
+			{
+				Cholesky.multiply(_inverse, toMean ? _infoVector : _mean, newVector, n);
+			}
+			
+			if (toMean)
 			{
 				_mean = newVector;
 			}
@@ -1212,8 +1331,47 @@ public class MultivariateNormalParameters extends ParameterizedMessageBase
 				_infoVector = newVector;
 			}
 		}
+	}
+	
+	/**
+	 * Writes inverse of {@link #_matrix} into {@code inverse} using eigendecomposition, conditioning
+	 * the eigenvalues to not be too small, and returns the log of the determinant of {@link #_matrix}
+	 * using the conditioned eigenvalues.
+	 */
+	private final double invertUsingEigendecomposition(double[] inverse)
+	{
+		// Currently, attempting to replace with this the equivalent Apache commons implementation
+		// causes the MATLAB Kalman filter tests to fail. Using the colt implementation also breaks
+		// the Kalman tests although the error is not quite as great. I am not sure whether this is
+		// because the Jama implementation is better in some way or because it deals with degenerate
+		// covariance matrices in a more appropriate manner for the Kalman case. [cbarber 2015-07-06]
+
+		LyricEigenvalueDecomposition eig = new LyricEigenvalueDecomposition(new Jama.Matrix(toMatrix(_matrix)));
+
+		Matrix D = eig.getD();
+		Matrix V = eig.getV();
+
+		int N = D.getColumnDimension();
+		double logdet = 0.0;
+
+		for (int i=0; i<N; i++) {
+			//Compute inverse of eigenvalues except for those less than eps we set to large constant.
+
+			double d = D.get(i,i);
+			d = invertEigenvalue(d);
+			D.set(i,i, d);
+			logdet -= Math.log(d);
+
+			assert(d > 0); // Eigenvalues should always be positive for positive definite matrices
+		}
+
+		final double[][] inv = V.times(D.times(V.transpose())).getArray();
+		for (int i = 0; i < N; ++i)
+		{
+			System.arraycopy(inv[i], 0, inverse, i * N, N);
+		}
 		
-		_isInInformationForm = !_isInInformationForm;
+		return logdet;
 	}
 
 	private static double[] arrayOf(int size, double value)
@@ -36,16 +36,18 @@ public class GibbsBurnInEvent extends GibbsSolverGraphEvent
 	
 	final int _restartCount;
 	final double _temperature;
+	final int _burnInUpdates;
 	
 	/*--------------
 	 * Construction
 	 */
 	
-	GibbsBurnInEvent(GibbsSolverGraph source, int restartCount, double temperature)
+	GibbsBurnInEvent(GibbsSolverGraph source, int restartCount, double temperature, int burnInUpdates)
 	{
 		super(source);
 		_restartCount = restartCount;
 		_temperature = temperature;
+		_burnInUpdates = burnInUpdates;
 	}
 
 	@Override
@@ -58,6 +60,7 @@ public class GibbsBurnInEvent extends GibbsSolverGraphEvent
 			{
 				out.format(", temperature %f", _temperature);
 			}
+			out.format(", %d updates", _burnInUpdates);
 		}
 	}
 	
@@ -80,6 +83,19 @@ public class GibbsBurnInEvent extends GibbsSolverGraphEvent
 		return _restartCount;
 	}
 	
+	/**
+	 * The number of variable updates performed during burn-in.
+	 * <p>
+	 * This will be more than the configured number of burn-in updates if burn-in was
+	 * extended by {@link GibbsOptions#maxBurnInScans}.
+	 * <p>
+	 * @since 0.08
+	 */
+	public int burnInUpdates()
+	{
+		return _burnInUpdates;
+	}
+	
 	/**
 	 * The temperature at the end of the burn-in phase if annealing is enabled.
 	 * <p>
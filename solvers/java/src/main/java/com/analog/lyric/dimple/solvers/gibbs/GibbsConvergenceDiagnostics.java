@@ -0,0 +1,375 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import java.util.ArrayList;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Streaming convergence diagnostics for a sequence of Gibbs sample scores.
+ * <p>
+ * Scores are added one at a time and grouped into sequences, one per random restart. Only a
+ * fixed amount of state is kept per sequence, regardless of its length:
+ * <ul>
+ * <li>Batch sums, from which the <em>effective sample size</em> is estimated using batch means. When the
+ * number of batches reaches {@link #MAX_BATCHES}, adjacent batches are merged and the batch size doubles.
+ * <li>Sums of lagged products of recent scores, from which the autocorrelation up to {@link #MAX_LAG}
+ * is computed.
+ * </ul>
+ * The <em>split R-hat</em> (potential scale reduction factor) treats the first and last halves of the
+ * batches of each sequence as separate chains, so that it detects both drift within a sequence and
+ * disagreement between sequences.
+ * <p>
+ * Scores that are not finite are ignored.
+ * <p>
+ * @since 0.08
+ * @see GibbsSolverGraph#getConvergenceDiagnostics()
+ */
+public class GibbsConvergenceDiagnostics
+{
+	/*-----------
+	 * Constants
+	 */
+
+	/**
+	 * Maximum number of batches per sequence.
+	 */
+	public static final int MAX_BATCHES = 64;
+
+	/**
+	 * Maximum lag for {@link #getAutocorrelation(int)}.
+	 */
+	public static final int MAX_LAG = 16;
+
+	/**
+	 * Minimum number of complete batches required for batch means estimate of effective sample size.
+	 */
+	static final int MIN_BATCHES = 8;
+
+	/*-------
+	 * State
+	 */
+
+	private static final class Sequence
+	{
+		/**
+		 * First score, subtracted from all scores to reduce cancellation.
+		 */
+		private double _shift = 0.0;
+		private long _count = 0;
+		private double _sum = 0.0;
+		private double _sumSquares = 0.0;
+
+		private int _batchSize = 1;
+		private int _numBatches = 0;
+		private int _countInBatch = 0;
+		private double _batchSum = 0.0;
+		private double _batchSumSquares = 0.0;
+		private final double[] _batchSums = new double[MAX_BATCHES];
+		private final double[] _batchSumsOfSquares = new double[MAX_BATCHES];
+
+		private final double[] _recent = new double[MAX_LAG];
+		private final double[] _laggedProducts = new double[MAX_LAG];
+
+		private void add(double score)
+		{
+			if (_count == 0)
+			{
+				_shift = score;
+			}
+			final double x = score - _shift;
+
+			for (int lag = 1, maxLag = (int)Math.min(MAX_LAG, _count); lag <= maxLag; ++lag)
+			{
+				_laggedProducts[lag - 1] += x * _recent[(int)((_count - lag) % MAX_LAG)];
+			}
+			_recent[(int)(_count % MAX_LAG)] = x;
+
+			++_count;
+			_sum += x;
+			_sumSquares += x * x;
+
+			_batchSum += x;
+			_batchSumSquares += x * x;
+			if (++_countInBatch == _batchSize)
+			{
+				_batchSums[_numBatches] = _batchSum;
+				_batchSumsOfSquares[_numBatches] = _batchSumSquares;
+				_batchSum = _batchSumSquares = 0.0;
+				_countInBatch = 0;
+
+				if (++_numBatches == MAX_BATCHES)
+				{
+					for (int i = 0; i < MAX_BATCHES / 2; ++i)
+					{
+						_batchSums[i] = _batchSums[2*i] + _batchSums[2*i + 1];
+						_batchSumsOfSquares[i] = _batchSumsOfSquares[2*i] + _batchSumsOfSquares[2*i + 1];
+					}
+					_numBatches = MAX_BATCHES / 2;
+					_batchSize *= 2;
+				}
+			}
+		}
+
+		private double effectiveSampleSize()
+		{
+			final int numBatches = _numBatches;
+			if (numBatches < MIN_BATCHES)
+			{
+				return Double.NaN;
+			}
+
+			final double batchSize = _batchSize;
+			final double n = numBatches * batchSize;
+			double sum = 0, sumSquares = 0, sumBatchMeanSquares = 0;
+			for (int i = 0; i < numBatches; ++i)
+			{
+				final double batchSum = _batchSums[i];
+				sum += batchSum;
+				sumSquares += _batchSumsOfSquares[i];
+				sumBatchMeanSquares += batchSum * batchSum / batchSize;
+			}
+
+			final double variance = (sumSquares - sum * sum / n) / (n - 1);
+			final double batchMeansVariance = (sumBatchMeanSquares - sum * sum / n) / (numBatches - 1);
+
+			if (!(batchMeansVariance > 0))
+			{
+				return n;
+			}
+			return Math.min(n, n * variance / batchMeansVariance);
+		}
+
+		/**
+		 * Adds count, mean and variance of first and last half of batches to {@code halves}.
+		 */
+		private void addHalves(ArrayList<double[]> halves)
+		{
+			final int half = _numBatches / 2;
+			if (half < 2)
+			{
+				return;
+			}
+
+			for (int start : new int[] { 0, _numBatches - half })
+			{
+				double sum = 0, sumSquares = 0;
+				for (int i = start; i < start + half; ++i)
+				{
+					sum += _batchSums[i];
+					sumSquares += _batchSumsOfSquares[i];
+				}
+				final double n = (double)half * _batchSize;
+				final double mean = sum / n;
+				halves.add(new double[] { n, _shift + mean, Math.max(0, (sumSquares - sum * mean) / (n - 1)) });
+			}
+		}
+
+		private double autocorrelation(int lag)
+		{
+			final long n = _count;
+			if (n <= lag + 1)
+			{
+				return Double.NaN;
+			}
+			final double mean = _sum / n;
+			final double variance = _sumSquares / n - mean * mean;
+			if (!(variance > 0))
+			{
+				return Double.NaN;
+			}
+			return (_laggedProducts[lag - 1] / (n - lag) - mean * mean) / variance;
+		}
+	}
+
+	private final ArrayList<Sequence> _sequences = new ArrayList<>();
+	private @Nullable Sequence _currentSequence = null;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Constructs empty diagnostics.
+	 * <p>
+	 * Diagnostics for the samples generated by a Gibbs solver graph are available from
+	 * {@link GibbsSolverGraph#getConvergenceDiagnostics()}, so this only needs to be invoked
+	 * directly to compute diagnostics for other sequences.
+	 */
+	public GibbsConvergenceDiagnostics()
+	{
+	}
+
+	/*-------------------------------------
+	 * GibbsConvergenceDiagnostics methods
+	 */
+
+	/**
+	 * The number of sequences of scores, normally one per random restart.
+	 */
+	public int getSequenceCount()
+	{
+		return _sequences.size();
+	}
+
+	/**
+	 * The total number of scores added to all sequences.
+	 */
+	public long getSampleCount()
+	{
+		long count = 0;
+		for (Sequence sequence : _sequences)
+		{
+			count += sequence._count;
+		}
+		return count;
+	}
+
+	/**
+	 * Batch means estimate of effective sample size of all sequences combined.
+	 * <p>
+	 * This is the sum of {@link #getCurrentEffectiveSampleSize()} for each sequence that has enough samples
+	 * for an estimate, or NaN if there are no such sequences.
+	 */
+	public double getEffectiveSampleSize()
+	{
+		double total = Double.NaN;
+		for (Sequence sequence : _sequences)
+		{
+			final double ess = sequence.effectiveSampleSize();
+			if (ess == ess)
+			{
+				total = total == total ? total + ess : ess;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Batch means estimate of effective sample size of the current sequence.
+	 * <p>
+	 * This is the number of independent samples with the same variance of their mean as the
+	 * sample scores. Returns NaN if fewer than {@value #MIN_BATCHES} scores have been added to the
+	 * sequence.
+	 */
+	public double getCurrentEffectiveSampleSize()
+	{
+		final Sequence sequence = _currentSequence;
+		return sequence != null ? sequence.effectiveSampleSize() : Double.NaN;
+	}
+
+	/**
+	 * Split R-hat of the sample scores over all sequences.
+	 * <p>
+	 * Values close to one indicate that the halves of all of the sequences are consistent with having
+	 * been drawn from the same distribution. Returns NaN if there are fewer than four complete batches in
+	 * every sequence, and infinity if the halves have different constant values.
+	 */
+	public double getSplitRHat()
+	{
+		final ArrayList<double[]> halves = new ArrayList<>();
+		for (Sequence sequence : _sequences)
+		{
+			sequence.addHalves(halves);
+		}
+
+		final int m = halves.size();
+		if (m < 2)
+		{
+			return Double.NaN;
+		}
+
+		double sumN = 0, sumMeans = 0, sumMeanSquares = 0, sumVariances = 0;
+		for (double[] half : halves)
+		{
+			sumN += half[0];
+			sumMeans += half[1];
+			sumMeanSquares += half[1] * half[1];
+			sumVariances += half[2];
+		}
+		final double n = sumN / m;
+		final double within = sumVariances / m;
+		final double betweenOverN = Math.max(0, sumMeanSquares - sumMeans * sumMeans / m) / (m - 1);
+
+		if (!(within > 0))
+		{
+			return betweenOverN > 0 ? Double.POSITIVE_INFINITY : 1.0;
+		}
+		return Math.sqrt(((n - 1) / n * within + betweenOverN) / within);
+	}
+
+	/**
+	 * Autocorrelation of the sample scores in the current sequence at given {@code lag}.
+	 * <p>
+	 * Returns NaN if the sequence has too few scores or has zero variance.
+	 * <p>
+	 * @param lag must be in the range 1 to {@link #MAX_LAG}.
+	 * @throws IllegalArgumentException if {@code lag} is out of range.
+	 */
+	public double getAutocorrelation(int lag)
+	{
+		if (lag < 1 || lag > MAX_LAG)
+		{
+			throw new IllegalArgumentException(String.format("lag %d is not in range [1,%d]", lag, MAX_LAG));
+		}
+		final Sequence sequence = _currentSequence;
+		return sequence != null ? sequence.autocorrelation(lag) : Double.NaN;
+	}
+
+	/*------------------
+	 * Mutating methods
+	 */
+
+	/**
+	 * Adds score to the current sequence, starting one if necessary. Ignores scores that are not finite.
+	 */
+	public void add(double score)
+	{
+		if (Double.isInfinite(score) || Double.isNaN(score))
+		{
+			return;
+		}
+		Sequence sequence = _currentSequence;
+		if (sequence == null)
+		{
+			_sequences.add(sequence = _currentSequence = new Sequence());
+		}
+		sequence.add(score);
+	}
+
+	/**
+	 * Starts a new sequence, unless the current one is empty.
+	 */
+	public void startSequence()
+	{
+		final Sequence sequence = _currentSequence;
+		if (sequence == null || sequence._count > 0)
+		{
+			_sequences.add(_currentSequence = new Sequence());
+		}
+	}
+
+	/**
+	 * Removes all sequences.
+	 */
+	public void reset()
+	{
+		_sequences.clear();
+		_currentSequence = null;
+	}
+}
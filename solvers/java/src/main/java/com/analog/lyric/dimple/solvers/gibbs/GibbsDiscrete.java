@@ -136,6 +136,7 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 			}
 			
 			_value.setFrom(value);
+			getParentGraph().sampleValueChanged(GibbsDiscrete.this);
 					
 			// If this variable has deterministic dependents, then set their values
 			if (hasDeterministicDependents)
@@ -171,6 +172,7 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 			}
 
 			_value.setObject(obj);
+			getParentGraph().sampleValueChanged(GibbsDiscrete.this);
 			
 			// If this variable has deterministic dependents, then set their values
 			if (hasDeterministicDependents && !_value.valueEquals(requireNonNull(oldValue)))
@@ -191,6 +193,7 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 			}
 			
 			_value.setIndex(index);
+			getParentGraph().sampleValueChanged(GibbsDiscrete.this);
 					
 			// If this variable has deterministic dependents, then set their values
 			if (hasDeterministicDependents)
@@ -297,6 +300,12 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		final int numPorts = model.getSiblingCount();
 		double minEnergy = Double.POSITIVE_INFINITY;
 		
+		// The conditional computed below gives the change in the sample score, so the graph
+		// does not need to recompute it.
+		final GibbsSolverGraph sgraph = getParentGraph();
+		final int oldIndex = _currentSample.getIndex();
+		sgraph.beginScoredUpdate();
+		
 		// Conditional probability in log domain
 		final double[] conditional = DimpleEnvironment.doubleArrayCache.allocateAtLeast(messageLength);
 
@@ -354,19 +363,31 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 		}
 		else	// There are deterministic dependents, so must account for these
 		{
-			// TODO: SPEED UP
-			for (int index = 0; index < messageLength; index++)
+			final GibbsNeighbors neighbors = _neighbors;
+			if (neighbors != null)
+			{
+				// Only recomputes potentials of neighbors affected by each change in value
+				neighbors.addDiscreteScores(this, conditional, messageLength);
+			}
+			else
 			{
-				setCurrentSampleIndex(index);
-				double out = input != null ? input.getEnergy(index) : 0; // Sum of the input prior...
-				ReleasableIterator<ISolverNodeGibbs> scoreNodes = getSampleScoreNodes();
-				while (scoreNodes.hasNext())
+				for (int index = 0; index < messageLength; index++)
 				{
-					out += scoreNodes.next().getPotential();
+					setCurrentSampleIndex(index);
+					double out = 0;
+					ReleasableIterator<ISolverNodeGibbs> scoreNodes = getSampleScoreNodes();
+					while (scoreNodes.hasNext())
+					{
+						out += scoreNodes.next().getPotential();
+					}
+					scoreNodes.release();
+					conditional[index] += out;
 				}
-				scoreNodes.release();
-				
-				out *= _beta;									// Apply tempering
+			}
+			
+			for (int index = 0; index < messageLength; index++)
+			{
+				final double out = conditional[index] * _beta;	// Apply tempering
 
 				minEnergy = Math.min(minEnergy,  out);			// For normalization
 
@@ -396,6 +417,10 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 			rejected = true;
 		}
 		
+		// Conditional energies include the tempering factor, which is not part of the sample score
+		final int newIndex = _currentSample.getIndex();
+		sgraph.endScoredUpdate(newIndex == oldIndex ? 0.0 : (conditional[newIndex] - conditional[oldIndex]) / _beta);
+		
 		DimpleEnvironment.doubleArrayCache.release(conditional);
 		
 		if (rejected) _rejectCount++;
@@ -432,6 +457,7 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 	public void updatePriorAndCondition()
 	{
 		_input = knownEnergyMessage();
+		getParentGraph().invalidateSampleScore();
 	}
 
 	/*--------------------------
@@ -579,6 +605,45 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
 	{
 		_beliefHistogram[_currentSample.getIndex()]++;
 	}
+	
+	/**
+	 * Adds sample with given index to belief, as with {@link #updateBelief()} but for a sample
+	 * other than the current one. Used by {@link GibbsMultiChain}.
+	 * @since 0.08
+	 */
+	@SuppressWarnings("null")
+	final void updateBelief(int sampleIndex)
+	{
+		_beliefHistogram[sampleIndex]++;
+	}
+	
+	/**
+	 * Writes energies of the prior and any conditioning on this variable into {@code energies},
+	 * which must have at least domain size entries, or zeros if there are none.
+	 * @since 0.08
+	 */
+	final void getInputEnergies(double[] energies)
+	{
+		final DiscreteEnergyMessage input = _input;
+		if (input != null)
+		{
+			input.getEnergies(energies);
+		}
+		else
+		{
+			Arrays.fill(energies, 0, getDomain().size(), 0);
+		}
+	}
+	
+	/**
+	 * True if the sample value is fixed or {@linkplain #holdSampleValue() held} and will
+	 * not be changed by updates.
+	 * @since 0.08
+	 */
+	final boolean isSampleValueFixed()
+	{
+		return _holdSampleValue || _model.hasFixedValue();
+	}
 
 	@SuppressWarnings("null")
 	@Override
@@ -843,7 +908,16 @@ public class GibbsDiscrete extends SDiscreteVariableBase implements ISolverVaria
     {
     	_beta = beta;
     }
-	
+
+	/**
+	 * Current inverse temperature applied to energies when sampling this variable.
+	 * @since 0.08
+	 */
+	public final double getBeta()
+	{
+		return _beta;
+	}
+
     // TODO move to bottom
 
 	/**
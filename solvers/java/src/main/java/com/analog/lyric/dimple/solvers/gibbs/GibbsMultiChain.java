@@ -0,0 +1,480 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import static java.util.Objects.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.JointDomainIndexer;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.math.DimpleRandom;
+
+/**
+ * Runs multiple independent Gibbs chains over an all-discrete graph using shared flat arrays.
+ * <p>
+ * The graph topology and factor tables are converted once into arrays indexed by variable and factor number,
+ * and the current sample indices of all chains for each variable are stored together in a single {@code int}
+ * array. Each variable update then computes the conditional distributions for all of the chains in tight
+ * loops over those arrays rather than through the solver objects. The first chain is the state of the
+ * {@link GibbsDiscrete} variables themselves, which is copied in and out around each run of updates so
+ * that sample saving and scoring work as usual for that chain.
+ * <p>
+ * Requires that every variable is {@link GibbsDiscrete} and every factor is a {@link GibbsTableFactor} whose
+ * table is not deterministic directed. Variables are updated in sequential scans in the order of
+ * {@link FactorGraph#getVariables()}; the solver's schedule is not used.
+ * <p>
+ * Per-chain counts of every sample value are maintained so that the potential scale reduction factor
+ * (R-hat) can be computed without storing samples.
+ * <p>
+ * @since 0.08
+ */
+final class GibbsMultiChain
+{
+	/*-----------
+	 * Constants
+	 */
+
+	/**
+	 * Maximum number of entries in the dense copy of a factor table.
+	 */
+	static final int MAX_TABLE_SIZE = 1 << 24;
+
+	/*-------
+	 * State
+	 */
+
+	private final int _numChains;
+	private final GibbsDiscrete[] _variables;
+	private final int[] _domainSizes;
+
+	/**
+	 * Current sample indices indexed by variable and then by chain.
+	 */
+	private final int[][] _samples;
+
+	/**
+	 * Input energies indexed by variable and then by domain index. Refreshed before each run of updates.
+	 */
+	private final double[][] _inputs;
+
+	/**
+	 * Distinct factor numbers of each variable, and the corresponding sum of the table strides of every
+	 * sibling position at which the variable appears in that factor.
+	 */
+	private final int[][] _variableFactors;
+	private final int[][] _variableStrides;
+
+	/**
+	 * Dense energies, sibling variable numbers and strides of each factor table.
+	 */
+	private final double[][] _tableEnergies;
+	private final int[][] _factorVariables;
+	private final int[][] _strides;
+
+	/**
+	 * Sample value counts indexed by variable and then by {@code chain * domainSize + value}.
+	 */
+	private final long[][] _counts;
+	private long _samplesPerChain = 0;
+
+	/**
+	 * Temporary arrays of size {@code numChains * maxDomainSize} and {@code numChains}.
+	 */
+	private final double[] _conditionals;
+	private final int[] _offsets;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Creates chains for the model of root solver graph {@code sgraph}, which must already have been initialized.
+	 * @throws DimpleException if the graph contains anything other than discrete variables and table factors.
+	 */
+	GibbsMultiChain(GibbsSolverGraph sgraph, int numChains)
+	{
+		final FactorGraph model = sgraph.getModel();
+		final List<Variable> variables = new ArrayList<>(model.getVariables());
+		final List<Factor> factors = new ArrayList<>(model.getFactors());
+		final int nVars = variables.size(), nFactors = factors.size();
+
+		_numChains = numChains;
+		_variables = new GibbsDiscrete[nVars];
+		_domainSizes = new int[nVars];
+		_samples = new int[nVars][numChains];
+		_inputs = new double[nVars][];
+		_counts = new long[nVars][];
+
+		final Map<Variable,Integer> variableNumbers = new IdentityHashMap<>(nVars);
+		int maxDomainSize = 0;
+		for (int i = 0; i < nVars; ++i)
+		{
+			final Variable var = variables.get(i);
+			final ISolverVariableGibbs svar = sgraph.getSolverVariable(var);
+			if (!(svar instanceof GibbsDiscrete))
+			{
+				throw new DimpleException("Multiple Gibbs chains require discrete variables, but '%s' is not",
+					var.getLabel());
+			}
+			_variables[i] = (GibbsDiscrete)svar;
+			final int size = _domainSizes[i] = _variables[i].getDomain().size();
+			_inputs[i] = new double[size];
+			_counts[i] = new long[numChains * size];
+			maxDomainSize = Math.max(maxDomainSize, size);
+			variableNumbers.put(var, i);
+		}
+
+		_tableEnergies = new double[nFactors][];
+		_factorVariables = new int[nFactors][];
+		_strides = new int[nFactors][];
+		final int[] degrees = new int[nVars];
+		for (int f = 0; f < nFactors; ++f)
+		{
+			final Factor factor = factors.get(f);
+			if (!(sgraph.getSolverFactor(factor) instanceof GibbsTableFactor))
+			{
+				throw new DimpleException("Multiple Gibbs chains require table factors, but '%s' is not",
+					factor.getLabel());
+			}
+			final IFactorTable table = factor.getFactorTable();
+			final JointDomainIndexer indexer = table.getDomainIndexer();
+			if (table.isDeterministicDirected() || !indexer.supportsJointIndexing() ||
+				indexer.getCardinality() > MAX_TABLE_SIZE)
+			{
+				throw new DimpleException("Multiple Gibbs chains do not support the table of factor '%s'",
+					factor.getLabel());
+			}
+
+			final int nSiblings = factor.getSiblingCount();
+			final int[] siblings = _factorVariables[f] = new int[nSiblings];
+			final int[] strides = _strides[f] = new int[nSiblings];
+			for (int j = 0; j < nSiblings; ++j)
+			{
+				siblings[j] = requireNonNull(variableNumbers.get(factor.getSibling(j)));
+				strides[j] = indexer.getStride(j);
+				if (indexOf(siblings, siblings[j], j) < 0)
+				{
+					++degrees[siblings[j]];
+				}
+			}
+
+			final double[] energies = _tableEnergies[f] = new double[indexer.getCardinality()];
+			for (int joint = energies.length; --joint>=0;)
+			{
+				energies[joint] = table.getEnergyForJointIndex(joint);
+			}
+		}
+
+		_variableFactors = new int[nVars][];
+		_variableStrides = new int[nVars][];
+		for (int i = 0; i < nVars; ++i)
+		{
+			_variableFactors[i] = new int[degrees[i]];
+			_variableStrides[i] = new int[degrees[i]];
+			degrees[i] = 0;
+		}
+		for (int f = 0; f < nFactors; ++f)
+		{
+			final int[] siblings = _factorVariables[f];
+			final int[] strides = _strides[f];
+			for (int j = 0; j < siblings.length; ++j)
+			{
+				final int i = siblings[j];
+				if (indexOf(siblings, i, j) < 0)
+				{
+					_variableFactors[i][degrees[i]++] = f;
+				}
+				// A variable that appears more than once in a factor moves along all of its positions at once.
+				_variableStrides[i][degrees[i] - 1] += strides[j];
+			}
+		}
+
+		_conditionals = new double[numChains * maxDomainSize];
+		_offsets = new int[numChains];
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	int getNumChains()
+	{
+		return _numChains;
+	}
+
+	/**
+	 * Randomly restarts all chains other than the first, which is left to the caller.
+	 */
+	void randomRestart(int restartCount)
+	{
+		final GibbsDiscrete[] variables = _variables;
+		final int nVars = variables.length;
+
+		for (int i = 0; i < nVars; ++i)
+		{
+			_samples[i][0] = variables[i].getCurrentSampleIndex();
+		}
+
+		for (int chain = 1; chain < _numChains; ++chain)
+		{
+			for (int i = 0; i < nVars; ++i)
+			{
+				final GibbsDiscrete var = variables[i];
+				var.randomRestart(restartCount);
+				_samples[i][chain] = var.getCurrentSampleIndex();
+			}
+		}
+
+		for (int i = 0; i < nVars; ++i)
+		{
+			variables[i].setCurrentSampleIndex(_samples[i][0]);
+		}
+	}
+
+	/**
+	 * Performs enough full scans of all chains to include at least {@code numUpdates} variable updates
+	 * per chain.
+	 */
+	void iterate(int numUpdates)
+	{
+		final GibbsDiscrete[] variables = _variables;
+		final int nVars = variables.length;
+
+		int[] updateOrder = new int[nVars];
+		int nUpdated = 0;
+		for (int i = 0; i < nVars; ++i)
+		{
+			final GibbsDiscrete var = variables[i];
+			_samples[i][0] = var.getCurrentSampleIndex();
+			var.getInputEnergies(_inputs[i]);
+			if (!var.isSampleValueFixed())
+			{
+				updateOrder[nUpdated++] = i;
+			}
+		}
+		if (nUpdated == 0)
+		{
+			return;
+		}
+		updateOrder = Arrays.copyOf(updateOrder, nUpdated);
+
+		final DimpleRandom rand = DimpleEnvironment.activeRandom();
+		for (int scan = 0, nScans = (numUpdates + nUpdated - 1) / nUpdated; scan < nScans; ++scan)
+		{
+			for (int i : updateOrder)
+			{
+				updateVariable(i, rand);
+			}
+		}
+
+		for (int i = 0; i < nVars; ++i)
+		{
+			variables[i].setCurrentSampleIndex(_samples[i][0]);
+		}
+	}
+
+	/**
+	 * Adds current samples of chains other than the first to the variable beliefs, and
+	 * samples of all chains to the per-chain counts.
+	 */
+	void updateBeliefs()
+	{
+		final int numChains = _numChains;
+		for (int i = _variables.length; --i>=0;)
+		{
+			final GibbsDiscrete var = _variables[i];
+			final int[] samples = _samples[i];
+			final long[] counts = _counts[i];
+			final int size = _domainSizes[i];
+			for (int chain = 0; chain < numChains; ++chain)
+			{
+				final int index = samples[chain];
+				if (chain > 0)
+				{
+					var.updateBelief(index);
+				}
+				++counts[chain * size + index];
+			}
+		}
+		++_samplesPerChain;
+	}
+
+	/**
+	 * Maximum over all variables and values of the potential scale reduction factor (R-hat) of the
+	 * indicator of the value, computed from the samples of all chains since construction.
+	 * <p>
+	 * Returns NaN if there are fewer than two samples per chain.
+	 */
+	double getMaxRHat()
+	{
+		final long n = _samplesPerChain;
+		if (n < 2)
+		{
+			return Double.NaN;
+		}
+
+		final int numChains = _numChains;
+		double maxRHat = 1.0;
+		for (int i = _variables.length; --i>=0;)
+		{
+			final long[] counts = _counts[i];
+			final int size = _domainSizes[i];
+			for (int value = 0; value < size; ++value)
+			{
+				// The within-chain variance of an indicator only depends on its mean.
+				double sumMeans = 0, sumSquaredMeans = 0, within = 0;
+				for (int chain = 0; chain < numChains; ++chain)
+				{
+					final double mean = (double)counts[chain * size + value] / n;
+					sumMeans += mean;
+					sumSquaredMeans += mean * mean;
+					within += mean * (1 - mean);
+				}
+				within *= (double)n / (n - 1) / numChains;
+				final double between =
+					Math.max(0, sumSquaredMeans - sumMeans * sumMeans / numChains) / (numChains - 1);
+
+				if (within > 0)
+				{
+					maxRHat = Math.max(maxRHat, Math.sqrt(((n - 1) * within / n + between) / within));
+				}
+				else if (between > 0)
+				{
+					return Double.POSITIVE_INFINITY;
+				}
+			}
+		}
+
+		return maxRHat;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Samples variable {@code i} in all chains from its conditional distribution.
+	 */
+	private void updateVariable(int i, DimpleRandom rand)
+	{
+		final int numChains = _numChains;
+		final int size = _domainSizes[i];
+		final double[] conditionals = _conditionals;
+		final int[] offsets = _offsets;
+		final double[] input = _inputs[i];
+		final int[] samples = _samples[i];
+
+		for (int chain = 0; chain < numChains; ++chain)
+		{
+			System.arraycopy(input, 0, conditionals, chain * size, size);
+		}
+
+		final int[] factors = _variableFactors[i];
+		final int[] variableStrides = _variableStrides[i];
+		for (int n = 0; n < factors.length; ++n)
+		{
+			final int f = factors[n];
+			final int[] siblings = _factorVariables[f];
+			final int[] strides = _strides[f];
+			final double[] energies = _tableEnergies[f];
+
+			// Joint index of each chain's table entry with this variable's index set to zero
+			Arrays.fill(offsets, 0);
+			for (int j = 0; j < siblings.length; ++j)
+			{
+				if (siblings[j] != i)
+				{
+					final int[] siblingSamples = _samples[siblings[j]];
+					final int stride = strides[j];
+					for (int chain = 0; chain < numChains; ++chain)
+					{
+						offsets[chain] += siblingSamples[chain] * stride;
+					}
+				}
+			}
+
+			final int stride = variableStrides[n];
+			for (int chain = 0; chain < numChains; ++chain)
+			{
+				final int base = chain * size;
+				for (int value = 0, joint = offsets[chain]; value < size; ++value, joint += stride)
+				{
+					conditionals[base + value] += energies[joint];
+				}
+			}
+		}
+
+		for (int chain = 0; chain < numChains; ++chain)
+		{
+			final int base = chain * size;
+
+			double minEnergy = Double.POSITIVE_INFINITY;
+			for (int value = 0; value < size; ++value)
+			{
+				minEnergy = Math.min(minEnergy, conditionals[base + value]);
+			}
+			if (minEnergy == Double.POSITIVE_INFINITY)
+			{
+				continue;	// No value is possible given the neighbors, so leave as is
+			}
+
+			double sum = 0;
+			for (int value = 0; value < size; ++value)
+			{
+				sum += conditionals[base + value] = Math.exp(minEnergy - conditionals[base + value]);
+			}
+
+			double u = rand.nextDouble() * sum;
+			int sample = size - 1;
+			for (int value = 0; value < size - 1; ++value)
+			{
+				u -= conditionals[base + value];
+				if (u < 0)
+				{
+					sample = value;
+					break;
+				}
+			}
+			samples[chain] = sample;
+		}
+	}
+
+	/**
+	 * Index of first occurrence of {@code value} in {@code array} before {@code end}, or -1.
+	 */
+	private static int indexOf(int[] array, int value, int end)
+	{
+		for (int j = 0; j < end; ++j)
+		{
+			if (array[j] == value)
+			{
+				return j;
+			}
+		}
+		return -1;
+	}
+}
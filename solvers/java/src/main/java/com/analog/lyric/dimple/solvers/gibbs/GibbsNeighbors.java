@@ -20,7 +20,9 @@ import static java.util.Objects.*;
 
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -31,12 +33,14 @@ import com.analog.lyric.collect.ReleasableArrayIterator;
 import com.analog.lyric.collect.ReleasableIterable;
 import com.analog.lyric.collect.ReleasableIterator;
 import com.analog.lyric.collect.UnmodifiableReleasableIterator;
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
 import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.core.EdgeState;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Variable;
 
+import cern.colt.list.IntArrayList;
 import net.jcip.annotations.Immutable;
 import net.jcip.annotations.NotThreadSafe;
 
@@ -67,6 +71,13 @@ public final class GibbsNeighbors implements ReleasableIterable<ISolverNodeGibbs
 	 */
 	private final @Nullable FactorWork[] _adjacentDependentFactors;
 	
+	/**
+	 * Maps variables to the indexes of the entries in {@link #_neighbors} whose potential depends on the
+	 * variable's sample value, i.e. the variable itself and its adjacent factors. Only computed when there
+	 * are deterministic dependents.
+	 */
+	private final @Nullable Map<ISolverNodeGibbs, int[]> _dependentNeighbors;
+	
 	/*--------------
 	 * Construction
 	 */
@@ -76,6 +87,51 @@ public final class GibbsNeighbors implements ReleasableIterable<ISolverNodeGibbs
 		_neighbors = neighbors;
 		_adjacentDependentFactors = immediateDependentFactors;
 		_rootSolverGraph = rootSolverGraph;
+		_dependentNeighbors = immediateDependentFactors != null ? dependentNeighbors(neighbors) : null;
+	}
+	
+	private static Map<ISolverNodeGibbs, int[]> dependentNeighbors(ISolverNodeGibbs[] neighbors)
+	{
+		final Map<ISolverNodeGibbs, IntArrayList> lists = new IdentityHashMap<>();
+		
+		for (int i = 0; i < neighbors.length; ++i)
+		{
+			final ISolverNodeGibbs node = neighbors[i];
+			if (node instanceof ISolverFactorGibbs)
+			{
+				for (int edge = 0, n = node.getSiblingCount(); edge < n; ++edge)
+				{
+					addDependentNeighbor(lists, node.getSibling(edge), i);
+				}
+			}
+			else
+			{
+				addDependentNeighbor(lists, node, i);
+			}
+		}
+		
+		final Map<ISolverNodeGibbs, int[]> result = new IdentityHashMap<>(lists.size());
+		for (Map.Entry<ISolverNodeGibbs, IntArrayList> entry : lists.entrySet())
+		{
+			final IntArrayList list = entry.getValue();
+			list.trimToSize();
+			result.put(entry.getKey(), list.elements());
+		}
+		return result;
+	}
+	
+	private static void addDependentNeighbor(Map<ISolverNodeGibbs, IntArrayList> lists, ISolverNodeGibbs var, int index)
+	{
+		IntArrayList list = lists.get(var);
+		if (list == null)
+		{
+			lists.put(var, list = new IntArrayList(2));
+		}
+		// Factor may be connected to the same variable more than once
+		if (list.isEmpty() || list.get(list.size() - 1) != index)
+		{
+			list.add(index);
+		}
 	}
 	
 	/**
@@ -318,6 +374,91 @@ public final class GibbsNeighbors implements ReleasableIterable<ISolverNodeGibbs
 		return _adjacentDependentFactors != null;
 	}
 	
+	/**
+	 * Adds the total potential of the neighbors for each value of a discrete variable to {@code scores}.
+	 * <p>
+	 * Sets the variable to each value in its domain in turn, which also updates its deterministic
+	 * dependents, and adds the sum of the potentials of the neighbor nodes to the corresponding entry of
+	 * {@code scores}. After the first value, only the potentials of neighbors of variables whose sample values
+	 * actually changed are recomputed, the rest are reused from the previous value. The variable will be left
+	 * set to the last value in its domain.
+	 * <p>
+	 * This may only be used when there are {@linkplain #hasDeterministicDependents() deterministic dependents}.
+	 * <p>
+	 * @param svar is the variable whose neighbors are described by this object.
+	 * @param scores is an array of length at least {@code domainSize}
+	 * @param domainSize is the size of the variable's domain.
+	 * @since 0.08
+	 */
+	void addDiscreteScores(GibbsDiscrete svar, double[] scores, int domainSize)
+	{
+		final ISolverNodeGibbs[] neighbors = _neighbors;
+		final Map<ISolverNodeGibbs, int[]> dependentNeighbors = requireNonNull(_dependentNeighbors);
+		final int size = neighbors.length;
+		final GibbsSolverGraph rootGraph = _rootSolverGraph;
+		
+		final double[] potentials = DimpleEnvironment.doubleArrayCache.allocateAtLeast(size);
+		final int[] marks = DimpleEnvironment.intArrayCache.allocateAtLeast(size);
+		final int[] dirty = DimpleEnvironment.intArrayCache.allocateAtLeast(size);
+		final ArrayList<ISolverVariableGibbs> changes = rootGraph.beginRecordingSampleChanges();
+		
+		try
+		{
+			svar.setCurrentSampleIndex(0);
+			double total = 0.0;
+			for (int i = 0; i < size; ++i)
+			{
+				total += potentials[i] = neighbors[i].getPotential();
+				marks[i] = 0;
+			}
+			scores[0] += total;
+			
+			for (int index = 1; index < domainSize; ++index)
+			{
+				changes.clear();
+				svar.setCurrentSampleIndex(index);
+				
+				// Find neighbors affected by the changed variables
+				int nDirty = 0;
+				for (int j = 0, n = changes.size(); j < n; ++j)
+				{
+					final int[] affected = dependentNeighbors.get(changes.get(j));
+					if (affected != null)
+					{
+						for (int i : affected)
+						{
+							if (marks[i] != index)
+							{
+								marks[i] = index;
+								dirty[nDirty++] = i;
+							}
+						}
+					}
+				}
+				
+				for (int j = 0; j < nDirty; ++j)
+				{
+					final int i = dirty[j];
+					potentials[i] = neighbors[i].getPotential();
+				}
+				
+				total = 0.0;
+				for (int i = 0; i < size; ++i)
+				{
+					total += potentials[i];
+				}
+				scores[index] += total;
+			}
+		}
+		finally
+		{
+			rootGraph.endRecordingSampleChanges();
+			DimpleEnvironment.doubleArrayCache.release(potentials);
+			DimpleEnvironment.intArrayCache.release(marks);
+			DimpleEnvironment.intArrayCache.release(dirty);
+		}
+	}
+	
 	/**
 	 * Update the deterministic outputs that depend on the original variable.
 	 * 
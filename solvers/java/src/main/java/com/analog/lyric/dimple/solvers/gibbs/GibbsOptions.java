@@ -119,6 +119,24 @@ public class GibbsOptions extends SolverOptions
 	public static final BooleanOptionKey saveAllScores =
 		new BooleanOptionKey(GibbsOptions.class, "saveAllScores", false);
 	
+	/**
+	 * Specifies how often the Gibbs solver fully recomputes the sample score.
+	 * <p>
+	 * Between full recomputations, the score of the current sample is maintained incrementally from
+	 * the change in energy computed when each variable is updated. Updates for which the change
+	 * is not known, such as those of real variables or blocks, will cause the score to be fully recomputed
+	 * for the next sample. This value specifies the maximum number of samples between full recomputations,
+	 * which bounds accumulation of floating point error. A value of one will recompute the score
+	 * for every sample.
+	 * <p>
+	 * Defaults to 100.
+	 * <p>
+	 * @since 0.08
+	 * @see GibbsSolverGraph#getSampleScore()
+	 */
+	public static final IntegerOptionKey sampleScoreRecomputeInterval =
+		new IntegerOptionKey(GibbsOptions.class, "sampleScoreRecomputeInterval", 100, 1, Integer.MAX_VALUE);
+	
 	/**
 	 * Specifies which sampler to use for discrete variables in Gibbs solver.
 	 * <p>
@@ -197,6 +215,101 @@ public class GibbsOptions extends SolverOptions
 	public static final DoubleOptionKey initialTemperature =
 		new DoubleOptionKey(GibbsOptions.class, "initialTemperature", 1.0, 0.0, Double.MAX_VALUE);
 
+	/**
+	 * Specifies the number of temperature replicas used for parallel tempering in Gibbs solver.
+	 * <p>
+	 * When greater than one, the solver runs this many copies of the graph concurrently at temperatures
+	 * spaced geometrically from one up to {@link #maxReplicaTemperature}, and after each sample proposes
+	 * to exchange the states of replicas with adjacent temperatures. Samples are only reported from the
+	 * replica at temperature one. This may not be combined with {@link #enableAnnealing}.
+	 * <p>
+	 * Defaults to one, which disables parallel tempering.
+	 * <p>
+	 * @since 0.08
+	 * @see GibbsSolverGraph#getReplicaSwapAcceptanceRates()
+	 */
+	public static final IntegerOptionKey numReplicas =
+		new IntegerOptionKey(GibbsOptions.class, "numReplicas", 1, 1, Integer.MAX_VALUE);
+
+	/**
+	 * Specifies the temperature of the hottest replica for parallel tempering in Gibbs solver.
+	 * <p>
+	 * Only used when {@link #numReplicas} is greater than one.
+	 * <p>
+	 * Defaults to 10.0.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey maxReplicaTemperature =
+		new DoubleOptionKey(GibbsOptions.class, "maxReplicaTemperature", 10.0, 1.0, Double.MAX_VALUE);
+
+	/**
+	 * Specifies the number of independent chains to run in a single Gibbs solver.
+	 * <p>
+	 * When greater than one, the state of all of the chains is kept in flat arrays shared by all
+	 * of the variables, and each variable update is computed for all of the chains at once. Beliefs
+	 * are estimated from the samples of all of the chains, while saved samples and scores are
+	 * those of the first chain. The potential scale reduction factor across the chains is available
+	 * from {@link GibbsSolverGraph#getMaxChainRHat()}.
+	 * <p>
+	 * This is only supported for graphs with only discrete variables and factor tables that are
+	 * not deterministic directed, in which case variables are updated in sequential scans rather
+	 * than using the {@link #scheduler}. This may not be combined with {@link #enableAnnealing} or
+	 * {@link #numReplicas}.
+	 * <p>
+	 * Defaults to one.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey numChains =
+		new IntegerOptionKey(GibbsOptions.class, "numChains", 1, 1, Integer.MAX_VALUE);
+
+	/**
+	 * Specifies the maximum number of scans for adaptive burn-in in Gibbs solver.
+	 * <p>
+	 * When greater than {@link #burnInScans}, burn-in continues after the first {@link #burnInScans} scans
+	 * in rounds of {@value GibbsSolverGraph#BURN_IN_ROUND_SAMPLES} samples' worth of updates, and stops after
+	 * the first round in which the {@linkplain GibbsConvergenceDiagnostics#getSplitRHat() split R-hat} of the
+	 * sample scores is no more than {@link #rHatThreshold}, or once this many scans have been performed.
+	 * <p>
+	 * Defaults to zero, which disables adaptive burn-in.
+	 * <p>
+	 * @since 0.08
+	 * @see GibbsBurnInEvent#burnInUpdates()
+	 */
+	public static final IntegerOptionKey maxBurnInScans =
+		new IntegerOptionKey(GibbsOptions.class, "maxBurnInScans", 0, 0, Integer.MAX_VALUE);
+
+	/**
+	 * Specifies the effective sample size at which the Gibbs solver may stop sampling.
+	 * <p>
+	 * When positive, sampling for each restart stops before {@link #numSamples} samples once the
+	 * {@linkplain GibbsConvergenceDiagnostics#getCurrentEffectiveSampleSize() effective sample size} of the
+	 * sample scores for the restart reaches this value divided by the number of restarts, and the
+	 * {@linkplain GibbsConvergenceDiagnostics#getSplitRHat() split R-hat} over all restarts so far is no more
+	 * than {@link #rHatThreshold}. In that case {@link #numSamples} is the maximum number of samples per restart.
+	 * <p>
+	 * Defaults to zero, which disables stopping early.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey targetEffectiveSampleSize =
+		new DoubleOptionKey(GibbsOptions.class, "targetEffectiveSampleSize", 0.0, 0.0, Double.MAX_VALUE);
+
+	/**
+	 * Specifies the R-hat value below which the Gibbs solver considers samples to have converged.
+	 * <p>
+	 * Used by {@link #maxBurnInScans} and {@link #targetEffectiveSampleSize}. When {@link #numChains}
+	 * is greater than one, the {@linkplain GibbsSolverGraph#getMaxChainRHat() R-hat across chains} must also
+	 * be no more than this value.
+	 * <p>
+	 * Defaults to 1.05.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey rHatThreshold =
+		new DoubleOptionKey(GibbsOptions.class, "rHatThreshold", 1.05, 1.0, Double.MAX_VALUE);
+
 	/**
 	 * Specifies schedule validation that should be applied for Gibbs solvers.
 	 * <p>
@@ -144,6 +144,7 @@ public class GibbsReal extends SRealVariableBase
 			}
 			
 			_value = value;
+			getParentGraph().sampleValueChanged(GibbsReal.this);
 			
 			// If this variable has deterministic dependents, then set their values
 			if (hasDeterministicDependents)
@@ -400,6 +401,7 @@ public class GibbsReal extends SRealVariableBase
 		{
 			setCurrentSampleForce(value.getDouble());
 		}
+		getParentGraph().invalidateSampleScore();
 	}
 	
 	/*----------------------------------
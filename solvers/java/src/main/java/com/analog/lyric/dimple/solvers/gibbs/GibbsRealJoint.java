@@ -139,6 +139,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 			
 			_value[index] = value;
 			_currentSample.setValue(index, value);
+			getParentGraph().sampleValueChanged(GibbsRealJoint.this);
 			
 			if (hasDeterministicDependents)
 			{
@@ -160,6 +161,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 			}
 			
 			_value = value.clone();
+			getParentGraph().sampleValueChanged(GibbsRealJoint.this);
 			
 			if (hasDeterministicDependents)
 			{
@@ -646,6 +648,7 @@ public class GibbsRealJoint extends SRealJointVariableBase
 		{
 			setCurrentSampleForce(value.getDoubleArray());
 		}
+		getParentGraph().invalidateSampleScore();
 	}
 
 	@Override
@@ -0,0 +1,297 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs;
+
+import static java.util.Objects.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.DimpleOptions;
+import com.analog.lyric.dimple.schedulers.SchedulerOptionKey;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.options.IOption;
+import com.analog.lyric.options.Option;
+
+/**
+ * Parallel tempering (replica exchange) state for a root {@link GibbsSolverGraph}.
+ * <p>
+ * Holds copies of the model graph, each with its own Gibbs solver graph, that are run at
+ * temperatures spaced geometrically from one up to {@link GibbsOptions#maxReplicaTemperature}. The
+ * original solver graph is the replica at temperature one. The replicas are updated concurrently
+ * using the shared {@link ThreadPool}, each with its own random stream, and between rounds of updates
+ * swaps of the sample values of replicas with adjacent temperatures are proposed and accepted with
+ * the Metropolis probability based on their untempered {@linkplain GibbsSolverGraph#getSampleScore() scores}.
+ * Swaps of even and odd numbered pairs alternate between rounds.
+ * <p>
+ * @since 0.08
+ */
+final class GibbsReplicaExchange
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Solver graphs in order of increasing temperature. The first is the original graph.
+	 */
+	private final GibbsSolverGraph[] _graphs;
+
+	/**
+	 * Corresponding solver variables indexed by replica and then by position in the original model's
+	 * {@linkplain FactorGraph#getVariables() variables}.
+	 */
+	private final ISolverVariableGibbs[][] _variables;
+
+	private final double[] _betas;
+
+	/**
+	 * Random streams for replicas other than the first, which uses the caller's active random.
+	 */
+	private final DimpleRandom[] _randoms;
+
+	/**
+	 * Untempered sample score of each replica as of the end of the last round of updates.
+	 */
+	private final double[] _scores;
+
+	private final long[] _swapAttempts;
+	private final long[] _swapAccepts;
+
+	/**
+	 * Temporary values used when swapping states.
+	 */
+	private final Value[] _swapValues;
+
+	private int _round = 0;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * Creates and initializes replicas of {@code sgraph}, which must already have been initialized.
+	 */
+	GibbsReplicaExchange(GibbsSolverGraph sgraph, int numReplicas, double maxTemperature)
+	{
+		final FactorGraph model = sgraph.getModel();
+		final List<Variable> variables = new ArrayList<>(model.getVariables());
+		final int nVars = variables.size();
+
+		_graphs = new GibbsSolverGraph[numReplicas];
+		_variables = new ISolverVariableGibbs[numReplicas][nVars];
+		_betas = new double[numReplicas];
+		_randoms = new DimpleRandom[numReplicas];
+		_scores = new double[numReplicas];
+		_swapAttempts = new long[numReplicas - 1];
+		_swapAccepts = new long[numReplicas - 1];
+		_swapValues = new Value[nVars];
+
+		final DimpleRandom rand = DimpleEnvironment.activeRandom();
+
+		for (int k = 0; k < numReplicas; ++k)
+		{
+			GibbsSolverGraph replica = sgraph;
+			Map<Object,Object> old2new = null;
+
+			if (k > 0)
+			{
+				old2new = new HashMap<>();
+				final FactorGraph copy = model.copyRoot(old2new);
+				copy.setOption(GibbsOptions.numReplicas, 1);
+				copy.unsetOption(DimpleOptions.randomSeed);
+				replica = requireNonNull(copy.setSolverFactory(new GibbsSolver()));
+
+				// Options set directly on the solver graph, other than the schedule
+				for (IOption<? extends Serializable> option : sgraph.getLocalOptions())
+				{
+					final Object key = option.key();
+					if (!(key instanceof SchedulerOptionKey) && key != GibbsOptions.numReplicas &&
+						key != DimpleOptions.randomSeed)
+					{
+						Option.setOptions(replica, option);
+					}
+				}
+
+				replica.initialize();
+				_randoms[k] = rand.split();
+			}
+
+			_graphs[k] = replica;
+			_betas[k] = Math.pow(maxTemperature, -(double)k / (numReplicas - 1));
+			replica.setTemperature(1 / _betas[k]);
+
+			for (int i = 0; i < nVars; ++i)
+			{
+				Variable var = variables.get(i);
+				if (old2new != null)
+				{
+					var = (Variable)requireNonNull(old2new.get(var));
+				}
+				_variables[k][i] = requireNonNull(replica.getSolverVariable(var));
+			}
+		}
+
+		for (int i = 0; i < nVars; ++i)
+		{
+			_swapValues[i] = _variables[0][i].getCurrentSampleValue().clone();
+		}
+	}
+
+	/*---------
+	 * Methods
+	 */
+
+	/**
+	 * Randomly restarts all replicas other than the original, which is left to the caller.
+	 */
+	void randomRestart(int restartCount)
+	{
+		for (int k = 1; k < _graphs.length; ++k)
+		{
+			_graphs[k].randomRestart(restartCount);
+		}
+	}
+
+	/**
+	 * Performs {@code numUpdates} updates on each replica, proposing swaps after every
+	 * {@code updatesPerSwap} updates and at the end.
+	 */
+	void iterate(int numUpdates, int updatesPerSwap)
+	{
+		updatesPerSwap = Math.max(1, updatesPerSwap);
+		for (int remaining = numUpdates; remaining > 0; remaining -= updatesPerSwap)
+		{
+			iterateReplicas(Math.min(remaining, updatesPerSwap));
+			proposeSwaps();
+		}
+	}
+
+	/**
+	 * Temperatures of the replicas in increasing order, starting with one.
+	 */
+	double[] getTemperatures()
+	{
+		final double[] temperatures = new double[_betas.length];
+		for (int k = 0; k < temperatures.length; ++k)
+		{
+			temperatures[k] = 1 / _betas[k];
+		}
+		return temperatures;
+	}
+
+	/**
+	 * Fraction of proposed swaps between replica {@code k} and {@code k+1} that were accepted.
+	 */
+	double[] getSwapAcceptanceRates()
+	{
+		final double[] rates = new double[_swapAttempts.length];
+		for (int k = 0; k < rates.length; ++k)
+		{
+			final long attempts = _swapAttempts[k];
+			rates[k] = attempts > 0 ? (double)_swapAccepts[k] / attempts : 0.0;
+		}
+		return rates;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void iterateReplicas(final int numUpdates)
+	{
+		final int numReplicas = _graphs.length;
+		final DimpleRandom callerRandom = DimpleEnvironment.activeRandom();
+		final List<Callable<Object>> tasks = new ArrayList<>(numReplicas);
+		for (int k = 0; k < numReplicas; ++k)
+		{
+			final int replica = k;
+			final DimpleRandom rand = k > 0 ? _randoms[k] : callerRandom;
+			tasks.add(new Callable<Object>() {
+				@Override
+				public @Nullable Object call()
+				{
+					final @Nullable DimpleRandom prevRandom = DimpleEnvironment.setThreadRandom(rand);
+					try
+					{
+						final GibbsSolverGraph sgraph = _graphs[replica];
+						sgraph.iterate(numUpdates);
+						_scores[replica] = sgraph.getSampleScore();
+					}
+					finally
+					{
+						DimpleEnvironment.setThreadRandom(prevRandom);
+					}
+					return null;
+				}
+			});
+		}
+		ThreadPool.invokeAll(tasks);
+	}
+
+	private void proposeSwaps()
+	{
+		final DimpleRandom rand = DimpleEnvironment.activeRandom();
+		final double[] betas = _betas, scores = _scores;
+
+		for (int k = _round++ & 1, end = _graphs.length - 1; k < end; k += 2)
+		{
+			++_swapAttempts[k];
+
+			final double logAcceptance = (betas[k] - betas[k + 1]) * (scores[k] - scores[k + 1]);
+			if (logAcceptance >= 0 || rand.nextDouble() < Math.exp(logAcceptance))
+			{
+				++_swapAccepts[k];
+				swapStates(k, k + 1);
+				final double score = scores[k];
+				scores[k] = scores[k + 1];
+				scores[k + 1] = score;
+			}
+		}
+	}
+
+	private void swapStates(int replica1, int replica2)
+	{
+		final ISolverVariableGibbs[] vars1 = _variables[replica1], vars2 = _variables[replica2];
+		final Value[] values = _swapValues;
+
+		// Read all of the values first, since setting a value may update deterministic dependents.
+		for (int i = values.length; --i>=0;)
+		{
+			values[i].setFrom(vars1[i].getCurrentSampleValue());
+		}
+		for (int i = values.length; --i>=0;)
+		{
+			vars1[i].setCurrentSample(vars2[i].getCurrentSampleValue());
+		}
+		for (int i = values.length; --i>=0;)
+		{
+			vars2[i].setCurrentSample(values[i]);
+		}
+	}
+}
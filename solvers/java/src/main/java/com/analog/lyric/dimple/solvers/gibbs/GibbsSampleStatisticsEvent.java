@@ -38,6 +38,9 @@ public class GibbsSampleStatisticsEvent extends GibbsSolverGraphEvent
 	final boolean _wasBest;
 	final double _oldTemperature;
 	final double _newTemperature;
+	final double _effectiveSampleSize;
+	final double _splitRHat;
+	final double _scoreAutocorrelation;
 	
 	/*--------------
 	 * Construction
@@ -48,13 +51,17 @@ public class GibbsSampleStatisticsEvent extends GibbsSolverGraphEvent
 		double sampleScore,
 		boolean wasBest,
 		double oldTemperature,
-		double newTemperature)
+		double newTemperature,
+		GibbsConvergenceDiagnostics diagnostics)
 	{
 		super(source);
 		_sampleScore = sampleScore;
 		_wasBest = wasBest;
 		_oldTemperature = oldTemperature;
 		_newTemperature = newTemperature;
+		_effectiveSampleSize = diagnostics.getEffectiveSampleSize();
+		_splitRHat = diagnostics.getSplitRHat();
+		_scoreAutocorrelation = diagnostics.getAutocorrelation(1);
 	}
 
 	/*---------------------
@@ -73,12 +80,54 @@ public class GibbsSampleStatisticsEvent extends GibbsSolverGraphEvent
 		{
 			out.format("\ntemperature %g => %g", _oldTemperature, _newTemperature);
 		}
+		if (verbosity > 1)
+		{
+			out.format("\neffective sample size %g, split R-hat %g, autocorrelation %g",
+				_effectiveSampleSize, _splitRHat, _scoreAutocorrelation);
+		}
 	}
 
 	/*------------------------------------
 	 * GibbsSampleStatisticsEvent methods
 	 */
 	
+	/**
+	 * The {@linkplain GibbsConvergenceDiagnostics#getEffectiveSampleSize() effective sample size} of
+	 * the sample scores, including this one, since the graph was initialized.
+	 * <p>
+	 * This will be NaN if there are not yet enough samples for an estimate.
+	 * <p>
+	 * @since 0.08
+	 */
+	public double effectiveSampleSize()
+	{
+		return _effectiveSampleSize;
+	}
+	
+	/**
+	 * The {@linkplain GibbsConvergenceDiagnostics#getSplitRHat() split R-hat} of the sample scores,
+	 * including this one, since the graph was initialized.
+	 * <p>
+	 * This will be NaN if there are not yet enough samples for an estimate.
+	 * <p>
+	 * @since 0.08
+	 */
+	public double splitRHat()
+	{
+		return _splitRHat;
+	}
+	
+	/**
+	 * The lag one {@linkplain GibbsConvergenceDiagnostics#getAutocorrelation(int) autocorrelation} of
+	 * the sample scores in the current restart.
+	 * <p>
+	 * @since 0.08
+	 */
+	public double scoreAutocorrelation()
+	{
+		return _scoreAutocorrelation;
+	}
+	
 	/**
 	 * If annealing is enabled for the graph, this is the new temperature value.
 	 * <p>
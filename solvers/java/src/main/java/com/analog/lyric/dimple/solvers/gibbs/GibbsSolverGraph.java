@@ -59,6 +59,7 @@ import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
 import com.analog.lyric.dimple.solvers.interfaces.SolverNodeMapping;
 import com.analog.lyric.util.misc.Matlab;
+import com.google.common.primitives.Doubles;
 
 import cern.colt.list.DoubleArrayList;
 
@@ -78,6 +79,13 @@ public class GibbsSolverGraph
 	
 	private static final double LOG2 = Math.log(2);
 	
+	/**
+	 * Number of samples' worth of updates in each round of adaptive burn-in.
+	 * @since 0.08
+	 * @see GibbsOptions#maxBurnInScans
+	 */
+	public static final int BURN_IN_ROUND_SAMPLES = 32;
+	
 	/**
 	 * Bits in {@link #_flags} reserved by this class and its superclasses.
 	 * @see GibbsSolverGraphEvent
@@ -105,6 +113,45 @@ public class GibbsSolverGraph
 	private boolean _firstSample = true;
 	private @Nullable DoubleArrayList _scoreArray;
 	
+	/**
+	 * Replicas for parallel tempering, if enabled by {@link GibbsOptions#numReplicas}. Only used in the root graph.
+	 */
+	private @Nullable GibbsReplicaExchange _replicaExchange = null;
+	
+	/**
+	 * Additional chains, if enabled by {@link GibbsOptions#numChains}. Only used in the root graph.
+	 */
+	private @Nullable GibbsMultiChain _multiChain = null;
+	
+	private final GibbsConvergenceDiagnostics _diagnostics = new GibbsConvergenceDiagnostics();
+	private int _maxBurnInUpdates = 0;
+	private double _targetEffectiveSampleSize = 0.0;
+	private double _rHatThreshold = GibbsOptions.rHatThreshold.defaultDoubleValue();
+	
+	/**
+	 * Incrementally maintained score of current sample. Only used in the root graph.
+	 */
+	private double _sampleScore = 0.0;
+	
+	/**
+	 * True if {@link #_sampleScore} reflects the current sample values.
+	 */
+	private boolean _sampleScoreValid = false;
+	
+	/**
+	 * True while a variable is being updated by a method that will report the resulting change in score
+	 * through {@link #endScoredUpdate(double)}.
+	 */
+	private boolean _inScoredUpdate = false;
+	
+	/**
+	 * If non-null, variables whose sample values change are appended to this list. Only used in the root graph.
+	 */
+	private @Nullable ArrayList<ISolverVariableGibbs> _recordedSampleChanges = null;
+	
+	private int _samplesSinceScoreComputed = 0;
+	private int _sampleScoreRecomputeInterval = GibbsOptions.sampleScoreRecomputeInterval.defaultIntValue();
+	
 	/**
 	 * Priority queue of deterministic factors whose outputs should be
 	 * reevaluated. Lazily created.
@@ -287,9 +334,17 @@ public class GibbsSolverGraph
 		_scansPerSample = getOptionOrDefault(GibbsOptions.scansPerSample);
 		_burnInScans = getOptionOrDefault(GibbsOptions.burnInScans);
 		final boolean saveAllScores = getOptionOrDefault(GibbsOptions.saveAllScores);
+		_sampleScoreRecomputeInterval = getOptionOrDefault(GibbsOptions.sampleScoreRecomputeInterval);
+		_sampleScoreValid = false;
+		_inScoredUpdate = false;
+		_recordedSampleChanges = null;
 		_temper = getOptionOrDefault(GibbsOptions.enableAnnealing);
 		_initialTemperature = getOptionOrDefault(GibbsOptions.initialTemperature);
 		_temperingDecayConstant = 1 - LOG2/getOptionOrDefault(GibbsOptions.annealingHalfLife);
+		final int maxBurnInScans = getOptionOrDefault(GibbsOptions.maxBurnInScans);
+		_targetEffectiveSampleSize = getOptionOrDefault(GibbsOptions.targetEffectiveSampleSize);
+		_rHatThreshold = getOptionOrDefault(GibbsOptions.rHatThreshold);
+		_diagnostics.reset();
 		
 		Long seed = getOption(DimpleOptions.randomSeed);
 		if (seed != null)
@@ -350,6 +405,7 @@ public class GibbsSolverGraph
 		
 		setUpdatesPerSampleFromScans();
 		setBurnInUpdatesFromScans();
+		_maxBurnInUpdates = maxBurnInScans * ((IGibbsSchedule)schedule).size();
 		
 		if (_temper) setTemperature(_initialTemperature);
 		
@@ -368,6 +424,31 @@ public class GibbsSolverGraph
 		}
 		_scoreArray = scoreArray;
 		
+		_replicaExchange = null;
+		_multiChain = null;
+		final int numReplicas = getOptionOrDefault(GibbsOptions.numReplicas);
+		final int numChains = getOptionOrDefault(GibbsOptions.numChains);
+		if (numChains > 1 && isRootSolverGraph())
+		{
+			if (_temper || numReplicas > 1)
+			{
+				throw new DimpleException("Cannot use multiple chains with annealing or parallel tempering in Gibbs solver");
+			}
+			_multiChain = new GibbsMultiChain(this, numChains);
+		}
+		else if (numReplicas > 1 && isRootSolverGraph())
+		{
+			if (_temper)
+			{
+				throw new DimpleException("Cannot use both annealing and parallel tempering replicas in Gibbs solver");
+			}
+			if (!fg.getFactorGraphStreams().isEmpty())
+			{
+				throw new DimpleException("Parallel tempering replicas are not supported for rolled up graphs");
+			}
+			_replicaExchange =
+				new GibbsReplicaExchange(this, numReplicas, getOptionOrDefault(GibbsOptions.maxReplicaTemperature));
+		}
 	}
 		
 	/**
@@ -398,8 +479,29 @@ public class GibbsSolverGraph
 		{
 			burnIn(restartCount);
 			for (int iter = 0; iter < _numSamples; iter++)
+			{
 				oneSample();
+				if (reachedTargetEffectiveSampleSize())
+					break;
+			}
+		}
+	}
+	
+	/**
+	 * True if {@link GibbsOptions#targetEffectiveSampleSize} is enabled and has been reached for
+	 * the current restart with split R-hat, and R-hat across chains if using multiple chains,
+	 * within {@link GibbsOptions#rHatThreshold}.
+	 */
+	private boolean reachedTargetEffectiveSampleSize()
+	{
+		final double target = _targetEffectiveSampleSize;
+		if (target <= 0 || !(_diagnostics.getCurrentEffectiveSampleSize() >= target / (_numRandomRestarts + 1)))
+		{
+			return false;
 		}
+		final GibbsMultiChain multiChain = _multiChain;
+		return _diagnostics.getSplitRHat() <= _rHatThreshold &&
+			(multiChain == null || multiChain.getMaxRHat() <= _rHatThreshold);
 	}
 	
 	/**
@@ -421,7 +523,8 @@ public class GibbsSolverGraph
 	 * variable updates.
 	 * <p>
 	 * Burn-in is required for most graphs to ensure that the samples will be closer to the
-	 * real distribution.
+	 * real distribution. If {@link GibbsOptions#maxBurnInScans} is larger than the configured burn-in,
+	 * burn-in will continue in rounds until the samples appear to have converged.
 	 * <p>
 	 * @param restartCount is a non-negative number indicating which random restart is
 	 * executing. This will be zero for the initial burn-in phase.
@@ -429,11 +532,32 @@ public class GibbsSolverGraph
 	public final void burnIn(int restartCount)
 	{
 		randomRestart(restartCount);
-		iterate(_burnInUpdates);
+		iterateAllChains(_burnInUpdates);
+		int burnInUpdates = _burnInUpdates;
+		
+		// Adaptive burn-in
+		final int maxBurnInUpdates = _maxBurnInUpdates;
+		if (burnInUpdates < maxBurnInUpdates)
+		{
+			final int updatesPerRound = Math.max(1, _updatesPerSample);
+			final GibbsConvergenceDiagnostics roundDiagnostics = new GibbsConvergenceDiagnostics();
+			do
+			{
+				roundDiagnostics.reset();
+				for (int i = 0; i < BURN_IN_ROUND_SAMPLES && burnInUpdates < maxBurnInUpdates; ++i)
+				{
+					iterateAllChains(updatesPerRound);
+					burnInUpdates += updatesPerRound;
+					roundDiagnostics.add(currentSampleScore());
+				}
+			} while (burnInUpdates < maxBurnInUpdates && !(roundDiagnostics.getSplitRHat() <= _rHatThreshold));
+		}
+		
+		_diagnostics.startSequence();
 		
 		if (GibbsSolverGraphEvent.raiseBurnInEvent(this))
 		{
-			raiseEvent(new GibbsBurnInEvent(this, restartCount, _temper ? _temperature : Double.NaN));
+			raiseEvent(new GibbsBurnInEvent(this, restartCount, _temper ? _temperature : Double.NaN, burnInUpdates));
 		}
 	}
 	
@@ -501,16 +625,21 @@ public class GibbsSolverGraph
 	@SuppressWarnings("null")
 	protected void oneSample()
 	{
-		iterate(_updatesPerSample);
+		iterateAllChains(_updatesPerSample);
 		for (Variable v : _model.getVariables())
 		{
 			ISolverVariableGibbs vs = getSolverVariable(v);
 			vs.updateBelief();
 			vs.saveCurrentSample();		// Note that the first sample saved is one full sample after burn in, not immediately after burn in (in case the burn in is zero)
 		}
+		final GibbsMultiChain multiChain = _multiChain;
+		if (multiChain != null)
+		{
+			multiChain.updateBeliefs();		// Other chains only contribute to beliefs
+		}
 		
 		// Save the best sample value seen so far
-		final double totalPotential = getSampleScore();
+		final double totalPotential = currentSampleScore();
 		final boolean wasMininum = totalPotential < _minPotential || _firstSample;
 		if (wasMininum)
 		{
@@ -520,6 +649,8 @@ public class GibbsSolverGraph
 			_firstSample = false;
 		}
 		
+		_diagnostics.add(totalPotential);
+		
 		// If requested save score value for each sample
 		final DoubleArrayList scoreArray = _scoreArray;
 		if (scoreArray != null)
@@ -538,7 +669,8 @@ public class GibbsSolverGraph
 
 		if (GibbsSolverGraphEvent.raiseSampleStatsEvent(this))
 		{
-			raiseEvent(new GibbsSampleStatisticsEvent(this, totalPotential, wasMininum, oldTemperature, newTemperature));
+			raiseEvent(new GibbsSampleStatisticsEvent(this, totalPotential, wasMininum, oldTemperature, newTemperature,
+				_diagnostics));
 		}
 	}
 	
@@ -568,6 +700,13 @@ public class GibbsSolverGraph
 		for (Variable v : _model.getVariables())
 			getSolverVariable(v).randomRestart(restartCount);
 		
+		final GibbsReplicaExchange replicaExchange = _replicaExchange;
+		if (replicaExchange != null)
+			replicaExchange.randomRestart(restartCount);
+		final GibbsMultiChain multiChain = _multiChain;
+		if (multiChain != null)
+			multiChain.randomRestart(restartCount);
+		
 		final ArrayList<IBlockInitializer> blockInitializers = _blockInitializers;
 		if (blockInitializers != null)
 			for (IBlockInitializer b : blockInitializers)	// Also invoke any block initializers
@@ -575,9 +714,97 @@ public class GibbsSolverGraph
 
 		processDeferredDeterministicUpdates();
 		
+		invalidateSampleScore();
+		
 		if (_temper) setTemperature(_initialTemperature);	// Reset the temperature, if tempering
 	}
 	
+	/**
+	 * Performs specified number of single variable updates, on all chains if {@link GibbsOptions#numChains}
+	 * is more than one, or on all replicas if parallel tempering is enabled, proposing replica swaps after
+	 * each sample's worth of updates.
+	 */
+	private void iterateAllChains(int numUpdates)
+	{
+		final GibbsMultiChain multiChain = _multiChain;
+		final GibbsReplicaExchange replicaExchange = _replicaExchange;
+		if (multiChain != null)
+		{
+			multiChain.iterate(numUpdates);
+		}
+		else if (replicaExchange != null)
+		{
+			replicaExchange.iterate(numUpdates, _updatesPerSample);
+		}
+		else
+		{
+			iterate(numUpdates);
+		}
+	}
+	
+	/**
+	 * Convergence diagnostics computed from the sample scores generated since the last initialization.
+	 * <p>
+	 * A new sequence is started after each burn-in. The returned object is updated as samples are
+	 * generated.
+	 * <p>
+	 * @since 0.08
+	 * @see GibbsOptions#maxBurnInScans
+	 * @see GibbsOptions#targetEffectiveSampleSize
+	 */
+	public GibbsConvergenceDiagnostics getConvergenceDiagnostics()
+	{
+		return _diagnostics;
+	}
+	
+	/**
+	 * Maximum potential scale reduction factor (R-hat) across multiple chains.
+	 * <p>
+	 * When {@link GibbsOptions#numChains} is greater than one, this computes R-hat for the indicator
+	 * of each value of each variable from the samples generated by all of the chains since the
+	 * last initialization, and returns the largest. Values close to one indicate that the chains
+	 * agree. Returns NaN if multiple chains are not enabled or fewer than two samples have been
+	 * generated.
+	 * <p>
+	 * @since 0.08
+	 */
+	public double getMaxChainRHat()
+	{
+		final GibbsMultiChain multiChain = _multiChain;
+		return multiChain != null ? multiChain.getMaxRHat() : Double.NaN;
+	}
+	
+	/**
+	 * Temperatures of replicas used for parallel tempering.
+	 * <p>
+	 * Returns temperatures in increasing order starting with one, which is the temperature of this
+	 * graph, or an empty array if parallel tempering was not enabled by {@link GibbsOptions#numReplicas}
+	 * as of the last initialization.
+	 * <p>
+	 * @since 0.08
+	 */
+	public double[] getReplicaTemperatures()
+	{
+		final GibbsReplicaExchange replicaExchange = _replicaExchange;
+		return replicaExchange != null ? replicaExchange.getTemperatures() : ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	}
+	
+	/**
+	 * Acceptance rates of proposed swaps between replicas used for parallel tempering.
+	 * <p>
+	 * The {@code k}th entry is the fraction of swaps accepted since initialization between the replicas
+	 * with the {@code k}th and {@code k+1}th {@linkplain #getReplicaTemperatures() temperatures}. Rates
+	 * that are very low indicate that the temperatures are too far apart. Returns an empty array if
+	 * parallel tempering is not enabled.
+	 * <p>
+	 * @since 0.08
+	 */
+	public double[] getReplicaSwapAcceptanceRates()
+	{
+		final GibbsReplicaExchange replicaExchange = _replicaExchange;
+		return replicaExchange != null ? replicaExchange.getSwapAcceptanceRates() : ArrayUtil.EMPTY_DOUBLE_ARRAY;
+	}
+	
 	/**
 	 * @deprecated use {@link #getSampleScore()} instead.
 	 */
@@ -589,6 +816,127 @@ public class GibbsSolverGraph
 		return getSampleScore();
 	}
 	
+	/*-------------------------------
+	 * Incremental sample score
+	 */
+	
+	/**
+	 * Indicates that the caller is about to update a sample value and will report the resulting
+	 * change in the sample score through {@link #endScoredUpdate(double)}.
+	 * <p>
+	 * Changes to sample values of any variable, including deterministic dependents, between this call
+	 * and {@link #endScoredUpdate} will not invalidate the incrementally maintained score.
+	 * <p>
+	 * @since 0.08
+	 */
+	void beginScoredUpdate()
+	{
+		rootGibbsGraph()._inScoredUpdate = true;
+	}
+	
+	/**
+	 * Completes update started by {@link #beginScoredUpdate()}.
+	 * <p>
+	 * @param scoreDelta is the change in the total, untempered sample score resulting from the update.
+	 * @since 0.08
+	 */
+	void endScoredUpdate(double scoreDelta)
+	{
+		final GibbsSolverGraph root = rootGibbsGraph();
+		root._inScoredUpdate = false;
+		if (root._sampleScoreValid)
+		{
+			final double score = root._sampleScore += scoreDelta;
+			root._sampleScoreValid = Doubles.isFinite(score);
+		}
+	}
+	
+	/**
+	 * Invalidates incrementally maintained sample score.
+	 * <p>
+	 * Invoked when sample values or variable inputs have changed in a way that does not report
+	 * the change in score. The score will be fully recomputed for the next sample.
+	 * <p>
+	 * @since 0.08
+	 */
+	void invalidateSampleScore()
+	{
+		rootGibbsGraph()._sampleScoreValid = false;
+	}
+	
+	/**
+	 * Invoked when sample value of a variable has changed.
+	 * <p>
+	 * Invalidates incrementally maintained sample score unless change is part of a scored update,
+	 * and adds the variable to the list of {@linkplain #beginRecordingSampleChanges() recorded changes},
+	 * if any.
+	 * <p>
+	 * @since 0.08
+	 */
+	void sampleValueChanged(ISolverVariableGibbs svar)
+	{
+		final GibbsSolverGraph root = rootGibbsGraph();
+		if (!root._inScoredUpdate)
+		{
+			root._sampleScoreValid = false;
+		}
+		final ArrayList<ISolverVariableGibbs> changes = root._recordedSampleChanges;
+		if (changes != null)
+		{
+			changes.add(svar);
+		}
+	}
+	
+	/**
+	 * Starts recording variables whose sample values change.
+	 * <p>
+	 * Until {@link #endRecordingSampleChanges()} is invoked, every variable whose sample value
+	 * is changed, including deterministic dependents, will be appended to the returned list.
+	 * The caller may clear the list as needed. Recording may not be nested.
+	 * <p>
+	 * @since 0.08
+	 */
+	ArrayList<ISolverVariableGibbs> beginRecordingSampleChanges()
+	{
+		final ArrayList<ISolverVariableGibbs> changes = new ArrayList<>();
+		rootGibbsGraph()._recordedSampleChanges = changes;
+		return changes;
+	}
+	
+	/**
+	 * Stops recording started by {@link #beginRecordingSampleChanges()}.
+	 * @since 0.08
+	 */
+	void endRecordingSampleChanges()
+	{
+		rootGibbsGraph()._recordedSampleChanges = null;
+	}
+	
+	/**
+	 * Score of current sample, using incrementally maintained score if it is valid and
+	 * has not reached its recomputation interval.
+	 */
+	private double currentSampleScore()
+	{
+		if (isRootSolverGraph() && _sampleScoreValid && ++_samplesSinceScoreComputed < _sampleScoreRecomputeInterval)
+		{
+			return _sampleScore;
+		}
+		
+		return getSampleScore();
+	}
+	
+	private boolean isRootSolverGraph()
+	{
+		return getRootSolverGraph() == this;
+	}
+	
+	private GibbsSolverGraph rootGibbsGraph()
+	{
+		final ISolverFactorGraph root = getRootSolverGraph();
+		return root instanceof GibbsSolverGraph ? (GibbsSolverGraph)root : this;
+	}
+	
 	/**
 	 * Returns data layer view of sample values for graph tree.
 	 * @since 0.08
@@ -603,6 +951,10 @@ public class GibbsSolverGraph
 	 * <p>
 	 * Includes input priors over variables.
 	 * <p>
+	 * This always computes the score from scratch. When generating samples, the solver instead
+	 * maintains the score incrementally, recomputing it at the interval specified by
+	 * {@link GibbsOptions#sampleScoreRecomputeInterval}.
+	 * <p>
 	 * @since 0.08
 	 * @see #getBestSampleScore()
 	 */
@@ -613,6 +965,14 @@ public class GibbsSolverGraph
 			totalPotential += requireNonNull(getSolverFactor(f)).getPotential();
 		for (Variable v : _model.getVariables())		// Variables contribute too because they have inputs, which are factors
 			totalPotential += requireNonNull(getSolverVariable(v)).getPotential();
+		
+		if (isRootSolverGraph())
+		{
+			_sampleScore = totalPotential;
+			_sampleScoreValid = Doubles.isFinite(totalPotential);
+			_samplesSinceScoreComputed = 0;
+		}
+		
 		return totalPotential;
 	}
 	
@@ -0,0 +1,692 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs.samplers.block;
+
+import static com.analog.lyric.dimple.environment.DimpleEnvironment.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.collect.ArrayUtil;
+import com.analog.lyric.dimple.model.core.EdgeState;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.model.variables.VariableBlock;
+import com.analog.lyric.dimple.schedulers.IGibbsScheduler;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscreteEdge;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsVariableBlock;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverFactorGibbs;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverVariableGibbs;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariableBlock;
+import com.analog.lyric.math.DimpleRandom;
+import com.google.common.collect.Sets;
+
+/**
+ * Exact block sampler for tree-structured blocks of discrete variables.
+ * <p>
+ * Draws the variables of the block jointly from their distribution conditioned on the current sample
+ * values of all other variables, using forward filtering and backward sampling: energies are summed
+ * from the leaves of the block to its roots, a value is drawn for each root, and then values are
+ * drawn for each variable given the value of its parent.
+ * <p>
+ * Each factor may connect at most two variables of the block, and the factors that do so must
+ * link the variables of the block into a tree or forest. Factors may have any number of other
+ * variables, whose current sample values are held fixed. Neither the variables in the block nor
+ * their neighbors may be inputs to directed deterministic factors. If these conditions do not hold,
+ * {@link #update} will return false, and the variables will be updated individually instead.
+ * <p>
+ * The cost of an update is proportional to the sum of {@code d<sub>i</sub> * d<sub>j</sub>} over linked
+ * variables with domain sizes {@code d<sub>i</sub>} and {@code d<sub>j</sub>}. Factor energies are
+ * obtained through {@link ISolverFactorGibbs#updateEdgeMessage}, which uses the factor table slices
+ * for table factors.
+ * <p>
+ * Blocks suitable for use with this sampler can be found using {@link #findTreeBlocks}.
+ * <p>
+ * @since 0.08
+ */
+public class BlockFFBSSampler implements IBlockSampler
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Block structure computed by {@link #structureFor}, or null if not yet computed.
+	 */
+	private @Nullable Structure _structure;
+
+	/**
+	 * Scratch array for sampling.
+	 */
+	private double[] _scratch = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+
+	/**
+	 * Tree structure of a block.
+	 */
+	private static final class Structure
+	{
+		private final GibbsVariableBlock _block;
+		private final long _structureVersion;
+
+		/**
+		 * True if block can be sampled by this sampler.
+		 */
+		private final boolean _valid;
+
+		private final GibbsDiscrete[] _vars;
+		private final int[] _domainSizes;
+
+		/**
+		 * Variable indexes in breadth-first order starting from the root of each tree.
+		 */
+		private final int[] _order;
+
+		/**
+		 * Index of parent of each variable, or -1 for roots.
+		 */
+		private final int[] _parents;
+
+		/**
+		 * Sibling numbers of factors of each variable that connect to no other variable in the block.
+		 */
+		private final int[][] _unaryPorts;
+
+		/**
+		 * Sibling numbers of factors of each variable that connect to its parent.
+		 */
+		private final int[][] _parentPorts;
+
+		/**
+		 * Energies of each variable given the values of all variables outside its subtree.
+		 */
+		private final double[][] _energies;
+
+		/**
+		 * Energies of factors connecting each variable to its parent, indexed by
+		 * {@code parentIndex * domainSize + index}.
+		 */
+		private final double[][] _parentEnergies;
+
+		private Structure(GibbsVariableBlock block, long structureVersion)
+		{
+			_block = block;
+			_structureVersion = structureVersion;
+
+			final List<ISolverVariableGibbs> svars = block.getSolverVariables();
+			final int n = svars.size();
+
+			_vars = new GibbsDiscrete[n];
+			_domainSizes = new int[n];
+			_order = new int[n];
+			_parents = new int[n];
+			_unaryPorts = new int[n][];
+			_parentPorts = new int[n][];
+			_energies = new double[n][];
+			_parentEnergies = new double[n][];
+
+			_valid = build(svars);
+		}
+
+		private boolean build(List<ISolverVariableGibbs> svars)
+		{
+			final int n = svars.size();
+			final Map<Variable,Integer> indexes = new IdentityHashMap<>(n * 2);
+			for (int i = 0; i < n; ++i)
+			{
+				final ISolverVariableGibbs svar = svars.get(i);
+				if (!(svar instanceof GibbsDiscrete))
+				{
+					return false;
+				}
+				final GibbsDiscrete var = (GibbsDiscrete)svar;
+				final Discrete model = var.getModelObject();
+				if (model.isDeterministicInput() || model.isDeterministicOutput() || indexes.containsKey(model))
+				{
+					return false;
+				}
+				_vars[i] = var;
+				_domainSizes[i] = model.getDomain().size();
+				_energies[i] = new double[_domainSizes[i]];
+				indexes.put(model, i);
+			}
+
+			// For each variable, map from linked variable to the ports of the factors that link them.
+			final List<Map<Integer,List<Integer>>> links = new ArrayList<>(n);
+			for (int i = 0; i < n; ++i)
+			{
+				final Discrete model = _vars[i].getModelObject();
+				final Map<Integer,List<Integer>> varLinks = new HashMap<>();
+				final List<Integer> unaryPorts = new ArrayList<>();
+				for (int port = 0, nPorts = model.getSiblingCount(); port < nPorts; ++port)
+				{
+					final Factor factor = model.getSibling(port);
+					int linked = -1;
+					for (int j = 0, nArgs = factor.getSiblingCount(); j < nArgs; ++j)
+					{
+						final Integer index = indexes.get(factor.getSibling(j));
+						if (index != null && index != i)
+						{
+							if (linked >= 0 && linked != index)
+							{
+								// Factor connects more than two variables in block
+								return false;
+							}
+							linked = index;
+						}
+					}
+					if (linked < 0)
+					{
+						unaryPorts.add(port);
+					}
+					else
+					{
+						List<Integer> ports = varLinks.get(linked);
+						if (ports == null)
+						{
+							varLinks.put(linked, ports = new ArrayList<>());
+						}
+						ports.add(port);
+					}
+				}
+				_unaryPorts[i] = toIntArray(unaryPorts);
+				links.add(varLinks);
+			}
+
+			// Breadth-first traversal of each tree
+			Arrays.fill(_parents, -2);
+			int nOrdered = 0;
+			for (int root = 0; root < n; ++root)
+			{
+				if (_parents[root] != -2)
+				{
+					continue;
+				}
+				_parents[root] = -1;
+				_parentPorts[root] = ArrayUtil.EMPTY_INT_ARRAY;
+				_order[nOrdered++] = root;
+				for (int k = nOrdered - 1; k < nOrdered; ++k)
+				{
+					final int i = _order[k];
+					for (int j : links.get(i).keySet())
+					{
+						if (j == _parents[i])
+						{
+							continue;
+						}
+						if (_parents[j] != -2)
+						{
+							// Cycle
+							return false;
+						}
+						_parents[j] = i;
+						_parentPorts[j] = toIntArray(links.get(j).get(i));
+						_parentEnergies[j] = new double[_domainSizes[i] * _domainSizes[j]];
+						_order[nOrdered++] = j;
+					}
+				}
+			}
+
+			return true;
+		}
+	}
+
+	/*--------------
+	 * Construction
+	 */
+
+	public BlockFFBSSampler()
+	{
+	}
+
+	/*------------------------
+	 * IBlockUpdater methods
+	 */
+
+	@Override
+	public BlockFFBSSampler copy(Map<Object,Object> old2newobjs)
+	{
+		return new BlockFFBSSampler();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only for use in Gibbs solver graphs. Will return false if {@code sblock} is not a {@link GibbsVariableBlock}
+	 * or does not meet the requirements described in the {@linkplain BlockFFBSSampler class documentation}.
+	 */
+	@Override
+	public boolean update(ISolverVariableBlock sblock)
+	{
+		if (!(sblock instanceof GibbsVariableBlock))
+		{
+			return false;
+		}
+
+		final GibbsVariableBlock block = (GibbsVariableBlock)sblock;
+		final Structure structure = structureFor(block);
+		if (!structure._valid)
+		{
+			return false;
+		}
+
+		final GibbsDiscrete[] vars = structure._vars;
+		final int[] domainSizes = structure._domainSizes;
+		final int[] order = structure._order;
+		final int[] parents = structure._parents;
+		final double[][] energies = structure._energies;
+		final double[][] parentEnergies = structure._parentEnergies;
+		final int n = vars.length;
+		final double beta = n > 0 ? vars[0].getBeta() : 1.0;
+
+		final Value[] values = block.updateStart();
+
+		// Compute energies of each variable and of each link given the values outside of the block
+		for (int i = 0; i < n; ++i)
+		{
+			final GibbsDiscrete var = vars[i];
+			final double[] energy = energies[i];
+			final int size = domainSizes[i];
+
+			// Input and condition energies. Variables whose value is fixed or held will
+			// not change value when set.
+			for (int index = 0; index < size; ++index)
+			{
+				var.setCurrentSampleIndex(index);
+				energy[index] = var.getCurrentSampleIndex() == index ? var.getPotential() : Double.POSITIVE_INFINITY;
+			}
+			var.setCurrentSample(values[i]);
+
+			for (int port : structure._unaryPorts[i])
+			{
+				addFactorEnergies(var, port, energy, 0);
+			}
+
+			final int parent = parents[i];
+			if (parent >= 0)
+			{
+				final GibbsDiscrete parentVar = vars[parent];
+				final double[] linkEnergy = parentEnergies[i];
+				Arrays.fill(linkEnergy, 0.0);
+				for (int parentIndex = 0, parentSize = domainSizes[parent]; parentIndex < parentSize; ++parentIndex)
+				{
+					parentVar.setCurrentSampleIndex(parentIndex);
+					if (parentVar.getCurrentSampleIndex() != parentIndex)
+					{
+						// Parent value is held; its energy for this index is already infinite
+						continue;
+					}
+					for (int port : structure._parentPorts[i])
+					{
+						addFactorEnergies(var, port, linkEnergy, parentIndex * size);
+					}
+				}
+				parentVar.setCurrentSample(values[parent]);
+			}
+		}
+
+		if (beta != 1.0)
+		{
+			for (int i = 0; i < n; ++i)
+			{
+				scale(energies[i], beta);
+				if (parents[i] >= 0)
+				{
+					scale(parentEnergies[i], beta);
+				}
+			}
+		}
+
+		// Forward filtering: sum out each variable from the leaves towards the roots
+		for (int k = n; --k>=0;)
+		{
+			final int i = order[k];
+			final int parent = parents[i];
+			if (parent >= 0)
+			{
+				final double[] energy = energies[i];
+				final double[] linkEnergy = parentEnergies[i];
+				final double[] parentEnergy = energies[parent];
+				final int size = domainSizes[i];
+				for (int parentIndex = 0, parentSize = domainSizes[parent]; parentIndex < parentSize; ++parentIndex)
+				{
+					parentEnergy[parentIndex] += sumEnergies(energy, linkEnergy, parentIndex * size, size);
+				}
+			}
+		}
+
+		// Backward sampling: draw each root, then each variable given its parent
+		final DimpleRandom rand = activeRandom();
+		for (int k = 0; k < n; ++k)
+		{
+			final int i = order[k];
+			final int parent = parents[i];
+			final int size = domainSizes[i];
+			final double[] conditional = scratch(size);
+			System.arraycopy(energies[i], 0, conditional, 0, size);
+			if (parent >= 0)
+			{
+				final double[] linkEnergy = parentEnergies[i];
+				final int offset = values[parent].getIndex() * size;
+				for (int index = 0; index < size; ++index)
+				{
+					conditional[index] += linkEnergy[offset + index];
+				}
+			}
+			final int index = sample(rand, conditional, size);
+			if (index < 0)
+			{
+				// No value with finite energy
+				block.updateReject();
+				return true;
+			}
+			values[i].setIndex(index);
+		}
+
+		block.updateFinish(values);
+
+		return true;
+	}
+
+	/*------------------------
+	 * BlockFFBSSampler methods
+	 */
+
+	/**
+	 * Partitions discrete variables of graph into tree-structured blocks.
+	 * <p>
+	 * Grows blocks breadth-first from each variable not yet in a block, adding a neighboring variable
+	 * only if it is linked by factors to exactly one variable already in the block and if none of its
+	 * factors connects to more than one variable already in the block. Variables that have a fixed value or
+	 * that are connected to a directed deterministic factor are not included. The resulting blocks can be
+	 * sampled by this sampler. Blocks with only a single variable are not returned.
+	 * <p>
+	 * @param graph is the graph whose variables, including those in subgraphs, will be considered. The
+	 * blocks will be added to this graph.
+	 * @param maxBlockSize is the maximum number of variables in each block. Must be at least 2.
+	 * @since 0.08
+	 * @throws IllegalArgumentException if {@code maxBlockSize} is less than 2.
+	 */
+	public static List<VariableBlock> findTreeBlocks(FactorGraph graph, int maxBlockSize)
+	{
+		if (maxBlockSize < 2)
+		{
+			throw new IllegalArgumentException(String.format("maxBlockSize must be at least 2: %d", maxBlockSize));
+		}
+
+		final List<VariableBlock> blocks = new ArrayList<>();
+		final Set<Variable> assigned = Sets.newIdentityHashSet();
+		final Set<Variable> inBlock = Sets.newIdentityHashSet();
+		final ArrayDeque<Variable> queue = new ArrayDeque<>();
+		final List<Variable> blockVars = new ArrayList<>();
+
+		for (Variable seed : graph.getVariables())
+		{
+			if (assigned.contains(seed) || !isTreeBlockCandidate(seed))
+			{
+				continue;
+			}
+
+			inBlock.clear();
+			blockVars.clear();
+			inBlock.add(seed);
+			blockVars.add(seed);
+			queue.add(seed);
+
+			grow:
+			while (!queue.isEmpty())
+			{
+				final Variable var = queue.poll();
+				for (int port = 0, nPorts = var.getSiblingCount(); port < nPorts; ++port)
+				{
+					final Factor factor = var.getSibling(port);
+					for (int j = 0, nArgs = factor.getSiblingCount(); j < nArgs; ++j)
+					{
+						final Variable neighbor = factor.getSibling(j);
+						if (!inBlock.contains(neighbor) && !assigned.contains(neighbor) &&
+							isTreeBlockCandidate(neighbor) && linksToSingleVariable(neighbor, inBlock))
+						{
+							inBlock.add(neighbor);
+							blockVars.add(neighbor);
+							queue.add(neighbor);
+							if (blockVars.size() >= maxBlockSize)
+							{
+								break grow;
+							}
+						}
+					}
+				}
+			}
+			queue.clear();
+
+			if (blockVars.size() > 1)
+			{
+				assigned.addAll(blockVars);
+				blocks.add(graph.addVariableBlock(blockVars));
+			}
+		}
+
+		return blocks;
+	}
+
+	/**
+	 * Finds tree-structured blocks and adds them to Gibbs scheduler using this sampler.
+	 * <p>
+	 * Finds blocks using {@link #findTreeBlocks} and adds each to {@code scheduler} with a new instance of
+	 * this class using {@link IGibbsScheduler#addBlockWithReplacement}.
+	 * <p>
+	 * @return the blocks that were added.
+	 * @since 0.08
+	 */
+	public static List<VariableBlock> addTreeBlocks(IGibbsScheduler scheduler, FactorGraph graph, int maxBlockSize)
+	{
+		final List<VariableBlock> blocks = findTreeBlocks(graph, maxBlockSize);
+		for (VariableBlock block : blocks)
+		{
+			scheduler.addBlockWithReplacement(new BlockFFBSSampler(), block);
+		}
+		return blocks;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Adds energies of factor connected to {@code var} through {@code port} given the current sample values
+	 * of its other variables to {@code out} starting at {@code offset}.
+	 */
+	private static void addFactorEnergies(GibbsDiscrete var, int port, double[] out, int offset)
+	{
+		final EdgeState edge = var.getModelObject().getSiblingEdgeState(port);
+		final GibbsDiscreteEdge sedge = (GibbsDiscreteEdge)var.getSiblingEdgeState(port);
+		final ISolverFactorGibbs sfactor = var.getSibling(port);
+		sfactor.updateEdgeMessage(edge, sedge);
+		final double[] energies = sedge.factorToVarMsg.representation();
+		for (int i = 0, n = energies.length; i < n; ++i)
+		{
+			out[offset + i] += energies[i];
+		}
+	}
+
+	private static boolean isTreeBlockCandidate(Variable var)
+	{
+		if (!(var instanceof Discrete) || var.hasFixedValue())
+		{
+			return false;
+		}
+		for (int port = 0, nPorts = var.getSiblingCount(); port < nPorts; ++port)
+		{
+			if (var.getSibling(port).getFactorFunction().isDeterministicDirected())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * True if {@code var} is linked to exactly one variable in {@code block} and none of its factors connects
+	 * to more than one of them.
+	 */
+	private static boolean linksToSingleVariable(Variable var, Set<Variable> block)
+	{
+		Variable linked = null;
+		for (int port = 0, nPorts = var.getSiblingCount(); port < nPorts; ++port)
+		{
+			final Factor factor = var.getSibling(port);
+			Variable factorLinked = null;
+			for (int j = 0, nArgs = factor.getSiblingCount(); j < nArgs; ++j)
+			{
+				final Variable other = factor.getSibling(j);
+				if (other != var && block.contains(other))
+				{
+					if (factorLinked != null && factorLinked != other)
+					{
+						return false;
+					}
+					factorLinked = other;
+				}
+			}
+			if (factorLinked != null)
+			{
+				if (linked != null && linked != factorLinked)
+				{
+					return false;
+				}
+				linked = factorLinked;
+			}
+		}
+		return linked != null;
+	}
+
+	/**
+	 * Draws index with probability proportional to {@code exp(-energies[index])}, overwriting
+	 * {@code energies}. Returns -1 if all of the energies are infinite.
+	 */
+	private static int sample(DimpleRandom rand, double[] energies, int size)
+	{
+		double minEnergy = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < size; ++i)
+		{
+			minEnergy = Math.min(minEnergy, energies[i]);
+		}
+		if (!(minEnergy < Double.POSITIVE_INFINITY))
+		{
+			return -1;
+		}
+
+		double sum = 0.0;
+		for (int i = 0; i < size; ++i)
+		{
+			energies[i] = sum += Math.exp(minEnergy - energies[i]);
+		}
+
+		final double target = rand.nextDouble() * sum;
+		for (int i = 0; i < size; ++i)
+		{
+			if (target < energies[i])
+			{
+				return i;
+			}
+		}
+
+		// Only reachable through rounding
+		for (int i = size; --i>=0;)
+		{
+			if (i == 0 || energies[i] > energies[i - 1])
+			{
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	private static void scale(double[] energies, double beta)
+	{
+		for (int i = energies.length; --i>=0;)
+		{
+			energies[i] *= beta;
+		}
+	}
+
+	private double[] scratch(int size)
+	{
+		double[] scratch = _scratch;
+		if (scratch.length < size)
+		{
+			_scratch = scratch = new double[size];
+		}
+		return scratch;
+	}
+
+	private Structure structureFor(GibbsVariableBlock block)
+	{
+		final long version = block.getModelObject().getParentGraph().graphTreeStructureVersion();
+		Structure structure = _structure;
+		if (structure == null || structure._block != block || structure._structureVersion != version)
+		{
+			_structure = structure = new Structure(block, version);
+		}
+		return structure;
+	}
+
+	/**
+	 * Energy of {@code energy[i] + linkEnergy[offset + i]} summed out over {@code i}: the negative
+	 * log of the sum of {@code exp(-energy)}.
+	 */
+	private static double sumEnergies(double[] energy, double[] linkEnergy, int offset, int size)
+	{
+		double minEnergy = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < size; ++i)
+		{
+			minEnergy = Math.min(minEnergy, energy[i] + linkEnergy[offset + i]);
+		}
+		if (!(minEnergy < Double.POSITIVE_INFINITY))
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double sum = 0.0;
+		for (int i = 0; i < size; ++i)
+		{
+			sum += Math.exp(minEnergy - energy[i] - linkEnergy[offset + i]);
+		}
+		return minEnergy - Math.log(sum);
+	}
+
+	private static int[] toIntArray(List<Integer> list)
+	{
+		final int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; ++i)
+		{
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,650 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.gibbs.samplers.block;
+
+import static com.analog.lyric.dimple.environment.DimpleEnvironment.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.collect.ArrayUtil;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsVariableBlock;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverFactorGibbs;
+import com.analog.lyric.dimple.solvers.gibbs.ISolverVariableGibbs;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariableBlock;
+import com.analog.lyric.math.DimpleRandom;
+
+/**
+ * Swendsen-Wang cluster sampler for discrete variables with attractive pairwise factors.
+ * <p>
+ * A factor is treated as a bond if it connects exactly two variables of the block that have the same
+ * domain, and if its energy is the same for all pairs of unequal values and no greater than that
+ * for any pair of equal values. This includes Potts and Ising couplings. For each bond between variables
+ * that currently have the same value {@code a}, the bond is activated with probability
+ * {@code 1 - exp(-(E(a,b) - E(a,a)))}, where {@code E(a,b)} is the energy for unequal values. Variables
+ * connected by active bonds form clusters, which are found using union-find. Each cluster is then given a
+ * single new value drawn from its conditional distribution, which includes the inputs of its variables,
+ * the active bonds within it, and all other factors connected to it given the current values of variables
+ * outside of the cluster.
+ * <p>
+ * Since entire clusters change value at once, this mixes far faster than single-variable updates when
+ * the couplings are strong. One update of the block is a full sweep over its variables.
+ * <p>
+ * Variables in the block must be discrete and may not be connected to directed deterministic factors;
+ * otherwise {@link #update} will return false, and the variables will be updated individually instead.
+ * <p>
+ * This can be added to a Gibbs schedule for a block containing variables returned by
+ * {@link #findClusterVariables}, or by using {@link com.analog.lyric.dimple.schedulers.GibbsSwendsenWangScheduler}.
+ * <p>
+ * @since 0.08
+ */
+public class SwendsenWangSampler implements IBlockSampler
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Relative tolerance used when comparing energies of unequal values of bond factors.
+	 */
+	private static final double ENERGY_TOLERANCE = 1e-9;
+
+	private @Nullable Structure _structure;
+
+	// Union-find state, indexed by variable
+	private int[] _parents = ArrayUtil.EMPTY_INT_ARRAY;
+	private int[] _sizes = ArrayUtil.EMPTY_INT_ARRAY;
+
+	// Variables grouped by cluster
+	private int[] _clusterStarts = ArrayUtil.EMPTY_INT_ARRAY;
+	private int[] _clusterMembers = ArrayUtil.EMPTY_INT_ARRAY;
+	private int[] _clusterOf = ArrayUtil.EMPTY_INT_ARRAY;
+
+	private boolean[] _active = new boolean[0];
+	private int[] _factorMarks = ArrayUtil.EMPTY_INT_ARRAY;
+	private int _mark;
+	private double[] _energies = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+
+	/**
+	 * Bonds and other factors of a block.
+	 */
+	private static final class Structure
+	{
+		private final GibbsVariableBlock _block;
+		private final long _structureVersion;
+		private final boolean _valid;
+
+		private final GibbsDiscrete[] _vars;
+		private final int[] _domainSizes;
+
+		// Bond endpoints
+		private final int[] _bondFirst;
+		private final int[] _bondSecond;
+
+		/**
+		 * Energy gap {@code E(a,b) - E(a,a)} for each bond, indexed by {@code _bondOffsets[bond] + a}.
+		 */
+		private final double[] _bondGaps;
+		private final int[] _bondOffsets;
+
+		/**
+		 * Bonds whose first endpoint is the given variable.
+		 */
+		private final int[][] _varBonds;
+
+		/**
+		 * Factors other than bonds connected to each variable, as indexes into {@link #_factors}.
+		 */
+		private final int[][] _varFactors;
+		private final ISolverFactorGibbs[] _factors;
+
+		private Structure(GibbsVariableBlock block, long structureVersion)
+		{
+			_block = block;
+			_structureVersion = structureVersion;
+
+			final List<ISolverVariableGibbs> svars = block.getSolverVariables();
+			final int n = svars.size();
+			_vars = new GibbsDiscrete[n];
+			_domainSizes = new int[n];
+			_varBonds = new int[n][];
+			_varFactors = new int[n][];
+
+			final Map<Variable,Integer> indexes = new IdentityHashMap<>(n * 2);
+			boolean valid = true;
+			for (int i = 0; i < n && valid; ++i)
+			{
+				final ISolverVariableGibbs svar = svars.get(i);
+				if (svar instanceof GibbsDiscrete && !indexes.containsKey(svar.getModelObject()))
+				{
+					final GibbsDiscrete var = (GibbsDiscrete)svar;
+					final Discrete model = var.getModelObject();
+					valid = !model.isDeterministicInput() && !model.isDeterministicOutput();
+					_vars[i] = var;
+					_domainSizes[i] = model.getDomain().size();
+					indexes.put(model, i);
+				}
+				else
+				{
+					valid = false;
+				}
+			}
+			_valid = valid;
+
+			final List<Integer> bondFirst = new ArrayList<>();
+			final List<Integer> bondSecond = new ArrayList<>();
+			final List<double[]> bondGaps = new ArrayList<>();
+			final Map<Factor,Integer> factorIndexes = new IdentityHashMap<>();
+			final List<ISolverFactorGibbs> factors = new ArrayList<>();
+
+			if (valid)
+			{
+				for (int i = 0; i < n; ++i)
+				{
+					final GibbsDiscrete var = _vars[i];
+					final Discrete model = var.getModelObject();
+					final List<Integer> varBonds = new ArrayList<>();
+					final List<Integer> varFactors = new ArrayList<>();
+					for (int port = 0, nPorts = model.getSiblingCount(); port < nPorts; ++port)
+					{
+						final Factor factor = model.getSibling(port);
+						final double[] gaps = bondGaps(factor);
+						if (gaps != null)
+						{
+							final Integer j = indexes.get(factor.getSibling(factor.getSibling(0) == model ? 1 : 0));
+							if (j != null)
+							{
+								// Only record each bond once, from its lower numbered variable
+								if (i < j)
+								{
+									varBonds.add(bondFirst.size());
+									bondFirst.add(i);
+									bondSecond.add(j);
+									bondGaps.add(gaps);
+								}
+								continue;
+							}
+						}
+
+						Integer index = factorIndexes.get(factor);
+						if (index == null)
+						{
+							factorIndexes.put(factor, index = factors.size());
+							factors.add(var.getSibling(port));
+						}
+						varFactors.add(index);
+					}
+					_varBonds[i] = toIntArray(varBonds);
+					_varFactors[i] = toIntArray(varFactors);
+				}
+			}
+
+			final int nBonds = bondFirst.size();
+			_bondFirst = toIntArray(bondFirst);
+			_bondSecond = toIntArray(bondSecond);
+			_bondOffsets = new int[nBonds];
+			int size = 0;
+			for (int b = 0; b < nBonds; ++b)
+			{
+				_bondOffsets[b] = size;
+				size += bondGaps.get(b).length;
+			}
+			_bondGaps = new double[size];
+			for (int b = 0; b < nBonds; ++b)
+			{
+				final double[] gaps = bondGaps.get(b);
+				System.arraycopy(gaps, 0, _bondGaps, _bondOffsets[b], gaps.length);
+			}
+			_factors = factors.toArray(new ISolverFactorGibbs[factors.size()]);
+		}
+	}
+
+	/*--------------
+	 * Construction
+	 */
+
+	public SwendsenWangSampler()
+	{
+	}
+
+	/*------------------------
+	 * IBlockUpdater methods
+	 */
+
+	@Override
+	public SwendsenWangSampler copy(Map<Object,Object> old2newobjs)
+	{
+		return new SwendsenWangSampler();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only for use in Gibbs solver graphs. Will return false if {@code sblock} is not a {@link GibbsVariableBlock}
+	 * or does not meet the requirements described in the {@linkplain SwendsenWangSampler class documentation}.
+	 */
+	@Override
+	public boolean update(ISolverVariableBlock sblock)
+	{
+		if (!(sblock instanceof GibbsVariableBlock))
+		{
+			return false;
+		}
+
+		final GibbsVariableBlock block = (GibbsVariableBlock)sblock;
+		final Structure structure = structureFor(block);
+		if (!structure._valid)
+		{
+			return false;
+		}
+
+		final GibbsDiscrete[] vars = structure._vars;
+		final int n = vars.length;
+		final double beta = n > 0 ? vars[0].getBeta() : 1.0;
+		final DimpleRandom rand = activeRandom();
+
+		final Value[] values = block.updateStart();
+		allocate(n, structure._bondFirst.length, structure._factors.length);
+
+		// Activate bonds between equal values and join their clusters
+		final int[] parents = _parents;
+		final int[] sizes = _sizes;
+		for (int i = 0; i < n; ++i)
+		{
+			parents[i] = i;
+			sizes[i] = 1;
+		}
+		final int[] bondFirst = structure._bondFirst;
+		final int[] bondSecond = structure._bondSecond;
+		final double[] bondGaps = structure._bondGaps;
+		final int[] bondOffsets = structure._bondOffsets;
+		final boolean[] active = _active;
+		for (int b = 0, nBonds = bondFirst.length; b < nBonds; ++b)
+		{
+			final int i = bondFirst[b], j = bondSecond[b];
+			final int value = values[i].getIndex();
+			active[b] = false;
+			if (value == values[j].getIndex())
+			{
+				final double gap = beta * bondGaps[bondOffsets[b] + value];
+				if (rand.nextDouble() < -Math.expm1(-gap))
+				{
+					active[b] = true;
+					union(i, j);
+				}
+			}
+		}
+
+		// Group variables by cluster using counting sort on their roots
+		final int[] clusterOf = _clusterOf;
+		final int[] clusterStarts = _clusterStarts;
+		final int[] members = _clusterMembers;
+		int nClusters = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			if (find(i) == i)
+			{
+				clusterOf[i] = nClusters;
+				clusterStarts[++nClusters] = sizes[i];
+			}
+		}
+		clusterStarts[0] = 0;
+		for (int c = 1; c <= nClusters; ++c)
+		{
+			clusterStarts[c] += clusterStarts[c - 1];
+		}
+		for (int i = n; --i>=0;)
+		{
+			final int c = clusterOf[find(i)];
+			members[--clusterStarts[c + 1]] = i;
+		}
+		// After filling, each start has moved down to the start of the previous cluster
+		for (int c = 0; c < nClusters; ++c)
+		{
+			clusterStarts[c] = clusterStarts[c + 1];
+		}
+		clusterStarts[nClusters] = n;
+
+		// Draw new value for each cluster
+		final int[][] varBonds = structure._varBonds;
+		final int[][] varFactors = structure._varFactors;
+		final ISolverFactorGibbs[] factors = structure._factors;
+		final int[] factorMarks = _factorMarks;
+		for (int c = 0; c < nClusters; ++c)
+		{
+			final int start = clusterStarts[c], end = clusterStarts[c + 1];
+			final int first = members[start];
+			final int domainSize = structure._domainSizes[first];
+			final int oldValue = values[first].getIndex();
+			final double[] energies = energies(domainSize);
+
+			for (int value = 0; value < domainSize; ++value)
+			{
+				double energy = 0.0;
+				for (int k = start; k < end; ++k)
+				{
+					final GibbsDiscrete var = vars[members[k]];
+					var.setCurrentSampleIndex(value);
+					if (var.getCurrentSampleIndex() != value)
+					{
+						// Value is fixed or held
+						energy = Double.POSITIVE_INFINITY;
+					}
+				}
+				if (energy == 0.0)
+				{
+					// Marks factors already counted for this value
+					final int mark = ++_mark;
+					for (int k = start; k < end; ++k)
+					{
+						final int i = members[k];
+						energy += vars[i].getPotential();
+						for (int b : varBonds[i])
+						{
+							if (active[b])
+							{
+								energy -= Math.log(Math.expm1(beta * bondGaps[bondOffsets[b] + value])) / beta;
+							}
+						}
+						for (int f : varFactors[i])
+						{
+							if (factorMarks[f] != mark)
+							{
+								factorMarks[f] = mark;
+								energy += factors[f].getPotential();
+							}
+						}
+					}
+				}
+				energies[value] = beta * energy;
+			}
+
+			int newValue = sample(rand, energies, domainSize);
+			if (newValue < 0)
+			{
+				newValue = oldValue;
+			}
+			for (int k = start; k < end; ++k)
+			{
+				vars[members[k]].setCurrentSampleIndex(newValue);
+			}
+		}
+
+		for (int i = 0; i < n; ++i)
+		{
+			values[i].setFrom(vars[i].getCurrentSampleValue());
+		}
+		block.updateFinish(values);
+
+		return true;
+	}
+
+	/*-----------------------------
+	 * SwendsenWangSampler methods
+	 */
+
+	/**
+	 * Returns energy gap {@code E(a,b) - E(a,a)} for each value {@code a} if factor is suitable for use as a
+	 * bond, otherwise null.
+	 * <p>
+	 * The factor must have exactly two distinct discrete variables with the same domain, its energy must
+	 * be the same for all pairs of unequal values, and must be no less than the energy of any pair of equal
+	 * values.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static @Nullable double[] bondGaps(Factor factor)
+	{
+		if (factor.getSiblingCount() != 2 || factor.getFactorFunction().isDeterministicDirected())
+		{
+			return null;
+		}
+		final Variable var0 = factor.getSibling(0), var1 = factor.getSibling(1);
+		if (var0 == var1 || !(var0 instanceof Discrete) || !(var1 instanceof Discrete))
+		{
+			return null;
+		}
+		final DiscreteDomain domain = ((Discrete)var0).getDomain();
+		if (!domain.equals(var1.getDomain()))
+		{
+			return null;
+		}
+
+		final IFactorTable table = factor.getFactorTable();
+		final int size = domain.size();
+		if (size < 2)
+		{
+			return null;
+		}
+		final double unequal = table.getEnergyForIndices(0, 1);
+		if (Double.isInfinite(unequal) || Double.isNaN(unequal))
+		{
+			return null;
+		}
+		final double tolerance = ENERGY_TOLERANCE * Math.max(1.0, Math.abs(unequal));
+		final double[] gaps = new double[size];
+		for (int a = 0; a < size; ++a)
+		{
+			for (int b = 0; b < size; ++b)
+			{
+				final double energy = table.getEnergyForIndices(a, b);
+				if (a == b)
+				{
+					gaps[a] = unequal - energy;
+					if (!(gaps[a] >= 0))
+					{
+						return null;
+					}
+				}
+				else if (!(Math.abs(energy - unequal) <= tolerance))
+				{
+					return null;
+				}
+			}
+		}
+		return gaps;
+	}
+
+	/**
+	 * Returns variables of graph that are connected to at least one other by a factor that can be
+	 * used as a bond by this sampler.
+	 * <p>
+	 * Variables that have a fixed value or that are connected to a directed deterministic factor are
+	 * not included. See {@link #bondGaps} for the requirements for bond factors.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static List<Variable> findClusterVariables(FactorGraph graph)
+	{
+		final List<Variable> result = new ArrayList<>();
+		for (Variable var : graph.getVariables())
+		{
+			if (isClusterCandidate(var))
+			{
+				for (int port = 0, nPorts = var.getSiblingCount(); port < nPorts; ++port)
+				{
+					final Factor factor = var.getSibling(port);
+					if (bondGaps(factor) != null)
+					{
+						final Variable other = factor.getSibling(factor.getSibling(0) == var ? 1 : 0);
+						if (isClusterCandidate(other))
+						{
+							result.add(var);
+							break;
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private void allocate(int nVars, int nBonds, int nFactors)
+	{
+		if (_parents.length < nVars)
+		{
+			_parents = new int[nVars];
+			_sizes = new int[nVars];
+			_clusterOf = new int[nVars];
+			_clusterMembers = new int[nVars];
+			_clusterStarts = new int[nVars + 1];
+		}
+		if (_active.length < nBonds)
+		{
+			_active = new boolean[nBonds];
+		}
+		if (_factorMarks.length < nFactors)
+		{
+			_factorMarks = new int[nFactors];
+		}
+	}
+
+	private double[] energies(int size)
+	{
+		double[] energies = _energies;
+		if (energies.length < size)
+		{
+			_energies = energies = new double[size];
+		}
+		return energies;
+	}
+
+	/**
+	 * Root of union-find tree containing {@code i}, with path halving.
+	 */
+	private int find(int i)
+	{
+		final int[] parents = _parents;
+		while (parents[i] != i)
+		{
+			i = parents[i] = parents[parents[i]];
+		}
+		return i;
+	}
+
+	/**
+	 * Joins union-find trees containing {@code i} and {@code j}, by size.
+	 */
+	private void union(int i, int j)
+	{
+		int ri = find(i), rj = find(j);
+		if (ri != rj)
+		{
+			final int[] sizes = _sizes;
+			if (sizes[ri] < sizes[rj])
+			{
+				final int tmp = ri;
+				ri = rj;
+				rj = tmp;
+			}
+			_parents[rj] = ri;
+			sizes[ri] += sizes[rj];
+		}
+	}
+
+	private static boolean isClusterCandidate(Variable var)
+	{
+		if (!(var instanceof Discrete) || var.hasFixedValue())
+		{
+			return false;
+		}
+		for (int port = 0, nPorts = var.getSiblingCount(); port < nPorts; ++port)
+		{
+			if (var.getSibling(port).getFactorFunction().isDeterministicDirected())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Draws index with probability proportional to {@code exp(-energies[index])}, overwriting
+	 * {@code energies}. Returns -1 if all of the energies are infinite.
+	 */
+	private static int sample(DimpleRandom rand, double[] energies, int size)
+	{
+		double minEnergy = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < size; ++i)
+		{
+			minEnergy = Math.min(minEnergy, energies[i]);
+		}
+		if (!(minEnergy < Double.POSITIVE_INFINITY))
+		{
+			return -1;
+		}
+
+		double sum = 0.0;
+		for (int i = 0; i < size; ++i)
+		{
+			energies[i] = sum += Math.exp(minEnergy - energies[i]);
+		}
+
+		final double target = rand.nextDouble() * sum;
+		int last = 0;
+		for (int i = 0; i < size; ++i)
+		{
+			if (target < energies[i])
+			{
+				return i;
+			}
+			if (i == 0 || energies[i] > energies[i - 1])
+			{
+				last = i;
+			}
+		}
+		// Only reachable through rounding
+		return last;
+	}
+
+	private Structure structureFor(GibbsVariableBlock block)
+	{
+		final long version = block.getModelObject().getParentGraph().graphTreeStructureVersion();
+		Structure structure = _structure;
+		if (structure == null || structure._block != block || structure._structureVersion != version)
+		{
+			_structure = structure = new Structure(block, version);
+		}
+		return structure;
+	}
+
+	private static int[] toIntArray(List<Integer> list)
+	{
+		final int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; ++i)
+		{
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+}
@@ -288,6 +288,12 @@ public class MinSumTableFactor extends STableFactorDoubleArray
 		return _inputMessages[edgeNumber];
 	}
 	
+	@Override
+	public DiscreteEnergyMessage getInPortMessage(int edgeNumber)
+	{
+		return getSiblingEdgeState(edgeNumber).varToFactorMsg;
+	}
+	
 	@Override
 	public double[][] getOutPortMsgs()
 	{
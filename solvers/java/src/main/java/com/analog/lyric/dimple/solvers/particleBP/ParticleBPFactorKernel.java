@@ -0,0 +1,470 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.particleBP;
+
+import static com.analog.lyric.dimple.environment.DimpleEnvironment.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.math.DimpleRandom;
+
+/**
+ * Computes particle BP factor messages, which sum the factor weight times the incoming message
+ * weights over all combinations of the particles of the other arguments.
+ * <p>
+ * Particle values and incoming weights are held in flat per-argument arrays, and every combination is
+ * visited with a mixed-radix counter, so that computing all of the outgoing messages evaluates the
+ * factor function only once per combination. The work may be split across the shared {@link ThreadPool}.
+ * <p>
+ * When the number of combinations for an output exceeds the configured subsample size, the sum is instead
+ * estimated by drawing combinations of the other arguments' particles in proportion to their incoming
+ * weights, in batches, until the estimated relative standard error of the message is within tolerance.
+ * <p>
+ * @since 0.08
+ */
+final class ParticleBPFactorKernel
+{
+	/*-------
+	 * State
+	 */
+
+	private final FactorFunction _function;
+	private final double _beta;
+	private final Value[][] _values;
+	private final double[][] _weights;
+	private final int[] _sizes;
+	private final int _nArgs;
+	private final int _numTasks;
+	private final int _subsampleSize;
+	private final double _subsampleTolerance;
+
+	/*--------------
+	 * Construction
+	 */
+
+	/**
+	 * @param values are the candidate values for each factor argument. Constant arguments and the argument
+	 * whose value is fixed when computing a marginal potential have a single value.
+	 * @param weights are the incoming message weights for each argument, with null entries for arguments
+	 * that are not weighted.
+	 * @param numTasks is the number of tasks across which to split the work.
+	 * @param subsampleSize is the number of combinations drawn per batch when estimating sums by
+	 * subsampling, which is only done when there are more combinations than this. Zero disables subsampling.
+	 * @param subsampleTolerance is the target relative standard error when subsampling.
+	 */
+	ParticleBPFactorKernel(FactorFunction function, double beta, Value[][] values, double[][] weights,
+		int numTasks, int subsampleSize, double subsampleTolerance)
+	{
+		_function = function;
+		_beta = beta;
+		_values = values;
+		_weights = weights;
+		_nArgs = values.length;
+		_sizes = new int[_nArgs];
+		for (int i = 0; i < _nArgs; ++i)
+		{
+			_sizes[i] = values[i].length;
+		}
+		_numTasks = Math.max(1, numTasks);
+		_subsampleSize = subsampleSize;
+		_subsampleTolerance = subsampleTolerance;
+	}
+
+	/*--------------------------------
+	 * ParticleBPFactorKernel methods
+	 */
+
+	/**
+	 * Computes unnormalized messages for each argument with a non-null entry in {@code outputs}.
+	 * <p>
+	 * Each output array must be at least as long as the number of values of its argument. Its
+	 * contents will be overwritten.
+	 */
+	void computeMessages(double[][] outputs)
+	{
+		boolean anyExact = false;
+		final double[][] exactOutputs = new double[_nArgs][];
+		for (int i = 0; i < _nArgs; ++i)
+		{
+			final double[] output = outputs[i];
+			if (output != null)
+			{
+				if (useSubsampling(i))
+				{
+					computeSampledMessage(i, output);
+				}
+				else
+				{
+					exactOutputs[i] = output;
+					anyExact = true;
+				}
+			}
+		}
+
+		if (anyExact)
+		{
+			computeExactMessages(exactOutputs);
+		}
+	}
+
+	/**
+	 * Computes unnormalized message for argument {@code outArg}, which will be written to {@code output}.
+	 */
+	void computeMessage(int outArg, double[] output)
+	{
+		if (useSubsampling(outArg))
+		{
+			computeSampledMessage(outArg, output);
+		}
+		else
+		{
+			final double[][] outputs = new double[_nArgs][];
+			outputs[outArg] = output;
+			computeExactMessages(outputs);
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Number of combinations of the particles of the arguments other than {@code outArg}.
+	 */
+	private long otherCombinations(int outArg)
+	{
+		long n = 1;
+		for (int i = 0; i < _nArgs; ++i)
+		{
+			if (i != outArg)
+			{
+				n *= _sizes[i];
+			}
+		}
+		return n;
+	}
+
+	private boolean useSubsampling(int outArg)
+	{
+		return _subsampleSize > 0 && otherCombinations(outArg) > _subsampleSize;
+	}
+
+	private double weight(Value[] args)
+	{
+		final double prob = _function.eval(args);
+		return _beta != 1 ? Math.pow(prob, _beta) : prob;
+	}
+
+	private void computeExactMessages(final double[][] outputs)
+	{
+		for (double[] output : outputs)
+		{
+			if (output != null)
+			{
+				Arrays.fill(output, 0.0);
+			}
+		}
+
+		long total = 1;
+		for (int size : _sizes)
+		{
+			total *= size;
+		}
+
+		final int numTasks = (int)Math.min(_numTasks, total);
+		if (numTasks <= 1)
+		{
+			sumRange(outputs, 0, total);
+			return;
+		}
+
+		final List<Callable<double[][]>> tasks = new ArrayList<>(numTasks);
+		for (int t = 0; t < numTasks; ++t)
+		{
+			final long start = total * t / numTasks;
+			final long end = total * (t + 1) / numTasks;
+			tasks.add(new Callable<double[][]>() {
+				@Override
+				public double[][] call()
+				{
+					final double[][] taskOutputs = new double[_nArgs][];
+					for (int i = 0; i < _nArgs; ++i)
+					{
+						final double[] output = outputs[i];
+						if (output != null)
+						{
+							taskOutputs[i] = new double[output.length];
+						}
+					}
+					sumRange(taskOutputs, start, end);
+					return taskOutputs;
+				}
+			});
+		}
+
+		for (double[][] taskOutputs : ThreadPool.invokeAll(tasks))
+		{
+			for (int i = 0; i < _nArgs; ++i)
+			{
+				final double[] output = outputs[i], taskOutput = taskOutputs[i];
+				if (output != null && taskOutput != null)
+				{
+					for (int j = 0, n = _sizes[i]; j < n; ++j)
+					{
+						output[j] += taskOutput[j];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds contributions of combinations with linear index in range [{@code start}, {@code end}) to
+	 * {@code outputs}. The last argument varies fastest.
+	 */
+	private void sumRange(double[][] outputs, long start, long end)
+	{
+		final int nArgs = _nArgs;
+		final int[] sizes = _sizes;
+		final Value[][] values = _values;
+		final double[][] weights = _weights;
+		final int[] indices = new int[nArgs];
+		final Value[] args = new Value[nArgs];
+		final double[] prefix = new double[nArgs + 1];
+
+		long rem = start;
+		for (int i = nArgs; --i >= 0;)
+		{
+			indices[i] = (int)(rem % sizes[i]);
+			rem /= sizes[i];
+			args[i] = values[i][indices[i]];
+		}
+
+		prefix[0] = 1.0;
+		for (long n = start; n < end; ++n)
+		{
+			// Prefix products of incoming weights. If more than one weight is zero, the combination cannot
+			// contribute to any message, and if exactly one is, only to the message for that argument.
+			int zeroArg = -1, nZeros = 0;
+			for (int i = 0; i < nArgs; ++i)
+			{
+				final double[] w = weights[i];
+				double wi = 1.0;
+				if (w != null && (wi = w[indices[i]]) == 0.0)
+				{
+					zeroArg = i;
+					++nZeros;
+				}
+				prefix[i + 1] = prefix[i] * wi;
+			}
+
+			if (nZeros == 0 || nZeros == 1 && outputs[zeroArg] != null)
+			{
+				final double prob = weight(args);
+				if (prob != 0.0)
+				{
+					// Multiply in suffix products to get the product of the weights of all of the other arguments
+					double suffix = 1.0;
+					for (int i = nArgs; --i >= 0;)
+					{
+						final double[] output = outputs[i];
+						if (output != null)
+						{
+							output[indices[i]] += prob * prefix[i] * suffix;
+						}
+						final double[] w = weights[i];
+						if (w != null)
+						{
+							suffix *= w[indices[i]];
+						}
+					}
+				}
+			}
+
+			// Advance mixed-radix counter
+			for (int i = nArgs; --i >= 0;)
+			{
+				if (++indices[i] < sizes[i])
+				{
+					args[i] = values[i][indices[i]];
+					break;
+				}
+				indices[i] = 0;
+				args[i] = values[i][0];
+			}
+		}
+	}
+
+	private void computeSampledMessage(final int outArg, final double[] output)
+	{
+		final int nArgs = _nArgs;
+		final int outSize = _sizes[outArg];
+		final DimpleRandom rand = activeRandom();
+
+		// Cumulative weights of the other arguments from which to draw their particle indices.
+		final double[][] cumulative = new double[nArgs][];
+		double scale = 1.0;
+		for (int i = 0; i < nArgs; ++i)
+		{
+			final double[] w = _weights[i];
+			if (i != outArg && w != null)
+			{
+				final int size = _sizes[i];
+				final double[] c = cumulative[i] = new double[size];
+				double sum = 0.0;
+				for (int j = 0; j < size; ++j)
+				{
+					c[j] = sum += w[j];
+				}
+				scale *= sum;
+			}
+		}
+
+		if (scale == 0.0)
+		{
+			Arrays.fill(output, 0, outSize, 0.0);
+			return;
+		}
+
+		final double[] sums = new double[outSize];
+		final double[] sumSquares = new double[outSize];
+		final int batchSize = _subsampleSize;
+		final int[] draws = new int[batchSize * nArgs];
+		final long maxDraws = otherCombinations(outArg);
+		final int numTasks = Math.min(_numTasks, outSize);
+
+		long numDraws = 0;
+		while (true)
+		{
+			// Draw combinations of the other arguments' particles
+			for (int s = 0, k = 0; s < batchSize; ++s)
+			{
+				for (int i = 0; i < nArgs; ++i, ++k)
+				{
+					final double[] c = cumulative[i];
+					draws[k] = c != null ? sampleIndex(c, rand.nextDouble() * c[c.length - 1]) : 0;
+				}
+			}
+
+			// Evaluate each output particle against the drawn combinations
+			if (numTasks <= 1)
+			{
+				sumDraws(outArg, draws, sums, sumSquares, 0, outSize);
+			}
+			else
+			{
+				final List<Callable<Object>> tasks = new ArrayList<>(numTasks);
+				for (int t = 0; t < numTasks; ++t)
+				{
+					final int start = outSize * t / numTasks;
+					final int end = outSize * (t + 1) / numTasks;
+					tasks.add(new Callable<Object>() {
+						@Override
+						public @Nullable Object call()
+						{
+							sumDraws(outArg, draws, sums, sumSquares, start, end);
+							return null;
+						}
+					});
+				}
+				ThreadPool.invokeAll(tasks);
+			}
+
+			numDraws += batchSize;
+			if (numDraws >= maxDraws)
+			{
+				break;
+			}
+
+			// Relative standard error of the total weight of the message
+			double total = 0.0, variance = 0.0;
+			for (int j = 0; j < outSize; ++j)
+			{
+				final double mean = sums[j] / numDraws;
+				total += mean;
+				variance += (sumSquares[j] / numDraws - mean * mean) / numDraws;
+			}
+			if (!(total > 0.0) || Math.sqrt(Math.max(variance, 0.0)) <= _subsampleTolerance * total)
+			{
+				break;
+			}
+		}
+
+		for (int j = 0; j < outSize; ++j)
+		{
+			output[j] = scale * sums[j] / numDraws;
+		}
+	}
+
+	private void sumDraws(int outArg, int[] draws, double[] sums, double[] sumSquares, int start, int end)
+	{
+		final int nArgs = _nArgs;
+		final Value[][] values = _values;
+		final Value[] args = new Value[nArgs];
+		final int batchSize = draws.length / nArgs;
+
+		for (int j = start; j < end; ++j)
+		{
+			args[outArg] = values[outArg][j];
+			double sum = 0.0, sumSquare = 0.0;
+			for (int s = 0, k = 0; s < batchSize; ++s)
+			{
+				for (int i = 0; i < nArgs; ++i, ++k)
+				{
+					if (i != outArg)
+					{
+						args[i] = values[i][draws[k]];
+					}
+				}
+				final double prob = weight(args);
+				sum += prob;
+				sumSquare += prob * prob;
+			}
+			sums[j] += sum;
+			sumSquares[j] += sumSquare;
+		}
+	}
+
+	/**
+	 * Index of first entry in {@code cumulative} greater than {@code u}.
+	 */
+	private static int sampleIndex(double[] cumulative, double u)
+	{
+		int lo = 0, hi = cumulative.length - 1;
+		while (lo < hi)
+		{
+			final int mid = (lo + hi) >>> 1;
+			if (cumulative[mid] > u)
+			{
+				hi = mid;
+			}
+			else
+			{
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+}
@@ -127,4 +127,49 @@ public class ParticleBPOptions extends BPOptions
 	public static final DoubleOptionKey initialTemperature =
 		new DoubleOptionKey(ParticleBPOptions.class, "initialTemperature", 1.0, 0.0, Double.MAX_VALUE);
 	
+	/**
+	 * Enables parallel computation across particles in particle BP solver.
+	 * <p>
+	 * When true, factor message computations are split across the shared
+	 * {@linkplain com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool thread pool}, as is the
+	 * resampling of the particles of each real variable, which then uses an independent random stream
+	 * for each task. This is ignored when {@link #enableMultithreading} is enabled.
+	 * <p>
+	 * Defaults to false.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey parallelParticleUpdates =
+		new BooleanOptionKey(ParticleBPOptions.class, "parallelParticleUpdates", false);
+	
+	/**
+	 * Number of particle combinations sampled per batch when approximating particle BP factor messages.
+	 * <p>
+	 * A factor message sums over all combinations of the particles of the other variables of the factor,
+	 * which takes time proportional to the product of their particle counts. When that product is greater
+	 * than this value, the sum is instead estimated from combinations drawn in proportion to their incoming
+	 * message weights, in batches of this size, until the relative standard error is no more than
+	 * {@link #subsampleTolerance}.
+	 * <p>
+	 * Defaults to zero, which disables subsampling.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey subsampleSize =
+		new IntegerOptionKey(ParticleBPOptions.class, "subsampleSize", 0, 0, Integer.MAX_VALUE);
+	
+	/**
+	 * Target relative standard error of particle BP factor messages approximated by subsampling.
+	 * <p>
+	 * Sampling stops when the error is within this tolerance or when as many combinations have been
+	 * drawn as there are in total.
+	 * <p>
+	 * Defaults to .01.
+	 * <p>
+	 * @since 0.08
+	 * @see #subsampleSize
+	 */
+	public static final DoubleOptionKey subsampleTolerance =
+		new DoubleOptionKey(ParticleBPOptions.class, "subsampleTolerance", .01, 0.0, Double.MAX_VALUE);
+	
 }
@@ -20,14 +20,15 @@ import static com.analog.lyric.dimple.environment.DimpleEnvironment.*;
 import static com.analog.lyric.math.Utilities.*;
 import static java.util.Objects.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.eclipse.jdt.annotation.Nullable;
 
 import com.analog.lyric.dimple.environment.DimpleEnvironment;
 import com.analog.lyric.dimple.exceptions.DimpleException;
-import com.analog.lyric.dimple.model.core.EdgeState;
-import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.domains.Domain;
 import com.analog.lyric.dimple.model.domains.RealDomain;
 import com.analog.lyric.dimple.model.factors.Factor;
@@ -36,11 +37,11 @@ import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Real;
 import com.analog.lyric.dimple.solvers.core.PriorAndCondition;
 import com.analog.lyric.dimple.solvers.core.SRealVariableBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessage;
 import com.analog.lyric.dimple.solvers.core.proposalKernels.IProposalKernel;
 import com.analog.lyric.dimple.solvers.core.proposalKernels.NormalProposalKernel;
 import com.analog.lyric.dimple.solvers.core.proposalKernels.Proposal;
-import com.analog.lyric.dimple.solvers.interfaces.SolverNodeMapping;
 import com.analog.lyric.math.DimpleRandom;
 import com.analog.lyric.options.OptionDoubleList;
 import com.analog.lyric.options.OptionValidationException;
@@ -71,6 +72,7 @@ public class ParticleBPReal extends SRealVariableBase implements IParticleBPVari
 	protected RealDomain _domain;
 	double [] _particleEnergy;
 	protected double _beta = 1;
+	private int _numTasks = 1;
 
 	/*--------------
 	 * Construction
@@ -96,6 +98,7 @@ public class ParticleBPReal extends SRealVariableBase implements IParticleBPVari
 	public void initialize()
 	{
 		_resamplingUpdatesPerSample = getOptionOrDefault(ParticleBPOptions.resamplingUpdatesPerParticle);
+		_numTasks = ParticleBPRealFactor.getParallelTasks(this);
 		updateNumParticles(getOptionOrDefault(ParticleBPOptions.numParticles));
 
 		if (!_explicitProposalKernel)
@@ -272,23 +275,83 @@ public class ParticleBPReal extends SRealVariableBase implements IParticleBPVari
 	    DimpleEnvironment.doubleArrayCache.release(alphas);
 	}
 
+	/**
+	 * Moves particles using Metropolis-Hastings updates and recomputes messages for new particle values.
+	 * <p>
+	 * If {@link ParticleBPOptions#parallelParticleUpdates} is enabled, the particles will be split across
+	 * tasks on the shared thread pool, each of which uses its own random stream
+	 * {@linkplain DimpleRandom#split() split} from the {@linkplain DimpleEnvironment#activeRandom() active} one.
+	 */
 	public void resample()
 	{
 		final DimpleRandom rand = activeRandom();
+		final int M = _numParticles;
+		final int numPorts = _model.getSiblingCount();
 		
-		final FactorGraph fg = _model.requireParentGraph();
-		int numPorts = _model.getSiblingCount();
-		Domain varDomain = _model.getDomain();
-		double _lowerBound = _domain.getLowerBound();
-		double _upperBound = _domain.getUpperBound();
-		int M = _numParticles;
+		// Look up factors and their port numbers once for all particles
+		final ParticleBPRealFactor[] factors = new ParticleBPRealFactor[numPorts];
+		final int[] factorPorts = new int[numPorts];
+		for (int d = 0; d < numPorts; d++)
+		{
+			factors[d] = (ParticleBPRealFactor)getSibling(d);
+			factorPorts[d] = _model.getSiblingEdgeState(d).getFactorToVariableEdgeNumber();
+		}
 
-		PriorAndCondition known = getPriorAndCondition();
+		final PriorAndCondition known = getPriorAndCondition();
 		
+		final int numTasks = Math.min(_numTasks, M);
+		if (numTasks <= 1)
+		{
+			resampleParticles(0, M, known, factors, factorPorts, rand);
+		}
+		else
+		{
+			final List<Callable<Object>> tasks = new ArrayList<>(numTasks);
+			for (int t = 0; t < numTasks; ++t)
+			{
+				final int start = M * t / numTasks;
+				final int end = M * (t + 1) / numTasks;
+				final DimpleRandom taskRand = rand.split();
+				tasks.add(new Callable<Object>() {
+					@Override
+					public @Nullable Object call()
+					{
+						final @Nullable DimpleRandom prevRandom = DimpleEnvironment.setThreadRandom(taskRand);
+						try
+						{
+							resampleParticles(start, end, known, factors, factorPorts, taskRand);
+						}
+						finally
+						{
+							DimpleEnvironment.setThreadRandom(prevRandom);
+						}
+						return null;
+					}
+				});
+			}
+			ThreadPool.invokeAll(tasks);
+		}
+
+		known.release();
+		
+		// Update the outgoing messages associated with the new particle locations
+		doUpdate();
+	}
+
+	/**
+	 * Resamples particles with indices in range [{@code start}, {@code end}).
+	 */
+	private void resampleParticles(int start, int end, PriorAndCondition known,
+		ParticleBPRealFactor[] factors, int[] factorPorts, DimpleRandom rand)
+	{
+		final int numPorts = factors.length;
+		final Domain varDomain = _model.getDomain();
+		final double lowerBound = _domain.getLowerBound();
+		final double upperBound = _domain.getUpperBound();
 		final IProposalKernel kernel = requireNonNull(_proposalKernel);
 
 		// For each sample value
-		for (int m = 0; m < M; m++)
+		for (int m = start; m < end; m++)
 		{
 			final RealValue sampleValue = _particleValues[m];
 			// Start with the potential for the current particle value
@@ -297,11 +360,7 @@ public class ParticleBPReal extends SRealVariableBase implements IParticleBPVari
 
 			for (int portIndex = 0; portIndex < numPorts; portIndex++)
 			{
-				EdgeState edge = _model.getSiblingEdgeState(portIndex);
-				int factorPortNumber = edge.getSibling(_model).indexOfSiblingEdgeState(edge);
-				
-				ParticleBPRealFactor factor = (ParticleBPRealFactor)getSibling(portIndex);
-				potential += factor.getMarginalPotential(sampleValue.getDouble(), factorPortNumber);
+				potential += factors[portIndex].getMarginalPotential(sampleValue.getDouble(), factorPorts[portIndex]);
 			}
 
 
@@ -312,18 +371,15 @@ public class ParticleBPReal extends SRealVariableBase implements IParticleBPVari
 				double proposalValue = proposal.value.getDouble();
 
 				// If outside the bounds, then reject
-				if (proposalValue < _lowerBound) continue;
-				if (proposalValue > _upperBound) continue;
+				if (proposalValue < lowerBound) continue;
+				if (proposalValue > upperBound) continue;
 
 				// Sum up the potentials from the input and all connected factors
 				potentialProposed = known.evalEnergy(proposal.value) * _beta;
 				
 				for (int portIndex = 0; portIndex < numPorts; portIndex++)
 				{
-					EdgeState edge = _model.getSiblingEdgeState(portIndex);
-					int factorPortNumber = edge.getSibling(_model).indexOfSiblingEdgeState(edge);
-					ParticleBPRealFactor factor = (ParticleBPRealFactor)getSibling(portIndex);
-					potentialProposed += factor.getMarginalPotential(proposalValue, factorPortNumber);
+					potentialProposed += factors[portIndex].getMarginalPotential(proposalValue, factorPorts[portIndex]);
 				}
 
 
@@ -347,25 +403,14 @@ public class ParticleBPReal extends SRealVariableBase implements IParticleBPVari
 
 
 			// Update the incoming messages for the new particle value
-			SolverNodeMapping solvers = getSolverMapping();
 			for (int d = 0; d < numPorts; d++)
 			{
-				final EdgeState edge = _model.getSiblingEdgeState(d);
-				Factor factorNode = edge.getFactor(fg);
-				int factorPortNumber = edge.getFactorToVariableEdgeNumber();
-				ParticleBPRealFactor factor = (ParticleBPRealFactor)(solvers.getSolverFactor(factorNode));
 				getSiblingEdgeState(d).factorToVarMsg.setWeight(m,
-					Math.exp(factor.getMarginalPotential(sampleValue.getDouble(), factorPortNumber)));
+					Math.exp(factors[d].getMarginalPotential(sampleValue.getDouble(), factorPorts[d])));
 			}
 		}
-
-		known.release();
-		
-		// Update the outgoing messages associated with the new particle locations
-		doUpdate();
 	}
 
-
 	@Override
 	public double[] getBelief()
 	{
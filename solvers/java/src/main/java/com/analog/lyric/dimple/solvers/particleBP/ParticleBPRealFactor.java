@@ -20,18 +20,19 @@ package com.analog.lyric.dimple.solvers.particleBP;
 import static com.analog.lyric.math.Utilities.*;
 import static java.util.Objects.*;
 
-import com.analog.lyric.collect.CombinatoricIterator;
-import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.RealValue;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.Constant;
 import com.analog.lyric.dimple.model.variables.IConstantOrVariable;
 import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.SolverOptions;
 import com.analog.lyric.dimple.solvers.core.SDiscreteWeightEdge;
 import com.analog.lyric.dimple.solvers.core.SFactorBase;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessage;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductDiscreteEdge;
 
 /**
@@ -42,6 +43,9 @@ import com.analog.lyric.dimple.solvers.sumproduct.SumProductDiscreteEdge;
 public class ParticleBPRealFactor extends SFactorBase
 {
 	protected double _beta = 1;
+	private int _numTasks = 1;
+	private int _subsampleSize;
+	private double _subsampleTolerance;
 	
 	ParticleBPRealFactor(Factor factor, ISolverFactorGraph parent)
 	{
@@ -54,41 +58,44 @@ public class ParticleBPRealFactor extends SFactorBase
 		return (ParticleBPSolverGraph)_parent;
 	}
 	
+	/**
+	 * Energy of the factor's marginal for given {@code value} of the argument at {@code outPortIndex},
+	 * summing over the particles of the other arguments weighted by their incoming messages.
+	 * <p>
+	 * This is always computed on the calling thread, but will be approximated by subsampling as
+	 * specified by {@link ParticleBPOptions#subsampleSize}.
+	 */
 	public double getMarginalPotential(double value, int outPortIndex)
 	{
-		final int nEdges = getSiblingCount();
-		FactorFunction factorFunction = _model.getFactorFunction();
-
-        double marginal = 0;
-        
-        CombinatoricIterator<Value> iter = getCombinatoricIterator(value, outPortIndex);
-        final int[] variableIndices = iter.indices();
-        
-        final double[][] inputWeightsPerEdge = new double[nEdges][];
-    	for (int i = 0; i < nEdges; ++i)
-    	{
-    		inputWeightsPerEdge[i] = getSiblingEdgeState(i).varToFactorMsg.representation();
-    	}
-    	
-        while (iter.hasNext())
-        {
-        	double prob = factorFunction.eval(iter.next());
-			if (_beta != 1) prob = Math.pow(prob, _beta);
-
-        	for (int i = 0; i < outPortIndex; ++i)
-        	{
-        		prob *= inputWeightsPerEdge[i][variableIndices[i]];
-        	}
-        	for (int i = outPortIndex + 1; i < nEdges; ++i)
-        	{
-        		prob *= inputWeightsPerEdge[i][variableIndices[i]];
-        	}
+		final Factor factor = _model;
+		final int nArgs = factor.getArgumentCount();
+		final Value[][] values = new Value[nArgs][];
+		final double[][] weights = new double[nArgs][];
+		for (int i = 0; i < nArgs; ++i)
+		{
+			IConstantOrVariable arg = factor.getArgument(i);
+			if (arg instanceof Constant)
+			{
+				values[i] = new Value[] { ((Constant)arg).value() };
+			}
+			else if (i == outPortIndex)
+			{
+				values[i] = new Value[] { RealValue.create(value) };
+			}
+			else
+			{
+				Variable var = (Variable)arg;
+				IParticleBPVariable svar = requireNonNull(getParentGraph().getSolverVariable(var));
+				values[i] = svar.getParticleValueObjects();
+				weights[i] = getSiblingEdgeState(factor.argIndexToSiblingNumber(i)).varToFactorMsg.representation();
+			}
+		}
 
-        	marginal += prob;
-        }
-        
-        // FIXME: Should do bounds checking
-	    return weightToEnergy(marginal);
+		final double[] marginal = new double[1];
+		createKernel(values, weights, 1).computeMessage(outPortIndex, marginal);
+		
+		// FIXME: Should do bounds checking
+	    return weightToEnergy(marginal[0]);
 	}
 	
 	
@@ -96,72 +103,43 @@ public class ParticleBPRealFactor extends SFactorBase
 	public void doUpdateEdge(int outPortNum)
 	{
 		final int nEdges = getSiblingCount();
-		FactorFunction factorFunction = _model.getFactorFunction();
+		final Value[][] values = new Value[nEdges][];
+		final double[][] weights = new double[nEdges][];
+		loadParticlesAndWeights(values, weights);
 
 		final DiscreteMessage outputMsg = getSiblingEdgeState(outPortNum).factorToVarMsg;
 		outputMsg.setWeightsToZero();
-        final double[] outputWeights = outputMsg.representation();
-        
-        final CombinatoricIterator<Value> iter = getCombinatoricIterator();
-        final int[] variableIndices = iter.indices();
-        while (iter.hasNext())
-        {
-        	Value[] values = iter.next();
-        	double prob = factorFunction.eval(values);
-			
-			if (_beta != 1) prob = Math.pow(prob, _beta);
-
-        	for (int inPortNum = 0; inPortNum < nEdges; inPortNum++)
-        	{
-        		if (inPortNum != outPortNum)
-        		{
-        			prob *= getSiblingEdgeState(inPortNum).varToFactorMsg.getWeight(variableIndices[inPortNum]);
-        		}
-        	}
-
-        	outputWeights[variableIndices[outPortNum]] += prob;
-        }
-        
+		createKernel(values, weights, _numTasks).computeMessage(outPortNum, outputMsg.representation());
         outputMsg.normalize();
 	}
 	
-	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Computes all of the output messages together, evaluating the factor function only once per
+	 * combination of particle values.
+	 */
 	@Override
 	protected void doUpdate()
 	{
-		FactorFunction factorFunction = _model.getFactorFunction();
+		final int nEdges = getSiblingCount();
+		final Value[][] values = new Value[nEdges][];
+		final double[][] weights = new double[nEdges][];
+		loadParticlesAndWeights(values, weights);
 
-        final CombinatoricIterator<Value> iter = getCombinatoricIterator();
-        final int[] variableIndices = iter.indices();
-        
-		for (int outPortNum = 0, n = getSiblingCount(); outPortNum < n; outPortNum++)
+		final double[][] outputs = new double[nEdges][];
+		for (int i = 0; i < nEdges; ++i)
 		{
-			final DiscreteMessage outputMsg = getSiblingEdgeState(outPortNum).factorToVarMsg;
+			final DiscreteMessage outputMsg = getSiblingEdgeState(i).factorToVarMsg;
 			outputMsg.setWeightsToZero();
-			
-			final double[] outputWeights = outputMsg.representation();
-
-			iter.reset();
-			while (iter.hasNext())
-			{
-				Value[] variableValues = iter.next();
-				double prob = 1;
-				prob = factorFunction.eval(variableValues);
-				if (_beta != 1) prob = Math.pow(prob, _beta);
-
-				for (int inPortNum = 0; inPortNum < outPortNum; inPortNum++)
-				{
-					prob *= getSiblingEdgeState(inPortNum).varToFactorMsg.getWeight(variableIndices[inPortNum]);
-				}
-				for (int inPortNum = outPortNum + 1; inPortNum < n; inPortNum++)
-				{
-					prob *= getSiblingEdgeState(inPortNum).varToFactorMsg.getWeight(variableIndices[inPortNum]);
-				}
-
-				outputWeights[variableIndices[outPortNum]] += prob;
-			}
+			outputs[i] = outputMsg.representation();
+		}
+		
+		createKernel(values, weights, _numTasks).computeMessages(outputs);
 
-			outputMsg.normalize();
+		for (int i = 0; i < nEdges; ++i)
+		{
+			getSiblingEdgeState(i).factorToVarMsg.normalize();
 		}
 	}
 	
@@ -175,6 +153,9 @@ public class ParticleBPRealFactor extends SFactorBase
 	{
 		super.initialize();
 
+		_numTasks = getParallelTasks(this);
+		_subsampleSize = getOptionOrDefault(ParticleBPOptions.subsampleSize);
+		_subsampleTolerance = getOptionOrDefault(ParticleBPOptions.subsampleTolerance);
 	}
 
     @Deprecated
@@ -217,45 +198,38 @@ public class ParticleBPRealFactor extends SFactorBase
 	}
 	
 	/**
-	 * Returns an iterator over all combination of variable values
+	 * Number of tasks to use for parallel updates of given node, based on
+	 * {@link ParticleBPOptions#parallelParticleUpdates}.
+	 * <p>
+	 * This is always one when {@link SolverOptions#enableMultithreading} is on, since the node updates
+	 * may themselves be running on the shared thread pool.
 	 */
-	private CombinatoricIterator<Value> getCombinatoricIterator()
+	static int getParallelTasks(ISolverNode node)
 	{
-		final int nEdges = getSiblingCount();
-		final Value[][] particlesPerVar = new Value[nEdges][];
-		for (int i = 0; i < nEdges; ++i)
+		if (!node.getOptionOrDefault(ParticleBPOptions.parallelParticleUpdates) ||
+			node.getOptionOrDefault(SolverOptions.enableMultithreading))
 		{
-			particlesPerVar[i] = getSibling(i).getParticleValueObjects();
+			return 1;
 		}
-		return new CombinatoricIterator<>(Value.class, particlesPerVar);
+		ThreadPool.getThreadPool();
+		return Math.max(1, ThreadPool.getNumThreads());
+	}
+	
+	private ParticleBPFactorKernel createKernel(Value[][] values, double[][] weights, int numTasks)
+	{
+		return new ParticleBPFactorKernel(_model.getFactorFunction(), _beta, values, weights, numTasks,
+			_subsampleSize, _subsampleTolerance);
 	}
 	
 	/**
-	 * Returns an iterator over all combination of variable values except for edge
+	 * Fills in particle values and incoming weights for each edge.
 	 */
-	private CombinatoricIterator<Value> getCombinatoricIterator(double frozenValue, int frozenEdge)
+	private void loadParticlesAndWeights(Value[][] values, double[][] weights)
 	{
-		final Factor factor = _model;
-		final int nArgs = factor.getArgumentCount();
-		final Value[][] particlesPerVar = new Value[nArgs][];
-		for (int i = 0; i < nArgs; ++i)
+		for (int i = 0, n = values.length; i < n; ++i)
 		{
-			IConstantOrVariable arg = factor.getArgument(i);
-			if (arg instanceof Constant)
-			{
-				particlesPerVar[i] = new Value[] { ((Constant)arg).value() };
-			}
-			else if (i == frozenEdge)
-			{
-				particlesPerVar[i] = new Value[] { RealValue.create(frozenValue) };
-			}
-			else
-			{
-				Variable var = (Variable)arg;
-				IParticleBPVariable svar = requireNonNull(getParentGraph().getSolverVariable(var));
-				particlesPerVar[i] = svar.getParticleValueObjects();
-			}
+			values[i] = getSibling(i).getParticleValueObjects();
+			weights[i] = getSiblingEdgeState(i).varToFactorMsg.representation();
 		}
-		return new CombinatoricIterator<>(Value.class, particlesPerVar);
 	}
 }
@@ -0,0 +1,43 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.sumproduct;
+
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+
+/**
+ * Sum-product solver factor that can describe itself as part of a linear Gaussian system.
+ * <p>
+ * Factors implementing this interface either impose a Gaussian potential on their variables or a
+ * deterministic linear relationship among them. A graph consisting entirely of such factors can be
+ * solved exactly by {@link LinearGaussianSystem}.
+ * <p>
+ * @since 0.08
+ * @see SumProductOptions#linearGaussianSolve
+ */
+public interface ILinearGaussianFactor extends ISolverFactor
+{
+	/**
+	 * Adds the potentials and constraints represented by this factor to {@code system}.
+	 * <p>
+	 * Will be invoked after the factor has been initialized.
+	 * <p>
+	 * @return false if the factor cannot be represented in the system in its current state, in which case
+	 * the system will not be used.
+	 * @since 0.08
+	 */
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system);
+}
@@ -0,0 +1,877 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.sumproduct;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+
+/**
+ * Sparse representation of a purely linear Gaussian model that can be solved directly.
+ * <p>
+ * The model is represented by a sparse symmetric positive semi-definite precision matrix Q and
+ * information vector h, which are the sum of the normal priors on the variables and the normal
+ * potentials of the factors, together with a sparse set of linear equality constraints A x = b
+ * contributed by deterministic factors such as sums and constant products. Variables with fixed
+ * values are folded into the right-hand side and are not part of the system.
+ * <p>
+ * The exact posterior means are the solution of the symmetric indefinite saddle point system
+ * <pre>
+ *     [ Q  A' ] [ x ]   [ h ]
+ *     [ A  0  ] [ y ] = [ b ]
+ * </pre>
+ * and the posterior covariance is the upper left block of the inverse of the same matrix. Because the
+ * constraints make the system indefinite, it is solved using the MINRES Krylov method with a block
+ * diagonal preconditioner, which only requires sparse matrix-vector products. Marginal variances are
+ * optionally computed by one additional solve per dimension.
+ * <p>
+ * @since 0.08
+ * @see SumProductOptions#linearGaussianSolve
+ */
+public final class LinearGaussianSystem
+{
+	/*-------
+	 * State
+	 */
+
+	private final List<ISolverVariable> _variables = new ArrayList<>();
+
+	/**
+	 * Offset of first coordinate of each non-fixed variable.
+	 */
+	private final Map<ISolverVariable, Integer> _offsets = new IdentityHashMap<>();
+
+	/**
+	 * Values of variables with fixed values.
+	 */
+	private final Map<ISolverVariable, double[]> _fixedValues = new IdentityHashMap<>();
+
+	/**
+	 * Number of coordinates of non-fixed variables.
+	 */
+	private int _n = 0;
+
+	// Precision matrix entries in coordinate form while building, compressed into rows by compile().
+	private int _qSize = 0;
+	private int[] _qRows = new int[16];
+	private int[] _qCols = new int[16];
+	private double[] _qValues = new double[16];
+	private double[] _h = new double[16];
+
+	private int[] _qStart = new int[0];
+
+	// Constraints in compressed row form
+	private int _m = 0;
+	private int _aSize = 0;
+	private int[] _aStart = new int[] { 0, 0 };
+	private int[] _aCols = new int[16];
+	private double[] _aValues = new double[16];
+	private double[] _b = new double[16];
+
+	/**
+	 * Inverse of the diagonal preconditioner, computed by compile().
+	 */
+	private double[] _preconditioner = new double[0];
+
+	private @Nullable double[] _solution = null;
+
+	/*--------------
+	 * Construction
+	 */
+
+	private LinearGaussianSystem()
+	{
+	}
+
+	/**
+	 * Builds linear system for given solver graph, if possible.
+	 * <p>
+	 * The graph should already have been initialized.
+	 * <p>
+	 * @return system or null if the graph is not purely linear Gaussian. That is, if it has variables that
+	 * are not {@link SumProductReal} or {@link SumProductRealJoint} or has factors that do not implement
+	 * {@link ILinearGaussianFactor}.
+	 * @since 0.08
+	 */
+	public static @Nullable LinearGaussianSystem build(SumProductSolverGraph sgraph)
+	{
+		final LinearGaussianSystem system = new LinearGaussianSystem();
+
+		for (ISolverVariable svar : sgraph.getSolverVariablesRecursive())
+		{
+			if (!system.addVariable(svar))
+			{
+				return null;
+			}
+		}
+
+		for (ISolverFactor sfactor : sgraph.getSolverFactorsRecursive())
+		{
+			if (!(sfactor instanceof ILinearGaussianFactor) ||
+				!((ILinearGaussianFactor)sfactor).addLinearGaussianTerms(system))
+			{
+				return null;
+			}
+		}
+
+		system.compile();
+
+		return system;
+	}
+
+	/*-----------------------------
+	 * Methods for building system
+	 */
+
+	/**
+	 * Adds a scalar normal potential on {@code var}.
+	 * <p>
+	 * Has no effect if variable has a fixed value or if {@code precision} is zero.
+	 * <p>
+	 * @return false if the potential cannot be represented because its precision is not finite.
+	 * @throws IllegalArgumentException if {@code var} is not a variable in the system or is not scalar.
+	 * @since 0.08
+	 */
+	public boolean addNormal(ISolverVariable var, double mean, double precision)
+	{
+		if (!(precision < Double.POSITIVE_INFINITY))
+		{
+			return false;
+		}
+
+		final int offset = offset(var, 1);
+		if (offset >= 0 && precision != 0)
+		{
+			addPrecision(offset, offset, precision);
+			_h[offset] += precision * mean;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Adds a multivariate normal potential on {@code var}.
+	 * <p>
+	 * Has no effect if variable has a fixed value or if {@code normal} is null.
+	 * <p>
+	 * @return false if the potential cannot be represented because it has non-finite information parameters.
+	 * @throws IllegalArgumentException if {@code var} is not a variable in the system or does not have the
+	 * same dimensions as {@code normal}.
+	 * @since 0.08
+	 */
+	public boolean addNormal(ISolverVariable var, MultivariateNormalParameters normal)
+	{
+		final int dimensions = normal.getVectorLength();
+		final int offset = offset(var, dimensions);
+
+		if (offset < 0 || normal.isNull())
+		{
+			return true;
+		}
+
+		final double[] informationVector = normal.getInformationVector();
+		final double[][] informationMatrix = normal.getInformationMatrix();
+
+		for (int i = 0; i < dimensions; ++i)
+		{
+			if (!isFinite(informationVector[i]))
+			{
+				return false;
+			}
+			for (int j = 0; j < dimensions; ++j)
+			{
+				if (!isFinite(informationMatrix[i][j]))
+				{
+					return false;
+				}
+			}
+		}
+
+		for (int i = 0; i < dimensions; ++i)
+		{
+			_h[offset + i] += informationVector[i];
+			final double[] row = informationMatrix[i];
+			for (int j = 0; j < dimensions; ++j)
+			{
+				if (row[j] != 0)
+				{
+					addPrecision(offset + i, offset + j, row[j]);
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Starts a new linear equality constraint with given right-hand side.
+	 * <p>
+	 * Terms of the constraint should be added using {@link #addConstraintTerm} before starting
+	 * the next constraint.
+	 * <p>
+	 * @since 0.08
+	 */
+	public void beginConstraint(double rhs)
+	{
+		++_m;
+		_aStart = ensureCapacity(_aStart, _m + 1);
+		_aStart[_m] = _aSize;
+		_b = ensureCapacity(_b, _m);
+		_b[_m - 1] = rhs;
+	}
+
+	/**
+	 * Adds term to constraint started by most recent call to {@link #beginConstraint}.
+	 * <p>
+	 * If {@code var} has a fixed value, its contribution will be moved to the right-hand side.
+	 * <p>
+	 * @param var is the variable
+	 * @param dimension is the index of the dimension of {@code var} to which the term applies. Must
+	 * be zero for scalar variables.
+	 * @param coefficient is the coefficient of the term.
+	 * @throws IllegalArgumentException if {@code var} is not a variable in the system, {@code dimension}
+	 * is out of range or no constraint has been started.
+	 * @since 0.08
+	 */
+	public void addConstraintTerm(ISolverVariable var, int dimension, double coefficient)
+	{
+		if (_m == 0)
+		{
+			throw new IllegalArgumentException("No constraint has been started");
+		}
+
+		final double[] fixedValue = _fixedValues.get(var);
+		if (fixedValue != null)
+		{
+			_b[_m - 1] -= coefficient * fixedValue[checkDimension(var, dimension, fixedValue.length)];
+			return;
+		}
+
+		final int offset = offset(var, -1);
+		final int coordinate = offset + checkDimension(var, dimension, dimensions(var));
+
+		_aCols = ensureCapacity(_aCols, _aSize + 1);
+		_aValues = ensureCapacity(_aValues, _aSize + 1);
+		_aCols[_aSize] = coordinate;
+		_aValues[_aSize] = coefficient;
+		++_aSize;
+		_aStart[_m] = _aSize;
+	}
+
+	/*----------------------------
+	 * Methods for solving system
+	 */
+
+	/**
+	 * The number of real coordinates of the non-fixed variables in the system.
+	 * @since 0.08
+	 */
+	public int getDimensions()
+	{
+		return _n;
+	}
+
+	/**
+	 * The number of non-empty linear constraints in the system.
+	 * @since 0.08
+	 */
+	public int getConstraintCount()
+	{
+		return _m;
+	}
+
+	/**
+	 * Computes exact posterior means of all of the variables in the system.
+	 * <p>
+	 * @param tolerance is the relative residual tolerance for the iterative solve.
+	 * @param maxIterations is the maximum number of iterations.
+	 * @return false if the solver did not converge, which typically indicates that the model is improper.
+	 * @since 0.08
+	 */
+	public boolean solve(double tolerance, int maxIterations)
+	{
+		final int size = _n + _m;
+		final double[] rhs = new double[size];
+		System.arraycopy(_h, 0, rhs, 0, _n);
+		System.arraycopy(_b, 0, rhs, _n, _m);
+
+		final double[] x = new double[size];
+		if (!minres(rhs, x, tolerance, maxIterations))
+		{
+			_solution = null;
+			return false;
+		}
+
+		_solution = x;
+		return true;
+	}
+
+	/**
+	 * Sets beliefs of all variables in the system from result of {@link #solve}.
+	 * <p>
+	 * The beliefs will be returned by the variables' {@code getBelief()} methods until the next time
+	 * the graph is initialized or belief propagation updates them.
+	 * <p>
+	 * @param computeVariances if true then the exact marginal covariance will be computed for each variable,
+	 * which requires one additional solve per dimension. Otherwise the beliefs will only contain means and
+	 * will have zero precision.
+	 * @param tolerance is the relative residual tolerance for the variance solves.
+	 * @param maxIterations is the maximum number of iterations for the variance solves.
+	 * @return false if {@link #solve} has not been successfully called or a variance solve failed to converge.
+	 * In that case no beliefs will have been modified.
+	 * @since 0.08
+	 */
+	public boolean updateBeliefs(boolean computeVariances, double tolerance, int maxIterations)
+	{
+		final double[] solution = _solution;
+		if (solution == null)
+		{
+			return false;
+		}
+
+		final int size = _n + _m;
+		final int nVars = _variables.size();
+		final Object[] beliefs = new Object[nVars];
+		final double[] rhs = new double[size];
+		final double[] z = new double[size];
+
+		for (int vi = 0; vi < nVars; ++vi)
+		{
+			final ISolverVariable var = _variables.get(vi);
+			final double[] fixedValue = _fixedValues.get(var);
+			final int dimensions = dimensions(var);
+
+			final double[] mean;
+			double[][] covariance = new double[dimensions][dimensions];
+			boolean isNull = !computeVariances;
+
+			if (fixedValue != null)
+			{
+				mean = fixedValue.clone();
+			}
+			else
+			{
+				final int offset = _offsets.get(var);
+				mean = Arrays.copyOfRange(solution, offset, offset + dimensions);
+
+				for (int j = 0; j < dimensions && !isNull; ++j)
+				{
+					final int coordinate = offset + j;
+					if (_preconditioner[coordinate] == 0)
+					{
+						// Coordinate has no potentials or constraints on it
+						isNull = true;
+						break;
+					}
+
+					Arrays.fill(rhs, 0.0);
+					rhs[coordinate] = 1.0;
+					if (!minres(rhs, z, tolerance, maxIterations))
+					{
+						return false;
+					}
+					for (int i = 0; i < dimensions; ++i)
+					{
+						covariance[i][j] = z[offset + i];
+					}
+				}
+			}
+
+			if (var instanceof SumProductReal)
+			{
+				final NormalParameters belief = new NormalParameters();
+				if (fixedValue != null)
+				{
+					belief.setDeterministic(mean[0]);
+				}
+				else
+				{
+					belief.setMean(mean[0]);
+					belief.setPrecision(isNull ? 0.0 : 1.0 / Math.max(covariance[0][0], 0.0));
+				}
+				beliefs[vi] = belief;
+			}
+			else
+			{
+				final MultivariateNormalParameters belief = new MultivariateNormalParameters(dimensions);
+				if (fixedValue != null)
+				{
+					belief.setDeterministic(mean);
+				}
+				else if (isNull)
+				{
+					belief.setMeanAndVariance(mean, filled(dimensions, Double.POSITIVE_INFINITY));
+				}
+				else
+				{
+					// Make covariance exactly symmetric
+					for (int i = 0; i < dimensions; ++i)
+					{
+						for (int j = 0; j < i; ++j)
+						{
+							covariance[i][j] = covariance[j][i] = (covariance[i][j] + covariance[j][i]) / 2;
+						}
+					}
+					belief.setMeanAndCovariance(mean, covariance);
+				}
+				beliefs[vi] = belief;
+			}
+		}
+
+		for (int vi = 0; vi < nVars; ++vi)
+		{
+			final ISolverVariable var = _variables.get(vi);
+			if (var instanceof SumProductReal)
+			{
+				((SumProductReal)var).setDirectBelief((NormalParameters)beliefs[vi]);
+			}
+			else
+			{
+				((SumProductRealJoint)var).setDirectBelief((MultivariateNormalParameters)beliefs[vi]);
+			}
+		}
+
+		return true;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private boolean addVariable(ISolverVariable svar)
+	{
+		final int dimensions;
+
+		if (svar instanceof SumProductReal)
+		{
+			dimensions = 1;
+			final NormalParameters prior = new NormalParameters();
+			if (((SumProductReal)svar).computePrior(prior))
+			{
+				_variables.add(svar);
+				_fixedValues.put(svar, new double[] { prior.getMean() });
+				return true;
+			}
+			addOffset(svar, dimensions);
+			return addNormal(svar, prior.getMean(), prior.getPrecision());
+		}
+		else if (svar instanceof SumProductRealJoint)
+		{
+			final SumProductRealJoint jointVar = (SumProductRealJoint)svar;
+			dimensions = jointVar.getDomain().getDimensions();
+			final MultivariateNormalParameters prior = new MultivariateNormalParameters(dimensions);
+			if (jointVar.computePrior(prior))
+			{
+				_variables.add(svar);
+				_fixedValues.put(svar, prior.getMean());
+				return true;
+			}
+			addOffset(svar, dimensions);
+			return addNormal(svar, prior);
+		}
+
+		return false;
+	}
+
+	private void addOffset(ISolverVariable svar, int dimensions)
+	{
+		_variables.add(svar);
+		_offsets.put(svar, _n);
+		_n += dimensions;
+		_h = ensureCapacity(_h, _n);
+	}
+
+	private void addPrecision(int row, int col, double value)
+	{
+		_qRows = ensureCapacity(_qRows, _qSize + 1);
+		_qCols = ensureCapacity(_qCols, _qSize + 1);
+		_qValues = ensureCapacity(_qValues, _qSize + 1);
+		_qRows[_qSize] = row;
+		_qCols[_qSize] = col;
+		_qValues[_qSize] = value;
+		++_qSize;
+	}
+
+	/**
+	 * Returns offset of first coordinate of {@code var} or -1 if it has a fixed value.
+	 * <p>
+	 * If {@code dimensions} is non-negative, then verifies that the variable has the given number of dimensions.
+	 */
+	private int offset(ISolverVariable var, int dimensions)
+	{
+		final Integer offset = _offsets.get(var);
+
+		if (offset == null && !_fixedValues.containsKey(var))
+		{
+			throw new IllegalArgumentException(String.format("%s is not a variable in linear Gaussian system", var));
+		}
+
+		if (dimensions >= 0 && dimensions(var) != dimensions)
+		{
+			throw new IllegalArgumentException(String.format("%s does not have %d dimensions", var, dimensions));
+		}
+
+		return offset != null ? offset : -1;
+	}
+
+	private static int dimensions(ISolverVariable var)
+	{
+		return var instanceof SumProductRealJoint ? ((SumProductRealJoint)var).getDomain().getDimensions() : 1;
+	}
+
+	private static int checkDimension(ISolverVariable var, int dimension, int dimensions)
+	{
+		if (dimension < 0 || dimension >= dimensions)
+		{
+			throw new IllegalArgumentException(String.format("Dimension %d out of range for %s", dimension, var));
+		}
+		return dimension;
+	}
+
+	/**
+	 * Converts precision entries to compressed row form, drops empty constraints and computes the preconditioner.
+	 */
+	private void compile()
+	{
+		final int n = _n;
+
+		//
+		// Sort precision entries by row and column, combining duplicates.
+		//
+
+		final int[] start = new int[n + 1];
+		for (int k = 0; k < _qSize; ++k)
+		{
+			++start[_qRows[k] + 1];
+		}
+		for (int i = 0; i < n; ++i)
+		{
+			start[i + 1] += start[i];
+		}
+
+		final int[] next = Arrays.copyOf(start, n);
+		final int[] cols = new int[_qSize];
+		final double[] values = new double[_qSize];
+		for (int k = 0; k < _qSize; ++k)
+		{
+			final int pos = next[_qRows[k]]++;
+			cols[pos] = _qCols[k];
+			values[pos] = _qValues[k];
+		}
+
+		int size = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			final int rowStart = start[i], rowEnd = start[i + 1];
+			start[i] = size;
+
+			// Rows are typically very short, so insertion sort is fine.
+			for (int k = rowStart + 1; k < rowEnd; ++k)
+			{
+				final int col = cols[k];
+				final double value = values[k];
+				int j = k;
+				for (; j > rowStart && cols[j - 1] > col; --j)
+				{
+					cols[j] = cols[j - 1];
+					values[j] = values[j - 1];
+				}
+				cols[j] = col;
+				values[j] = value;
+			}
+
+			for (int k = rowStart; k < rowEnd; ++k)
+			{
+				if (size > start[i] && cols[size - 1] == cols[k])
+				{
+					values[size - 1] += values[k];
+				}
+				else
+				{
+					cols[size] = cols[k];
+					values[size] = values[k];
+					++size;
+				}
+			}
+		}
+		start[n] = size;
+
+		_qStart = start;
+		_qCols = cols;
+		_qValues = values;
+		_qRows = new int[0];
+		_qSize = size;
+
+		//
+		// Drop constraints whose variables are all fixed.
+		//
+
+		int m = 0;
+		for (int r = 0; r < _m; ++r)
+		{
+			final int rowStart = _aStart[r], rowEnd = _aStart[r + 1];
+			if (rowEnd > rowStart)
+			{
+				// Rows are only ever moved down, so start of current row has not been overwritten yet
+				_b[m] = _b[r];
+				_aStart[m + 1] = _aStart[m] + rowEnd - rowStart;
+				System.arraycopy(_aCols, rowStart, _aCols, _aStart[m], rowEnd - rowStart);
+				System.arraycopy(_aValues, rowStart, _aValues, _aStart[m], rowEnd - rowStart);
+				++m;
+			}
+		}
+		_m = m;
+		_aSize = _aStart[m];
+
+		//
+		// Block diagonal preconditioner: diag(Q + A'A) for the variables and the diagonal of the
+		// corresponding approximate Schur complement for the constraints.
+		//
+
+		final double[] preconditioner = new double[n + m];
+		for (int i = 0; i < n; ++i)
+		{
+			for (int k = _qStart[i], end = _qStart[i + 1]; k < end; ++k)
+			{
+				if (_qCols[k] == i)
+				{
+					preconditioner[i] += _qValues[k];
+				}
+			}
+		}
+		for (int k = 0; k < _aSize; ++k)
+		{
+			preconditioner[_aCols[k]] += _aValues[k] * _aValues[k];
+		}
+		for (int r = 0; r < m; ++r)
+		{
+			double s = 0.0;
+			for (int k = _aStart[r], end = _aStart[r + 1]; k < end; ++k)
+			{
+				final double a = _aValues[k], d = preconditioner[_aCols[k]];
+				if (d > 0)
+				{
+					// Zero coefficient on a coordinate with no other terms would otherwise produce 0/0
+					s += a * a / d;
+				}
+			}
+			preconditioner[n + r] = s;
+		}
+
+		// Invert, leaving zero entries for coordinates that do not participate in the system.
+		for (int i = 0, end = n + m; i < end; ++i)
+		{
+			final double d = preconditioner[i];
+			preconditioner[i] = d > 0 ? 1.0 / d : 0.0;
+		}
+
+		_preconditioner = preconditioner;
+	}
+
+	/**
+	 * Computes y = K x where K is the full saddle point matrix.
+	 */
+	private void multiply(double[] x, double[] y)
+	{
+		final int n = _n;
+
+		for (int i = 0; i < n; ++i)
+		{
+			double s = 0.0;
+			for (int k = _qStart[i], end = _qStart[i + 1]; k < end; ++k)
+			{
+				s += _qValues[k] * x[_qCols[k]];
+			}
+			y[i] = s;
+		}
+
+		for (int r = 0; r < _m; ++r)
+		{
+			final double xr = x[n + r];
+			double s = 0.0;
+			for (int k = _aStart[r], end = _aStart[r + 1]; k < end; ++k)
+			{
+				final int col = _aCols[k];
+				final double a = _aValues[k];
+				s += a * x[col];
+				y[col] += a * xr;
+			}
+			y[n + r] = s;
+		}
+	}
+
+	private void precondition(double[] x, double[] y)
+	{
+		for (int i = x.length; --i>=0;)
+		{
+			y[i] = _preconditioner[i] * x[i];
+		}
+	}
+
+	/**
+	 * Solves K x = b using preconditioned MINRES.
+	 * <p>
+	 * Follows the algorithm of Paige and Saunders, "Solution of sparse indefinite systems of linear equations",
+	 * SIAM J. Numerical Analysis 12 (1975). Terminates when the preconditioned residual norm has been reduced
+	 * by {@code tolerance} relative to its initial value.
+	 */
+	private boolean minres(double[] b, double[] x, double tolerance, int maxIterations)
+	{
+		final int size = b.length;
+
+		Arrays.fill(x, 0.0);
+
+		double[] r1 = b.clone();
+		double[] r2 = b.clone();
+		double[] y = new double[size];
+		final double[] v = new double[size];
+		double[] w = new double[size];
+		double[] w1 = new double[size];
+		double[] w2 = new double[size];
+
+		precondition(r1, y);
+
+		double beta1 = dot(r1, y);
+		if (beta1 == 0)
+		{
+			return true;
+		}
+		if (!(beta1 > 0))
+		{
+			return false;
+		}
+		beta1 = Math.sqrt(beta1);
+
+		double oldb = 0, beta = beta1, dbar = 0, epsln = 0, phibar = beta1;
+		double cs = -1, sn = 0;
+
+		for (int iteration = 1; iteration <= maxIterations; ++iteration)
+		{
+			final double s = 1.0 / beta;
+			for (int i = 0; i < size; ++i)
+			{
+				v[i] = s * y[i];
+			}
+
+			multiply(v, y);
+
+			if (iteration >= 2)
+			{
+				final double scale = beta / oldb;
+				for (int i = 0; i < size; ++i)
+				{
+					y[i] -= scale * r1[i];
+				}
+			}
+
+			final double alfa = dot(v, y);
+			final double scale = alfa / beta;
+			for (int i = 0; i < size; ++i)
+			{
+				y[i] -= scale * r2[i];
+			}
+
+			// r1 <- r2, r2 <- y, y <- M r2
+			double[] tmp = r1;
+			r1 = r2;
+			r2 = y;
+			y = tmp;
+			precondition(r2, y);
+
+			oldb = beta;
+			beta = dot(r2, y);
+			if (!(beta >= 0))
+			{
+				return false;
+			}
+			beta = Math.sqrt(beta);
+
+			// Apply previous rotation and compute next one
+			final double oldeps = epsln;
+			final double delta = cs * dbar + sn * alfa;
+			final double gbar = sn * dbar - cs * alfa;
+			epsln = sn * beta;
+			dbar = -cs * beta;
+
+			final double gamma = Math.max(Math.hypot(gbar, beta), Double.MIN_NORMAL);
+			cs = gbar / gamma;
+			sn = beta / gamma;
+			final double phi = cs * phibar;
+			phibar = sn * phibar;
+
+			// Update solution
+			tmp = w1;
+			w1 = w2;
+			w2 = w;
+			w = tmp;
+			final double denom = 1.0 / gamma;
+			for (int i = 0; i < size; ++i)
+			{
+				w[i] = (v[i] - oldeps * w1[i] - delta * w2[i]) * denom;
+				x[i] += phi * w[i];
+			}
+
+			if (phibar <= tolerance * beta1 || beta == 0)
+			{
+				return isFinite(phibar);
+			}
+		}
+
+		return false;
+	}
+
+	private static double dot(double[] x, double[] y)
+	{
+		double s = 0.0;
+		for (int i = x.length; --i>=0;)
+		{
+			s += x[i] * y[i];
+		}
+		return s;
+	}
+
+	private static double[] filled(int size, double value)
+	{
+		final double[] array = new double[size];
+		Arrays.fill(array, value);
+		return array;
+	}
+
+	private static boolean isFinite(double value)
+	{
+		return !Double.isNaN(value) && !Double.isInfinite(value);
+	}
+
+	private static int[] ensureCapacity(int[] array, int size)
+	{
+		return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+	}
+
+	private static double[] ensureCapacity(double[] array, int size)
+	{
+		return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+	}
+}
@@ -418,17 +418,25 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
         
     @Override
 	public double[] getBelief()
+    {
+        final double[] outBelief = new double[getDomain().size()];
+        getBelief(outBelief, 0);
+        return outBelief;
+    }
+    
+    @Override
+	public void getBelief(double[] outBelief, int offset)
     {
         final int M = getDomain().size();
-        final double[] outBelief = new double[M];
         
         PriorAndCondition known = getPriorAndCondition();
 		final Value fixedValue = known.value();
         if (fixedValue != null)
         {
-        	outBelief[fixedValue.getIndex()] = 1.0;
+        	Arrays.fill(outBelief, offset, offset + M, 0.0);
+        	outBelief[offset + fixedValue.getIndex()] = 1.0;
         	known.release();
-        	return outBelief;
+        	return;
         }
 
         final DiscreteMessage priors = toEnergyMessage(known);
@@ -452,15 +460,15 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
 	        	out += (tmp == 0) ? minLog : Math.log(tmp);
 	        }
         	if (out > maxLog) maxLog = out;
-        	outBelief[m] = out;
+        	outBelief[offset + m] = out;
         }
         
         //create sum
         double sum = 0;
         for (int m = 0; m < M; m++)
         {
-        	double out = Math.exp(outBelief[m] - maxLog);
-        	outBelief[m] = out;
+        	double out = Math.exp(outBelief[offset + m] - maxLog);
+        	outBelief[offset + m] = out;
         	sum += out;
         }
         
@@ -469,16 +477,14 @@ public class SumProductDiscrete extends SDiscreteVariableDoubleArray
         {
         	for (int m = 0; m < M; m++)
         	{
-        		outBelief[m] /= sum;
+        		outBelief[offset + m] /= sum;
         	}
         }
         else
         {
         	// If all zero, then return uniform
-        	Arrays.fill(outBelief, 1.0/M);
+        	Arrays.fill(outBelief, offset, offset + M, 1.0/M);
         }
-        
-        return outBelief;
     }
     
 	public double [] getNormalizedInputs()
@@ -19,11 +19,14 @@ package com.analog.lyric.dimple.solvers.sumproduct;
 import com.analog.lyric.dimple.options.BPOptions;
 import com.analog.lyric.dimple.solvers.core.CustomFactorsOptionKey;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactor;
+import com.analog.lyric.options.BooleanOptionKey;
+import com.analog.lyric.options.DoubleOptionKey;
+import com.analog.lyric.options.IntegerOptionKey;
 
 /**
  * Options for sum-product solver.
  * <p>
- * There are currently no options specific to the SumProduct solver. See {@link BPOptions} instead.
+ * See also the common options in {@link BPOptions}.
  * <p>
  * @since 0.07
  * @author Christopher Barber
@@ -34,4 +37,133 @@ public class SumProductOptions extends BPOptions
 		customFactors =	new CustomFactorsOptionKey<>(SumProductOptions.class, "customFactors",
 			SumProductCustomFactors.class);
 	
+	/**
+	 * Enables direct solution of purely linear Gaussian models.
+	 * <p>
+	 * When true and every factor in the graph is a {@link ILinearGaussianFactor} (e.g. sums, linear equations,
+	 * constant products and normals with constant parameters over unbounded real variables), solving the
+	 * graph will assemble the sparse joint precision matrix and linear constraints for the model and solve it
+	 * directly instead of running belief propagation. The resulting beliefs are exact even when the graph has
+	 * loops. If the model is not purely linear Gaussian or the solve fails to converge, the solver falls
+	 * back on the normal belief propagation schedule.
+	 * <p>
+	 * This option should be set on the root graph.
+	 * <p>
+	 * @since 0.08
+	 * @see LinearGaussianSystem
+	 */
+	public static final BooleanOptionKey linearGaussianSolve =
+		new BooleanOptionKey(SumProductOptions.class, "linearGaussianSolve", false);
+	
+	/**
+	 * Specifies whether to compute exact marginal variances when using {@link #linearGaussianSolve}.
+	 * <p>
+	 * Computing marginal variances requires an additional solve for each real dimension in the model, so
+	 * this is only practical for small to moderately sized models and is off by default. When false,
+	 * beliefs will contain the exact mean with zero precision.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey linearGaussianVariances =
+		new BooleanOptionKey(SumProductOptions.class, "linearGaussianVariances", false);
+	
+	/**
+	 * Relative residual tolerance for the iterative solver used by {@link #linearGaussianSolve}.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey linearGaussianTolerance =
+		new DoubleOptionKey(SumProductOptions.class, "linearGaussianTolerance", 1e-10, 0.0, 1.0);
+	
+	/**
+	 * Maximum number of iterations per solve for the iterative solver used by {@link #linearGaussianSolve}.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey linearGaussianMaxIterations =
+		new IntegerOptionKey(SumProductOptions.class, "linearGaussianMaxIterations", 10000, 1, Integer.MAX_VALUE);
+
+	/**
+	 * Computes table factor updates in the energy domain.
+	 * <p>
+	 * When true, table factors compute their output messages by summing the table and input energies
+	 * for each table entry and combining entries with a max-shifted log-sum-exp, instead of multiplying
+	 * weights. This avoids failures that occur when the products for all entries underflow to zero, as
+	 * can happen for factors with many inputs and large energies, at some additional cost. The
+	 * {@linkplain BPOptions#updateApproach optimized update} is not used for factors with this option set.
+	 * <p>
+	 * This takes effect when the graph is initialized.
+	 * <p>
+	 * @since 0.08
+	 * @see #energyDomainFastExp
+	 */
+	public static final BooleanOptionKey energyDomainUpdate =
+		new BooleanOptionKey(SumProductOptions.class, "energyDomainUpdate", false);
+
+	/**
+	 * Uses a fast approximation of the exponential function for {@link #energyDomainUpdate}.
+	 * <p>
+	 * The approximation has relative error less than 1e-11.
+	 * <p>
+	 * @since 0.08
+	 * @see com.analog.lyric.math.Utilities#fastEnergyToWeight(double)
+	 */
+	public static final BooleanOptionKey energyDomainFastExp =
+		new BooleanOptionKey(SumProductOptions.class, "energyDomainFastExp", false);
+
+	/**
+	 * Computes all output messages of a sampled factor from a single set of samples.
+	 * <p>
+	 * By default, a {@link com.analog.lyric.dimple.solvers.sumproduct.sampledfactor.SampledFactor SampledFactor}
+	 * runs its private Gibbs message graph separately for each output edge, with the input for that edge set
+	 * to uniform, so that a factor with d edges draws d times
+	 * {@link com.analog.lyric.dimple.solvers.gibbs.GibbsOptions#numSamples GibbsOptions.numSamples}
+	 * samples per update. When this option is true, the message graph is
+	 * instead run once with all inputs set, and the output message for each edge is estimated from the
+	 * samples weighted by the inverse of that edge's input message. Sampling stops early once
+	 * {@link #sampledFactorMinEffectiveSamples} or {@link #sampledFactorMessageTolerance} is satisfied.
+	 * <p>
+	 * Edges for which the weighted samples are not usable, because the input message has zero weight for
+	 * some values or because the effective sample size is too small, are updated separately as before.
+	 * This works best when input messages are broad relative to the factor's belief.
+	 * <p>
+	 * This takes effect when the graph is initialized.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final BooleanOptionKey sampledFactorSharedSamples =
+		new BooleanOptionKey(SumProductOptions.class, "sampledFactorSharedSamples", false);
+
+	/**
+	 * Number of samples between stopping checks for {@link #sampledFactorSharedSamples}.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final IntegerOptionKey sampledFactorBatchSize =
+		new IntegerOptionKey(SumProductOptions.class, "sampledFactorBatchSize", 100, 1, Integer.MAX_VALUE);
+
+	/**
+	 * Minimum effective sample size for {@link #sampledFactorSharedSamples}.
+	 * <p>
+	 * When positive, sampling stops as soon as the effective sample size of the importance weights for every
+	 * edge is at least this value, and edges that have not reached it by
+	 * {@link com.analog.lyric.dimple.solvers.gibbs.GibbsOptions#numSamples GibbsOptions.numSamples}
+	 * samples are updated separately. When zero, the effective sample size is not checked.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey sampledFactorMinEffectiveSamples =
+		new DoubleOptionKey(SumProductOptions.class, "sampledFactorMinEffectiveSamples", 0.0, 0.0, Double.POSITIVE_INFINITY);
+
+	/**
+	 * Message change tolerance for {@link #sampledFactorSharedSamples}.
+	 * <p>
+	 * When positive, sampling stops as soon as the KL divergence between the output messages estimated
+	 * after successive {@linkplain #sampledFactorBatchSize batches} is less than this value for every edge.
+	 * When zero, message changes are not checked.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static final DoubleOptionKey sampledFactorMessageTolerance =
+		new DoubleOptionKey(SumProductOptions.class, "sampledFactorMessageTolerance", 0.0, 0.0, Double.POSITIVE_INFINITY);
 }
@@ -34,6 +34,19 @@ import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParamete
  */
 public class SumProductReal extends SRealVariableBase
 {
+	/*-------
+	 * State
+	 */
+	
+	/**
+	 * Belief computed directly by {@link LinearGaussianSystem}, if any.
+	 */
+	private @Nullable NormalParameters _directBelief = null;
+	
+	/*--------------
+	 * Construction
+	 */
+	
 	public SumProductReal(Real var, SumProductSolverGraph parent)
     {
 		super(var, parent);
@@ -42,12 +55,19 @@ public class SumProductReal extends SRealVariableBase
     @Override
 	protected void doUpdateEdge(int outPortNum)
     {
+    	_directBelief = null;
     	doUpdate(getSiblingEdgeState(outPortNum).varToFactorMsg, outPortNum);
     }
     
     @Override
 	public NormalParameters getBelief()
     {
+    	final NormalParameters directBelief = _directBelief;
+    	if (directBelief != null)
+    	{
+    		return directBelief.clone();
+    	}
+    	
     	return doUpdate(new NormalParameters(), -1);
     }
     
@@ -83,6 +103,13 @@ public class SumProductReal extends SRealVariableBase
 	 * SVariableBase methods
 	 */
 	
+	@Override
+	public void initialize()
+	{
+		super.initialize();
+		_directBelief = null;
+	}
+	
 	@Override
 	protected NormalParameters cloneMessage(int edge)
 	{
@@ -102,33 +129,66 @@ public class SumProductReal extends SRealVariableBase
 		return (SNormalEdge)getSiblingEdgeState_(siblingIndex);
 	}
 	
-	/*-----------------
-	 * Private methods
+	/*------------------------
+	 * SumProductReal methods
 	 */
 	
-    private NormalParameters doUpdate(NormalParameters outMsg, int excludeEdge)
-    {
-    	
+	/**
+	 * Computes the combined prior and conditioning on the variable, ignoring all factor messages.
+	 * <p>
+	 * @param prior is set to the deterministic fixed value of the variable, if any, or else the
+	 * product of its normal priors.
+	 * @return true if variable has a fixed value.
+	 * @since 0.08
+	 */
+	boolean computePrior(NormalParameters prior)
+	{
     	PriorAndCondition known = getPriorAndCondition();
     	Value fixedValue = known.value();
     	
     	if (fixedValue != null)
     	{
-    		outMsg.setDeterministic(fixedValue);
+    		prior.setDeterministic(fixedValue);
     	}
     	else
     	{
-    		outMsg.setNull();
+    		prior.setNull();
 
     		for (IDatum datum : known)
     		{
     			NormalParameters input = priorToNormal(datum);
     			if (input != null)
     			{
-    				outMsg.addFrom(input);
+    				prior.addFrom(input);
     			}
     		}
+    	}
 
+    	known.release();
+    	
+    	return fixedValue != null;
+	}
+	
+	/**
+	 * Sets belief computed directly by {@link LinearGaussianSystem}.
+	 * <p>
+	 * Until cleared by {@link #initialize()} or a subsequent edge update, this will be returned
+	 * by {@link #getBelief()}.
+	 * @since 0.08
+	 */
+	void setDirectBelief(@Nullable NormalParameters belief)
+	{
+		_directBelief = belief;
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+    private NormalParameters doUpdate(NormalParameters outMsg, int excludeEdge)
+    {
+    	if (!computePrior(outMsg))
+    	{
     		for (int i = getSiblingCount(); --i>=0;)
     		{
     			if (i != excludeEdge)
@@ -138,8 +198,6 @@ public class SumProductReal extends SRealVariableBase
     		}
     	}
 
-    	known.release();
-    	
     	return outMsg;
     }
     
@@ -37,6 +37,11 @@ public class SumProductRealJoint extends SRealJointVariableBase
 {
 
 	private int _numVars;
+	
+	/**
+	 * Belief computed directly by {@link LinearGaussianSystem}, if any.
+	 */
+	private @Nullable MultivariateNormalParameters _directBelief = null;
 
 	public SumProductRealJoint(RealJoint var, SumProductSolverGraph parent)
 	{
@@ -48,6 +53,12 @@ public class SumProductRealJoint extends SRealJointVariableBase
 	@Override
 	public Object getBelief()
 	{
+		final MultivariateNormalParameters directBelief = _directBelief;
+		if (directBelief != null)
+		{
+			return directBelief.clone();
+		}
+		
 		MultivariateNormalParameters m = new MultivariateNormalParameters(getDomain().getDimensions());
 		doUpdate(m,-1);
 		return m;
@@ -63,10 +74,34 @@ public class SumProductRealJoint extends SRealJointVariableBase
 	@Override
 	protected void doUpdateEdge(int outPortNum)
 	{
+		_directBelief = null;
 		doUpdate(getSiblingEdgeState(outPortNum).varToFactorMsg, outPortNum);
 	}
 
 	private void doUpdate(MultivariateNormalParameters outMsg, int outPortNum)
+	{
+		if (!computePrior(outMsg))
+		{
+			for (int i = 0, n = getSiblingCount(); i < n; i++ )
+			{
+				if (i != outPortNum)
+				{
+					final MultivariateNormalParameters inMsg = getSiblingEdgeState(i).factorToVarMsg;
+					outMsg.addFrom(inMsg);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the combined prior and conditioning on the variable, ignoring all factor messages.
+	 * <p>
+	 * @param prior is set to the deterministic fixed value of the variable, if any, or else the
+	 * product of its multivariate normal priors.
+	 * @return true if variable has a fixed value.
+	 * @since 0.08
+	 */
+	boolean computePrior(MultivariateNormalParameters prior)
 	{
 		PriorAndCondition known = getPriorAndCondition();
 		
@@ -74,32 +109,37 @@ public class SumProductRealJoint extends SRealJointVariableBase
 		if (fixedValue != null)
 		{
 	    	// If fixed value, just return the input, which has been set to a zero-variance message
-			outMsg.setDeterministic(fixedValue);
+			prior.setDeterministic(fixedValue);
 		}
 		else
 		{
-			outMsg.setNull();
+			prior.setNull();
 			
 			for (IDatum datum : known)
 			{
 				final MultivariateNormalParameters input = datumToNormal(datum);
 				if (input != null)
 				{
-					outMsg.addFrom(input);
-				}
-			}
-
-			for (int i = 0, n = getSiblingCount(); i < n; i++ )
-			{
-				if (i != outPortNum)
-				{
-					final MultivariateNormalParameters inMsg = getSiblingEdgeState(i).factorToVarMsg;
-					outMsg.addFrom(inMsg);
+					prior.addFrom(input);
 				}
 			}
 		}
 		
 		known.release();
+		
+		return fixedValue != null;
+	}
+	
+	/**
+	 * Sets belief computed directly by {@link LinearGaussianSystem}.
+	 * <p>
+	 * Until cleared by {@link #initialize()} or a subsequent edge update, this will be returned
+	 * by {@link #getBelief()}.
+	 * @since 0.08
+	 */
+	void setDirectBelief(@Nullable MultivariateNormalParameters belief)
+	{
+		_directBelief = belief;
 	}
 
 	public MultivariateNormalParameters createDefaultMessage()
@@ -126,6 +166,13 @@ public class SumProductRealJoint extends SRealJointVariableBase
 	 * SVariableBase methods
 	 */
 	
+	@Override
+	public void initialize()
+	{
+		super.initialize();
+		_directBelief = null;
+	}
+	
 	@Override
 	protected MultivariateNormalParameters cloneMessage(int edge)
 	{
@@ -76,6 +76,7 @@ public class SumProductSolverGraph extends BPSolverGraph<ISolverFactor,ISolverVa
 	 */
 	
 	private double _damping = 0;
+	private boolean _linearGaussianSolve = false;
 	private @Nullable IFactorTable _currentFactorTable = null;
 	private static Random _rand = new Random();
 
@@ -658,6 +659,22 @@ public class SumProductSolverGraph extends BPSolverGraph<ISolverFactor,ISolverVa
 		}
 		
 		_damping = getOptionOrDefault(BPOptions.damping);
+		_linearGaussianSolve = getOptionOrDefault(SumProductOptions.linearGaussianSolve);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If {@link SumProductOptions#linearGaussianSolve} is enabled and the model is purely linear Gaussian,
+	 * this will compute exact beliefs directly using {@link LinearGaussianSystem} instead of iterating.
+	 */
+	@Override
+	public void solveOneStep()
+	{
+		if (!_linearGaussianSolve || !solveLinearGaussian())
+		{
+			super.solveOneStep();
+		}
 	}
 
 	/*-------------------------------
@@ -750,4 +767,30 @@ public class SumProductSolverGraph extends BPSolverGraph<ISolverFactor,ISolverVa
 	{
 		return "sum-product";
 	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private boolean solveLinearGaussian()
+	{
+		final LinearGaussianSystem system = LinearGaussianSystem.build(this);
+		if (system == null)
+		{
+			return false;
+		}
+		
+		final double tolerance = getOptionOrDefault(SumProductOptions.linearGaussianTolerance);
+		final int maxIterations = getOptionOrDefault(SumProductOptions.linearGaussianMaxIterations);
+		final boolean computeVariances = getOptionOrDefault(SumProductOptions.linearGaussianVariances);
+		
+		if (!system.solve(tolerance, maxIterations) ||
+			!system.updateBeliefs(computeVariances, tolerance, maxIterations))
+		{
+			logWarning("Linear Gaussian solve of %s did not converge; using belief propagation instead", _model);
+			return false;
+		}
+		
+		return true;
+	}
 }
@@ -123,7 +123,11 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 		{
 			updatePlan = factorTableUpdateSettings.getOptimizedUpdatePlan();
 		}
-		if (updatePlan != null)
+		if (getOptionOrDefault(SumProductOptions.energyDomainUpdate))
+		{
+			_tableFactorEngine = new TableFactorEngineEnergy(this);
+		}
+		else if (updatePlan != null)
 		{
 			_tableFactorEngine = new TableFactorEngineOptimized(this, updatePlan);
 		}
@@ -234,7 +238,15 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 	@Override
 	protected void setTableRepresentation(IFactorTable table)
 	{
-		table.setRepresentation(FactorTableRepresentation.SPARSE_WEIGHT_WITH_INDICES);
+		if (getOptionOrDefault(SumProductOptions.energyDomainUpdate))
+		{
+			// Keep the energies, which may not be recoverable from weights that have underflowed.
+			table.setRepresentation(FactorTableRepresentation.ALL_SPARSE_WITH_INDICES);
+		}
+		else
+		{
+			table.setRepresentation(FactorTableRepresentation.SPARSE_WEIGHT_WITH_INDICES);
+		}
 	}
 	
 	@Override
@@ -318,14 +330,16 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 	/**
 	 * Returns the effective update approach for the factor. If the update approach is set to
 	 * automatic, this value is not valid until the graph is initialized. Note that a factor
-	 * with only one edge always employs the normal update approach.
+	 * with only one edge or with {@link SumProductOptions#energyDomainUpdate} enabled always
+	 * employs the normal update approach.
 	 * 
 	 * @since 0.07
 	 */
 	public UpdateApproach getEffectiveUpdateApproach()
 	{
 		FactorTableUpdateSettings factorTableUpdateSettings = getFactorTableUpdateSettings();
-		if (factorTableUpdateSettings != null && factorTableUpdateSettings.getOptimizedUpdatePlan() != null)
+		if (factorTableUpdateSettings != null && factorTableUpdateSettings.getOptimizedUpdatePlan() != null &&
+			!getOptionOrDefault(SumProductOptions.energyDomainUpdate))
 		{
 			return UpdateApproach.OPTIMIZED;
 		}
@@ -497,7 +511,9 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 		double sum = 0;
 		for (int i = beliefs.length; --i>=0;)
 		{
-			sum += beliefs[i] * weightToEnergy(weights[i]);
+			// Entries ruled out by fixed values have zero belief and may have zero weight
+			if (beliefs[i] != 0)
+				sum += beliefs[i] * weightToEnergy(weights[i]);
 		}
 		
 		return sum;
@@ -511,7 +527,8 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 		final double [] beliefs = getBelief();
 		for (double belief : beliefs)
 		{
-			sum -= belief * Math.log(belief);
+			if (belief != 0)
+				sum -= belief * Math.log(belief);
 		}
 		
 		return sum;
@@ -810,6 +827,12 @@ public class SumProductTableFactor extends STableFactorDoubleArray
 		return _inputMessages[edgeNumber];
 	}
 	
+	@Override
+	public DiscreteMessage getInPortMessage(int edgeNumber)
+	{
+		return getSiblingEdgeState(edgeNumber).varToFactorMsg;
+	}
+	
 	@Override
 	public double[][] getOutPortMsgs()
 	{
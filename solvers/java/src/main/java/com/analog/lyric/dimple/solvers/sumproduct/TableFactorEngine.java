@@ -16,8 +16,12 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct;
 
+import static java.util.Objects.*;
+
 import java.util.Arrays;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import com.analog.lyric.dimple.environment.DimpleEnvironment;
 import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.exceptions.NormalizationException;
@@ -27,11 +31,22 @@ import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessag
 
 /*
  * Provides the update and updateEdge logic for sumproduct
+ *
+ * When enough entries of the input messages are exactly zero, as happens for conditioned variables or
+ * variables with near-deterministic priors, output messages are computed only from the table rows that
+ * can contribute. This uses an index of the rows grouped by the value of each port, which is built the
+ * first time an input message contains a zero.
  */
 public class TableFactorEngine
 {
+	/**
+	 * Rows are only selected through the row index if at most this fraction of the table would be visited.
+	 */
+	static final double MAX_INDEXED_ROW_FRACTION = .5;
+
 	final SumProductTableFactor _tableFactor;
 	final Factor _factor;
+	private @Nullable RowIndex _rowIndex = null;
 	
 	public TableFactorEngine(SumProductTableFactor tableFactor)
 	{
@@ -43,8 +58,7 @@ public class TableFactorEngine
 	{
 		final SumProductTableFactor tableFactor = _tableFactor;
 	    final int[][] table = tableFactor.getFactorTable().getIndicesSparseUnsafe();
-	    final double[] values = tableFactor.getFactorTable().getWeightsSparseUnsafe();
-	    final int tableLength = table.length;
+	    final double[] values = getTableValues(tableFactor.getFactorTable());
 	    final int numPorts = _factor.getSiblingCount();
 	    
         final double[] outputMsgs = tableFactor.getOutPortMsg(outPortNum);
@@ -59,23 +73,12 @@ public class TableFactorEngine
     		final double[] saved = DimpleEnvironment.doubleArrayCache.allocateAtLeast(outputMsgLength);
     		System.arraycopy(outputMsgs, 0, saved, 0, outputMsgLength);
         
-    		double sum = 0.0;
-    		Arrays.fill(outputMsgs, 0);
+    		computeOutput(outPortNum, outputMsgs, table, values, inputMsgs);
 
-    		for (int tableIndex = tableLength; --tableIndex>=0;)
+    		double sum = 0.0;
+    		for (int i = outputMsgLength; --i>=0;)
     		{
-    			double prob = values[tableIndex];
-    			final int[] tableRow = table[tableIndex];
-    			final int outputIndex = tableRow[outPortNum];
-
-    			int inPortNum = numPorts;
-    			while (--inPortNum > outPortNum)
-    				prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
-    			while (--inPortNum >= 0)
-    				prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
-
-    			outputMsgs[outputIndex] += prob;
-    			sum += prob;
+    			sum += outputMsgs[i];
     		}
         
     		if (sum == 0)
@@ -104,9 +107,11 @@ public class TableFactorEngine
 
     		final DiscreteMessage outMsg = _tableFactor.getSiblingEdgeState(outPortNum).factorToVarMsg;
 
+    		final double outputEnergy = computeOutput(outPortNum, outputMsgs, table, values, inputMsgs);
+    		
         	if (true) // make this optional?
         	{
-        		double normalizationEnergy = 0.0;
+        		double normalizationEnergy = outputEnergy;
         		for (int i = numPorts; --i > outPortNum;)
         		{
     				normalizationEnergy += _tableFactor.getSiblingEdgeState(i).varToFactorMsg.getNormalizationEnergy();
@@ -117,23 +122,6 @@ public class TableFactorEngine
         		}
         		outMsg.setNormalizationEnergy(normalizationEnergy);
         	}
-        	
-    		Arrays.fill(outputMsgs, 0);
-
-    		for (int tableIndex = tableLength; --tableIndex>=0;)
-    		{
-    			double prob = values[tableIndex];
-    			final int[] tableRow = table[tableIndex];
-    			final int outputIndex = tableRow[outPortNum];
-
-    			int inPortNum = numPorts;
-    			while (--inPortNum > outPortNum)
-    				prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
-    			while (--inPortNum >= 0)
-    				prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
-
-    			outputMsgs[outputIndex] += prob;
-    		}
         
     		try
     		{
@@ -154,8 +142,7 @@ public class TableFactorEngine
 		final SumProductTableFactor tableFactor = _tableFactor;
 		final IFactorTable table = tableFactor.getFactorTable();
 	    final int[][] tableIndices = table.getIndicesSparseUnsafe();
-	    final double[] values = table.getWeightsSparseUnsafe();
-	    final int tableLength = tableIndices.length;
+	    final double[] values = getTableValues(table);
 	    final int numPorts = _factor.getSiblingCount();
 	    
 	    final double [][] inMsgs = tableFactor.getInPortMsgs();
@@ -176,21 +163,7 @@ public class TableFactorEngine
 	    			System.arraycopy(outputMsgs, 0, saved, savedOffset, outputMsgLength);
 	    		}
 
-	    		Arrays.fill(outputMsgs, 0);
-
-	    		for (int tableIndex = tableLength; --tableIndex>=0;)
-	    		{
-	    			double prob = values[tableIndex];
-	    			final int[] tableRow = tableIndices[tableIndex];
-	    			int outputIndex = tableRow[outPortNum];
-
-	    			int inPortNum = numPorts;
-	    			while (--inPortNum > outPortNum)
-	    				prob *= inMsgs[inPortNum][tableRow[inPortNum]];
-	    			while (--inPortNum >= 0)
-	    				prob *= inMsgs[inPortNum][tableRow[inPortNum]];
-	    			outputMsgs[outputIndex] += prob;
-	    		}
+	    		computeOutput(outPortNum, outputMsgs, tableIndices, values, inMsgs);
 
 	    		double sum = 0;
 	    		for (int i = outputMsgLength; --i>=0;)
@@ -229,21 +202,7 @@ public class TableFactorEngine
 	    		final double[] outputMsgs = tableFactor.getOutPortMsg(outPortNum);
 	    		final int outputMsgLength = outputMsgs.length;
 
-	    		Arrays.fill(outputMsgs, 0);
-
-	    		for (int tableIndex = tableLength; --tableIndex>=0;)
-	    		{
-	    			double prob = values[tableIndex];
-	    			final int[] tableRow = tableIndices[tableIndex];
-	    			int outputIndex = tableRow[outPortNum];
-
-	    			int inPortNum = numPorts;
-	    			while (--inPortNum > outPortNum)
-	    				prob *= inMsgs[inPortNum][tableRow[inPortNum]];
-	    			while (--inPortNum >= 0)
-	    				prob *= inMsgs[inPortNum][tableRow[inPortNum]];
-	    			outputMsgs[outputIndex] += prob;
-	    		}
+	    		computeOutput(outPortNum, outputMsgs, tableIndices, values, inMsgs);
 
 	    		double sum = 0;
 	    		for (int i = outputMsgLength; --i>=0;)
@@ -264,4 +223,208 @@ public class TableFactorEngine
 	    	}
 	    }
 	}
+	
+	/*-----------------
+	 * Package methods
+	 */
+	
+	/**
+	 * The table values passed to {@link #computeOutput}, which are the sparse weights.
+	 */
+	double[] getTableValues(IFactorTable table)
+	{
+		return table.getWeightsSparseUnsafe();
+	}
+	
+	/**
+	 * Computes unnormalized output message for given port from the table and input messages.
+	 * <p>
+	 * @param values are the sparse table values returned by {@link #getTableValues}.
+	 * @return energy offset of the output message, i.e. the actual unnormalized output weights are
+	 * the values written to {@code outputMsgs} times e<sup>-offset</sup>. Always zero for this implementation.
+	 */
+	double computeOutput(int outPortNum, double[] outputMsgs, int[][] table, double[] values, double[][] inputMsgs)
+	{
+		final int numPorts = inputMsgs.length;
+		
+		Arrays.fill(outputMsgs, 0);
+		
+		// Find the input port whose non-zero entries select the fewest rows.
+		int bestPort = -1;
+		int bestRowCount = (int)(table.length * MAX_INDEXED_ROW_FRACTION);
+		RowIndex rowIndex = _rowIndex;
+		for (int inPortNum = 0; inPortNum < numPorts; ++inPortNum)
+		{
+			if (inPortNum == outPortNum)
+			{
+				continue;
+			}
+			
+			final double[] inputMsg = inputMsgs[inPortNum];
+			if (rowIndex == null)
+			{
+				if (!hasZero(inputMsg))
+				{
+					continue;
+				}
+				_rowIndex = rowIndex = new RowIndex(table, numPorts);
+			}
+			else if (rowIndex._table != table)
+			{
+				_rowIndex = rowIndex = new RowIndex(table, numPorts);
+			}
+			
+			final int rowCount = rowIndex.countRows(inPortNum, inputMsg, bestRowCount);
+			if (rowCount < bestRowCount)
+			{
+				bestPort = inPortNum;
+				bestRowCount = rowCount;
+			}
+		}
+
+		if (bestPort < 0)
+		{
+			for (int tableIndex = table.length; --tableIndex>=0;)
+			{
+				double prob = values[tableIndex];
+				final int[] tableRow = table[tableIndex];
+				final int outputIndex = tableRow[outPortNum];
+
+				int inPortNum = numPorts;
+				while (--inPortNum > outPortNum)
+					prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
+				while (--inPortNum >= 0)
+					prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
+
+				outputMsgs[outputIndex] += prob;
+			}
+		}
+		else
+		{
+			final RowIndex index = requireNonNull(rowIndex);
+			final double[] selectingMsg = inputMsgs[bestPort];
+			final int[] rows = index._rows[bestPort];
+			final int[] offsets = index._offsets[bestPort];
+			
+			// Values above the largest one that appears in the table have no rows.
+			for (int value = Math.min(selectingMsg.length, offsets.length - 1); --value>=0;)
+			{
+				if (selectingMsg[value] == 0)
+				{
+					continue;
+				}
+				
+				for (int i = offsets[value], end = offsets[value + 1]; i < end; ++i)
+				{
+					final int tableIndex = rows[i];
+					double prob = values[tableIndex];
+					final int[] tableRow = table[tableIndex];
+					final int outputIndex = tableRow[outPortNum];
+
+					int inPortNum = numPorts;
+					while (--inPortNum > outPortNum)
+						prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
+					while (--inPortNum >= 0)
+						prob *= inputMsgs[inPortNum][tableRow[inPortNum]];
+
+					outputMsgs[outputIndex] += prob;
+				}
+			}
+		}
+		
+		return 0.0;
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private static boolean hasZero(double[] msg)
+	{
+		for (int i = msg.length; --i>=0;)
+		{
+			if (msg[i] == 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/*---------------
+	 * Inner classes
+	 */
+	
+	/**
+	 * For each port, the table rows sorted by that port's value.
+	 * <p>
+	 * The rows with value {@code v} for port {@code p} are {@code _rows[p][_offsets[p][v]]} through
+	 * {@code _rows[p][_offsets[p][v+1]-1]} in increasing order.
+	 */
+	private static final class RowIndex
+	{
+		private final int[][] _table;
+		private final int[][] _rows;
+		private final int[][] _offsets;
+		
+		private RowIndex(int[][] table, int numPorts)
+		{
+			_table = table;
+			_rows = new int[numPorts][];
+			_offsets = new int[numPorts][];
+			
+			final int nRows = table.length;
+			for (int port = 0; port < numPorts; ++port)
+			{
+				int maxValue = -1;
+				for (int[] row : table)
+				{
+					maxValue = Math.max(maxValue, row[port]);
+				}
+				
+				// Counting sort by value
+				final int[] offsets = new int[maxValue + 2];
+				for (int[] row : table)
+				{
+					++offsets[row[port] + 1];
+				}
+				for (int value = 0; value <= maxValue; ++value)
+				{
+					offsets[value + 1] += offsets[value];
+				}
+				final int[] next = Arrays.copyOf(offsets, maxValue + 1);
+				final int[] rows = new int[nRows];
+				for (int tableIndex = 0; tableIndex < nRows; ++tableIndex)
+				{
+					rows[next[table[tableIndex][port]]++] = tableIndex;
+				}
+				
+				_rows[port] = rows;
+				_offsets[port] = offsets;
+			}
+		}
+		
+		/**
+		 * Number of rows whose value for {@code port} has a non-zero entry in {@code inputMsg}, or
+		 * {@code limit} if there are at least that many.
+		 */
+		private int countRows(int port, double[] inputMsg, int limit)
+		{
+			final int[] offsets = _offsets[port];
+			final int nValues = Math.min(inputMsg.length, offsets.length - 1);
+			int count = 0;
+			for (int value = 0; value < nValues; ++value)
+			{
+				if (inputMsg[value] != 0)
+				{
+					count += offsets[value + 1] - offsets[value];
+					if (count >= limit)
+					{
+						return limit;
+					}
+				}
+			}
+			return count;
+		}
+	}
 }
@@ -0,0 +1,208 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.sumproduct;
+
+import static com.analog.lyric.math.Utilities.*;
+
+import java.util.Arrays;
+
+import com.analog.lyric.collect.ArrayUtil;
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+
+/**
+ * Sum-product table factor update computed in the energy domain.
+ * <p>
+ * The energy of each table entry is the sum of its table energy and the energies of the
+ * corresponding input message values. The entries for each output value are combined using
+ * a log-sum-exp that is shifted by the minimum energy for that output value, so the dominant
+ * entry always contributes a weight of one and the result cannot underflow to zero unless
+ * every entry has infinite energy. The shifted output weights are passed back to the normal
+ * update logic along with the overall shift, which is added to the message's normalization energy.
+ * <p>
+ * The entry energies are computed in a first pass over the table and stored so that the minimum for
+ * each output value is known before any exponentials are computed. Entries whose energy exceeds the
+ * minimum by enough that they cannot affect the sum to double precision are skipped without calling
+ * exp, and {@link SumProductOptions#energyDomainFastExp} replaces the remaining calls with
+ * {@link com.analog.lyric.math.Utilities#fastEnergyToWeight}.
+ * <p>
+ * Enabled by {@link SumProductOptions#energyDomainUpdate}.
+ * <p>
+ * @since 0.08
+ */
+public class TableFactorEngineEnergy extends TableFactorEngine
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Entries whose energy exceeds the minimum for their output value by more than this plus the
+	 * log of the number of entries together change the sum by less than e<sup>-40</sup>.
+	 */
+	static final double MAX_ENERGY_DIFFERENCE = 40.0;
+
+	private final boolean _fastExp;
+
+	private double[][] _inputEnergies = ArrayUtil.EMPTY_DOUBLE_ARRAY_ARRAY;
+	private double[] _minEnergies = ArrayUtil.EMPTY_DOUBLE_ARRAY;
+
+	/*--------------
+	 * Construction
+	 */
+
+	public TableFactorEngineEnergy(SumProductTableFactor tableFactor)
+	{
+		super(tableFactor);
+		_fastExp = tableFactor.getOptionOrDefault(SumProductOptions.energyDomainFastExp);
+	}
+
+	/*--------------------------
+	 * TableFactorEngine methods
+	 */
+
+	/**
+	 * Returns the sparse energies of the table.
+	 */
+	@Override
+	double[] getTableValues(IFactorTable table)
+	{
+		return table.getEnergiesSparseUnsafe();
+	}
+
+	@Override
+	double computeOutput(int outPortNum, double[] outputMsgs, int[][] table, double[] energies, double[][] inputMsgs)
+	{
+		final int numPorts = inputMsgs.length;
+		final int outputMsgLength = outputMsgs.length;
+		final int nEntries = table.length;
+
+		final double[][] inputEnergies = computeInputEnergies(outPortNum, inputMsgs);
+
+		double[] minEnergies = _minEnergies;
+		if (minEnergies.length != outputMsgLength)
+		{
+			_minEnergies = minEnergies = new double[outputMsgLength];
+		}
+		Arrays.fill(minEnergies, Double.POSITIVE_INFINITY);
+
+		final double[] entryEnergies = DimpleEnvironment.doubleArrayCache.allocateAtLeast(nEntries);
+
+		// First pass computes the energy of each entry and the minimum for each output value.
+		for (int tableIndex = nEntries; --tableIndex>=0;)
+		{
+			double energy = energies[tableIndex];
+			final int[] tableRow = table[tableIndex];
+
+			int inPortNum = numPorts;
+			while (--inPortNum > outPortNum)
+				energy += inputEnergies[inPortNum][tableRow[inPortNum]];
+			while (--inPortNum >= 0)
+				energy += inputEnergies[inPortNum][tableRow[inPortNum]];
+
+			entryEnergies[tableIndex] = energy;
+			final int outputIndex = tableRow[outPortNum];
+			if (energy < minEnergies[outputIndex])
+			{
+				minEnergies[outputIndex] = energy;
+			}
+		}
+
+		// Second pass sums the weights relative to the minimum for each output value. Entries with
+		// infinite energy produce a NaN or infinite difference and are skipped.
+		Arrays.fill(outputMsgs, 0);
+		final double cutoff = MAX_ENERGY_DIFFERENCE + Math.log(nEntries);
+		final boolean fastExp = _fastExp;
+		for (int tableIndex = nEntries; --tableIndex>=0;)
+		{
+			final int outputIndex = table[tableIndex][outPortNum];
+			final double difference = entryEnergies[tableIndex] - minEnergies[outputIndex];
+			if (difference <= cutoff)
+			{
+				outputMsgs[outputIndex] += fastExp ? fastEnergyToWeight(difference) : energyToWeight(difference);
+			}
+		}
+
+		DimpleEnvironment.doubleArrayCache.release(entryEnergies);
+
+		// The energy for output value i is minEnergies[i] - log(outputMsgs[i]). Shift the output
+		// weights by the smallest of these.
+		double offset = Double.POSITIVE_INFINITY;
+		for (int i = outputMsgLength; --i>=0;)
+		{
+			final double sum = outputMsgs[i];
+			if (sum > 0)
+			{
+				offset = Math.min(offset, minEnergies[i] - Math.log(sum));
+			}
+		}
+
+		if (offset == Double.POSITIVE_INFINITY)
+		{
+			// All entries have zero weight. Leave output as zeros so that the caller reports an error.
+			return 0.0;
+		}
+
+		for (int i = outputMsgLength; --i>=0;)
+		{
+			final double sum = outputMsgs[i];
+			if (sum > 0)
+			{
+				outputMsgs[i] = sum * energyToWeight(minEnergies[i] - offset);
+			}
+		}
+
+		return offset;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	private double[][] computeInputEnergies(int outPortNum, double[][] inputMsgs)
+	{
+		final int numPorts = inputMsgs.length;
+
+		double[][] inputEnergies = _inputEnergies;
+		if (inputEnergies.length != numPorts)
+		{
+			_inputEnergies = inputEnergies = new double[numPorts][];
+		}
+
+		for (int inPortNum = 0; inPortNum < numPorts; ++inPortNum)
+		{
+			if (inPortNum == outPortNum)
+			{
+				continue;
+			}
+
+			final double[] inputMsg = inputMsgs[inPortNum];
+			double[] inputEnergy = inputEnergies[inPortNum];
+			if (inputEnergy == null || inputEnergy.length != inputMsg.length)
+			{
+				inputEnergies[inPortNum] = inputEnergy = new double[inputMsg.length];
+			}
+
+			for (int i = inputMsg.length; --i>=0;)
+			{
+				inputEnergy[i] = weightToEnergy(inputMsg[i]);
+			}
+		}
+
+		return inputEnergies;
+	}
+}
@@ -22,6 +22,8 @@ import com.analog.lyric.dimple.exceptions.DimpleException;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 
 /*
@@ -31,7 +33,7 @@ import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
  * interface to the "linear" custom factor, and is associated with
  * the CustomGaussianLinearEquation custom factor.
  */
-public class CustomGaussianLinear extends GaussianFactorBase
+public class CustomGaussianLinear extends GaussianFactorBase implements ILinearGaussianFactor
 {
 	private double [] _constants;
 	private double _total;
@@ -101,4 +103,13 @@ public class CustomGaussianLinear extends GaussianFactorBase
 		msg.setVariance(sigma2);
 	}
 
+
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		system.beginConstraint(_total);
+		for (int i = 0, n = getSiblingCount(); i < n; i++)
+			system.addConstraintTerm(getSibling(i), 0, _constants[i]);
+		return true;
+	}
 }
@@ -25,10 +25,12 @@ import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariablePredicates;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.google.common.collect.Iterables;
 
-public class CustomGaussianLinearEquation extends GaussianFactorBase
+public class CustomGaussianLinearEquation extends GaussianFactorBase implements ILinearGaussianFactor
 {
 	private double[] _weightVector = ArrayUtil.EMPTY_DOUBLE_ARRAY;
 	private double _initialWeightedSum;
@@ -117,6 +119,15 @@ public class CustomGaussianLinearEquation extends GaussianFactorBase
 	}
 	
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		system.beginConstraint(_initialWeightedSum);
+		for (int i = 0, n = getSiblingCount(); i < n; i++)
+			system.addConstraintTerm(getSibling(i), 0, _weightVector[i]);
+		return true;
+	}
+
 	/**
 	 *  Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 *  @deprecated as of release 0.08
@@ -20,11 +20,13 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariablePredicates;
 import com.analog.lyric.dimple.solvers.core.SolverFactorCreationException;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.google.common.collect.Iterables;
 
 
-public class CustomGaussianNegate extends GaussianFactorBase
+public class CustomGaussianNegate extends GaussianFactorBase implements ILinearGaussianFactor
 {
 	public CustomGaussianNegate(Factor factor, SumProductSolverGraph parent)
 	{
@@ -50,6 +52,16 @@ public class CustomGaussianNegate extends GaussianFactorBase
 
 
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		// out + in = 0
+		system.beginConstraint(0);
+		system.addConstraintTerm(getSibling(0), 0, 1);
+		system.addConstraintTerm(getSibling(1), 0, 1);
+		return true;
+	}
+
 	/**
 	 * Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 * @deprecated as of release 0.08
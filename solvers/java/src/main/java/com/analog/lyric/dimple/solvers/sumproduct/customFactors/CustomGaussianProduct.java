@@ -20,12 +20,14 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariablePredicates;
 import com.analog.lyric.dimple.solvers.core.SolverFactorCreationException;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.google.common.collect.Iterables;
 
 
 
-public class CustomGaussianProduct extends GaussianFactorBase
+public class CustomGaussianProduct extends GaussianFactorBase implements ILinearGaussianFactor
 {
 
 	private double _constant;
@@ -83,6 +85,16 @@ public class CustomGaussianProduct extends GaussianFactorBase
 	}
 	
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		// product - constant * multiplicand = 0
+		system.beginConstraint(0);
+		system.addConstraintTerm(getSibling(PRODUCT_INDEX), 0, 1);
+		system.addConstraintTerm(getSibling(MULTIPLICAND_INDEX), 0, -_constant);
+		return true;
+	}
+
 	/**
 	 * Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 * @deprecated as of release 0.08
@@ -22,11 +22,13 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.VariablePredicates;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.google.common.collect.Iterables;
 
 
-public class CustomGaussianSum extends GaussianFactorBase
+public class CustomGaussianSum extends GaussianFactorBase implements ILinearGaussianFactor
 {
 	protected int _sumIndex;
 	private int _sumPort;
@@ -125,6 +127,16 @@ public class CustomGaussianSum extends GaussianFactorBase
 	}
 	
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		// sum - summands = constant summands - constant sum
+		system.beginConstraint(_constantSum);
+		for (int i = 0, n = getSiblingCount(); i < n; i++)
+			system.addConstraintTerm(getSibling(i), 0, i == _sumPort ? 1 : -1);
+		return true;
+	}
+
 	/**
 	 * Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 * @deprecated as of release 0.08
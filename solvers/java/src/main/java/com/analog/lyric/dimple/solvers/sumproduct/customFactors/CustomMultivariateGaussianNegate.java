@@ -19,10 +19,12 @@ package com.analog.lyric.dimple.solvers.sumproduct.customFactors;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariablePredicates;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.google.common.collect.Iterables;
 
-public class CustomMultivariateGaussianNegate extends MultivariateGaussianFactorBase
+public class CustomMultivariateGaussianNegate extends MultivariateGaussianFactorBase implements ILinearGaussianFactor
 {
 	public CustomMultivariateGaussianNegate(Factor factor, SumProductSolverGraph parent)
 	{
@@ -50,6 +52,19 @@ public class CustomMultivariateGaussianNegate extends MultivariateGaussianFactor
 	}
 	
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		// out + in = 0, for each dimension
+		for (int d = 0, n = getSiblingEdgeState(0).varToFactorMsg.getVectorLength(); d < n; d++)
+		{
+			system.beginConstraint(0);
+			system.addConstraintTerm(getSibling(0), d, 1);
+			system.addConstraintTerm(getSibling(1), d, 1);
+		}
+		return true;
+	}
+
 	/**
 	 * Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 * @deprecated as of release 0.08
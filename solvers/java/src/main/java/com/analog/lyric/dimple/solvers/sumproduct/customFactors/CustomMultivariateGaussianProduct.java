@@ -23,9 +23,12 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.solvers.core.SolverFactorCreationException;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 
-public class CustomMultivariateGaussianProduct extends MultivariateGaussianFactorBase
+public class CustomMultivariateGaussianProduct extends MultivariateGaussianFactorBase implements ILinearGaussianFactor
 {
 	private double [][] _constant;
 	
@@ -86,6 +89,23 @@ public class CustomMultivariateGaussianProduct extends MultivariateGaussianFacto
 	}
 	
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		// y - A x = 0, for each row of A
+		final ISolverVariable y = getSibling(0), x = getSibling(1);
+		for (int m = 0; m < _constant.length; m++)
+		{
+			final double[] row = _constant[m];
+			system.beginConstraint(0);
+			system.addConstraintTerm(y, m, 1);
+			for (int n = 0; n < row.length; n++)
+				if (row[n] != 0)
+					system.addConstraintTerm(x, n, -row[n]);
+		}
+		return true;
+	}
+
 	/**
 	 * Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 * @deprecated as of release 0.08
@@ -23,10 +23,12 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.Value;
 import com.analog.lyric.dimple.model.variables.VariablePredicates;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.google.common.collect.Iterables;
 
-public class CustomMultivariateGaussianSum extends MultivariateGaussianFactorBase
+public class CustomMultivariateGaussianSum extends MultivariateGaussianFactorBase implements ILinearGaussianFactor
 {
 	protected int _sumIndex;
 	private int _sumPort;
@@ -132,6 +134,19 @@ public class CustomMultivariateGaussianSum extends MultivariateGaussianFactorBas
 	}
 	
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		// sum - summands = constant summands - constant sum, for each dimension
+		for (int d = 0; d < _constantSum.length; d++)
+		{
+			system.beginConstraint(_constantSum[d]);
+			for (int i = 0, n = getSiblingCount(); i < n; i++)
+				system.addConstraintTerm(getSibling(i), d, i == _sumPort ? 1 : -1);
+		}
+		return true;
+	}
+
 	/**
 	 * Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 * @deprecated as of release 0.08
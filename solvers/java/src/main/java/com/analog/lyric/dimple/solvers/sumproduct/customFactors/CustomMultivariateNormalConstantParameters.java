@@ -23,11 +23,13 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariablePredicates;
 import com.analog.lyric.dimple.solvers.core.SolverFactorCreationException;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.google.common.collect.Iterables;
 
 
-public class CustomMultivariateNormalConstantParameters extends MultivariateGaussianFactorBase
+public class CustomMultivariateNormalConstantParameters extends MultivariateGaussianFactorBase implements ILinearGaussianFactor
 {
 	public CustomMultivariateNormalConstantParameters(Factor factor, SumProductSolverGraph parent)
 	{
@@ -68,6 +70,15 @@ public class CustomMultivariateNormalConstantParameters extends MultivariateGaus
 	}
 	
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		for (int edge = 0, n = getSiblingCount(); edge < n; edge++)
+			if (!system.addNormal(getSibling(edge), getSiblingEdgeState(edge).factorToVarMsg))
+				return false;
+		return true;
+	}
+
 	/**
 	 * Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 * @deprecated as of release 0.08
@@ -25,11 +25,13 @@ import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.VariablePredicates;
 import com.analog.lyric.dimple.solvers.core.SolverFactorCreationException;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.ILinearGaussianFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
 import com.google.common.collect.Iterables;
 
 
-public class CustomNormalConstantParameters extends GaussianFactorBase
+public class CustomNormalConstantParameters extends GaussianFactorBase implements ILinearGaussianFactor
 {
 	private static final int MEAN_PARAMETER_INDEX = 0;
 	private static final int PRECISION_PARAMETER_INDEX = 1;
@@ -85,6 +87,18 @@ public class CustomNormalConstantParameters extends GaussianFactorBase
 	}
 	
 	
+	@Override
+	public boolean addLinearGaussianTerms(LinearGaussianSystem system)
+	{
+		for (int edge = 0, n = getSiblingCount(); edge < n; edge++)
+		{
+			NormalParameters msg = getSiblingEdgeState(edge).factorToVarMsg;
+			if (!system.addNormal(getSibling(edge), msg.getMean(), msg.getPrecision()))
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Utility to indicate whether or not a factor is compatible with the requirements of this custom factor
 	 * @deprecated as of release 0.08
@@ -42,9 +42,18 @@ public class FactorInfo extends NodeInfo
 		return retval;
 	}
 	
+	private static Variable [] getVariables(Factor f)
+	{
+		final int nVars = f.getSiblingCount();
+		Variable [] vars = new Variable[nVars];
+		for (int i = 0; i < nVars; i++)
+			vars[i] = f.getSibling(i);
+		return vars;
+	}
+	
 	public FactorInfo(Factor f, HashMap<Variable,Integer> var2index)
 	{
-		super(getVarIndices(f, var2index));
+		super(getVarIndices(f, var2index), getCardinalities(getVariables(f)));
 	}
 	
 }
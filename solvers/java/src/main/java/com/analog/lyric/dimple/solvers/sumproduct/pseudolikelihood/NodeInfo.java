@@ -16,10 +16,10 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.pseudolikelihood;
 
-import java.util.LinkedList;
-
 import org.eclipse.jdt.annotation.Nullable;
 
+import com.analog.lyric.dimple.model.variables.Variable;
+
 /*
  * Used to store information about Factors and Variables.
  * There is a one-to-one relationship between NodeInfos and variables and factors.
@@ -30,14 +30,16 @@ public class NodeInfo
 	private SparseJointHistogram _hist;
 	private @Nullable SparseJointDistribution _dist;
 	private int [] _indices;
+	private int [] _cardinalities;
 
-	public NodeInfo(int [] indices)
+	public NodeInfo(int [] indices, int [] cardinalities)
 	{
 		//Store the indices of interest
 		_indices = indices;
+		_cardinalities = cardinalities;
 		
 		//Create a histogram object
-		_hist = new SparseJointHistogram(_indices.length);
+		_hist = new SparseJointHistogram(_cardinalities);
 	}
 	
 	//Add one sample from the data set.
@@ -62,22 +64,31 @@ public class NodeInfo
 		return dist;
 	}
 	
+	//Retrieve the histogram of the samples added so far.
+	public SparseJointHistogram getHistogram()
+	{
+		return _hist;
+	}
+	
 	//Reset counting.
 	public void reset()
 	{
-		_hist = new SparseJointHistogram(_indices.length);
+		_hist = new SparseJointHistogram(_cardinalities);
 		_dist = null;
 	}
 	
-	//builds a linked list (for hashing) of the relevant indices.
-	protected LinkedList<Integer> indicesToRelevantOnes(int [] indices)
+	//computes the joint key of the relevant indices.
+	protected long indicesToRelevantOnes(int [] indices)
 	{
-		LinkedList<Integer> ll = new LinkedList<Integer>();
-		
-		for (Integer i : _indices)
-			ll.add(indices[i]);
-		return ll;
-
+		return _hist.jointIndex(indices, _indices);
 	}
 	
+	//returns the domain sizes of the given variables.
+	protected static int [] getCardinalities(Variable [] vars)
+	{
+		int [] cardinalities = new int[vars.length];
+		for (int i = 0; i < vars.length; i++)
+			cardinalities[i] = vars[i].asDiscreteVariable().getDiscreteDomain().size();
+		return cardinalities;
+	}
 }
@@ -19,9 +19,8 @@ package com.analog.lyric.dimple.solvers.sumproduct.pseudolikelihood;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -35,6 +34,7 @@ import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.model.variables.VariableList;
 import com.analog.lyric.dimple.solvers.core.ParameterEstimator;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
 
 /*
  * The pseudolikelihood class uses the Pseudolikelihood algorithm
@@ -161,77 +161,121 @@ public class PseudoLikelihood extends ParameterEstimator
 			throw new DimpleException("Must set data first");
 		
 		//Get the list of tables of interest.
-		IFactorTable [] tables = getTables();
-		HashMap<IFactorTable,ArrayList<Factor>> table2factors = getTable2Factors();
+		final IFactorTable [] tables = getTables();
+		final HashMap<IFactorTable,ArrayList<Factor>> table2factors = getTable2Factors();
 		
 		//initialize the gradient
-		double [][] gradients = new double[tables.length][];
+		final double [][] gradients = new double[tables.length][];
 		
 		//Invalidate the distributions because parameters may have changed.
+		//Everything that is lazily computed is computed here, so that the
+		//remaining work only reads shared state and can be split across threads.
+		for (IFactorTable table : tables)
+		{
+			table.getWeightsSparseUnsafe();
+			table.getIndicesSparseUnsafe();
+		}
+		for (FactorInfo fi : _factor2factorInfo.values())
+			fi.getDistribution();
 		for (VariableInfo vi : _var2varInfo.values())
+		{
 			vi.invalidateDistributions();
+			vi.getDistribution();
+			vi.computeTableIndices();
+		}
+		
+		//Compute p(var | neighbors) for all variables
+		ArrayList<Callable<Object>> updates = new ArrayList<Callable<Object>>();
+		for (final VariableInfo vi : _var2varInfo.values())
+		{
+			updates.add(new Callable<Object>() {
+				@Override
+				public @Nullable Object call()
+				{
+					vi.updateDistributions();
+					return null;
+				}
+			});
+		}
+		ThreadPool.invokeAll(updates);
 		
 		//for each unique factor table
+		ArrayList<Callable<Object>> tableGradients = new ArrayList<Callable<Object>>();
 		for (int i = 0; i < tables.length; i++)
 		{
-			//cache some stuff.
-			double [] weights = tables[i].getWeightsSparseUnsafe();
-			int [][] indices = tables[i].getIndicesSparseUnsafe();
-			int degree = indices[0].length;
-			
-			//TODO: avoid this new?
-			gradients[i] = new double[weights.length];
-			
-			ArrayList<Factor> factors = table2factors.get(tables[i]);
-			
-			//If this table actually is related to this graph
-			if (factors != null)
-			{
-				//for each factor
-				for (int k = 0; k < factors.size(); k++)
+			final int tableIndex = i;
+			final ArrayList<Factor> factors = table2factors.get(tables[i]);
+			tableGradients.add(new Callable<Object>() {
+				@Override
+				public @Nullable Object call()
 				{
-					Factor f = factors.get(k);
-					FactorInfo fi = _factor2factorInfo.get(f);
-	
-					//for each weight
-					for (int j = 0; j < weights.length; j++)
-					{
-						//add degree * pd(indices)
-						double impericalFactorD = fi.getDistribution().get(indices[j]);
-						gradients[i][j] += degree*impericalFactorD;
-					}
+					gradients[tableIndex] = calculateGradient(tables[tableIndex], factors);
+					return null;
+				}
+			});
+		}
+		ThreadPool.invokeAll(tableGradients);
+
+		return gradients;
+	}
 	
-					//for each variable
-					for (int vindex = 0, size = f.getSiblingCount(); vindex < size; ++vindex)
+	//Calculates the gradient for the weights of one table.
+	private double [] calculateGradient(IFactorTable table, @Nullable ArrayList<Factor> factors)
+	{
+		//cache some stuff.
+		final double [] weights = table.getWeightsSparseUnsafe();
+		final int [][] indices = table.getIndicesSparseUnsafe();
+		final int degree = indices.length > 0 ? indices[0].length : 0;
+		
+		final double [] gradient = new double[weights.length];
+		
+		//If this table actually is related to this graph
+		if (factors != null)
+		{
+			//for each factor
+			for (int k = 0; k < factors.size(); k++)
+			{
+				Factor f = factors.get(k);
+				SparseJointDistribution factorD = _factor2factorInfo.get(f).getDistribution();
+
+				//for each weight
+				for (int j = 0; j < weights.length; j++)
+				{
+					//add degree * pd(indices)
+					double impericalFactorD = factorD.get(indices[j]);
+					gradient[j] += degree*impericalFactorD;
+				}
+
+				//for each variable
+				for (int vindex = 0, size = f.getSiblingCount(); vindex < size; ++vindex)
+				{
+					Variable v = f.getSibling(vindex);
+					VariableInfo vi = _var2varInfo.get(v);
+					final int domainSize = v.asDiscreteVariable().getDiscreteDomain().size();
+					final int nSamples = vi.getUniqueSampleCount();
+					
+					//for each unique sample
+					for (int sample = 0; sample < nSamples; sample++)
 					{
-						Variable v = f.getSibling(vindex);
-						VariableInfo vi = _var2varInfo.get(v);
-						
 						//for each element of the variables domain
-						for (int d = 0; d < v.asDiscreteVariable().getDiscreteDomain().size(); d++)
+						for (int d = 0; d < domainSize; d++)
 						{
-							Set<LinkedList<Integer>> samples = vi.getUniqueSamples();
+							//find weight index from variable domain and unique sample
+							int index = vi.getFactorTableIndex(f, d, sample);
 							
-							//for each unique sample
-							for (LinkedList<Integer> sample : samples)
+							//entries that are not in a sparse table have zero probability
+							if (index >= 0)
 							{
-								//calculate pneighbors
-								double prob = vi.getProb(d,sample);
-								
-								//find weight index from variable domain and unique sample
-								int index = vi.getFactorTableIndex(f, d, sample);
-								
 								//subtract prob
-								gradients[i][index] -= prob;
-								
+								gradient[index] -= vi.getProb(d,sample);
 							}
 						}
 					}
 				}
 			}
 		}
-
-		return gradients;
+		
+		return gradient;
 	}
 	
 	//One step of gradient descent simply calculates the gradient
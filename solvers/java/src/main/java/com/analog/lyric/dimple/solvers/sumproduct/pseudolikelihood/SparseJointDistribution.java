@@ -16,45 +16,63 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.pseudolikelihood;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Set;
-
 /*
  * Class for building a distribution from a histogram.
+ *
+ * The distribution shares the key-to-slot mapping of the histogram it was built from,
+ * so it only stores one probability per distinct key.
  */
 public class SparseJointDistribution
 {
-	private HashMap<LinkedList<Integer>, Double> _indices2prob = new HashMap<LinkedList<Integer>, Double>();
+	private final SparseJointHistogram _hist;
+	private final double [] _probs;
 	
 	public SparseJointDistribution(SparseJointHistogram hist)
 	{
-		for (LinkedList<Integer> ll : hist.getKeys())
-		{
-			double prob = ((double)hist.get(ll)) / hist.getTotal();
-			_indices2prob.put(ll,prob);
-		}
+		_hist = hist;
+		
+		final int size = hist.size();
+		final double total = hist.getTotal();
+		_probs = new double[size];
+		for (int i = 0; i < size; i++)
+			_probs[i] = hist.getCount(i) / total;
+	}
+	
+	//Number of keys with non-zero probability
+	public int size()
+	{
+		return _probs.length;
+	}
+	
+	public long getKey(int slot)
+	{
+		return _hist.getKey(slot);
+	}
+	
+	public double getProbability(int slot)
+	{
+		return _probs[slot];
 	}
 	
-	public Set<LinkedList<Integer>> getNonZeroKeys()
+	public long [] getNonZeroKeys()
 	{
-		return _indices2prob.keySet();
+		final int size = _probs.length;
+		long [] keys = new long[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = _hist.getKey(i);
+		return keys;
 	}
 	
-	public double get(LinkedList<Integer> ll)
+	public double get(long key)
 	{
-		Double tmp =  _indices2prob.get(ll);
-		if (tmp == null)
-			return 0;
-		else
-			return tmp;
+		int slot = _hist.slotForKey(key);
+		
+		//Slots added to the histogram after this distribution was built are not included.
+		return slot >= 0 && slot < _probs.length ? _probs[slot] : 0;
 	}
 	
 	public double get(int [] indices)
 	{
-		LinkedList<Integer> ll = new LinkedList<Integer>();
-		for (Integer i : indices)
-			ll.add(i);
-		return get(ll);
+		return get(_hist.jointIndex(indices));
 	}
 }
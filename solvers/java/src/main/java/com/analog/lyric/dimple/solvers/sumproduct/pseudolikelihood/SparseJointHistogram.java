@@ -16,52 +16,175 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.pseudolikelihood;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Set;
+import cern.colt.list.IntArrayList;
+import cern.colt.list.LongArrayList;
+import cern.colt.map.OpenLongObjectHashMap;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
 
 /*
  * Utility for building a histogram
+ *
+ * Each joint sample is identified by a single long computed from the per-dimension
+ * indices using mixed radix encoding. Distinct samples are assigned consecutive slots
+ * in the order in which they are first added, and counts are kept by slot.
  */
 public class SparseJointHistogram
 {
-	private HashMap<LinkedList<Integer>, Integer> _indices2prob = new HashMap<LinkedList<Integer>, Integer>();
+	private final int[] _cardinalities;
+	private final long[] _strides;
+	private final OpenLongObjectHashMap _key2slot = new OpenLongObjectHashMap();
+	private final LongArrayList _keys = new LongArrayList();
+	private final IntArrayList _counts = new IntArrayList();
 	private int _total = 0;
-	
-	public SparseJointHistogram(int dimensions)
+
+	public SparseJointHistogram(int [] cardinalities)
 	{
+		_cardinalities = cardinalities.clone();
+		_strides = computeStrides(_cardinalities);
 	}
-	
-	public void add(LinkedList<Integer> ll)
+
+	/*
+	 * Joint indexes
+	 */
+
+	public int getDimensions()
 	{
-		add(ll,1);
+		return _cardinalities.length;
 	}
-	
-	public Set<LinkedList<Integer>> getKeys()
+
+	//Computes the joint key for a sample with one index per dimension.
+	public long jointIndex(int [] indices)
 	{
-		return _indices2prob.keySet();
+		final long[] strides = _strides;
+		long key = 0;
+		for (int i = 0; i < strides.length; i++)
+			key += indices[i] * strides[i];
+		return key;
 	}
-	
-	public int get(LinkedList<Integer> ll)
+
+	//Computes the joint key for the subset of allIndices selected by which.
+	public long jointIndex(int [] allIndices, int [] which)
 	{
-		return _indices2prob.get(ll);
+		final long[] strides = _strides;
+		long key = 0;
+		for (int i = 0; i < strides.length; i++)
+			key += allIndices[which[i]] * strides[i];
+		return key;
 	}
-	
-	public void add(LinkedList<Integer> ll, int count)
+
+	//Decodes a joint key into per-dimension indices.
+	public int [] jointIndexToIndices(long key, int [] indices)
+	{
+		final long[] strides = _strides;
+		for (int i = 0; i < strides.length; i++)
+		{
+			final long stride = strides[i];
+			final long index = key / stride;
+			indices[i] = (int)index;
+			key -= index * stride;
+		}
+		return indices;
+	}
+
+	/*
+	 * Counts
+	 */
+
+	public void add(long key)
 	{
-		Integer tmp = _indices2prob.get(ll);
-		if (tmp == null)
-			tmp = 0;
-		_indices2prob.put(ll, tmp+count);
+		add(key,1);
+	}
+
+	public void add(long key, int count)
+	{
+		Object slot = _key2slot.get(key);
+		if (slot == null)
+		{
+			_key2slot.put(key, _keys.size());
+			_keys.add(key);
+			_counts.add(count);
+		}
+		else
+		{
+			int i = (Integer)slot;
+			_counts.setQuick(i, _counts.getQuick(i) + count);
+		}
 		_total+=count;
 	}
+
+	public void add(int [] indices)
+	{
+		add(jointIndex(indices));
+	}
+
+	public int get(long key)
+	{
+		int slot = slotForKey(key);
+		return slot < 0 ? 0 : _counts.getQuick(slot);
+	}
+
+	//Number of distinct keys
+	public int size()
+	{
+		return _keys.size();
+	}
+
+	public long getKey(int slot)
+	{
+		return _keys.getQuick(slot);
+	}
+
+	public int getCount(int slot)
+	{
+		return _counts.getQuick(slot);
+	}
+
+	public long [] getKeys()
+	{
+		final int size = _keys.size();
+		long [] keys = new long[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = _keys.getQuick(i);
+		return keys;
+	}
+
 	public int getTotal()
 	{
 		return _total;
 	}
-	
+
 	public SparseJointDistribution getDistribution()
 	{
 		return new SparseJointDistribution(this);
 	}
+
+	/*
+	 * Internal helpers
+	 */
+
+	//Returns slot for key or -1 if key has not been added.
+	int slotForKey(long key)
+	{
+		Object slot = _key2slot.get(key);
+		return slot == null ? -1 : (Integer)slot;
+	}
+
+	private static long [] computeStrides(int [] cardinalities)
+	{
+		final int n = cardinalities.length;
+		long [] strides = new long[n];
+		long product = 1;
+		for (int i = n; --i >= 0;)
+		{
+			strides[i] = product;
+			final int cardinality = cardinalities[i];
+			if (cardinality <= 0)
+				throw new DimpleException("Non-positive domain size %d", cardinality);
+			if (product > Long.MAX_VALUE / cardinality)
+				throw new DimpleException("Joint domain of %d variables is too large for pseudo-likelihood statistics", n);
+			product *= cardinality;
+		}
+		return strides;
+	}
 }
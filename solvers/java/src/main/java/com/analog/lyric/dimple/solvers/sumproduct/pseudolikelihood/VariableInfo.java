@@ -18,11 +18,13 @@ package com.analog.lyric.dimple.solvers.sumproduct.pseudolikelihood;
 
 import static java.util.Objects.*;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Set;
 
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
 import com.analog.lyric.dimple.model.core.INode;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.Discrete;
@@ -35,14 +37,25 @@ import com.analog.lyric.util.misc.IMapList;
  * 
  * Additionally, it provides a method to calculate the joint probability of a particular state
  * of variables using p(joint) = p(x|neighbors)*p(neighbors)
+ * 
+ * The unique neighbor samples are the keys of the underlying histogram and are referred
+ * to by their slot in that histogram. Factor table indices and conditional distributions
+ * are cached in flat arrays indexed by slot * domainSize + domainValue.
  */
 public class VariableInfo extends NodeInfo
 {
-	private HashSet<LinkedList<Integer>> _uniqueSamplesPerValue = new HashSet<LinkedList<Integer>>();
 	private Variable [] _neighbors;
 	private Discrete _var;
-	private HashMap<LinkedList<Integer>,double[]> _neighbors2distributions = new HashMap<LinkedList<Integer>, double[]>();
-	private HashMap<Factor, int []> _factor2mapping = new java.util.HashMap<Factor, int[]>();
+	private final int _domainSize;
+	private final Factor [] _factors;
+	private final int [][] _mappings;
+	private HashMap<Factor, Integer> _factor2position = new HashMap<Factor, Integer>();
+	
+	//Factor table sparse index per factor, indexed by slot * domainSize + domainValue.
+	private @Nullable int [][] _tableIndices;
+	
+	//Distribution p(x|neighbors), indexed by slot * domainSize + domainValue.
+	private @Nullable double [] _conditionals;
 
 	//This is a factory method for creating a variable.  This is necessary since
 	//the parent class's constructor requires we already know the mapping from all variables
@@ -55,7 +68,7 @@ public class VariableInfo extends NodeInfo
 		Variable [] neighbors = getNeighbors(var);
 		
 		//Get the indices of interest for this variable.
-		int [] indices = getIndices(var,var2index);
+		int [] indices = getIndices(neighbors,var2index);
 		
 		return new VariableInfo(var,indices,neighbors,var2index);
 	}
@@ -64,17 +77,21 @@ public class VariableInfo extends NodeInfo
 	private VariableInfo(Variable var,int [] indices, Variable [] neighbors,
 			HashMap<Variable,Integer> var2index)
 	{
-		super(indices);
+		super(indices, getCardinalities(neighbors));
 		
 		_neighbors = neighbors;
 		_var = (Discrete)var;
+		_domainSize = _var.getDiscreteDomain().size();
 		
 		//For every factor we will build a mapping from the factor's variable index
 		//to an index into the full list of neighbors.
 		
 		Factor [] fs = var.getFactorsFlat();
-		for (Factor f : fs)
+		_factors = fs;
+		_mappings = new int[fs.length][];
+		for (int k = 0; k < fs.length; k++)
 		{
+			Factor f = fs[k];
 			final int nVars = f.getSiblingCount();
 			int [] mapping = new int[nVars];
 			
@@ -103,7 +120,8 @@ public class VariableInfo extends NodeInfo
 						throw new RuntimeException("ack, this should never happen");
 				}
 			}
-			_factor2mapping.put(f, mapping);
+			_mappings[k] = mapping;
+			_factor2position.put(f, k);
 		}
 		
 	}
@@ -112,7 +130,7 @@ public class VariableInfo extends NodeInfo
 	@Override
 	public void reset()
 	{
-		_uniqueSamplesPerValue.clear();
+		_tableIndices = null;
 		invalidateDistributions();
 		super.reset();
 	}
@@ -127,116 +145,141 @@ public class VariableInfo extends NodeInfo
 	//time.
 	public void invalidateDistributions()
 	{
-		_neighbors2distributions.clear();
+		_conditionals = null;
 	}
 
-	//Given a factor, a domain value, and domain values for the neighbors, calculate the
-	//factor table index.
-	public int getFactorTableIndex(Factor f, int domainValue, LinkedList<Integer> domainVals)
+	//Given a factor, a domain value, and the slot of a unique neighbor sample, retrieve the
+	//factor table index, or -1 if the table does not contain the entry.
+	public int getFactorTableIndex(Factor f, int domainValue, int sample)
 	{
-		Integer [] domainValues = new Integer[domainVals.size()];
-		domainValues = domainVals.toArray(domainValues);
-
-		return getFactorTableIndex(f, domainValue, domainValues);
+		return computeTableIndices()[_factor2position.get(f)][sample * _domainSize + domainValue];
 	}
 	
-	//Retrieve the joint probability of a variable and its neighbors.
-	public double getProb(int varIndex,LinkedList<Integer> neighbors)
+	//Retrieve the joint probability of a variable and the unique neighbor sample in the given slot.
+	public double getProb(int varIndex, int sample)
 	{
 		//First get the empirical probability of a neighbor.
-		double pneighbors = getDistribution().get(neighbors);
-		
+		double pneighbors = getDistribution().getProbability(sample);
 		
-		Integer [] domainValues = new Integer[neighbors.size()];
-		domainValues = neighbors.toArray(domainValues);
+		return updateDistributions()[sample * _domainSize + varIndex] * pneighbors;
+	}
+	
+	//Computes the factor table index of every factor for every unique sample and domain value.
+	//These only depend on the data, not the weights, so they are kept until the data changes.
+	//
+	//This is not thread safe, since factor tables use scratch space for index lookup.
+	public int [][] computeTableIndices()
+	{
+		int [][] tableIndices = _tableIndices;
 		
-		//Cache the distribution of p(x|neighbors) since we have to calculate them all to
-		//correctly normalize things.
-		if (!_neighbors2distributions.containsKey(neighbors))
+		if (tableIndices == null)
 		{
-			//initialize
-			double [] distribution = new double[_var.getDiscreteDomain().size()];
-			double normalizer = 0;
+			final SparseJointHistogram hist = getHistogram();
+			final int nSamples = hist.size();
+			final int [] neighborValues = new int[_neighbors.length];
 			
-			//calculate the probability for each setting of this var.
-			for (int i = 0; i < distribution.length; i++)
+			tableIndices = new int[_factors.length][nSamples * _domainSize];
+			
+			for (int k = 0; k < _factors.length; k++)
 			{
-				double total = 1;
+				final IFactorTable table = _factors[k].getFactorTable();
+				final int [] mapping = _mappings[k];
+				final int [] indices = new int[mapping.length];
+				final int [] factorIndices = tableIndices[k];
 				
-				//For every factor
-				for (Factor f : _factor2mapping.keySet())
+				for (int sample = 0; sample < nSamples; sample++)
 				{
-					//retrieve the factor table index from this vars domain
-					//and the neighbor domains
-					int index = getFactorTableIndex(f,i,domainValues);
-					
-					//retrieve the weight
-					double weight = f.getFactorTable().getWeightsSparseUnsafe()[index];
-										
-					//TODO: should probably do this in the log domain
-					//multiply it in
-					total *= weight;
+					hist.jointIndexToIndices(hist.getKey(sample), neighborValues);
+					for (int d = 0; d < _domainSize; d++)
+					{
+						for (int j = 0; j < mapping.length; j++)
+						{
+							if (mapping[j] >= neighborValues.length)
+								//deal with the special case.
+								indices[j] = d;
+							else
+								indices[j] = neighborValues[mapping[j]];
+						}
+						factorIndices[sample * _domainSize + d] = table.sparseIndexFromIndices(indices);
+					}
+				}
+			}
+			
+			_tableIndices = tableIndices;
+		}
+		
+		return tableIndices;
+	}
+	
+	//Computes p(x|neighbors) for every unique neighbor sample from the current factor weights.
+	//We have to calculate all of them to correctly normalize things.
+	//
+	//Different instances may be updated concurrently once computeTableIndices has been called.
+	public double [] updateDistributions()
+	{
+		double [] conditionals = _conditionals;
+		
+		if (conditionals == null)
+		{
+			final int [][] tableIndices = computeTableIndices();
+			final int nSamples = getHistogram().size();
+			final int domainSize = _domainSize;
+			
+			conditionals = new double[nSamples * domainSize];
+			Arrays.fill(conditionals, 1.0);
+			
+			//For every factor multiply in the weights
+			//TODO: should probably do this in the log domain
+			for (int k = 0; k < _factors.length; k++)
+			{
+				final double [] weights = _factors[k].getFactorTable().getWeightsSparseUnsafe();
+				final int [] factorIndices = tableIndices[k];
+				for (int i = 0; i < conditionals.length; i++)
+				{
+					final int index = factorIndices[i];
+					conditionals[i] *= index >= 0 ? weights[index] : 0.0;
 				}
-				
-				//save the value
-				distribution[i] = total;
-				
-				//add to the normalizing constant
-				normalizer += total;
 			}
 			
 			//normalize
-			for (int i = 0; i < distribution.length; i++)
-				distribution[i] /= normalizer;
+			for (int offset = 0; offset < conditionals.length; offset += domainSize)
+			{
+				double normalizer = 0;
+				for (int d = 0; d < domainSize; d++)
+					normalizer += conditionals[offset + d];
+				for (int d = 0; d < domainSize; d++)
+					conditionals[offset + d] /= normalizer;
+			}
 			
-			//save
-			_neighbors2distributions.put(neighbors,distribution);
+			_conditionals = conditionals;
 		}
 		
-		return _neighbors2distributions.get(neighbors)[varIndex]*pneighbors;
+		return conditionals;
 	}
-	
-	
 
 
-	// In addition to bulding up the empirical distribution, save all of the sample data
-	// relevant to this variable.  This ends up duplicating the data across variables
-	// so this trade-off for speed will cost memory.  There is probably a better way.
-	// There is some compression due to storing these as a set.
+	// In addition to bulding up the empirical distribution, the histogram keys are the
+	// unique samples of the neighbors, so the cached per sample state has to be recomputed.
 	@Override
 	public void addSample(int [] allDataIndices)
 	{
 		super.addSample(allDataIndices);
-		LinkedList<Integer> otherIndices = indicesToRelevantOnes(allDataIndices);
-		_uniqueSamplesPerValue.add(otherIndices);
+		_tableIndices = null;
+		_conditionals = null;
 	}
 
-	//Returns the set of unique samples.
-	public Set<LinkedList<Integer>> getUniqueSamples()
+	//Returns the number of unique neighbor samples.
+	public int getUniqueSampleCount()
 	{
-		return _uniqueSamplesPerValue;
+		return getHistogram().size();
 	}
-
-	//Converts the domain value for this variable plus the neighbor domain values
-	//to a factor table index.
-	private int getFactorTableIndex(Factor f, int domainValue, Integer [] domainVals)
+	
+	//Returns the joint keys of the unique neighbor samples, in slot order.
+	public long [] getUniqueSamples()
 	{
-		int [] mapping = _factor2mapping.get(f);
-		int [] indices = new int[f.getSiblingCount()];
-		
-		for (int j = 0; j < mapping.length; j++)
-		{
-			if (mapping[j] >= domainVals.length)
-				//deal with the special case.
-				indices[j] = domainValue;
-			else
-				indices[j] = domainVals[mapping[j]];
-		}
-		
-		int index = f.getFactorTable().sparseIndexFromIndices(indices);
-		return index;
+		return getHistogram().getKeys();
 	}
-	
+
 	//uses a breadth first search to find all neighboring variables.
 	private static Variable [] getNeighbors(Variable var)
 	{
@@ -252,11 +295,9 @@ public class VariableInfo extends NodeInfo
 	}
 
 	
-	//uses a breadth first search to find all neighboring variables and then builds
-	//the map.
-	private static int [] getIndices(Variable var,HashMap<Variable,Integer> var2index)
+	//builds the map from neighboring variables to data indices.
+	private static int [] getIndices(Variable [] neighbors,HashMap<Variable,Integer> var2index)
 	{
-		Variable [] neighbors = getNeighbors(var);
 		int [] indices = new int[neighbors.length];
 		int i = 0;
 		for (Variable n : neighbors)
@@ -16,6 +16,7 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
 
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.IParameterizedMessage;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverEdgeState;
 import com.analog.lyric.util.misc.Internal;
 
@@ -26,7 +27,7 @@ import com.analog.lyric.util.misc.Internal;
  * @category internal
  */
 @Internal
-public interface ISumProductSampledEdge<Message> extends ISolverEdgeState
+public interface ISumProductSampledEdge<Message extends IParameterizedMessage> extends ISolverEdgeState
 {
 	@Override
 	public Message getVarToFactorMsg();
@@ -42,4 +43,45 @@ public interface ISumProductSampledEdge<Message> extends ISolverEdgeState
 	
 	@Internal
 	public void setFactorToVarMsgFromSamples();
+	
+	/**
+	 * True if output message can be estimated from samples drawn with the input message applied.
+	 * <p>
+	 * This is false if the input message has zero weight for some values, since the output message could
+	 * not be estimated for them.
+	 * @since 0.08
+	 */
+	@Internal
+	public boolean canShareSamples();
+	
+	/**
+	 * Sets up edge for computing output message from shared samples.
+	 * <p>
+	 * Like {@link #setVarToFactorDirection()}, but also clears sample statistics.
+	 * @since 0.08
+	 */
+	@Internal
+	public void setSharedSamplesDirection();
+	
+	/**
+	 * Adds current sample of message graph variable to sample statistics weighted by the inverse of the
+	 * input message.
+	 * @since 0.08
+	 */
+	@Internal
+	public void addCurrentSample();
+	
+	/**
+	 * Effective sample size of weighted samples added by {@link #addCurrentSample()}.
+	 * @since 0.08
+	 */
+	@Internal
+	public double getEffectiveSampleSize();
+	
+	/**
+	 * Sets output message from weighted samples added by {@link #addCurrentSample()}.
+	 * @since 0.08
+	 */
+	@Internal
+	public void setFactorToVarMsgFromSharedSamples();
 }
@@ -16,16 +16,19 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
 
+import static com.analog.lyric.dimple.environment.DimpleEnvironment.*;
 import static java.util.Objects.*;
 
 import org.eclipse.jdt.annotation.Nullable;
 
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.core.EdgeState;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.solvers.core.SEdgeWithMessages;
 import com.analog.lyric.dimple.solvers.core.SFactorBase;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.IParameterizedMessage;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsReal;
@@ -35,6 +38,8 @@ import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverEdgeState;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
 import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.math.DimpleRandom;
 
 /**
  * @author jeff
@@ -63,11 +68,30 @@ import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
  * of the desired output message.  The accuracy depends on the number of
  * samples used in each update.
  * 
+ * When the {@link SumProductOptions#sampledFactorSharedSamples} option is enabled, a full
+ * update of the factor instead runs the message graph once with all of the inputs set,
+ * and computes every output message from the same samples by weighting each sample by
+ * the inverse of the corresponding input message. Sampling stops once the effective
+ * sample size or the change in the estimated messages meets the configured tolerance.
+ * 
+ * Each sampled factor draws from its own random stream, split from the environment's
+ * generator when the graph is initialized, so different sampled factors may be updated
+ * concurrently by the multithreading modes.
  */
 public class SampledFactor extends SFactorBase
 {
 	private final ISumProductSampledEdge<?>[] _edges;
 	private final FactorGraph _messageGraph;
+	private final GibbsSolverGraph _messageSolverGraph;
+	private final boolean[] _sharedEdges;
+	private final IParameterizedMessage[] _previousMessages;
+	
+	private @Nullable DimpleRandom _random;
+	private boolean _sharedSamples;
+	private int _maxSamples;
+	private int _batchSize;
+	private double _minEffectiveSamples;
+	private double _messageTolerance;
 	
 	public final static int DEFAULT_SAMPLES_PER_UPDATE = 1000;
 	public final static int DEFAULT_BURN_IN_SCANS_PER_UPDATE = 10;
@@ -82,6 +106,8 @@ public class SampledFactor extends SFactorBase
 		// TODO should we defer this work until initialize
 		
 		_edges = new ISumProductSampledEdge[numSiblings];
+		_sharedEdges = new boolean[numSiblings];
+		_previousMessages = new IParameterizedMessage[numSiblings];
 		final Variable[] privateVariables = new Variable[numSiblings];
 		for (int edge = 0; edge < numSiblings; edge++)
 		{
@@ -94,6 +120,7 @@ public class SampledFactor extends SFactorBase
 		GibbsSolverGraph sgraph = requireNonNull(_messageGraph.setSolverFactory(new GibbsSolver()));
 		_messageGraph.setEventAndOptionParent(this); // inherit options from this solver graph
 		_messageGraph.addFactor(factor.getFactorFunction(), privateVariables);
+		_messageSolverGraph = sgraph;
 
 		for (int edge = 0; edge < numSiblings; edge++)
 		{
@@ -124,8 +151,69 @@ public class SampledFactor extends SFactorBase
 		return _edges[edge.getFactorToVariableEdgeNumber()];
 	}
 	
+	@Override
+	public void initialize()
+	{
+		super.initialize();
+		
+		_random = activeRandom().split();
+		_sharedSamples = getOptionOrDefault(SumProductOptions.sampledFactorSharedSamples);
+		_maxSamples = getOptionOrDefault(GibbsOptions.numSamples);
+		_batchSize = getOptionOrDefault(SumProductOptions.sampledFactorBatchSize);
+		_minEffectiveSamples = getOptionOrDefault(SumProductOptions.sampledFactorMinEffectiveSamples);
+		_messageTolerance = getOptionOrDefault(SumProductOptions.sampledFactorMessageTolerance);
+	}
+	
+	@Override
+	protected void doUpdate()
+	{
+		if (!_sharedSamples)
+		{
+			super.doUpdate();
+			return;
+		}
+		
+		final @Nullable DimpleRandom prevRandom = DimpleEnvironment.setThreadRandom(_random);
+		try
+		{
+			updateFromSharedSamples();
+		}
+		finally
+		{
+			DimpleEnvironment.setThreadRandom(prevRandom);
+		}
+	}
+	
+	/**
+	 * True if the output message for given edge was computed from shared samples by the most recent
+	 * full update.
+	 * <p>
+	 * False if the edge was instead updated separately, either because {@link
+	 * SumProductOptions#sampledFactorSharedSamples} is not enabled or because the shared samples could
+	 * not be used for that edge.
+	 * <p>
+	 * @since 0.08
+	 */
+	public boolean usedSharedSamples(int edge)
+	{
+		return _sharedEdges[edge];
+	}
+	
 	@Override
 	public void doUpdateEdge(int outPortNum)
+	{
+		final @Nullable DimpleRandom prevRandom = DimpleEnvironment.setThreadRandom(_random);
+		try
+		{
+			updateEdgeFromSamples(outPortNum);
+		}
+		finally
+		{
+			DimpleEnvironment.setThreadRandom(prevRandom);
+		}
+	}
+	
+	private void updateEdgeFromSamples(int outPortNum)
 	{
 		int numSiblings = _model.getSiblingCount();
 		
@@ -150,6 +238,140 @@ public class SampledFactor extends SFactorBase
 
 	}
 	
+	/**
+	 * Computes all output messages from a single run of the message graph with all inputs set.
+	 */
+	private void updateFromSharedSamples()
+	{
+		final ISumProductSampledEdge<?>[] edges = _edges;
+		final boolean[] shared = _sharedEdges;
+		final int numSiblings = edges.length;
+		
+		int numShared = 0;
+		for (int edge = 0; edge < numSiblings; edge++)
+		{
+			final ISumProductSampledEdge<?> sedge = edges[edge];
+			sedge.setSharedSamplesDirection();
+			if (shared[edge] = sedge.canShareSamples())
+			{
+				++numShared;
+			}
+		}
+		
+		if (numShared > 0)
+		{
+			final GibbsSolverGraph sgraph = _messageSolverGraph;
+			_messageGraph.initialize();
+			sgraph.burnIn();
+			
+			final int maxSamples = _maxSamples;
+			int numSamples = 0;
+			boolean firstBatch = true;
+			while (numSamples < maxSamples)
+			{
+				final int batchEnd = Math.min(maxSamples, numSamples + _batchSize);
+				for (; numSamples < batchEnd; ++numSamples)
+				{
+					sgraph.sample();
+					for (int edge = 0; edge < numSiblings; edge++)
+					{
+						if (shared[edge])
+						{
+							edges[edge].addCurrentSample();
+						}
+					}
+				}
+				
+				if (numSamples < maxSamples && sharedSamplesConverged(firstBatch))
+				{
+					break;
+				}
+				firstBatch = false;
+			}
+			
+			for (int edge = 0; edge < numSiblings; edge++)
+			{
+				if (shared[edge])
+				{
+					if (edges[edge].getEffectiveSampleSize() >= _minEffectiveSamples)
+					{
+						edges[edge].setFactorToVarMsgFromSharedSamples();
+					}
+					else
+					{
+						shared[edge] = false;
+					}
+				}
+			}
+		}
+		
+		// Fall back on separate sampling for edges whose messages could not be estimated
+		for (int edge = 0; edge < numSiblings; edge++)
+		{
+			if (!shared[edge])
+			{
+				updateEdgeFromSamples(edge);
+			}
+		}
+	}
+	
+	/**
+	 * True if sampling may stop because either the effective sample size or the message change
+	 * tolerance has been met for all shared edges.
+	 */
+	private boolean sharedSamplesConverged(boolean firstBatch)
+	{
+		final ISumProductSampledEdge<?>[] edges = _edges;
+		final boolean[] shared = _sharedEdges;
+		
+		if (_minEffectiveSamples > 0)
+		{
+			boolean converged = true;
+			for (int edge = 0; converged && edge < edges.length; edge++)
+			{
+				converged = !shared[edge] || edges[edge].getEffectiveSampleSize() >= _minEffectiveSamples;
+			}
+			if (converged)
+			{
+				return true;
+			}
+		}
+		
+		if (_messageTolerance > 0)
+		{
+			double maxChange = 0.0;
+			for (int edge = 0; edge < edges.length; edge++)
+			{
+				if (shared[edge])
+				{
+					final ISumProductSampledEdge<?> sedge = edges[edge];
+					sedge.setFactorToVarMsgFromSharedSamples();
+					final IParameterizedMessage message = sedge.getFactorToVarMsg();
+					final IParameterizedMessage previous = _previousMessages[edge];
+					if (previous == null)
+					{
+						_previousMessages[edge] = message.clone();
+						maxChange = Double.POSITIVE_INFINITY;
+					}
+					else
+					{
+						if (!firstBatch)
+						{
+							maxChange = Math.max(maxChange, message.computeKLDivergence(previous));
+						}
+						previous.setFrom(message);
+					}
+				}
+			}
+			if (!firstBatch && maxChange < _messageTolerance)
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
 	
 	/**
 	 * @deprecated Will be removed in a future release. Instead set {@link GibbsOptions#numSamples} option
@@ -16,6 +16,8 @@
 
 package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
 
+import java.util.Arrays;
+
 import com.analog.lyric.dimple.model.variables.Discrete;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessage;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsDiscrete;
@@ -34,6 +36,16 @@ class SumProductSampledDiscreteEdge extends SumProductDiscreteEdge
 {
 	private final GibbsDiscrete _svar;
 	
+	/**
+	 * Number of shared samples of each value.
+	 */
+	private int[] _counts = new int[0];
+	
+	/**
+	 * Log of importance weight for each value when sharing samples, which is simply the input energy.
+	 */
+	private double[] _logWeights = new double[0];
+	
 	SumProductSampledDiscreteEdge(GibbsDiscrete svar)
 	{
 		super(svar.getModelObject());
@@ -61,6 +73,103 @@ class SumProductSampledDiscreteEdge extends SumProductDiscreteEdge
 		factorToVarMsg.setWeights(_svar.getBelief());
 	}
 	
+	@Override
+	public boolean canShareSamples()
+	{
+		if (_svar.getModelObject().hasFixedValue())
+		{
+			return true;
+		}
+		
+		final DiscreteMessage input = varToFactorMsg;
+		for (int i = 0, n = input.size(); i < n; ++i)
+		{
+			if (input.hasZeroWeight(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public void setSharedSamplesDirection()
+	{
+		setVarToFactorDirection();
+		
+		final DiscreteMessage input = varToFactorMsg;
+		final int size = input.size();
+		if (_counts.length != size)
+		{
+			_counts = new int[size];
+			_logWeights = new double[size];
+		}
+		Arrays.fill(_counts, 0);
+		
+		if (_svar.getModelObject().hasFixedValue())
+		{
+			Arrays.fill(_logWeights, 0.0);
+		}
+		else
+		{
+			for (int i = 0; i < size; ++i)
+			{
+				_logWeights[i] = input.getEnergy(i);
+			}
+		}
+	}
+	
+	@Override
+	public void addCurrentSample()
+	{
+		++_counts[_svar.getCurrentSampleIndex()];
+	}
+	
+	@Override
+	public double getEffectiveSampleSize()
+	{
+		// Weights are relative to the highest weight sampled, so that they will not overflow
+		final double maxLogWeight = maxSampledLogWeight();
+		double sum = 0.0, sumSquares = 0.0;
+		for (int i = 0, n = _counts.length; i < n; ++i)
+		{
+			final int count = _counts[i];
+			if (count > 0)
+			{
+				final double w = Math.exp(_logWeights[i] - maxLogWeight);
+				sum += count * w;
+				sumSquares += count * w * w;
+			}
+		}
+		return sumSquares > 0 ? sum * sum / sumSquares : 0.0;
+	}
+	
+	@Override
+	public void setFactorToVarMsgFromSharedSamples()
+	{
+		final DiscreteMessage output = factorToVarMsg;
+		final double maxLogWeight = maxSampledLogWeight();
+		for (int i = 0, n = _counts.length; i < n; ++i)
+		{
+			final int count = _counts[i];
+			output.setWeight(i, count > 0 ? count * Math.exp(_logWeights[i] - maxLogWeight) : 0.0);
+		}
+		output.normalize();
+	}
+	
+	private double maxSampledLogWeight()
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0, n = _counts.length; i < n; ++i)
+		{
+			if (_counts[i] > 0)
+			{
+				max = Math.max(max, _logWeights[i]);
+			}
+		}
+		return max;
+	}
+	
 	private void setVariableInputUniform()
 	{
 		Discrete var = _svar.getModelObject();
@@ -18,6 +18,8 @@ package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
 
 import java.util.List;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import com.analog.lyric.dimple.factorfunctions.MultivariateNormal;
 import com.analog.lyric.dimple.model.variables.RealJoint;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
@@ -37,11 +39,15 @@ class SumProductSampledMultivariateNormalEdge extends SumProductMultivariateNorm
 	implements ISumProductSampledEdge<MultivariateNormalParameters>
 {
 	private final GibbsRealJoint _svar;
+	private final WeightedSampleMoments _moments;
+	private @Nullable double[] _inputMean;
+	private @Nullable double[][] _inputInformation;
 	
 	SumProductSampledMultivariateNormalEdge(GibbsRealJoint svar)
 	{
 		super(svar.getModelObject());
 		_svar = svar;
+		_moments = new WeightedSampleMoments(svar.getModelObject().getDomain().getDimensions());
 		setVariableInputUniform();
 	}
 	
@@ -121,6 +127,82 @@ class SumProductSampledMultivariateNormalEdge extends SumProductMultivariateNorm
 		factorToVarMsg.setMeanAndCovariance(mean, covariance);
 	}
 	
+	@Override
+	public boolean canShareSamples()
+	{
+		return _svar.getModelObject().hasFixedValue() || !varToFactorMsg.hasDeterministicValue();
+	}
+	
+	@Override
+	public void setSharedSamplesDirection()
+	{
+		setVarToFactorDirection();
+		_moments.reset();
+		
+		final MultivariateNormalParameters inputMessage = varToFactorMsg;
+		if (_svar.getModelObject().hasFixedValue() || inputMessage.isNull())
+		{
+			_inputMean = null;
+			_inputInformation = null;
+		}
+		else
+		{
+			_inputMean = inputMessage.getMean();
+			_inputInformation = inputMessage.getInformationMatrix();
+		}
+	}
+	
+	@Override
+	public void addCurrentSample()
+	{
+		final double[] x = _svar.getCurrentSample();
+		final double[] mean = _inputMean;
+		final double[][] information = _inputInformation;
+		
+		// Log weight is the input energy: (x - mean)' * information * (x - mean) / 2
+		double logWeight = 0.0;
+		if (mean != null && information != null)
+		{
+			for (int i = 0, n = x.length; i < n; ++i)
+			{
+				final double diffi = x[i] - mean[i];
+				final double[] row = information[i];
+				double sum = 0.0;
+				for (int j = 0; j < n; ++j)
+				{
+					sum += row[j] * (x[j] - mean[j]);
+				}
+				logWeight += diffi * sum;
+			}
+			logWeight *= .5;
+		}
+		
+		_moments.add(x, logWeight);
+	}
+	
+	@Override
+	public double getEffectiveSampleSize()
+	{
+		return _moments.effectiveSampleSize();
+	}
+	
+	@Override
+	public void setFactorToVarMsgFromSharedSamples()
+	{
+		if (_moments.isInvalid())
+		{
+			factorToVarMsg.setNull();
+			return;
+		}
+		
+		final int dimension = factorToVarMsg.getVectorLength();
+		final double[] mean = new double[dimension];
+		final double[][] covariance = new double[dimension][dimension];
+		_moments.mean(mean);
+		_moments.covariance(covariance);
+		factorToVarMsg.setMeanAndCovariance(mean, covariance);
+	}
+	
 	private final void setVariableInputUniform()
 	{
 		RealJoint var = _svar.getModelObject();
@@ -36,6 +36,11 @@ class SumProductSampledNormalEdge extends SumProductNormalEdge
 	implements ISumProductSampledEdge<NormalParameters>
 {
 	private final GibbsReal _svar;
+	private final WeightedSampleMoments _moments = new WeightedSampleMoments(1);
+	private final double[] _tmp = new double[1];
+	private final double[][] _tmp2 = new double[1][1];
+	private double _inputMean;
+	private double _inputPrecision;
 	
 	SumProductSampledNormalEdge(GibbsReal svar)
 	{
@@ -102,6 +107,51 @@ class SumProductSampledNormalEdge extends SumProductNormalEdge
 		outputMessage.setVariance(variance);
 	}
 
+	@Override
+	public boolean canShareSamples()
+	{
+		return _svar.getModelObject().hasFixedValue() || varToFactorMsg.getPrecision() < Double.POSITIVE_INFINITY;
+	}
+	
+	@Override
+	public void setSharedSamplesDirection()
+	{
+		setVarToFactorDirection();
+		_moments.reset();
+		_inputMean = varToFactorMsg.getMean();
+		_inputPrecision = _svar.getModelObject().hasFixedValue() ? 0.0 : varToFactorMsg.getPrecision();
+	}
+	
+	@Override
+	public void addCurrentSample()
+	{
+		final double x = _svar.getCurrentSample();
+		final double diff = x - _inputMean;
+		_moments.add(x, _inputPrecision > 0 ? .5 * _inputPrecision * diff * diff : 0.0);
+	}
+	
+	@Override
+	public double getEffectiveSampleSize()
+	{
+		return _moments.effectiveSampleSize();
+	}
+	
+	@Override
+	public void setFactorToVarMsgFromSharedSamples()
+	{
+		final NormalParameters outputMessage = factorToVarMsg;
+		if (_moments.isInvalid())
+		{
+			outputMessage.setNull();
+			return;
+		}
+		
+		_moments.mean(_tmp);
+		_moments.covariance(_tmp2);
+		outputMessage.setMean(_tmp[0]);
+		outputMessage.setVariance(_tmp2[0][0]);
+	}
+
 	private final void setVariableInputUniform()
 	{
 		Real var = _svar.getModelObject();
@@ -0,0 +1,225 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.solvers.sumproduct.sampledfactor;
+
+/**
+ * Running importance-weighted mean and covariance of vector samples.
+ * <p>
+ * Weights are specified in log form and are kept relative to the largest weight seen so far, so that
+ * they will not overflow. Moments are accumulated relative to the first sample to reduce cancellation.
+ * <p>
+ * @since 0.08
+ */
+final class WeightedSampleMoments
+{
+	/*-------
+	 * State
+	 */
+
+	private final int _dimension;
+	private final double[] _shift;
+	private final double[] _sums;
+	private final double[][] _productSums;
+	private double _logScale;
+	private double _weightSum;
+	private double _weightSquareSum;
+	private int _count;
+	private boolean _invalid;
+
+	/*--------------
+	 * Construction
+	 */
+
+	WeightedSampleMoments(int dimension)
+	{
+		_dimension = dimension;
+		_shift = new double[dimension];
+		_sums = new double[dimension];
+		_productSums = new double[dimension][dimension];
+		reset();
+	}
+
+	/*-------------------------------
+	 * WeightedSampleMoments methods
+	 */
+
+	void reset()
+	{
+		for (int i = 0; i < _dimension; ++i)
+		{
+			_sums[i] = 0.0;
+			final double[] row = _productSums[i];
+			for (int j = i; j < _dimension; ++j)
+			{
+				row[j] = 0.0;
+			}
+		}
+		_logScale = Double.NEGATIVE_INFINITY;
+		_weightSum = 0.0;
+		_weightSquareSum = 0.0;
+		_count = 0;
+		_invalid = false;
+	}
+
+	/**
+	 * Adds one-dimensional sample with weight {@code exp(logWeight)}.
+	 */
+	void add(double x, double logWeight)
+	{
+		if (_count == 0)
+		{
+			_shift[0] = x;
+		}
+		final double w = weight(x, logWeight);
+		if (w > 0)
+		{
+			final double dx = x - _shift[0];
+			_sums[0] += w * dx;
+			_productSums[0][0] += w * dx * dx;
+		}
+	}
+
+	/**
+	 * Adds sample with weight {@code exp(logWeight)}.
+	 */
+	void add(double[] x, double logWeight)
+	{
+		final int n = _dimension;
+		if (_count == 0)
+		{
+			System.arraycopy(x, 0, _shift, 0, n);
+		}
+		double check = 0.0;
+		for (int i = 0; i < n; ++i)
+		{
+			check += x[i];
+		}
+		final double w = weight(check, logWeight);
+		if (w > 0)
+		{
+			for (int i = 0; i < n; ++i)
+			{
+				final double dxi = x[i] - _shift[i];
+				final double wdxi = w * dxi;
+				_sums[i] += wdxi;
+				final double[] row = _productSums[i];
+				for (int j = i; j < n; ++j)
+				{
+					row[j] += wdxi * (x[j] - _shift[j]);
+				}
+			}
+		}
+	}
+
+	int size()
+	{
+		return _count;
+	}
+
+	/**
+	 * True if any sample or weight was infinite or NaN.
+	 */
+	boolean isInvalid()
+	{
+		return _invalid;
+	}
+
+	/**
+	 * Effective sample size of weights: {@code (sum w)^2 / sum w^2}.
+	 */
+	double effectiveSampleSize()
+	{
+		return _weightSquareSum > 0 ? _weightSum * _weightSum / _weightSquareSum : 0.0;
+	}
+
+	void mean(double[] out)
+	{
+		for (int i = 0; i < _dimension; ++i)
+		{
+			out[i] = _shift[i] + _sums[i] / _weightSum;
+		}
+	}
+
+	/**
+	 * Writes covariance to {@code out}, using the unbiased estimate for reliability weights.
+	 */
+	void covariance(double[][] out)
+	{
+		final int n = _dimension;
+		final double W = _weightSum;
+		final double unbiasedScale = 1.0 - _weightSquareSum / (W * W);
+		for (int i = 0; i < n; ++i)
+		{
+			final double meani = _sums[i] / W;
+			for (int j = i; j < n; ++j)
+			{
+				double value = _productSums[i][j] / W - meani * _sums[j] / W;
+				if (unbiasedScale > 0)
+				{
+					value /= unbiasedScale;
+				}
+				out[i][j] = value;
+				out[j][i] = value;
+			}
+		}
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Counts sample and returns its weight relative to current scale, rescaling the sums if necessary.
+	 * Returns zero if sample should be ignored.
+	 */
+	private double weight(double check, double logWeight)
+	{
+		++_count;
+
+		if (Double.isNaN(check) || Double.isInfinite(check) || Double.isNaN(logWeight) || logWeight == Double.POSITIVE_INFINITY)
+		{
+			_invalid = true;
+			return 0.0;
+		}
+		if (logWeight == Double.NEGATIVE_INFINITY)
+		{
+			return 0.0;
+		}
+
+		if (logWeight > _logScale)
+		{
+			final double scale = Math.exp(_logScale - logWeight);
+			_logScale = logWeight;
+			_weightSum *= scale;
+			_weightSquareSum *= scale * scale;
+			for (int i = 0; i < _dimension; ++i)
+			{
+				_sums[i] *= scale;
+				final double[] row = _productSums[i];
+				for (int j = i; j < _dimension; ++j)
+				{
+					row[j] *= scale;
+				}
+			}
+		}
+
+		final double w = Math.exp(logWeight - _logScale);
+		_weightSum += w;
+		_weightSquareSum += w * w;
+		return w;
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.math;
+
+/**
+ * Cholesky factorization of symmetric positive definite matrices stored as flat row-major arrays.
+ * <p>
+ * All of the methods operate on caller-supplied arrays of length at least n*n, where entry (i,j) is stored
+ * at index i*n + j, and do no allocation of their own. This makes them suitable for use in inner loops where
+ * the caller can reuse scratch buffers across calls.
+ * <p>
+ * The factorization detects matrices that are not positive definite or that are too poorly conditioned
+ * to be factored reliably, in which case the caller is expected to fall back on a more robust method such
+ * as an eigendecomposition.
+ * <p>
+ * @since 0.08
+ */
+public final class Cholesky
+{
+	/**
+	 * Minimum ratio of each pivot to the original diagonal entry below which a matrix is considered
+	 * to be too poorly conditioned to factor.
+	 * <p>
+	 * When the Schur complement cancels out nearly all of the diagonal entry, the rows are nearly linearly
+	 * dependent and the computed factor would have lost most of its significant digits.
+	 */
+	public static final double MIN_RELATIVE_PIVOT = 1e-12;
+
+	private Cholesky()
+	{
+	}
+
+	/**
+	 * Computes lower triangular factor L such that A = L L<sup>T</sup>.
+	 * <p>
+	 * Only the lower triangle of {@code a} is read. The full n*n contents of {@code l} are written, with
+	 * zeros above the diagonal. {@code a} and {@code l} may be the same array.
+	 * <p>
+	 * @param a is the symmetric input matrix in flat row-major order.
+	 * @param l is where the factor will be written in flat row-major order.
+	 * @param n is the number of rows/columns.
+	 * @param minPivot is the smallest diagonal pivot (i.e. square of the diagonal of L) that will be
+	 * accepted. Should be non-negative.
+	 * @return the natural log of the determinant of {@code a} or {@link Double#NaN} if the matrix is not
+	 * positive definite, contains non-finite values, or has a pivot less than or equal to {@code minPivot}
+	 * or less than {@link #MIN_RELATIVE_PIVOT} times its original diagonal value. When NaN is returned, the
+	 * contents of {@code l} are undefined.
+	 * @since 0.08
+	 */
+	public static double decompose(double[] a, double[] l, int n, double minPivot)
+	{
+		double logDet = 0.0;
+
+		for (int j = 0; j < n; ++j)
+		{
+			final int jrow = j * n;
+
+			final double ajj = a[jrow + j];
+			double d = ajj;
+			for (int k = 0; k < j; ++k)
+			{
+				final double ljk = l[jrow + k];
+				d -= ljk * ljk;
+			}
+
+			if (!(d > minPivot && d >= MIN_RELATIVE_PIVOT * ajj && d < Double.POSITIVE_INFINITY))
+			{
+				// Also catches NaN
+				return Double.NaN;
+			}
+
+			logDet += Math.log(d);
+			final double ljj = Math.sqrt(d);
+			l[jrow + j] = ljj;
+
+			for (int i = j + 1; i < n; ++i)
+			{
+				final int irow = i * n;
+				double s = a[irow + j];
+				for (int k = 0; k < j; ++k)
+				{
+					s -= l[irow + k] * l[jrow + k];
+				}
+				l[irow + j] = s / ljj;
+			}
+		}
+
+		// Zero out upper triangle
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = i + 1; j < n; ++j)
+			{
+				l[i * n + j] = 0.0;
+			}
+		}
+
+		return logDet;
+	}
+
+	/**
+	 * Replaces factor computed by {@link #decompose} with A<sup>-1</sup>, in place.
+	 * <p>
+	 * @param l is the lower triangular factor of A in flat row-major order. It will be overwritten by
+	 * the full symmetric inverse of A.
+	 * @param n is the number of rows/columns.
+	 * @since 0.08
+	 */
+	public static void invert(double[] l, int n)
+	{
+		// Invert L in place using forward substitution on the columns of the identity.
+		for (int j = 0; j < n; ++j)
+		{
+			final int jrow = j * n;
+			l[jrow + j] = 1.0 / l[jrow + j];
+
+			for (int i = j + 1; i < n; ++i)
+			{
+				final int irow = i * n;
+				double s = 0.0;
+				for (int k = j; k < i; ++k)
+				{
+					s -= l[irow + k] * l[k * n + j];
+				}
+				l[irow + j] = s / l[irow + i];
+			}
+		}
+
+		// inverse(A) = inverse(L)' * inverse(L)
+		//
+		// Entry (i,j) only depends on rows k >= i of inverse(L), so we can write the product into the
+		// unused upper triangle as we go, doing the diagonal last, and then mirror it into the lower triangle.
+		for (int i = 0; i < n; ++i)
+		{
+			final int irow = i * n;
+			for (int j = 0; j <= i; ++j)
+			{
+				double s = 0.0;
+				for (int k = i; k < n; ++k)
+				{
+					final int krow = k * n;
+					s += l[krow + i] * l[krow + j];
+				}
+				l[j * n + i] = s;
+			}
+			for (int j = 0; j < i; ++j)
+			{
+				// Diagonal of earlier rows is already final, but lower entries of this row are still needed
+				// until the diagonal has been computed, so mirror the row once we are done with it.
+				l[irow + j] = l[j * n + i];
+			}
+		}
+	}
+
+	/**
+	 * Computes y = A x for symmetric matrix A in flat row-major order.
+	 * <p>
+	 * {@code x} and {@code y} must not be the same array.
+	 * @since 0.08
+	 */
+	public static void multiply(double[] a, double[] x, double[] y, int n)
+	{
+		for (int i = 0; i < n; ++i)
+		{
+			final int irow = i * n;
+			double s = 0.0;
+			for (int j = 0; j < n; ++j)
+			{
+				s += a[irow + j] * x[j];
+			}
+			y[i] = s;
+		}
+	}
+}
@@ -24,6 +24,7 @@ import org.apache.commons.math3.random.MersenneTwister;
 import org.apache.commons.math3.random.RandomAdaptor;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
 
 import com.analog.lyric.dimple.environment.DimpleEnvironment;
 
@@ -36,6 +37,21 @@ import net.jcip.annotations.NotThreadSafe;
  * Most users will want to use {@link DimpleEnvironment#activeRandom()} rather than constructing
  * a new instance.
  * <p>
+ * Unless another generator is specified, this uses a {@link MersenneTwister}, and gamma samples are drawn
+ * from a separate Colt Mersenne Twister seeded with the same seed, so the random stream for a given seed
+ * is the same as in earlier releases.
+ * <p>
+ * When constructed with a {@link Xoshiro256StarStar} generator, e.g.
+ * <blockquote><pre>
+ * DimpleEnvironment.active().setRandom(new DimpleRandom(new Xoshiro256StarStar(seed), seed));
+ * </pre></blockquote>
+ * Gaussian, gamma, beta and Dirichlet samples are instead computed by {@link RandomVariates} using the
+ * underlying generator, without allocating objects, and {@link #split()} returns non-overlapping streams.
+ * This produces a different random stream for the same seed.
+ * <p>
+ * Instances are not thread-safe; use {@link #split()} to obtain independent instances for use by other
+ * threads.
+ * <p>
  * @since 0.08
  * @author Christopher Barber
  */
@@ -50,16 +66,20 @@ public class DimpleRandom extends RandomAdaptor
 
 	final RandomGenerator _randGenerator;
 	
-	private BetaDistribution _randBeta;
+	/**
+	 * True if samples from non-uniform distributions are computed by {@link RandomVariates}.
+	 */
+	private final boolean _useVariates;
+	
+	private @Nullable BetaDistribution _randBeta;
 	private BinomialDistribution _randBinomial;
 
-	// For now, continue to use the CERN Gamma implementation. It is somewhere between 40-100% faster
-	// and the Apache implementation causes tests to fail in a way that suggest that it might not be as
-	// numerically accurate or stable. We should look at the next Apache release (3.6) to see if it does
-	// anything about this...
-	private RandomEngine _randEngine;
-	private cern.jet.random.Gamma _randGamma;
-	
+	// Unless using RandomVariates, continue to use the CERN Gamma implementation. It is somewhere between
+	// 40-100% faster and the Apache implementation causes tests to fail in a way that suggest that it might
+	// not be as numerically accurate or stable. We should look at the next Apache release (3.6) to see if it
+	// does anything about this...
+	private @Nullable cern.jet.random.Gamma _randGamma;
+
 	private long _seed;
 	
 	/*--------------
@@ -75,11 +95,12 @@ public class DimpleRandom extends RandomAdaptor
 	{
 		super(randomGenerator);
 		_randGenerator = randomGenerator;
+		_useVariates = randomGenerator instanceof Xoshiro256StarStar;
 		_seed = seed;
-		_randEngine = new cern.jet.random.engine.MersenneTwister((int)seed);
-		_randGamma = new cern.jet.random.Gamma(1, 1, _randEngine);
-		_randBeta = new BetaDistribution(_randGenerator, 1, 1);
 		_randBinomial = new BinomialDistribution(_randGenerator, 1, 0.5);
+		// Assigned unconditionally, since the superclass constructor may already have invoked setSeed.
+		_randGamma = _useVariates ? null : newGamma(seed);
+		_randBeta = _useVariates ? null : new BetaDistribution(_randGenerator, 1, 1);
 	}
 	
 	/**
@@ -125,8 +146,10 @@ public class DimpleRandom extends RandomAdaptor
 	{
 		super.setSeed(seed);
 		_seed = seed;
-		_randEngine = new cern.jet.random.engine.MersenneTwister((int)seed);
-		_randGamma = new cern.jet.random.Gamma(1, 1, _randEngine);
+		if (!_useVariates)
+		{
+			_randGamma = newGamma(seed);
+		}
 	}
 	
 	@Override
@@ -148,6 +171,17 @@ public class DimpleRandom extends RandomAdaptor
 		setSeed(lseed);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Computed by {@link RandomVariates#nextNormal} if the underlying generator is a {@link Xoshiro256StarStar}.
+	 */
+	@Override
+	public double nextGaussian()
+	{
+		return _useVariates ? RandomVariates.nextNormal(_randGenerator) : super.nextGaussian();
+	}
+	
 	/*----------------------
 	 * DimpleRandom methods
 	 */
@@ -188,11 +222,17 @@ public class DimpleRandom extends RandomAdaptor
 	/**
 	 * Returns sample from beta distribution with specified alpha and beta parameters.
 	 * @since 0.08
+	 * @see RandomVariates#nextBeta
 	 */
 	public double nextBeta(double alpha, double beta)
 	{
 		BetaDistribution randBeta = _randBeta;
 		
+		if (randBeta == null)
+		{
+			return RandomVariates.nextBeta(_randGenerator, alpha, beta);
+		}
+		
 		if (randBeta.getAlpha() != alpha || randBeta.getBeta() != beta)
 		{
 			randBeta = new BetaDistribution(_randGenerator, alpha, beta);
@@ -266,11 +306,111 @@ public class DimpleRandom extends RandomAdaptor
 	
 	/**
 	 * Returns sample from gamma distribution with specified alpha and beta parameters.
+	 * <p>
+	 * @param alpha is the shape parameter, which must be non-negative.
+	 * @param beta is the rate parameter, i.e. the mean of the distribution is {@code alpha/beta}.
 	 * @since 0.08
+	 * @see RandomVariates#nextGamma
 	 */
 	public double nextGamma(double alpha, double beta)
 	{
-		return _randGamma.nextDouble(alpha, beta);
+		final cern.jet.random.Gamma randGamma = _randGamma;
+		return randGamma != null ? randGamma.nextDouble(alpha, beta) : RandomVariates.nextGamma(_randGenerator, alpha) / beta;
+	}
+	
+	/**
+	 * Writes sample from Dirichlet distribution with specified parameters into {@code out}.
+	 * <p>
+	 * {@code out} may be the same array as {@code alphas}.
+	 * <p>
+	 * Unless the underlying generator is a {@link Xoshiro256StarStar}, this normalizes a {@linkplain
+	 * #nextGamma(double, double) gamma sample} for each parameter. Gamma samples that are zero are
+	 * then replaced by {@link Double#MIN_VALUE}, and if all of them are zero, one element chosen at
+	 * random is set to nearly one.
+	 * <p>
+	 * @return {@code out}
+	 * @since 0.08
+	 * @see RandomVariates#nextDirichlet
+	 */
+	public double[] nextDirichlet(double[] alphas, double[] out)
+	{
+		if (_useVariates)
+		{
+			return RandomVariates.nextDirichlet(_randGenerator, alphas, out);
+		}
+		
+		final int dimension = alphas.length;
+		double sum = 0;
+		int numZeros = 0;
+		for (int i = 0; i < dimension; i++)
+		{
+			double nextSample = nextGamma(alphas[i], 1);
+			out[i] = nextSample;
+			sum += nextSample;
+			if (nextSample == 0)
+				numZeros++;
+		}
+		if (numZeros == 0)
+		{
+			for (int i = 0; i < dimension; i++)
+				out[i] /= sum;
+		}
+		else if (numZeros < dimension)
+		{
+			// Corner case where some, but not all, of the samples are zero
+			// Add a little to the zero sample values and adjust the others accordingly
+			double zeroAdjustment = Double.MIN_VALUE * numZeros / (dimension - numZeros);
+			for (int i = 0; i < dimension; i++)
+			{
+				if (out[i] == 0)
+					out[i] = Double.MIN_VALUE;
+				else
+					out[i] = (out[i] / sum) - zeroAdjustment;
+			}
+		}
+		else if (dimension > 0)
+		{
+			// Corner case where all samples were zero
+			// Choose one sample value at random, make that (nearly) one, and the others (nearly) zero
+			int randomChoice = nextInt(dimension);
+			for (int i = 0; i < dimension; i++)
+				if (i != randomChoice)
+					out[i] = Double.MIN_VALUE;
+			out[randomChoice] = 1 - Double.MIN_VALUE * (dimension - 1);
+		}
+		return out;
+	}
+	
+	/**
+	 * Returns new instance for an independent random stream.
+	 * <p>
+	 * If the underlying generator is a {@link Xoshiro256StarStar}, the new instance will use a
+	 * {@linkplain Xoshiro256StarStar#split() split} of it that is guaranteed not to overlap with this
+	 * one, and will report the same {@linkplain #getSeed() seed}. Otherwise the new instance is
+	 * seeded from this one.
+	 * <p>
+	 * This is intended for giving each of several threads its own generator in a reproducible way.
+	 * <p>
+	 * @since 0.08
+	 */
+	public DimpleRandom split()
+	{
+		final RandomGenerator generator = _randGenerator;
+		if (generator instanceof Xoshiro256StarStar)
+		{
+			return new DimpleRandom(((Xoshiro256StarStar)generator).split(), _seed);
+		}
+		return new DimpleRandom(nextLong());
+	}
+	
+	/*-----------------
+	 * Private methods
+	 */
+	
+	private static cern.jet.random.Gamma newGamma(long seed)
+	{
+		final RandomEngine randEngine = new cern.jet.random.engine.MersenneTwister((int)seed);
+		return new cern.jet.random.Gamma(1, 1, randEngine);
 	}
 	
 }
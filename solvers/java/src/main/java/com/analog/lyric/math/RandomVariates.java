@@ -0,0 +1,330 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.math;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Allocation-free samplers for common continuous distributions.
+ * <p>
+ * These take the underlying uniform source as an argument so that they can be used with any
+ * {@link RandomGenerator}. Most code should use the corresponding methods of {@link DimpleRandom}.
+ * <p>
+ * @since 0.08
+ */
+public final class RandomVariates
+{
+	/*-------
+	 * State
+	 */
+
+	/**
+	 * Number of layers in ziggurat for normal distribution. Must be a power of two.
+	 */
+	private static final int ZIGGURAT_LAYERS = 128;
+
+	/**
+	 * Start of tail of normal distribution for 128 layer ziggurat.
+	 */
+	private static final double ZIGGURAT_R = 3.442619855899;
+
+	/**
+	 * Area of each layer in 128 layer ziggurat.
+	 */
+	private static final double ZIGGURAT_V = 9.91256303526217e-3;
+
+	/**
+	 * Right edge of each layer. The bottom layer, which includes the tail, is treated as a rectangle
+	 * whose width is {@code V / f(R)}.
+	 */
+	private static final double[] ZIGGURAT_X = new double[ZIGGURAT_LAYERS + 1];
+
+	/**
+	 * Ratio {@code X[i+1]/X[i]} - the fraction of each layer that lies entirely under the curve.
+	 */
+	private static final double[] ZIGGURAT_RATIO = new double[ZIGGURAT_LAYERS];
+
+	static
+	{
+		final double[] x = ZIGGURAT_X;
+		double f = Math.exp(-0.5 * ZIGGURAT_R * ZIGGURAT_R);
+		x[0] = ZIGGURAT_V / f;
+		x[1] = ZIGGURAT_R;
+		x[ZIGGURAT_LAYERS] = 0.0;
+		for (int i = 2; i < ZIGGURAT_LAYERS; ++i)
+		{
+			x[i] = Math.sqrt(-2 * Math.log(ZIGGURAT_V / x[i-1] + f));
+			f = Math.exp(-0.5 * x[i] * x[i]);
+		}
+		for (int i = 0; i < ZIGGURAT_LAYERS; ++i)
+		{
+			ZIGGURAT_RATIO[i] = x[i+1] / x[i];
+		}
+	}
+
+	private RandomVariates()
+	{
+	}
+
+	/*----------------
+	 * Static methods
+	 */
+
+	/**
+	 * Returns sample from the standard normal distribution.
+	 * <p>
+	 * Uses the ziggurat method of Marsaglia and Tsang, in the double precision form described by Doornik,
+	 * which needs a single 64-bit random value for about 98% of samples.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static double nextNormal(RandomGenerator rand)
+	{
+		while (true)
+		{
+			final long bits = rand.nextLong();
+			final int i = (int)bits & (ZIGGURAT_LAYERS - 1);
+			// Uniform in [-1, 1) from the high 53 bits
+			final double u = (bits >>> 11) * 0x1.0p-52 - 1.0;
+
+			if (Math.abs(u) < ZIGGURAT_RATIO[i])
+			{
+				return u * ZIGGURAT_X[i];
+			}
+
+			if (i == 0)
+			{
+				return normalTail(rand, u < 0);
+			}
+
+			final double x = u * ZIGGURAT_X[i];
+			final double xi = ZIGGURAT_X[i], xi1 = ZIGGURAT_X[i+1];
+			final double f0 = Math.exp(-0.5 * (xi * xi - x * x));
+			final double f1 = Math.exp(-0.5 * (xi1 * xi1 - x * x));
+			if (f1 + rand.nextDouble() * (f0 - f1) < 1.0)
+			{
+				return x;
+			}
+		}
+	}
+
+	/**
+	 * Returns sample from gamma distribution with given shape and unit scale.
+	 * <p>
+	 * Uses the method of Marsaglia and Tsang, boosted by a uniform power for shapes less than one.
+	 * <p>
+	 * @param shape must be non-negative. Returns zero if shape is zero.
+	 * @throws IllegalArgumentException if shape is negative or NaN.
+	 * @since 0.08
+	 */
+	public static double nextGamma(RandomGenerator rand, double shape)
+	{
+		if (shape >= 1.0)
+		{
+			return marsagliaTsang(rand, shape);
+		}
+		else if (shape > 0.0)
+		{
+			return marsagliaTsang(rand, shape + 1.0) * Math.pow(nextOpenUniform(rand), 1.0 / shape);
+		}
+		else if (shape == 0.0)
+		{
+			return 0.0;
+		}
+
+		throw new IllegalArgumentException(String.format("Gamma shape must be non-negative: %g", shape));
+	}
+
+	/**
+	 * Returns log of a sample from gamma distribution with given shape and unit scale.
+	 * <p>
+	 * Unlike {@code Math.log(nextGamma(rand, shape))}, this will not underflow to negative infinity for very
+	 * small shapes.
+	 * <p>
+	 * @param shape must be non-negative. Returns negative infinity if shape is zero.
+	 * @throws IllegalArgumentException if shape is negative or NaN.
+	 * @since 0.08
+	 */
+	public static double nextLogGamma(RandomGenerator rand, double shape)
+	{
+		if (shape >= 1.0)
+		{
+			return Math.log(marsagliaTsang(rand, shape));
+		}
+		else if (shape > 0.0)
+		{
+			return Math.log(marsagliaTsang(rand, shape + 1.0)) + Math.log(nextOpenUniform(rand)) / shape;
+		}
+		else if (shape == 0.0)
+		{
+			return Double.NEGATIVE_INFINITY;
+		}
+
+		throw new IllegalArgumentException(String.format("Gamma shape must be non-negative: %g", shape));
+	}
+
+	/**
+	 * Returns sample from beta distribution with given parameters.
+	 * <p>
+	 * Computed as {@code X/(X+Y)} where X and Y are gamma variates with shapes {@code alpha} and {@code beta},
+	 * computed in log space when either parameter is less than one to avoid underflow.
+	 * <p>
+	 * @param alpha must be non-negative.
+	 * @param beta must be non-negative.
+	 * @throws IllegalArgumentException if either parameter is negative or NaN.
+	 * @since 0.08
+	 */
+	public static double nextBeta(RandomGenerator rand, double alpha, double beta)
+	{
+		if (alpha >= 1.0 && beta >= 1.0)
+		{
+			final double x = marsagliaTsang(rand, alpha);
+			final double y = marsagliaTsang(rand, beta);
+			return x / (x + y);
+		}
+
+		final double logx = nextLogGamma(rand, alpha);
+		final double logy = nextLogGamma(rand, beta);
+		return 1.0 / (1.0 + Math.exp(logy - logx));
+	}
+
+	/**
+	 * Writes sample from Dirichlet distribution with given parameters into {@code out}.
+	 * <p>
+	 * Computed by normalizing gamma variates, in log space when any parameter is less than one to
+	 * avoid underflow. Components may still be zero when their parameter is very small relative to
+	 * the others. If all of the parameters are zero, one randomly chosen component will be one.
+	 * <p>
+	 * @param alphas are the non-negative parameters of the distribution.
+	 * @param out is the array into which the sample is written. Must be at least as long as {@code alphas}
+	 * and may be the same array.
+	 * @return {@code out}
+	 * @throws IllegalArgumentException if any parameter is negative or NaN.
+	 * @since 0.08
+	 */
+	public static double[] nextDirichlet(RandomGenerator rand, double[] alphas, double[] out)
+	{
+		final int n = alphas.length;
+
+		boolean small = false;
+		for (int i = 0; i < n; ++i)
+		{
+			if (!(alphas[i] >= 1.0))
+			{
+				small = true;
+				break;
+			}
+		}
+
+		double sum = 0.0;
+		if (small)
+		{
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < n; ++i)
+			{
+				max = Math.max(max, out[i] = nextLogGamma(rand, alphas[i]));
+			}
+			if (max == Double.NEGATIVE_INFINITY && n > 0)
+			{
+				// All parameters are zero, so choose a vertex of the simplex at random.
+				Arrays.fill(out, 0, n, 0.0);
+				out[rand.nextInt(n)] = 1.0;
+				return out;
+			}
+			for (int i = 0; i < n; ++i)
+			{
+				sum += out[i] = Math.exp(out[i] - max);
+			}
+		}
+		else
+		{
+			for (int i = 0; i < n; ++i)
+			{
+				sum += out[i] = marsagliaTsang(rand, alphas[i]);
+			}
+		}
+
+		for (int i = 0; i < n; ++i)
+		{
+			out[i] /= sum;
+		}
+
+		return out;
+	}
+
+	/*-----------------
+	 * Private methods
+	 */
+
+	/**
+	 * Gamma sample for shape >= 1.
+	 */
+	private static double marsagliaTsang(RandomGenerator rand, double shape)
+	{
+		final double d = shape - 1.0 / 3.0;
+		final double c = 1.0 / Math.sqrt(9.0 * d);
+
+		while (true)
+		{
+			double x, v;
+			do
+			{
+				x = nextNormal(rand);
+				v = 1.0 + c * x;
+			} while (v <= 0.0);
+
+			v = v * v * v;
+			final double u = rand.nextDouble();
+			final double x2 = x * x;
+
+			// Squeeze test avoids the logs most of the time.
+			if (u < 1.0 - 0.0331 * x2 * x2)
+			{
+				return d * v;
+			}
+			if (Math.log(u) < 0.5 * x2 + d * (1.0 - v + Math.log(v)))
+			{
+				return d * v;
+			}
+		}
+	}
+
+	/**
+	 * Sample from tail of normal distribution beyond {@link #ZIGGURAT_R}, using Marsaglia's method.
+	 */
+	private static double normalTail(RandomGenerator rand, boolean negative)
+	{
+		double x, y;
+		do
+		{
+			x = Math.log(nextOpenUniform(rand)) / ZIGGURAT_R;
+			y = Math.log(nextOpenUniform(rand));
+		} while (-2.0 * y < x * x);
+
+		return negative ? x - ZIGGURAT_R : ZIGGURAT_R - x;
+	}
+
+	/**
+	 * Uniform value in (0, 1].
+	 */
+	private static double nextOpenUniform(RandomGenerator rand)
+	{
+		return 1.0 - rand.nextDouble();
+	}
+}
@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -46,6 +47,11 @@ public class LocalOptionHolder extends AbstractOptionHolder
 	
 	private volatile @Nullable ConcurrentMap<IOptionKey<?>,Object> _localOptions = null;
 	
+	/**
+	 * Incremented whenever a local option is set or unset on any instance.
+	 */
+	private static final AtomicLong _globalOptionVersion = new AtomicLong();
+	
 	/*--------------
 	 * Construction
 	 */
@@ -80,6 +86,7 @@ public class LocalOptionHolder extends AbstractOptionHolder
 	public void clearLocalOptions()
 	{
 		_localOptions = null;
+		incrementGlobalOptionVersion();
 	}
 	
 	@Override
@@ -146,6 +153,7 @@ public class LocalOptionHolder extends AbstractOptionHolder
 	public <T extends Serializable> void setOption(IOptionKey<T> key, T value)
 	{
 		createLocalOptionMap().put(key, key.validate(value, this));
+		incrementGlobalOptionVersion();
 	}
 	
 	/**
@@ -166,9 +174,42 @@ public class LocalOptionHolder extends AbstractOptionHolder
 		if (map != null)
 		{
 			map.remove(key);
+			incrementGlobalOptionVersion();
 		}
 	}
 	
+	/*----------------
+	 * Static methods
+	 */
+	
+	/**
+	 * Current value of global option version counter.
+	 * <p>
+	 * This value is incremented every time a local option is set or unset on any
+	 * {@link LocalOptionHolder} and may also be incremented by subclasses when the
+	 * option delegation structure changes. Option lookup results cached while this
+	 * value was unchanged may be reused without walking the delegation chain again.
+	 * <p>
+	 * @since 0.08
+	 */
+	public static long getGlobalOptionVersion()
+	{
+		return _globalOptionVersion.get();
+	}
+	
+	/**
+	 * Invalidates option lookup results cached using {@link #getGlobalOptionVersion()}.
+	 * <p>
+	 * Subclasses should invoke this when they change the objects returned by
+	 * {@link #getOptionDelegates()}.
+	 * <p>
+	 * @since 0.08
+	 */
+	protected static void incrementGlobalOptionVersion()
+	{
+		_globalOptionVersion.incrementAndGet();
+	}
+	
 	/*-------------------
 	 * Protected methods
 	 */
@@ -19,8 +19,17 @@ package com.analog.lyric.collect.tests;
 import static com.analog.lyric.util.test.ExceptionTester.*;
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
@@ -113,6 +122,82 @@ public class TestConstructorRegistry
 		}
 	}
 	
+	@Test
+	public void testClassIndex() throws IOException
+	{
+		final String packageName = IHeap.class.getPackage().getName();
+		final Path dir = Files.createTempDirectory("class-index");
+		
+		try
+		{
+			final URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, null);
+			assertNull(ConstructorRegistry.readClassIndex(loader, packageName));
+			
+			final Path indexDir = Files.createDirectories(dir.resolve(ConstructorRegistry.CLASS_INDEX_PATH));
+			final Path indexFile = indexDir.resolve(packageName);
+			Files.write(indexFile, Arrays.asList("# comment", "BinaryHeap", "", "  Tuple2 ", "BinaryHeap"),
+				StandardCharsets.UTF_8);
+			
+			Collection<String> names = ConstructorRegistry.readClassIndex(loader, packageName);
+			assertEquals(Arrays.asList("BinaryHeap", "Tuple2"), new ArrayList<>(names));
+			assertNull(ConstructorRegistry.readClassIndex(loader, "java.util"));
+
+			loader.close();
+		}
+		finally
+		{
+			deleteRecursively(dir.toFile());
+		}
+	}
+	
+	@Test
+	public void testSplitPackageClassIndex() throws IOException
+	{
+		final String packageName = IHeap.class.getPackage().getName();
+		final String packagePath = packageName.replace('.', '/');
+		final Path dir1 = Files.createTempDirectory("class-index");
+		final Path dir2 = Files.createTempDirectory("class-index");
+		
+		try
+		{
+			// Package has classes in both locations, but only the first one has an index.
+			Files.write(Files.createDirectories(dir1.resolve(packagePath)).resolve("BinaryHeap.class"), new byte[0]);
+			Files.write(Files.createDirectories(dir1.resolve(ConstructorRegistry.CLASS_INDEX_PATH)).resolve(packageName),
+				Arrays.asList("BinaryHeap"), StandardCharsets.UTF_8);
+			Files.write(Files.createDirectories(dir2.resolve(packagePath)).resolve("Tuple2.class"), new byte[0]);
+			
+			final URLClassLoader loader =
+				new URLClassLoader(new URL[] { dir1.toUri().toURL(), dir2.toUri().toURL() }, null);
+			assertNull(ConstructorRegistry.readClassIndex(loader, packageName));
+			
+			// Once both locations are indexed, the indexes are merged.
+			Files.write(Files.createDirectories(dir2.resolve(ConstructorRegistry.CLASS_INDEX_PATH)).resolve(packageName),
+				Arrays.asList("Tuple2"), StandardCharsets.UTF_8);
+			Collection<String> names = ConstructorRegistry.readClassIndex(loader, packageName);
+			assertEquals(Arrays.asList("BinaryHeap", "Tuple2"), new ArrayList<>(names));
+			
+			loader.close();
+		}
+		finally
+		{
+			deleteRecursively(dir1.toFile());
+			deleteRecursively(dir2.toFile());
+		}
+	}
+	
+	private static void deleteRecursively(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+	
 	private <T> void assertInvariants(ConstructorRegistry<T> registry)
 	{
 		Class<? super T> superClass = registry.getSuperClass();
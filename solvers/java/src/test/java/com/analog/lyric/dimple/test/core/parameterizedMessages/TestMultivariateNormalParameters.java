@@ -19,6 +19,8 @@ package com.analog.lyric.dimple.test.core.parameterizedMessages;
 import static com.analog.lyric.util.test.ExceptionTester.*;
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import com.analog.lyric.collect.ArrayUtil;
@@ -155,6 +157,133 @@ public class TestMultivariateNormalParameters extends TestParameterizedMessage
 		assertTrue(msg2.isDiagonal());
 	}
 	
+	@Test
+	public void testLargeMatrices()
+	{
+		final int n = 20;
+		
+		double[] mean = new double[n];
+		double[][] covariance = randomCovariance(n);
+		for (int i = 0; i < n; ++i)
+		{
+			mean[i] = testRand.nextGaussian();
+		}
+		
+		MultivariateNormalParameters msg = new MultivariateNormalParameters(mean, covariance);
+		assertFalse(msg.isDiagonal());
+		assertInvariants(msg);
+		
+		// information matrix must be the inverse of the covariance
+		double[][] info = msg.getInformationMatrix();
+		assertTrue(msg.isInInformationForm());
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				double sum = 0.0;
+				for (int k = 0; k < n; ++k)
+				{
+					sum += covariance[i][k] * info[k][j];
+				}
+				assertEquals(i == j ? 1.0 : 0.0, sum, 1e-9);
+			}
+		}
+		
+		// Converting back uses the cached covariance, which should be exactly the same as the original.
+		double[][] covariance2 = msg.getCovariance();
+		for (int i = 0; i < n; ++i)
+		{
+			assertArrayEquals(covariance[i], covariance2[i], 0.0);
+		}
+		assertArrayEquals(mean, msg.getMean(), 1e-9);
+		
+		assertEquals(0.0, msg.computeKLDivergence(msg), 1e-9);
+		assertEquals(0.0, msg.computeKLDivergence(msg.clone()), 1e-9);
+		
+		// Adding two messages adds their information matrices and vectors
+		double[][] covariance3 = randomCovariance(n);
+		MultivariateNormalParameters msg2 = new MultivariateNormalParameters(mean, covariance3);
+		double[][] info2 = msg2.getInformationMatrix();
+		double[] infoVector = msg.getInformationVector();
+		double[] infoVector2 = msg2.getInformationVector();
+		
+		MultivariateNormalParameters sum = msg.clone();
+		sum.addFrom(msg2);
+		assertInvariants(sum);
+		double[][] sumInfo = sum.getInformationMatrix();
+		double[] sumInfoVector = sum.getInformationVector();
+		for (int i = 0; i < n; ++i)
+		{
+			assertEquals(infoVector[i] + infoVector2[i], sumInfoVector[i], 1e-9);
+			for (int j = 0; j < n; ++j)
+			{
+				assertEquals(info[i][j] + info2[i][j], sumInfo[i][j], 1e-9);
+			}
+		}
+		// Both inputs have same mean, so the sum should too.
+		assertArrayEquals(mean, sum.getMean(), 1e-8);
+		
+		// Adding a diagonal message only changes the diagonal
+		double[] variance = new double[n];
+		Arrays.fill(variance, 2.0);
+		MultivariateNormalParameters diagonal = new MultivariateNormalParameters(mean, variance);
+		MultivariateNormalParameters sum2 = diagonal.clone();
+		sum2.addFrom(msg);
+		double[][] sum2Info = sum2.getInformationMatrix();
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				assertEquals(info[i][j] + (i == j ? .5 : 0.0), sum2Info[i][j], 1e-9);
+			}
+		}
+		assertEquals(sum2.computeKLDivergence(msg), sum2.clone().computeKLDivergence(msg.clone()), 1e-12);
+	}
+	
+	@Test
+	public void testIllConditioned()
+	{
+		// Singular covariance cannot be inverted using Cholesky and will fall back on conditioned
+		// eigendecomposition.
+		double[] mean = new double[] { 1.0, 2.0 };
+		double[][] covariance = new double[][] { { 1.0, 1.0 }, { 1.0, 1.0 } };
+		
+		MultivariateNormalParameters msg = new MultivariateNormalParameters(mean, covariance);
+		double[][] info = msg.getInformationMatrix();
+		for (double[] row : info)
+		{
+			for (double x : row)
+			{
+				assertFalse(Double.isNaN(x));
+				assertFalse(Double.isInfinite(x));
+			}
+		}
+		assertEquals(info[0][1], info[1][0], 1e-6);
+		assertFalse(Double.isNaN(msg.getNormalizationEnergy()));
+	}
+	
+	private double[][] randomCovariance(int n)
+	{
+		// A * A' + I is symmetric positive definite
+		double[][] a = new double[n][n];
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+				a[i][j] = testRand.nextGaussian();
+		
+		double[][] covariance = new double[n][n];
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				double sum = i == j ? 1.0 : 0.0;
+				for (int k = 0; k < n; ++k)
+					sum += a[i][k] * a[j][k];
+				covariance[i][j] = sum;
+			}
+		}
+		return covariance;
+	}
+	
 	private void assertInvariants(MultivariateNormalParameters msg)
 	{
 		assertGenericInvariants(msg);
@@ -0,0 +1,210 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.data;
+
+import static com.analog.lyric.dimple.model.sugar.ModelSyntacticSugar.*;
+import static com.analog.lyric.util.test.ExceptionTester.*;
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.data.ColumnarDataLayer;
+import com.analog.lyric.dimple.data.ColumnarFactorGraphData;
+import com.analog.lyric.dimple.factorfunctions.XorDelta;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.core.Ids;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.sugar.ModelSyntacticSugar.CurrentModel;
+import com.analog.lyric.dimple.model.values.RealValue;
+import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.core.PriorAndCondition;
+import com.analog.lyric.dimple.solvers.core.SVariableBase;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Unit tests for {@link ColumnarDataLayer} and {@link ColumnarFactorGraphData}
+ * @since 0.08
+ */
+public class TestColumnarDataLayer extends DimpleTestBase
+{
+	@Test
+	public void test()
+	{
+		FactorGraph root = new FactorGraph("root"), nested;
+		Discrete[] d;
+		Real[] r;
+		Real[] nr;
+
+		try (CurrentModel cur = using(root))
+		{
+			d = discretes("d", DiscreteDomain.range(0, 4), 5);
+			r = reals("r", 5);
+			nested = root.addGraph(new FactorGraph());
+			try (CurrentModel cur2 = using(nested))
+			{
+				nr = reals("nr", 3);
+			}
+		}
+
+		ColumnarDataLayer layer = new ColumnarDataLayer(root);
+		assertSame(Value.class, layer.baseType());
+		assertTrue(layer.allowsValues());
+		assertTrue(layer.isEmpty());
+
+		List<Discrete> dlist = Arrays.asList(d);
+		layer.setIndices(dlist, new int[] { 0, 1, -1, 3, 4 });
+		assertEquals(4, layer.size());
+		assertFalse(layer.containsKey(d[2]));
+		assertNull(layer.get(d[2]));
+		for (int i : new int[] { 0, 1, 3, 4 })
+		{
+			assertEquals(i, requireNonNull(layer.get(d[i])).getIndex());
+			assertEquals(i, requireNonNull(layer.get(d[i])).getInt());
+		}
+
+		layer.setIndices(dlist, IntBuffer.wrap(new int[] { 4, 3, 2, 1, 0, 42 }));
+		assertEquals(5, layer.size());
+		for (int i = 0; i < 5; ++i)
+		{
+			assertEquals(4 - i, requireNonNull(layer.get(d[i])).getIndex());
+		}
+
+		layer.setDoubles(Arrays.asList(r), new double[] { 1.5, Double.NaN, -2.0, 3.0, 0.0 });
+		assertEquals(9, layer.size());
+		assertNull(layer.get(r[1]));
+		assertEquals(-2.0, requireNonNull(layer.get(r[2])).getDouble(), 0.0);
+
+		DoubleBuffer buffer = DoubleBuffer.wrap(new double[] { 7, 8, 9 });
+		layer.setDoubles(Arrays.asList(nr), buffer);
+		assertEquals(0, buffer.remaining());
+		assertEquals(12, layer.size());
+		assertEquals(8.0, requireNonNull(layer.get(nr[1])).getDouble(), 0.0);
+		assertEquals(3, requireNonNull(layer.getDataForGraph(nested)).size());
+
+		// Values are copied, not stored
+		RealValue value = RealValue.create(2.5);
+		assertEquals(1.5, requireNonNull(layer.put(r[0], value)).getDouble(), 0.0);
+		value.setDouble(4.0);
+		assertEquals(2.5, requireNonNull(layer.get(r[0])).getDouble(), 0.0);
+
+		layer.set(d[0], 2);
+		assertEquals(2, requireNonNull(layer.get(d[0])).getIndex());
+		layer.set(r[0], 3.25);
+		assertEquals(3.25, requireNonNull(layer.get(r[0])).getDouble(), 0.0);
+		layer.set(r[0], null);
+		assertFalse(layer.containsKey(r[0]));
+		layer.set(r[0], 3.25);
+		expectThrow(ClassCastException.class, layer, "set", d[0], 42);
+
+		Value reuse = Value.create(d[3].getDomain());
+		assertTrue(layer.getValueInto(d[3], reuse));
+		assertEquals(1, reuse.getIndex());
+		assertFalse(layer.getValueInto(r[1], RealValue.create()));
+
+		// Type errors
+		expectThrow(IllegalArgumentException.class, layer, "setIndex", r[0], 1);
+		expectThrow(IllegalArgumentException.class, layer, "setDouble", d[0], 1.0);
+		expectThrow(IllegalArgumentException.class, layer, "setIndex", d[0], 5);
+		expectThrow(IllegalArgumentException.class, layer, "setDoubles", Arrays.asList(r), new double[2]);
+
+		// Clone is independent
+		ColumnarDataLayer clone = layer.clone();
+		assertEquals(layer, clone);
+		clone.setIndex(d[0], 0);
+		assertEquals(2, requireNonNull(layer.get(d[0])).getIndex());
+		assertNotEquals(layer, clone);
+
+		// Remove and clear
+		layer.remove(d[0]);
+		assertNull(layer.get(d[0]));
+		assertEquals(11, layer.size());
+		layer.setIndex(d[1], -1);
+		assertEquals(10, layer.size());
+
+		ColumnarFactorGraphData data = layer.createColumnsForGraph(root);
+		assertEquals(-1, data.getIndexByLocalIndex(Ids.indexFromLocalId(d[1].getLocalId())));
+		assertEquals(3.25, data.getDoubleByLocalIndex(Ids.indexFromLocalId(r[0].getLocalId())), 0.0);
+		assertTrue(Double.isNaN(data.getDoubleByLocalIndex(Ids.indexFromLocalId(r[1].getLocalId()))));
+		int count = 0;
+		for (int index : data.getLocalIndices())
+		{
+			assertTrue(data.containsLocalIndex(index));
+			++count;
+		}
+		assertEquals(data.size(), count);
+
+		layer.clear();
+		assertTrue(layer.isEmpty());
+	}
+
+	@Test
+	public void testConditioning()
+	{
+		FactorGraph fg = new FactorGraph();
+		Bit a, b;
+		try (CurrentModel cur = using(fg))
+		{
+			a = bit("a");
+			b = bit("b");
+			fg.addFactor(new XorDelta(), a, b);
+		}
+
+		ColumnarDataLayer layer = new ColumnarDataLayer(fg);
+		fg.setDefaultConditioningLayer(layer);
+		fg.setSolverFactory(new SumProductSolver());
+
+		layer.setIndices(Arrays.asList(new Variable[] { a }), new int[] { 1 });
+		fg.solve();
+		assertEquals(1.0, b.getBelief()[1], 1e-12);
+
+		layer.setIndex(a, 0);
+		fg.solve();
+		assertEquals(0.0, b.getBelief()[1], 1e-12);
+
+		// Condition is read into value owned by the PriorAndCondition instance
+		SVariableBase sa = (SVariableBase)requireNonNull(a.getSolver());
+		PriorAndCondition known = sa.getPriorAndCondition();
+		Value condition = requireNonNull(known.value());
+		assertEquals(0, condition.getIndex());
+		assertSame(condition, known.condition());
+		known.release();
+
+		layer.setIndex(a, 1);
+		known = sa.getPriorAndCondition();
+		assertSame(condition, known.value());
+		assertEquals(1, condition.getIndex());
+		known.release();
+		assertEquals(1, a.getValueIndex());
+
+		layer.setIndex(a, -1);
+		known = sa.getPriorAndCondition();
+		assertNull(known.value());
+		assertEquals(0, known.size());
+		known.release();
+	}
+}
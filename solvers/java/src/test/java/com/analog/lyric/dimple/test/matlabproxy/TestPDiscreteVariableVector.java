@@ -0,0 +1,114 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.matlabproxy;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.matlabproxy.PDiscreteVariableVector;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for flat array methods of {@link PDiscreteVariableVector}
+ * @since 0.08
+ */
+public class TestPDiscreteVariableVector extends DimpleTestBase
+{
+	@Test
+	public void testFlat()
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete a = new Discrete(DiscreteDomain.range(0, 1));
+		Discrete b = new Discrete(DiscreteDomain.range(0, 2));
+		Discrete c = new Discrete(DiscreteDomain.range(0, 3));
+		fg.addVariables(a, b, c);
+		fg.addFactor(new int[][] { {0,0}, {0,1}, {1,2} }, new double[] { 1, 2, 3 }, a, b);
+		fg.addFactor(new int[][] { {0,0}, {1,1}, {2,3}, {2,2} }, new double[] { 1, 2, 3, 4 }, b, c);
+
+		PDiscreteVariableVector vector = new PDiscreteVariableVector(new Variable[] { a, b, c });
+		final int[] all = new int[] { 0, 1, 2 };
+		final int[] some = new int[] { 2, 0 };
+
+		assertArrayEquals(new int[] { 0, 2, 5, 9 }, vector.getDomainOffsets(all));
+		assertArrayEquals(new int[] { 0, 4, 6 }, vector.getDomainOffsets(some));
+
+		// Priors
+		assertArrayEquals(new double[] { .25, .25, .25, .25, .5, .5 }, vector.getInputFlat(some), 1e-15);
+		vector.setInputFlat(some, new double[] { .1, .2, .3, .4, .6, .4 });
+		assertArrayEquals(new double[] { .1, .2, .3, .4 }, c.getInput(), 1e-15);
+		assertArrayEquals(new double[] { .6, .4 }, a.getInput(), 1e-15);
+		assertArrayEquals(new double[] { .6, .4, 1./3, 1./3, 1./3, .1, .2, .3, .4 }, vector.getInputFlat(all), 1e-15);
+		try
+		{
+			vector.setInputFlat(some, new double[5]);
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+
+		fg.setSolverFactory(new SumProductSolver());
+		testBeliefs(fg, vector);
+		fg.setSolverFactory(new MinSumSolver());
+		testBeliefs(fg, vector);
+	}
+
+	private static void testBeliefs(FactorGraph fg, PDiscreteVariableVector vector)
+	{
+		final int[] all = new int[] { 0, 1, 2 };
+		final int[] some = new int[] { 2, 0 };
+
+		vector.setPriorIndices(new int[] { 1 }, new int[] { 2 });
+		fg.solve();
+		assertBeliefs(vector, all);
+		assertBeliefs(vector, some);
+		assertArrayEquals(new double[] { 0, 0, 1 }, vector.getBeliefsFlat(new int[] { 1 }), 0.0);
+
+		assertArrayEquals(new int[] { -1, 2, -1 }, vector.getFixedValueIndices(all));
+		vector.setPriorIndices(all, new int[] { 1, -1, 3 });
+		assertArrayEquals(new int[] { 1, -1, 3 }, vector.getFixedValueIndices(all));
+		assertArrayEquals(new double[] { 0, 1, 1./3, 1./3, 1./3, 0, 0, 0, 1 }, vector.getInputFlat(all), 1e-15);
+		fg.solve();
+		assertBeliefs(vector, all);
+
+		vector.setPriorIndices(all, new int[] { -1, -1, -1 });
+		assertNull(((Discrete)vector.getModelerNode(2)).getPrior());
+	}
+
+	private static void assertBeliefs(PDiscreteVariableVector vector, int[] indices)
+	{
+		final double[] flat = vector.getBeliefsFlat(indices);
+		final double[][] beliefs = vector.getDiscreteBeliefs(indices);
+		final int[] offsets = vector.getDomainOffsets(indices);
+		assertEquals(offsets[indices.length], flat.length);
+		for (int i = 0; i < indices.length; ++i)
+		{
+			for (int j = 0; j < beliefs[i].length; ++j)
+			{
+				assertEquals(beliefs[i][j], flat[offsets[i] + j], 0.0);
+			}
+		}
+	}
+}
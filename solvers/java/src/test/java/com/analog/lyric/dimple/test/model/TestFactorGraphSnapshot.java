@@ -0,0 +1,251 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.model;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Sum;
+import com.analog.lyric.dimple.factorfunctions.XorDelta;
+import com.analog.lyric.dimple.factorfunctions.core.FactorFunction;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.TableFactorFunction;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.serialization.FactorGraphReader;
+import com.analog.lyric.dimple.model.serialization.FactorGraphWriter;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link FactorGraphWriter} and {@link FactorGraphReader}
+ * @since 0.08
+ */
+public class TestFactorGraphSnapshot extends DimpleTestBase
+{
+	@Test
+	public void test() throws IOException
+	{
+		final DiscreteDomain d3 = DiscreteDomain.range(0, 2);
+
+		// Template with one boundary variable
+		Bit tb = new Bit();
+		FactorGraph template = new FactorGraph(tb);
+		Bit tx = new Bit();
+		tx.setName("x");
+		template.addFactor(new XorDelta(), tb, tx);
+		tx.setInput(.3);
+
+		FactorGraph fg = new FactorGraph("root");
+		Bit a = new Bit(), b = new Bit();
+		a.setName("a");
+		b.setName("b");
+		Discrete c = new Discrete(d3);
+		c.setName("c");
+		fg.addVariables(a, b, c);
+
+		IFactorTable dense = FactorTable.create(a.getDomain(), b.getDomain(), c.getDomain());
+		dense.setWeightsDense(new double[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+		Factor denseFactor = fg.addFactor(dense, a, b, c);
+		denseFactor.setName("dense");
+
+		Factor sparseFactor = fg.addFactor(new int[][] { {0,1}, {1,2} }, new double[] { 1, 1 }, b, c);
+		sparseFactor.setDirectedTo(c);
+
+		a.setInput(.6);
+		c.setInput(.2, .3, .5);
+
+		FactorGraph sub1 = fg.addGraph(template, a);
+		sub1.setName("sub1");
+		fg.addGraph(template, b);
+
+		Real r = new Real(), s = new Real();
+		r.setName("r");
+		fg.addFactor(new Sum(), s, r, 2.0);
+		r.setPrior(new Normal(1, 2));
+		fg.addFactor(new Normal(0, 1), s);
+		fg.addVariableBlock(a, b, c);
+
+		FactorGraph fg2 = roundTrip(fg);
+
+		assertNotSame(fg, fg2);
+		assertEquals("root", fg2.getName());
+		assertEquals(fg.getVariableCount(), fg2.getVariableCount());
+		assertEquals(fg.getFactorCount(), fg2.getFactorCount());
+		assertEquals(fg.getOwnedGraphs().size(), fg2.getOwnedGraphs().size());
+		assertEquals(fg.getOwnedVariableBlocks().size(), fg2.getOwnedVariableBlocks().size());
+		assertNotNull(fg2.getSolver());
+
+		// Structure and names
+		Iterator<Variable> vars2 = fg2.getVariablesFlat().iterator();
+		for (Variable var : fg.getVariablesFlat())
+		{
+			Variable var2 = vars2.next();
+			assertSame(var.getClass(), var2.getClass());
+			assertEquals(var.getDomain(), var2.getDomain());
+			assertEquals(var.getExplicitName(), var2.getExplicitName());
+			assertEquals(var.getSiblingCount(), var2.getSiblingCount());
+		}
+		Iterator<Factor> factors2 = fg2.getFactorsFlat().iterator();
+		for (Factor factor : fg.getFactorsFlat())
+		{
+			Factor factor2 = factors2.next();
+			assertSame(factor.getClass(), factor2.getClass());
+			assertSame(factor.getFactorFunction().getClass(), factor2.getFactorFunction().getClass());
+			assertEquals(factor.getExplicitName(), factor2.getExplicitName());
+			assertEquals(factor.getArgumentCount(), factor2.getArgumentCount());
+			assertEquals(factor.getConstantCount(), factor2.getConstantCount());
+			assertEquals(factor.isDirected(), factor2.isDirected());
+		}
+		assertEquals("sub1", fg2.getOwnedGraphs().iterator().next().getName());
+		Discrete c2 = (Discrete)requireNonNull(fg2.getVariableByName("c"));
+		assertArrayEquals(c.getInput(), c2.getInput(), 0.0);
+		Real r2 = (Real)requireNonNull(fg2.getVariableByName("r"));
+		assertEquals(1.0, ((Normal)requireNonNull(r2.getPrior())).getMean(), 0.0);
+
+		// Tables are not decoded until used
+		Factor dense2 = (Factor)requireNonNull(fg2.getFactorByName("dense"));
+		TableFactorFunction denseFunction2 = (TableFactorFunction)dense2.getFactorFunction();
+		assertFalse(denseFunction2.hasFactorTable());
+		assertTrue(dense2.isDiscrete());
+		assertArrayEquals(dense.getWeightsDenseUnsafe(), denseFunction2.getFactorTable().getWeightsDenseUnsafe(), 0.0);
+		assertTrue(denseFunction2.hasFactorTable());
+
+		// Same results from both graphs
+		fg.setSolverFactory(new SumProductSolver());
+		fg2.setSolverFactory(new SumProductSolver());
+		fg.solve();
+		fg2.solve();
+		vars2 = fg2.getVariablesFlat().iterator();
+		for (Variable var : fg.getVariablesFlat())
+		{
+			Variable var2 = vars2.next();
+			if (var instanceof Discrete)
+			{
+				assertArrayEquals(((Discrete)var).getBelief(), ((Discrete)var2).getBelief(), 1e-12);
+			}
+		}
+
+		// Functions shared by template copies are only written once
+		List<FactorFunction> functions = new ArrayList<>();
+		for (Factor factor : fg2.getFactorsFlat())
+		{
+			if (factor.getFactorFunction() instanceof XorDelta)
+			{
+				functions.add(factor.getFactorFunction());
+			}
+		}
+		assertEquals(2, functions.size());
+		assertSame(functions.get(0), functions.get(1));
+	}
+
+	@Test
+	public void testFile() throws IOException
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete a = new Discrete(DiscreteDomain.range(0, 99)), b = new Discrete(DiscreteDomain.range(0, 99));
+		IFactorTable table = FactorTable.create(a.getDomain(), b.getDomain());
+		double[] energies = new double[100 * 100];
+		for (int i = 0; i < energies.length; ++i)
+		{
+			energies[i] = i % 7;
+		}
+		table.setEnergiesDense(energies);
+		fg.addFactor(table, a, b);
+
+		Path file = Files.createTempFile("graph", ".dimple");
+		try
+		{
+			FactorGraphWriter.write(fg, file);
+			FactorGraph fg2 = FactorGraphReader.read(file);
+			Factor factor2 = fg2.getFactorsFlat().iterator().next();
+			assertArrayEquals(energies, factor2.getFactorTable().getEnergiesDenseUnsafe(), 0.0);
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testErrors() throws IOException
+	{
+		try
+		{
+			FactorGraphReader.read(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20 }));
+			fail("expected IOException");
+		}
+		catch (IOException ex)
+		{
+		}
+
+		// Truncated payload leaves table offset out of range
+		FactorGraph fg = new FactorGraph();
+		Bit a = new Bit(), b = new Bit(), c = new Bit();
+		fg.addFactor(new int[][] { { 0, 0 }, { 1, 1 } }, new double[] { 1, 2 }, a, b);
+		fg.addFactor(new int[][] { { 0, 1 }, { 1, 0 } }, new double[] { 3, 4 }, b, c);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FactorGraphWriter.write(fg, out);
+		byte[] bytes = out.toByteArray();
+		try
+		{
+			FactorGraphReader.read(ByteBuffer.wrap(bytes, 0, bytes.length - 32));
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+			assertTrue(ex.getMessage().contains("outside of"));
+		}
+
+		// Truncated payload leaves table offset in range but cuts off the end of the table data
+		try
+		{
+			FactorGraphReader.read(ByteBuffer.wrap(bytes, 0, bytes.length - 8));
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+			assertTrue(ex.getMessage().contains("outside of"));
+		}
+	}
+
+	private static FactorGraph roundTrip(FactorGraph fg) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FactorGraphWriter.write(fg, out);
+		return FactorGraphReader.read(ByteBuffer.wrap(out.toByteArray()));
+	}
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.model;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.repeated.BitStream;
+import com.analog.lyric.dimple.model.repeated.DoubleArrayDataSink;
+import com.analog.lyric.dimple.model.repeated.DoubleArrayDataSource;
+import com.analog.lyric.dimple.model.repeated.IDataSource;
+import com.analog.lyric.dimple.model.repeated.IDataSink;
+import com.analog.lyric.dimple.model.repeated.StreamPipeline;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.options.SolverOptions;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link StreamPipeline}
+ * @since 0.08
+ */
+public class TestStreamPipeline extends DimpleTestBase
+{
+	private final int N = 60;
+	private final double[][] _input = new double[N][];
+
+	public TestStreamPipeline()
+	{
+		for (int i = 0; i < N; ++i)
+		{
+			final double p = testRand.nextDouble();
+			_input[i] = new double[] { p, 1 - p };
+		}
+	}
+
+	@Test
+	public void test()
+	{
+		final double[][] expected = run(false, new DoubleArrayDataSink());
+		assertEquals(N - 5, expected.length);
+
+		// Tiny capacity forces the solver to wait on the background threads.
+		for (int capacity : new int[] { 1, 3, 100 })
+		{
+			final double[][] actual = run(true, capacity, new DoubleArrayDataSink());
+			assertArrayEquals(expected, actual);
+		}
+
+		// Errors in the data sink are passed on to the caller.
+		try
+		{
+			run(true, new IDataSink() {
+				@Override
+				public void push(Object data)
+				{
+					throw new UnsupportedOperationException("bad sink");
+				}
+			});
+			fail("expected UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException ex)
+		{
+			assertEquals("bad sink", ex.getMessage());
+		}
+	}
+
+	@Test
+	public void sourceError() throws InterruptedException
+	{
+		final CountDownLatch failed = new CountDownLatch(1);
+		final AtomicBoolean armed = new AtomicBoolean(false);
+		FactorGraph fg = buildGraph(new DoubleArrayDataSink());
+		BitStream x = (BitStream)fg.getVariableStreams().iterator().next();
+		x.setDataSource(new IDataSource() {
+			@Override
+			public boolean hasNext()
+			{
+				return true;
+			}
+
+			@Override
+			public Object getNext()
+			{
+				if (!armed.get())
+				{
+					return new double[] { .5, .5 };
+				}
+				failed.countDown();
+				throw new UnsupportedOperationException("bad source");
+			}
+		});
+		armed.set(true);
+
+		// Error that was read ahead but never consumed is thrown when the pipeline is stopped.
+		StreamPipeline pipeline = StreamPipeline.start(fg.getVariableStreams(), 4);
+		assertTrue(failed.await(10, TimeUnit.SECONDS));
+		try
+		{
+			pipeline.stop();
+			fail("expected UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException ex)
+		{
+			assertEquals("bad source", ex.getMessage());
+		}
+	}
+
+	@Test
+	public void pipelinedSlices()
+	{
+		final double[][] expected = runSlices(false, 1, new DoubleArrayDataSink());
+		assertEquals(N - 4, expected.length);
+
+		// One pipelined iteration only passes messages across the boundary with the newest slice once.
+		final double[][] oneIteration = runSlices(true, 1, new DoubleArrayDataSink());
+		assertEquals(expected.length, oneIteration.length);
+		assertFalse(Arrays.deepEquals(expected, oneIteration));
+
+		// The chain is a tree, so enough iterations converge to the same beliefs.
+		final double[][] converged = runSlices(true, 8, new DoubleArrayDataSink());
+		for (int i = 0; i < expected.length; ++i)
+		{
+			assertArrayEquals(expected[i], converged[i], 1e-12);
+		}
+
+		// Results do not depend on the number of threads.
+		final int numThreads = ThreadPool.getNumThreads();
+		try
+		{
+			ThreadPool.setNumThreads(numThreads == 1 ? 2 : 1);
+			assertArrayEquals(oneIteration, runSlices(true, 1, new DoubleArrayDataSink()));
+		}
+		finally
+		{
+			ThreadPool.setNumThreads(numThreads);
+		}
+	}
+
+	private double[][] run(boolean pipelined, IDataSink sink)
+	{
+		return run(pipelined, 16, sink);
+	}
+
+	/**
+	 * Solves in several segments, some of which use a pipeline.
+	 */
+	private double[][] run(boolean pipelined, int capacity, IDataSink sink)
+	{
+		FactorGraph fg = buildGraph(sink);
+		ISolverFactorGraph sfg = requireNonNull(fg.getSolver());
+		BitStream x = (BitStream)fg.getVariableStreams().iterator().next();
+
+		fg.setOption(SolverOptions.pipelineStreams, pipelined);
+		fg.setOption(SolverOptions.streamPipelineCapacity, capacity);
+		fg.setNumStepsInfinite(false);
+		fg.setNumSteps(10);
+		sfg.solve();
+
+		// Continue without pipeline, using data that was read ahead by previous segment.
+		fg.setOption(SolverOptions.pipelineStreams, false);
+		sfg.continueSolve();
+
+		fg.setOption(SolverOptions.pipelineStreams, pipelined);
+		fg.setNumStepsInfinite(true);
+		sfg.continueSolve();
+
+		assertFalse(x.hasNext());
+
+		return sink instanceof DoubleArrayDataSink ? ((DoubleArrayDataSink)sink).getArray() : new double[0][];
+	}
+
+	/**
+	 * Solves hidden Markov chain with buffer of four slices, each of which observes one variable.
+	 */
+	private double[][] runSlices(boolean pipelined, int iterations, DoubleArrayDataSink sink)
+	{
+		Bit xi = new Bit();
+		Bit xo = new Bit();
+		Bit y = new Bit();
+		FactorGraph sg = new FactorGraph(xi, xo, y);
+		IFactorTable transition = FactorTable.create(DiscreteDomain.bit(), DiscreteDomain.bit());
+		transition.setWeightsDense(new double[] { .8, .2, .3, .7 });
+		sg.addFactor(transition, xi, xo);
+		IFactorTable observation = FactorTable.create(DiscreteDomain.bit(), DiscreteDomain.bit());
+		observation.setWeightsDense(new double[] { .9, .1, .2, .8 });
+		sg.addFactor(observation, xo, y);
+
+		FactorGraph fg = new FactorGraph();
+		BitStream x = new BitStream("x");
+		BitStream ys = new BitStream("y");
+		fg.addRepeatedFactorWithBufferSize(sg, 4, x, x.getSlice(1), ys);
+		ISolverFactorGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		ys.setDataSource(new DoubleArrayDataSource(_input));
+		x.setDataSink(sink);
+
+		fg.setOption(BPOptions.pipelineSlices, pipelined);
+		fg.setOption(BPOptions.iterations, iterations);
+		fg.setNumStepsInfinite(true);
+		sfg.solve();
+
+		return sink.getArray();
+	}
+
+	private FactorGraph buildGraph(IDataSink sink)
+	{
+		Bit xi = new Bit();
+		Bit xo = new Bit();
+		FactorGraph sg = new FactorGraph(xi, xo);
+		IFactorTable table = FactorTable.create(DiscreteDomain.bit(), DiscreteDomain.bit());
+		table.setWeightsDense(new double[] { .8, .2, .3, .7 });
+		sg.addFactor(table, xi, xo);
+
+		FactorGraph fg = new FactorGraph();
+		BitStream x = new BitStream("x");
+		fg.addRepeatedFactorWithBufferSize(sg, 4, x, x.getSlice(1));
+		fg.setSolverFactory(new SumProductSolver());
+		x.setDataSource(new DoubleArrayDataSource(_input));
+		x.setDataSink(sink);
+		return fg;
+	}
+}
@@ -28,10 +28,13 @@ import com.analog.lyric.dimple.data.GenericDataLayer;
 import com.analog.lyric.dimple.events.DimpleEventListener;
 import com.analog.lyric.dimple.events.IDimpleEventSource;
 import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Xor;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.core.Node;
 import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.values.Value;
+import com.analog.lyric.dimple.model.variables.Bit;
 import com.analog.lyric.dimple.model.variables.Real;
 import com.analog.lyric.dimple.model.variables.Variable;
 import com.analog.lyric.dimple.options.DimpleOptions;
@@ -75,6 +78,89 @@ public class TestFreezing extends DimpleTestBase
 		expectFrozenErrors(fg1);
 	}
 	
+	@Test
+	public void testInstances()
+	{
+		FactorGraph template = createTemplate();
+		template.freezeGraphTree();
+		FactorGraph unfrozenTemplate = createTemplate();
+		
+		FactorGraph fg = new FactorGraph();
+		Bit a = new Bit(), b = new Bit(), c = new Bit();
+		fg.addVariables(a, b, c);
+		FactorGraph sub1 = fg.addGraph(template, a, b);
+		FactorGraph sub2 = fg.addGraph(template, b, c);
+		a.setInput(.3);
+		
+		FactorGraph fg2 = new FactorGraph();
+		Bit a2 = new Bit(), b2 = new Bit(), c2 = new Bit();
+		fg2.addVariables(a2, b2, c2);
+		fg2.addGraph(unfrozenTemplate, a2, b2);
+		fg2.addGraph(unfrozenTemplate, b2, c2);
+		a2.setInput(.3);
+		
+		// Factors instantiated from frozen template share derived state
+		Factor[] factors1 = sub1.getOwnedFactors().toArray(new Factor[0]);
+		Factor[] factors2 = sub2.getOwnedFactors().toArray(new Factor[0]);
+		Factor[] templateFactors = template.getOwnedFactors().toArray(new Factor[0]);
+		assertEquals(templateFactors.length, factors1.length);
+		for (int i = 0; i < factors1.length; ++i)
+		{
+			Factor factor1 = factors1[i], factor2 = factors2[i];
+			assertNotSame(factor1, factor2);
+			assertSame(factor1.getDomainList(), factor2.getDomainList());
+			assertSame(factor1.getArgumentDomains(), factor2.getArgumentDomains());
+			assertEquals(templateFactors[i].getConstantCount(), factor1.getConstantCount());
+			assertEquals(templateFactors[i].isDirected(), factor1.isDirected());
+		}
+		
+		// Same results as from unfrozen template
+		fg.solve();
+		fg2.solve();
+		assertArrayEquals(a2.getBelief(), a.getBelief(), 1e-12);
+		assertArrayEquals(b2.getBelief(), b.getBelief(), 1e-12);
+		assertArrayEquals(c2.getBelief(), c.getBelief(), 1e-12);
+		
+		// Editing table of one instance does not affect the template or the other instance
+		FactorGraph fg3 = new FactorGraph();
+		Bit a3 = new Bit(), b3 = new Bit(), c3 = new Bit();
+		fg3.addVariables(a3, b3, c3);
+		Factor instance1 = fg3.addGraph(template, a3, b3).getOwnedFactors().iterator().next();
+		Factor instance2 = fg3.addGraph(template, b3, c3).getOwnedFactors().iterator().next();
+		IFactorTable table1 = instance1.getFactorTable();
+		IFactorTable table2 = instance2.getFactorTable();
+		IFactorTable templateTable = templateFactors[0].getFactorTable();
+		assertNotSame(table1, table2);
+		assertNotSame(templateTable, table1);
+		double[] energies = table2.getEnergiesSparseUnsafe().clone();
+		double[] templateEnergies = templateTable.getEnergiesSparseUnsafe().clone();
+		table1.setEnergyForSparseIndex(5.0, 0);
+		assertEquals(5.0, instance1.getFactorTable().getEnergyForSparseIndex(0), 0.0);
+		assertArrayEquals(energies, instance2.getFactorTable().getEnergiesSparseUnsafe(), 0.0);
+		assertArrayEquals(templateEnergies, templateFactors[0].getFactorTable().getEnergiesSparseUnsafe(), 0.0);
+		
+		// Modifying an instance stops sharing
+		Factor factor1 = factors1[1], factor2 = factors2[1];
+		assertFalse(factor1.isDirected());
+		factor1.setDirectedTo(factor1.getSibling(1));
+		assertNotSame(factor1.getDomainList(), factor2.getDomainList());
+		assertTrue(factor1.isDirected());
+		assertFalse(factor2.isDirected());
+		assertFalse(templateFactors[1].isDirected());
+	}
+	
+	private FactorGraph createTemplate()
+	{
+		Bit x = new Bit(), y = new Bit();
+		FactorGraph template = new FactorGraph(x, y);
+		Bit z = new Bit();
+		template.addVariables(z);
+		template.addFactor(new Xor(), x, z, 1);
+		template.addFactor(new int[][] { {0,0}, {1,1}, {0,1} }, new double[] { .25, 1, .75 }, z, y);
+		template.setSolverFactory(null);
+		return template;
+	}
+	
 	private void expectFrozenErrors(FactorGraph graph)
 	{
 		assertTrue(graph.frozen());
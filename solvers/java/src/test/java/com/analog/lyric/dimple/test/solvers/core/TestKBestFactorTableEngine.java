@@ -0,0 +1,256 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTableRepresentation;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.core.kbest.IKBestFactor;
+import com.analog.lyric.dimple.solvers.core.kbest.KBestFactorTableEngine;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteEnergyMessage;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteMessage;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.DiscreteWeightMessage;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverNode;
+import com.analog.lyric.dimple.solvers.minsum.MinSumSolver;
+import com.analog.lyric.dimple.solvers.minsum.MinSumTableFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductTableFactor;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link KBestFactorTableEngine} and {@link DiscreteMessage#getKBest}
+ * @since 0.08
+ */
+public class TestKBestFactorTableEngine extends DimpleTestBase
+{
+	private final Random _rand = new Random(42);
+
+	@Test
+	public void testGetKBest()
+	{
+		int[] indices = new int[5];
+		double[] values = new double[5];
+
+		DiscreteMessage msg = new DiscreteWeightMessage(new double[] { .1, .4, .2, .4, .3 });
+		assertEquals(3, msg.getKBest(3, indices, values));
+		assertArrayEquals(new int[] { 1, 3, 4 }, Arrays.copyOf(indices, 3));
+		assertArrayEquals(new double[] { .4, .4, .3 }, Arrays.copyOf(values, 3), 0.0);
+
+		// Ties are broken in favor of lower indices
+		assertEquals(1, msg.getKBest(1, indices, values));
+		assertEquals(1, indices[0]);
+
+		assertEquals(5, msg.getKBest(7, indices, values));
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, indices);
+		assertArrayEquals(msg.representation(), values, 0.0);
+
+		msg = new DiscreteEnergyMessage(new double[] { 3, 0, Double.POSITIVE_INFINITY, 1, 0 });
+		assertEquals(3, msg.getKBest(3, indices, values));
+		assertArrayEquals(new int[] { 1, 3, 4 }, Arrays.copyOf(indices, 3));
+		assertArrayEquals(new double[] { 0, 1, 0 }, Arrays.copyOf(values, 3), 0.0);
+		assertEquals(2, msg.getKBest(2, indices, values));
+		assertArrayEquals(new int[] { 1, 4 }, Arrays.copyOf(indices, 2));
+
+		// Compare against sorting
+		double[] weights = new double[100];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = _rand.nextInt(20);
+		}
+		msg = new DiscreteWeightMessage(weights);
+		indices = new int[10];
+		values = new double[10];
+		msg.getKBest(10, indices, values);
+		double[] sorted = weights.clone();
+		Arrays.sort(sorted);
+		double[] kept = values.clone();
+		Arrays.sort(kept);
+		assertArrayEquals(Arrays.copyOfRange(sorted, 90, 100), kept, 0.0);
+		for (int i = 0; i < 10; ++i)
+		{
+			assertEquals(weights[indices[i]], values[i], 0.0);
+			if (i > 0)
+				assertTrue(indices[i - 1] < indices[i]);
+		}
+	}
+
+	@Test
+	public void testUpdate()
+	{
+		final DiscreteDomain domain = DiscreteDomain.range(0, 9);
+
+		// Fully populated table
+		IFactorTable table = FactorTable.create(domain, domain, domain);
+		double[] weights = new double[table.getDomainIndexer().getCardinality()];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = _rand.nextDouble() + .01;
+		}
+		table.setWeightsDense(weights);
+		testUpdate(table);
+
+		// Sparse table
+		table = FactorTable.create(domain, domain, domain);
+		int[][] indices = new int[300][];
+		weights = new double[indices.length];
+		for (int i = 0; i < indices.length; ++i)
+		{
+			int joint = i * 3 + _rand.nextInt(3);
+			indices[i] = table.getDomainIndexer().jointIndexToIndices(joint, null);
+			weights[i] = _rand.nextDouble() + .01;
+		}
+		table.setWeightsSparse(indices, weights);
+		testUpdate(table);
+	}
+
+	private void testUpdate(IFactorTable table)
+	{
+		final DiscreteDomain domain = DiscreteDomain.range(0, 9);
+
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[3];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(domain);
+			double[] input = new double[domain.size()];
+			for (int j = 0; j < input.length; ++j)
+			{
+				input[j] = _rand.nextDouble();
+			}
+			vars[i].setInput(input);
+		}
+		fg.addVariables(vars);
+		Factor factor = fg.addFactor(table, vars);
+
+		// k = 1 and 3 iterate over combinations of surviving values, 4 iterates over table entries,
+		// and 10 uses the normal table engine.
+		for (int k : new int[] { 1, 3, 4, 10 })
+		{
+			fg.setSolverFactory(new SumProductSolver());
+			fg.initialize();
+			SumProductTableFactor sf = (SumProductTableFactor)requireNonNull(factor.getSolver());
+			sf.setK(k);
+			testUpdate(sf, k, true);
+			sf.getFactorTable().setRepresentation(FactorTableRepresentation.ALL);
+			testUpdate(sf, k, true);
+
+			fg.setSolverFactory(new MinSumSolver());
+			fg.initialize();
+			MinSumTableFactor msf = (MinSumTableFactor)requireNonNull(factor.getSolver());
+			msf.setK(k);
+			testUpdate(msf, k, false);
+			msf.getFactorTable().setRepresentation(FactorTableRepresentation.ALL);
+			testUpdate(msf, k, false);
+		}
+	}
+
+	private void testUpdate(IKBestFactor sf, int k, boolean weights)
+	{
+		final int nPorts = sf.getFactor().getSiblingCount();
+
+		// Make incoming messages differ from the priors
+		for (int i = 0; i < nPorts; ++i)
+		{
+			double[] msg = sf.getInPortMsg(i);
+			for (int j = 0; j < msg.length; ++j)
+			{
+				msg[j] = weights ? _rand.nextDouble() : -Math.log(_rand.nextDouble());
+			}
+		}
+
+		((ISolverNode)sf).update();
+		for (int i = 0; i < nPorts; ++i)
+		{
+			assertArrayEquals(expectedOutput(sf, i, k, weights), sf.getOutPortMsg(i), 1e-12);
+		}
+
+		for (int i = 0; i < nPorts; ++i)
+		{
+			Arrays.fill(sf.getOutPortMsg(i), 0);
+			((ISolverNode)sf).updateEdge(i);
+			assertArrayEquals(expectedOutput(sf, i, k, weights), sf.getOutPortMsg(i), 1e-12);
+		}
+	}
+
+	private double[] expectedOutput(IKBestFactor sf, int outPort, int k, boolean weights)
+	{
+		final IFactorTable table = sf.getFactorTable();
+		final int nPorts = sf.getFactor().getSiblingCount();
+
+		boolean[][] kept = new boolean[nPorts][];
+		for (int i = 0; i < nPorts; ++i)
+		{
+			final double[] msg = sf.getInPortMsg(i);
+			kept[i] = new boolean[msg.length];
+			double[] sorted = msg.clone();
+			Arrays.sort(sorted);
+			final double threshold = weights ? sorted[Math.max(0, msg.length - k)] : sorted[Math.min(k, msg.length) - 1];
+			for (int j = 0; j < msg.length; ++j)
+			{
+				kept[i][j] = weights ? msg[j] >= threshold : msg[j] <= threshold;
+			}
+		}
+
+		final double[] output = new double[sf.getOutPortMsg(outPort).length];
+		Arrays.fill(output, weights ? 0 : Double.POSITIVE_INFINITY);
+
+		entries:
+		for (int entry = 0, n = table.sparseSize(); entry < n; ++entry)
+		{
+			final int[] row = table.sparseIndexToIndices(entry);
+			double value = weights ? table.getWeightForSparseIndex(entry) : table.getEnergyForSparseIndex(entry);
+			for (int i = 0; i < nPorts; ++i)
+			{
+				if (i != outPort)
+				{
+					if (!kept[i][row[i]])
+					{
+						continue entries;
+					}
+					final double msgValue = sf.getInPortMsg(i)[row[i]];
+					value = weights ? value * msgValue : value + msgValue;
+				}
+			}
+			final int o = row[outPort];
+			output[o] = weights ? output[o] + value : Math.min(output[o], value);
+		}
+
+		double norm = weights ? 0 : Double.POSITIVE_INFINITY;
+		for (double d : output)
+		{
+			norm = weights ? norm + d : Math.min(norm, d);
+		}
+		for (int i = 0; i < output.length; ++i)
+		{
+			output[i] = weights ? output[i] / norm : output[i] - norm;
+		}
+
+		return output;
+	}
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.collect.BitSetUtil;
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.solvers.core.ParallelBaumWelch;
+import com.analog.lyric.dimple.solvers.core.ParameterEstimator;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link ParallelBaumWelch}
+ * @since 0.08
+ */
+public class TestParallelBaumWelch extends DimpleTestBase
+{
+	private static final int LENGTH = 6;
+
+	@Test
+	public void test()
+	{
+		final int nThreads = ThreadPool.getNumThreads();
+		try
+		{
+			ThreadPool.setNumThreads(4);
+
+			// Without data, same as sequential Baum-Welch
+			Hmm hmm1 = new Hmm(), hmm2 = new Hmm();
+			hmm1.observe(1, 0, 0, 2, 1, 1);
+			hmm2.observe(1, 0, 0, 2, 1, 1);
+			new ParameterEstimator.BaumWelch(hmm1.fg, hmm1.tables(), new Random(1)).run(0, 5);
+			ParallelBaumWelch pbw = new ParallelBaumWelch(hmm2.fg, hmm2.tables(), new Random(1));
+			pbw.run(0, 5);
+			assertTablesEqual(hmm1.tables(), hmm2.tables(), 1e-12);
+			hmm2.fg.solve();
+			assertFalse(Double.isNaN(pbw.getBestScore()));
+			assertEquals(hmm2.fg.getBetheFreeEnergy(), pbw.getBestScore(), 1e-9);
+
+			// Multiple sequences, divided among different numbers of workers
+			final Random rand = new Random(42);
+			int[][] data = new int[20][LENGTH];
+			for (int[] row : data)
+			{
+				for (int t = 0; t < LENGTH; ++t)
+				{
+					row[t] = rand.nextInt(4) - 1; // includes unobserved
+				}
+			}
+
+			Hmm hmm3 = new Hmm();
+			pbw = new ParallelBaumWelch(hmm3.fg, hmm3.tables(), new Random(2));
+			pbw.setData(hmm3.observations, data);
+			pbw.setNumWorkers(1);
+			pbw.run(0, 0);
+			final double initialScore = pbw.getBestScore();
+			assertTablesEqual(new Hmm().tables(), hmm3.tables(), 0.0);
+
+			pbw.run(0, 10);
+			final double score1 = pbw.getBestScore();
+			assertTrue(score1 < initialScore);
+
+			Hmm hmm4 = new Hmm();
+			pbw = new ParallelBaumWelch(hmm4.fg, hmm4.tables(), new Random(2));
+			pbw.setData(hmm4.observations, data);
+			pbw.setNumWorkers(3);
+			pbw.run(0, 10);
+			assertEquals(score1, pbw.getBestScore(), 1e-9);
+			assertTablesEqual(hmm3.tables(), hmm4.tables(), 1e-9);
+
+			// Observed variables are restored in the original graph
+			assertNull(hmm4.observations[0].getPrior());
+
+			// Restarts run concurrently, keeping the best
+			Hmm hmm5 = new Hmm();
+			pbw = new ParallelBaumWelch(hmm5.fg, hmm5.tables(), new Random(3));
+			pbw.setData(hmm5.observations, data);
+			pbw.run(3, 10);
+			assertTrue(pbw.getBestScore() <= score1 + 1e-9);
+			for (IFactorTable table : hmm5.tables())
+			{
+				assertTrue(table.isConditional());
+			}
+
+			try
+			{
+				pbw.setData(hmm5.observations, new int[][] { new int[] { 1, 2 } });
+				fail("expected DimpleException");
+			}
+			catch (DimpleException ex)
+			{
+			}
+			try
+			{
+				pbw.setData(new Variable[] { hmm5.observations[0] }, new int[][] { new int[] { 3 } });
+				fail("expected DimpleException");
+			}
+			catch (DimpleException ex)
+			{
+			}
+		}
+		finally
+		{
+			if (nThreads > 0)
+				ThreadPool.setNumThreads(nThreads);
+			else
+				ThreadPool.setNumThreadsToDefault();
+		}
+	}
+
+	private static void assertTablesEqual(IFactorTable[] expected, IFactorTable[] actual, double delta)
+	{
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; ++i)
+		{
+			assertArrayEquals(expected[i].getWeightsSparseUnsafe(), actual[i].getWeightsSparseUnsafe(), delta);
+		}
+	}
+
+	/**
+	 * Two state HMM with three observed values, with fixed initial parameters.
+	 */
+	private static class Hmm
+	{
+		final FactorGraph fg = new FactorGraph();
+		final Discrete[] states = new Discrete[LENGTH];
+		final Discrete[] observations = new Discrete[LENGTH];
+		final IFactorTable transition;
+		final IFactorTable emission;
+		final Factor[] factors = new Factor[2];
+
+		Hmm()
+		{
+			final DiscreteDomain stateDomain = DiscreteDomain.range(0, 1);
+			final DiscreteDomain obsDomain = DiscreteDomain.range(0, 2);
+
+			transition = FactorTable.create(stateDomain, stateDomain);
+			transition.setWeightsDense(new double[] { .6, .4, .3, .7 });
+			emission = FactorTable.create(stateDomain, obsDomain);
+			emission.setWeightsDense(new double[] { .5, .3, .2, .1, .3, .6 });
+			transition.makeConditional(BitSetUtil.bitsetFromIndices(2, 1));
+			emission.makeConditional(BitSetUtil.bitsetFromIndices(2, 1));
+
+			for (int t = 0; t < LENGTH; ++t)
+			{
+				states[t] = new Discrete(stateDomain);
+				observations[t] = new Discrete(obsDomain);
+				factors[0] = fg.addFactor(emission, states[t], observations[t]);
+				factors[0].setDirectedTo(observations[t]);
+				if (t > 0)
+				{
+					factors[1] = fg.addFactor(transition, states[t - 1], states[t]);
+					factors[1].setDirectedTo(states[t]);
+				}
+			}
+			states[0].setPrior(.5, .5);
+			fg.setSolverFactory(new SumProductSolver());
+		}
+
+		IFactorTable[] tables()
+		{
+			return new IFactorTable[] { factors[0].getFactorTable(), factors[1].getFactorTable() };
+		}
+
+		void observe(int ... values)
+		{
+			for (int t = 0; t < values.length; ++t)
+			{
+				observations[t].setPriorIndex(values[t]);
+			}
+		}
+	}
+}
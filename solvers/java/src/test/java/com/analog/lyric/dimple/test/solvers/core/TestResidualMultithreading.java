@@ -0,0 +1,138 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.options.SolverOptions;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultiThreadingManager;
+import com.analog.lyric.dimple.solvers.core.multithreading.MultithreadingMode;
+import com.analog.lyric.dimple.solvers.core.multithreading.residualalgorithm.ResidualMultithreadingAlgorithm;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link ResidualMultithreadingAlgorithm}
+ * @since 0.08
+ */
+public class TestResidualMultithreading extends DimpleTestBase
+{
+	private final Random _rand = new Random(42);
+
+	@Test
+	public void test()
+	{
+		final int n = 5;
+		final DiscreteDomain domain = DiscreteDomain.range(0, 2);
+
+		// Loopy grid with random inputs and weakly attractive pairwise factors, so that BP has a single
+		// fixed point that both the sequential and residual schedules converge to.
+		FactorGraph fg = new FactorGraph();
+		Discrete[][] vars = new Discrete[n][n];
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				Discrete var = vars[i][j] = new Discrete(domain);
+				var.setInput(_rand.nextDouble(), _rand.nextDouble(), _rand.nextDouble());
+				fg.addVariables(var);
+			}
+		}
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				if (i + 1 < n)
+					fg.addFactor(randomTable(domain), vars[i][j], vars[i+1][j]);
+				if (j + 1 < n)
+					fg.addFactor(randomTable(domain), vars[i][j], vars[i][j+1]);
+			}
+		}
+
+		SumProductSolverGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		fg.setOption(BPOptions.iterations, 200);
+		fg.solve();
+
+		final double[][] expected = new double[n * n][];
+		for (int i = 0; i < n * n; ++i)
+		{
+			expected[i] = vars[i / n][i % n].getBelief();
+		}
+
+		MultiThreadingManager manager = sfg.getMultithreadingManager();
+		manager.setMode(MultithreadingMode.Residual);
+		manager.setNumWorkers(4);
+		fg.setOption(SolverOptions.enableMultithreading, true);
+		fg.setOption(BPOptions.residualTolerance, 1e-12);
+
+		for (int run = 0; run < 3; ++run)
+		{
+			fg.solve();
+			for (int i = 0; i < n * n; ++i)
+			{
+				assertArrayEquals(expected[i], vars[i / n][i % n].getBelief(), 1e-8);
+			}
+		}
+
+		// A single iteration's budget of updates is not enough to converge from scratch, but
+		// must still update every node at least once, so no belief is left equal to its input.
+		fg.setOption(BPOptions.iterations, 1);
+		fg.setOption(BPOptions.residualTolerance, 0.0);
+		fg.solve();
+		for (int i = 0; i < n * n; ++i)
+		{
+			final Discrete var = vars[i / n][i % n];
+			final double[] input = var.getInput();
+			final double total = input[0] + input[1] + input[2];
+			final double[] belief = var.getBelief();
+			assertFalse(Math.abs(belief[0] - input[0] / total) < 1e-8 && Math.abs(belief[1] - input[1] / total) < 1e-8);
+		}
+
+		// Continuing from that partial state without reinitializing must reach the same fixed point
+		// as sequential BP.
+		fg.setOption(BPOptions.residualTolerance, 1e-12);
+		sfg.iterate(200);
+		for (int i = 0; i < n * n; ++i)
+		{
+			assertArrayEquals(expected[i], vars[i / n][i % n].getBelief(), 1e-8);
+		}
+	}
+
+	private IFactorTable randomTable(DiscreteDomain domain)
+	{
+		IFactorTable table = FactorTable.create(domain, domain);
+		double[] weights = new double[9];
+		for (int i = 0; i < 9; ++i)
+		{
+			weights[i] = (i % 4 == 0 ? 1.5 : 1.0) * (.5 + _rand.nextDouble());
+		}
+		table.setWeightsDense(weights);
+		return table;
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.core;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Test;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.core.SNode;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverFactorGraph;
+import com.analog.lyric.dimple.solvers.interfaces.ISolverVariable;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.options.IOptionHolder;
+import com.analog.lyric.options.LocalOptionHolder;
+
+/**
+ * Tests cached option lookup on {@link SNode}s.
+ * @since 0.08
+ */
+public class TestSolverOptionCache extends DimpleTestBase
+{
+	@Test
+	public void test()
+	{
+		final DimpleEnvironment env = DimpleEnvironment.active();
+
+		FactorGraph root = new FactorGraph();
+		FactorGraph template = new FactorGraph();
+		Bit x = new Bit();
+		template.addBoundaryVariables(x);
+		template.addVariables(new Bit());
+		Bit a = new Bit();
+		root.addVariables(a);
+		FactorGraph sub = root.addGraph(template, a);
+		// Only the copy of the template's internal variable is owned by the subgraph.
+		Variable b = sub.getOwnedVariables().iterator().next();
+
+		root.setSolverFactory(new SumProductSolver());
+		root.initialize();
+
+		final ISolverFactorGraph sroot = requireNonNull(root.getSolver());
+		final ISolverFactorGraph ssub = requireNonNull(sub.getSolver());
+		final ISolverVariable sb = requireNonNull(b.getSolver());
+		assertSame(ssub, sb.getParentGraph());
+
+		// Not set anywhere
+		assertNull(sb.getOption(BPOptions.damping));
+		assertEquals(0.0, sb.getOptionOrDefault(BPOptions.damping), 0.0);
+
+		// Each change anywhere in the chain is seen immediately, without reinitializing.
+		long version = LocalOptionHolder.getGlobalOptionVersion();
+		env.setOption(BPOptions.damping, .1);
+		assertTrue(LocalOptionHolder.getGlobalOptionVersion() > version);
+		assertOption(.1, env, sb);
+		assertOption(.1, env, ssub);
+		assertOption(.1, env, sroot);
+
+		root.setOption(BPOptions.damping, .2);
+		assertOption(.2, root, sb);
+		assertOption(.2, root, ssub);
+
+		sroot.setOption(BPOptions.damping, .3);
+		assertOption(.3, sroot, sb);
+		assertOption(.3, sroot, ssub);
+		assertOption(.3, sroot, sroot);
+
+		sub.setOption(BPOptions.damping, .4);
+		assertOption(.4, sub, sb);
+		assertOption(.4, sub, ssub);
+		assertOption(.3, sroot, sroot);
+
+		ssub.setOption(BPOptions.damping, .5);
+		assertOption(.5, ssub, sb);
+		assertOption(.5, ssub, ssub);
+
+		b.setOption(BPOptions.damping, .6);
+		assertOption(.6, b, sb);
+		assertOption(.5, ssub, ssub);
+
+		sb.setOption(BPOptions.damping, .7);
+		assertOption(.7, sb, sb);
+
+		// Unsetting reverts to settings further up the chain.
+		sb.unsetOption(BPOptions.damping);
+		b.clearLocalOptions();
+		ssub.unsetOption(BPOptions.damping);
+		assertOption(.4, sub, sb);
+		sub.unsetOption(BPOptions.damping);
+		sroot.unsetOption(BPOptions.damping);
+		assertOption(.2, root, sb);
+		root.unsetOption(BPOptions.damping);
+		assertOption(.1, env, sb);
+		env.unsetOption(BPOptions.damping);
+		assertNull(sb.getOption(BPOptions.damping));
+
+		// Reinitializing gives the same results.
+		root.setOption(BPOptions.damping, .25);
+		root.initialize();
+		assertOption(.25, root, sb);
+		assertOption(.25, root, ssub);
+		root.unsetOption(BPOptions.damping);
+		assertNull(sb.getOption(BPOptions.damping));
+	}
+
+	private void assertOption(double expected, @Nullable IOptionHolder expectedSource, IOptionHolder holder)
+	{
+		IOptionHolder[] source = new IOptionHolder[1];
+		assertEquals(expected, requireNonNull(holder.getOptionAndSource(BPOptions.damping, source)), 0.0);
+		assertSame(expectedSource, source[0]);
+		assertEquals(expected, holder.getOptionOrDefault(BPOptions.damping), 0.0);
+	}
+}
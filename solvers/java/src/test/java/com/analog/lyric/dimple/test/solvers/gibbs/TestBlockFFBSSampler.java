@@ -0,0 +1,259 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.VariableBlock;
+import com.analog.lyric.dimple.schedulers.GibbsSequentialScanScheduler;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsVariableBlock;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.block.BlockFFBSSampler;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link BlockFFBSSampler}
+ * @since 0.08
+ */
+public class TestBlockFFBSSampler extends DimpleTestBase
+{
+	private final Random _rand = new Random(42);
+	private final Map<Discrete,double[]> _priors = new HashMap<>();
+
+	@Test
+	public void chain()
+	{
+		// Strongly coupled chain, for which single-site Gibbs mixes slowly
+		final int n = 5;
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = createChain(fg, n, 3, 4.0);
+
+		GibbsSequentialScanScheduler scheduler = new GibbsSequentialScanScheduler();
+		List<VariableBlock> blocks = BlockFFBSSampler.addTreeBlocks(scheduler, fg, 100);
+		assertEquals(1, blocks.size());
+		assertEquals(n, blocks.get(0).size());
+		fg.setOption(GibbsOptions.scheduler, scheduler);
+
+		fg.setOption(GibbsOptions.numSamples, 20000);
+		fg.setOption(GibbsOptions.burnInScans, 10);
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setSeed(42);
+		fg.solve();
+
+		double[][] expected = exactMarginals(vars);
+		for (int i = 0; i < n; ++i)
+		{
+			assertArrayEquals(expected[i], vars[i].getBelief(), .02);
+		}
+
+		// Block was updated by sampler on every scan, with no rejections
+		GibbsVariableBlock sblock = requireNonNull(sfg.getSolverVariableBlock(blocks.get(0), false));
+		assertTrue(sblock.getUpdateCount() >= 20000);
+		assertEquals(0, sblock.getRejectionCount());
+	}
+
+	@Test
+	public void blockDiscovery()
+	{
+		// Cycle of four variables cannot be a single block
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = createChain(fg, 4, 2, 1.0);
+		Factor loop = addRandomFactor(fg, 1.0, vars[3], vars[0]);
+		List<VariableBlock> blocks = BlockFFBSSampler.findTreeBlocks(fg, 10);
+		assertEquals(1, blocks.size());
+		assertEquals(3, blocks.get(0).size());
+
+		// Nor can a block contain three variables of the same factor
+		fg.remove(loop);
+		Discrete extra = new Discrete(DiscreteDomain.range(0, 1));
+		addRandomFactor(fg, 1.0, vars[0], vars[1], extra);
+		blocks = BlockFFBSSampler.findTreeBlocks(fg, 10);
+		assertEquals(1, blocks.size());
+		assertEquals(4, blocks.get(0).size());
+		assertFalse(blocks.get(0).contains(extra));
+
+		// Limited block size
+		blocks = BlockFFBSSampler.findTreeBlocks(fg, 2);
+		assertEquals(2, blocks.size());
+
+		try
+		{
+			BlockFFBSSampler.findTreeBlocks(fg, 1);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+
+		// Sampler declines blocks that are not trees
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.initialize();
+		VariableBlock all = fg.addVariableBlock(vars[0], vars[1], extra);
+		assertFalse(new BlockFFBSSampler().update(requireNonNull(sfg.getSolverVariableBlock(all, true))));
+		VariableBlock chain = fg.addVariableBlock(vars[0], vars[1], vars[2]);
+		assertTrue(new BlockFFBSSampler().update(requireNonNull(sfg.getSolverVariableBlock(chain, true))));
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	private Discrete[] createChain(FactorGraph fg, int n, int domainSize, double coupling)
+	{
+		Discrete[] vars = new Discrete[n];
+		for (int i = 0; i < n; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(0, domainSize - 1));
+			double[] prior = new double[domainSize];
+			for (int j = 0; j < domainSize; ++j)
+			{
+				prior[j] = .1 + _rand.nextDouble();
+			}
+			vars[i].setPrior(prior);
+			_priors.put(vars[i], prior);
+		}
+		for (int i = 1; i < n; ++i)
+		{
+			addRandomFactor(fg, coupling, vars[i - 1], vars[i]);
+		}
+		return vars;
+	}
+
+	/**
+	 * Adds factor with random weights, favoring equal values by {@code exp(coupling)}.
+	 */
+	private Factor addRandomFactor(FactorGraph fg, double coupling, Discrete ... vars)
+	{
+		int size = 1;
+		for (Discrete var : vars)
+		{
+			size *= var.getDomain().size();
+		}
+		int[][] indices = new int[size][vars.length];
+		double[] weights = new double[size];
+		for (int k = 0; k < size; ++k)
+		{
+			boolean equal = true;
+			for (int j = vars.length, rest = k; --j>=0;)
+			{
+				final int dsize = vars[j].getDomain().size();
+				indices[k][j] = rest % dsize;
+				rest /= dsize;
+				equal &= indices[k][j] == indices[k][0];
+			}
+			weights[k] = (.5 + _rand.nextDouble()) * (equal ? Math.exp(coupling) : 1.0);
+		}
+		return fg.addFactor(indices, weights, vars);
+	}
+
+	/**
+	 * Marginals computed by enumerating all joint values.
+	 */
+	private double[][] exactMarginals(Discrete[] vars)
+	{
+		final int n = vars.length;
+		final FactorGraph fg = requireNonNull(vars[0].getParentGraph());
+		final int[] sizes = new int[n];
+		int total = 1;
+		double[][] marginals = new double[n][];
+		for (int i = 0; i < n; ++i)
+		{
+			sizes[i] = vars[i].getDomain().size();
+			marginals[i] = new double[sizes[i]];
+			total *= sizes[i];
+		}
+
+		final int[] indices = new int[n];
+		double sum = 0;
+		for (int k = 0; k < total; ++k)
+		{
+			for (int i = n, rest = k; --i>=0;)
+			{
+				indices[i] = rest % sizes[i];
+				rest /= sizes[i];
+			}
+
+			double energy = 0;
+			for (int i = 0; i < n; ++i)
+			{
+				final double[] prior = requireNonNull(_priors.get(vars[i]));
+				energy -= Math.log(prior[indices[i]] / sumOf(prior));
+			}
+			for (Factor factor : fg.getFactors())
+			{
+				int[] factorIndices = new int[factor.getSiblingCount()];
+				for (int j = 0; j < factorIndices.length; ++j)
+				{
+					factorIndices[j] = indices[indexOf(vars, factor.getSibling(j))];
+				}
+				energy += factor.getFactorTable().getEnergyForIndices(factorIndices);
+			}
+
+			final double weight = Math.exp(-energy);
+			sum += weight;
+			for (int i = 0; i < n; ++i)
+			{
+				marginals[i][indices[i]] += weight;
+			}
+		}
+
+		for (double[] marginal : marginals)
+		{
+			for (int j = 0; j < marginal.length; ++j)
+			{
+				marginal[j] /= sum;
+			}
+		}
+		return marginals;
+	}
+
+	private static int indexOf(Object[] array, Object obj)
+	{
+		for (int i = 0; i < array.length; ++i)
+		{
+			if (array[i] == obj)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static double sumOf(double[] array)
+	{
+		double sum = 0;
+		for (double d : array)
+		{
+			sum += d;
+		}
+		return sum;
+	}
+}
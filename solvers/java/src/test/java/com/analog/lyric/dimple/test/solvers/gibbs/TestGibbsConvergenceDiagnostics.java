@@ -0,0 +1,177 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.environment.DimpleEnvironment;
+import com.analog.lyric.dimple.events.DimpleEventHandler;
+import com.analog.lyric.dimple.events.DimpleEventListener;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsBurnInEvent;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsConvergenceDiagnostics;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link GibbsConvergenceDiagnostics} and the Gibbs options that use it.
+ * @since 0.08
+ */
+public class TestGibbsConvergenceDiagnostics extends DimpleTestBase
+{
+	private final Random _rand = new Random(42);
+
+	@Test
+	public void diagnostics()
+	{
+		GibbsConvergenceDiagnostics diagnostics = new GibbsConvergenceDiagnostics();
+		assertEquals(0, diagnostics.getSequenceCount());
+		assertTrue(Double.isNaN(diagnostics.getEffectiveSampleSize()));
+		assertTrue(Double.isNaN(diagnostics.getSplitRHat()));
+		assertTrue(Double.isNaN(diagnostics.getAutocorrelation(1)));
+
+		// Independent samples
+		final int n = 20000;
+		for (int i = 0; i < n; ++i)
+		{
+			diagnostics.add(100 + _rand.nextGaussian());
+		}
+		diagnostics.add(Double.POSITIVE_INFINITY);
+		assertEquals(1, diagnostics.getSequenceCount());
+		assertEquals(n, diagnostics.getSampleCount());
+		assertEquals(1.0, diagnostics.getEffectiveSampleSize() / n, .35);
+		assertEquals(1.0, diagnostics.getSplitRHat(), .01);
+		assertEquals(0.0, diagnostics.getAutocorrelation(1), .03);
+
+		// Second independent sequence with the same distribution
+		diagnostics.startSequence();
+		for (int i = 0; i < n; ++i)
+		{
+			diagnostics.add(100 + _rand.nextGaussian());
+		}
+		assertEquals(2, diagnostics.getSequenceCount());
+		assertEquals(1.0, diagnostics.getCurrentEffectiveSampleSize() / n, .35);
+		assertEquals(2.0, diagnostics.getEffectiveSampleSize() / n, .7);
+		assertEquals(1.0, diagnostics.getSplitRHat(), .01);
+
+		// Strongly autocorrelated sequence
+		diagnostics.reset();
+		final double phi = .9;
+		double x = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			x = phi * x + _rand.nextGaussian();
+			diagnostics.add(x);
+		}
+		assertEquals(phi, diagnostics.getAutocorrelation(1), .03);
+		assertEquals(phi * phi, diagnostics.getAutocorrelation(2), .05);
+		final double expectedESS = n * (1 - phi) / (1 + phi);
+		assertEquals(1.0, diagnostics.getEffectiveSampleSize() / expectedESS, .5);
+		assertEquals(1.0, diagnostics.getSplitRHat(), .05);
+
+		// Sequence that has not converged
+		diagnostics.startSequence();
+		for (int i = 0; i < 1000; ++i)
+		{
+			diagnostics.add(i + _rand.nextGaussian());
+		}
+		assertTrue(diagnostics.getSplitRHat() > 1.5);
+
+		try
+		{
+			diagnostics.getAutocorrelation(GibbsConvergenceDiagnostics.MAX_LAG + 1);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+	}
+
+	@Test
+	public void adaptiveBudgets()
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[4];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(0, 2));
+			if (i > 0)
+			{
+				fg.addFactor(new int[][] { { 0, 0 }, { 1, 1 }, { 2, 2 }, { 0, 1 }, { 1, 2 }, { 2, 0 } },
+					new double[] { 4, 4, 4, 1, 1, 1 }, vars[i - 1], vars[i]);
+			}
+		}
+
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setSeed(1);
+		fg.setOption(GibbsOptions.numSamples, 100000);
+		fg.setOption(GibbsOptions.numRandomRestarts, 1);
+		fg.setOption(GibbsOptions.burnInScans, 1);
+		fg.setOption(GibbsOptions.maxBurnInScans, 1000);
+		fg.setOption(GibbsOptions.targetEffectiveSampleSize, 500.0);
+
+		DimpleEnvironment env = fg.getEnvironment();
+		DimpleEventListener listener = env.createEventListener();
+		BurnInHandler handler = new BurnInHandler();
+		listener.register(handler, GibbsBurnInEvent.class, env);
+
+		fg.solve();
+
+		// Burn-in was extended by at least one round, but not to the maximum
+		assertEquals(2, handler.events.size());
+		for (GibbsBurnInEvent event : handler.events)
+		{
+			assertTrue(event.burnInUpdates() >= vars.length * (1 + GibbsSolverGraph.BURN_IN_ROUND_SAMPLES));
+			assertTrue(event.burnInUpdates() < vars.length * 1000);
+		}
+
+		// Sampling stopped early once the target was reached for each restart
+		GibbsConvergenceDiagnostics diagnostics = sfg.getConvergenceDiagnostics();
+		assertEquals(2, diagnostics.getSequenceCount());
+		assertTrue(diagnostics.getSampleCount() < 20000);
+		assertTrue(diagnostics.getEffectiveSampleSize() >= 500);
+		assertTrue(diagnostics.getSplitRHat() <= GibbsOptions.rHatThreshold.defaultDoubleValue());
+
+		// Without the target, all samples are generated
+		fg.setOption(GibbsOptions.targetEffectiveSampleSize, 0.0);
+		fg.setOption(GibbsOptions.numSamples, 1000);
+		fg.solve();
+		assertEquals(2000, diagnostics.getSampleCount());
+	}
+
+	static class BurnInHandler extends DimpleEventHandler<GibbsBurnInEvent>
+	{
+		List<GibbsBurnInEvent> events = new ArrayList<>();
+
+		@Override
+		public void handleEvent(GibbsBurnInEvent event)
+		{
+			events.add(event);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link GibbsOptions#numChains}
+ * @since 0.08
+ */
+public class TestGibbsMultiChain extends DimpleTestBase
+{
+	private final Random _rand = new Random(123);
+
+	@Test
+	public void test()
+	{
+		// Loop of four variables with different domain sizes plus a fixed variable, a three-way factor
+		// and a factor that has the same variable at two of its positions
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[5];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(0, 1 + i % 3));
+		}
+		vars[1].setPrior(new double[] { .2, .3, .5 });
+		vars[4].setFixedValue(1);
+		addRandomFactor(fg, vars[0], vars[1]);
+		addRandomFactor(fg, vars[1], vars[2]);
+		addRandomFactor(fg, vars[2], vars[3]);
+		addRandomFactor(fg, vars[3], vars[0]);
+		addRandomFactor(fg, vars[0], vars[2], vars[4]);
+		addRepeatedVariableFactor(fg, vars[3], vars[1]);
+
+		fg.setOption(GibbsOptions.numChains, 8);
+		fg.setOption(GibbsOptions.numSamples, 4000);
+		fg.setOption(GibbsOptions.burnInScans, 5);
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setSeed(42);
+		fg.solve();
+
+		double[][] expected = exactMarginals(fg, vars);
+		for (int i = 0; i < vars.length; ++i)
+		{
+			assertArrayEquals(expected[i], vars[i].getBelief(), .02);
+		}
+		assertEquals(1, vars[4].getValueIndex());
+
+		double rhat = sfg.getMaxChainRHat();
+		assertTrue(rhat >= 1.0 && rhat < 1.05);
+
+		// Disabled
+		fg.setOption(GibbsOptions.numChains, 1);
+		fg.solve();
+		assertTrue(Double.isNaN(sfg.getMaxChainRHat()));
+
+		// Not compatible with parallel tempering
+		fg.setOption(GibbsOptions.numChains, 2);
+		fg.setOption(GibbsOptions.numReplicas, 2);
+		try
+		{
+			sfg.initialize();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+
+		// Only discrete variables are supported
+		fg.setOption(GibbsOptions.numReplicas, 1);
+		fg.addVariables(new Real());
+		try
+		{
+			sfg.initialize();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	private Factor addRandomFactor(FactorGraph fg, Discrete ... vars)
+	{
+		int size = 1;
+		for (Discrete var : vars)
+		{
+			size *= var.getDomain().size();
+		}
+		int[][] indices = new int[size][vars.length];
+		double[] weights = new double[size];
+		for (int k = 0; k < size; ++k)
+		{
+			for (int j = vars.length, rest = k; --j>=0;)
+			{
+				final int dsize = vars[j].getDomain().size();
+				indices[k][j] = rest % dsize;
+				rest /= dsize;
+			}
+			weights[k] = .1 + _rand.nextDouble();
+		}
+		return fg.addFactor(indices, weights, vars);
+	}
+
+	/**
+	 * Adds factor over {@code repeated}, {@code other}, {@code repeated}. Entries in which the two positions of
+	 * {@code repeated} differ can never occur but have much larger weights than the others, so that they would
+	 * dominate any update that did not change both positions together.
+	 */
+	private Factor addRepeatedVariableFactor(FactorGraph fg, Discrete repeated, Discrete other)
+	{
+		final int size1 = repeated.getDomain().size(), size2 = other.getDomain().size();
+		int[][] indices = new int[size1 * size2 * size1][];
+		double[] weights = new double[indices.length];
+		for (int a = 0, k = 0; a < size1; ++a)
+		{
+			for (int b = 0; b < size2; ++b)
+			{
+				for (int c = 0; c < size1; ++c, ++k)
+				{
+					indices[k] = new int[] { a, b, c };
+					weights[k] = a == c ? (1 + 2 * a) * (.5 + _rand.nextDouble()) : 20;
+				}
+			}
+		}
+		return fg.addFactor(indices, weights, repeated, other, repeated);
+	}
+
+	/**
+	 * Marginals computed by enumerating all joint values, given the prior on {@code vars[1]}
+	 * and the fixed value of {@code vars[4]}.
+	 */
+	private static double[][] exactMarginals(FactorGraph fg, Discrete[] vars)
+	{
+		final int n = vars.length;
+		final int[] sizes = new int[n];
+		int total = 1;
+		double[][] marginals = new double[n][];
+		for (int i = 0; i < n; ++i)
+		{
+			sizes[i] = vars[i].getDomain().size();
+			marginals[i] = new double[sizes[i]];
+			total *= sizes[i];
+		}
+
+		final int[] indices = new int[n];
+		double sum = 0;
+		for (int k = 0; k < total; ++k)
+		{
+			double energy = 0;
+			for (int i = n, rest = k; --i>=0;)
+			{
+				indices[i] = rest % sizes[i];
+				rest /= sizes[i];
+			}
+			if (indices[4] != 1)
+			{
+				continue;
+			}
+			energy -= Math.log(new double[] { .2, .3, .5 }[indices[1]]);
+			for (Factor factor : fg.getFactors())
+			{
+				int[] factorIndices = new int[factor.getSiblingCount()];
+				for (int j = 0; j < factorIndices.length; ++j)
+				{
+					factorIndices[j] = indices[indexOf(vars, factor.getSibling(j))];
+				}
+				energy += factor.getFactorTable().getEnergyForIndices(factorIndices);
+			}
+
+			final double weight = Math.exp(-energy);
+			sum += weight;
+			for (int i = 0; i < n; ++i)
+			{
+				marginals[i][indices[i]] += weight;
+			}
+		}
+
+		for (double[] marginal : marginals)
+		{
+			for (int j = 0; j < marginal.length; ++j)
+			{
+				marginal[j] /= sum;
+			}
+		}
+		return marginals;
+	}
+
+	private static int indexOf(Object[] array, Object obj)
+	{
+		for (int i = 0; i < array.length; ++i)
+		{
+			if (array[i] == obj)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -54,6 +54,12 @@ public class TestGibbsOptions extends DimpleTestBase
 		assertFalse(GibbsOptions.enableAnnealing.defaultValue());
 		assertEquals(1.0, GibbsOptions.initialTemperature.defaultDoubleValue(), 1.0);
 		assertEquals(1.0, GibbsOptions.annealingHalfLife.defaultDoubleValue(), 1.0);
+		assertEquals(1, GibbsOptions.numReplicas.defaultIntValue());
+		assertEquals(10.0, GibbsOptions.maxReplicaTemperature.defaultDoubleValue(), 0.0);
+		assertEquals(1, GibbsOptions.numChains.defaultIntValue());
+		assertEquals(0, GibbsOptions.maxBurnInScans.defaultIntValue());
+		assertEquals(0.0, GibbsOptions.targetEffectiveSampleSize.defaultDoubleValue(), 0.0);
+		assertEquals(1.05, GibbsOptions.rHatThreshold.defaultDoubleValue(), 0.0);
 		
 		// Build test graph
 		FactorGraph fg = new FactorGraph();
@@ -0,0 +1,131 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for parallel tempering in {@link GibbsSolverGraph}
+ * @since 0.08
+ */
+public class TestGibbsParallelTempering extends DimpleTestBase
+{
+	@Test
+	public void test()
+	{
+		// Strongly coupled binary chain with two widely separated modes, between which
+		// single-site Gibbs moves only rarely.
+		final int n = 6;
+		final double coupling = 6.0;
+		final double[] prior = new double[] { .4, .6 };
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[n];
+		for (int i = 0; i < n; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(0, 1));
+			vars[i].setPrior(prior);
+			if (i > 0)
+			{
+				fg.addFactor(new int[][] { { 0, 0 }, { 1, 1 }, { 0, 1 }, { 1, 0 } },
+					new double[] { Math.exp(coupling), Math.exp(coupling), 1, 1 }, vars[i - 1], vars[i]);
+			}
+		}
+
+		fg.setOption(GibbsOptions.numSamples, 20000);
+		fg.setOption(GibbsOptions.burnInScans, 10);
+		fg.setOption(GibbsOptions.numReplicas, 5);
+		fg.setOption(GibbsOptions.maxReplicaTemperature, 8.0);
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setSeed(42);
+		fg.solve();
+
+		double[] temperatures = sfg.getReplicaTemperatures();
+		assertEquals(5, temperatures.length);
+		assertEquals(1.0, temperatures[0], 1e-12);
+		assertEquals(8.0, temperatures[4], 1e-9);
+		assertEquals(1.0, sfg.getTemperature(), 0.0);
+
+		double[] rates = sfg.getReplicaSwapAcceptanceRates();
+		assertEquals(4, rates.length);
+		for (double rate : rates)
+		{
+			assertTrue(rate > 0.0 && rate <= 1.0);
+		}
+
+		for (int i = 0; i < n; ++i)
+		{
+			assertArrayEquals(exactMarginal(n, coupling, prior, i), vars[i].getBelief(), .03);
+		}
+
+		// Disabled
+		fg.setOption(GibbsOptions.numReplicas, 1);
+		fg.solve();
+		assertEquals(0, sfg.getReplicaTemperatures().length);
+		assertEquals(0, sfg.getReplicaSwapAcceptanceRates().length);
+
+		// Not compatible with annealing
+		fg.setOption(GibbsOptions.numReplicas, 2);
+		fg.setOption(GibbsOptions.enableAnnealing, true);
+		try
+		{
+			sfg.initialize();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+
+	/**
+	 * Marginal of variable at {@code position} in the chain, computed by enumeration.
+	 */
+	private static double[] exactMarginal(int n, double coupling, double[] prior, int position)
+	{
+		final double[] marginal = new double[2];
+		double sum = 0;
+		for (int k = 0; k < 1 << n; ++k)
+		{
+			double weight = 1;
+			for (int i = 0; i < n; ++i)
+			{
+				final int value = (k >> i) & 1;
+				weight *= prior[value];
+				if (i > 0 && value == ((k >> (i - 1)) & 1))
+				{
+					weight *= Math.exp(coupling);
+				}
+			}
+			marginal[(k >> position) & 1] += weight;
+			sum += weight;
+		}
+		marginal[0] /= sum;
+		marginal[1] /= sum;
+		return marginal;
+	}
+}
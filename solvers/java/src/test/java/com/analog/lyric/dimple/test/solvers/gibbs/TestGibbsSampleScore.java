@@ -0,0 +1,146 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Sum;
+import com.analog.lyric.dimple.factorfunctions.Xor;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.options.DimpleOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests incrementally maintained sample score in {@link GibbsSolverGraph}.
+ * @since 0.08
+ */
+public class TestGibbsSampleScore extends DimpleTestBase
+{
+	@Test
+	public void test()
+	{
+		assertEquals(100, GibbsOptions.sampleScoreRecomputeInterval.defaultIntValue());
+
+		// Discrete variables only, so all updates will report score deltas. Since these are computed
+		// from the conditional energies, this also checks the conditionals for variables with
+		// deterministic dependents.
+		FactorGraph fg = createGraph(false);
+		fg.setOption(GibbsOptions.enableAnnealing, true);
+		fg.setOption(GibbsOptions.initialTemperature, 5.0);
+		fg.setOption(GibbsOptions.annealingHalfLife, 20.0);
+		testScores(fg);
+
+		// Real variable updates will force recomputation
+		testScores(createGraph(true));
+	}
+
+	private void testScores(FactorGraph fg)
+	{
+		fg.setOption(GibbsOptions.saveAllScores, true);
+		fg.setOption(GibbsOptions.sampleScoreRecomputeInterval, 1000);
+		fg.setOption(DimpleOptions.randomSeed, 42L);
+
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		fg.initialize();
+		sfg.burnIn();
+
+		for (int i = 0; i < 50; ++i)
+		{
+			sfg.sample(10);
+			double[] scores = requireNonNull(sfg.getAllScores());
+			assertEquals(10 * (i + 1), scores.length);
+			assertEquals(sfg.getSampleScore(), scores[scores.length - 1], 1e-9);
+		}
+
+		double bestScore = Double.POSITIVE_INFINITY;
+		for (double score : requireNonNull(sfg.getAllScores()))
+		{
+			bestScore = Math.min(bestScore, score);
+		}
+		assertEquals(bestScore, sfg.getBestSampleScore(), 0.0);
+	}
+
+	private FactorGraph createGraph(boolean includeReal)
+	{
+		final Random rand = new Random(123);
+		final DiscreteDomain domain = DiscreteDomain.range(0, 3);
+
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[5];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(domain);
+			vars[i].setInput(rand.nextDouble(), rand.nextDouble(), rand.nextDouble(), rand.nextDouble());
+		}
+		fg.addVariables(vars);
+
+		for (int i = 1; i < vars.length; ++i)
+		{
+			fg.addFactor(randomTable(rand, domain, domain), vars[i-1], vars[i]);
+		}
+
+		// Deterministic dependent
+		Bit x = new Bit(), y = new Bit(), z = new Bit();
+		x.setInput(.3);
+		y.setInput(.6);
+		fg.addFactor(new Xor(), z, x, y);
+		fg.addFactor(randomTable(rand, domain, z.getDomain()), vars[0], z);
+
+		// Chain of deterministic dependents
+		Discrete sum1 = new Discrete(DiscreteDomain.range(0, 6));
+		Discrete sum2 = new Discrete(DiscreteDomain.range(0, 9));
+		fg.addFactor(new Sum(), sum1, vars[1], vars[2]);
+		fg.addFactor(new Sum(), sum2, sum1, vars[4]);
+		fg.addFactor(randomTable(rand, sum1.getDomain(), domain), sum1, vars[3]);
+		sum2.setInput(0, .1, .1, .2, .2, .2, .1, .05, .05, 0);
+
+		if (includeReal)
+		{
+			Real r = new Real();
+			fg.addFactor(new Normal(1.0, 2.0), r);
+		}
+
+		return fg;
+	}
+	
+	private IFactorTable randomTable(Random rand, DiscreteDomain ... domains)
+	{
+		IFactorTable table = FactorTable.create(domains);
+		double[] weights = new double[table.getDomainIndexer().getCardinality()];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .01;
+		}
+		table.setWeightsDense(weights);
+		return table;
+	}
+}
@@ -91,6 +91,7 @@ public class TestGibbsSolverGraphEvents extends DimpleTestBase
 			GibbsBurnInEvent burnInEvent = (GibbsBurnInEvent)event;
 			assertEquals(i, burnInEvent.restartCount());
 			assertTrue(Double.isNaN(burnInEvent.temperature()));
+			assertEquals(3 * 3, burnInEvent.burnInUpdates());
 			
 			assertThat(burnInEvent.toString(1), containsString("burn-in restart " + i));
 		}
@@ -0,0 +1,217 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.gibbs;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.model.variables.Variable;
+import com.analog.lyric.dimple.schedulers.GibbsSwendsenWangScheduler;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolver;
+import com.analog.lyric.dimple.solvers.gibbs.GibbsSolverGraph;
+import com.analog.lyric.dimple.solvers.gibbs.samplers.block.SwendsenWangSampler;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link SwendsenWangSampler} and {@link GibbsSwendsenWangScheduler}
+ * @since 0.08
+ */
+public class TestSwendsenWangSampler extends DimpleTestBase
+{
+	private final Random _rand = new Random(23);
+
+	@Test
+	public void bondFactors()
+	{
+		FactorGraph fg = new FactorGraph();
+		Discrete a = new Discrete(DiscreteDomain.range(0, 2));
+		Discrete b = new Discrete(DiscreteDomain.range(0, 2));
+		Discrete c = new Discrete(DiscreteDomain.range(0, 2));
+		Discrete d = new Discrete(DiscreteDomain.range(0, 3));
+
+		double[] gaps = requireNonNull(SwendsenWangSampler.bondGaps(addPotts(fg, a, b, 1.0, 2.0, 3.0)));
+		assertArrayEquals(new double[] { 1.0, 2.0, 3.0 }, gaps, 1e-12);
+
+		// Repulsive
+		assertNull(SwendsenWangSampler.bondGaps(addPotts(fg, a, c, 1.0, -1.0, 1.0)));
+		// Different domains
+		assertNull(SwendsenWangSampler.bondGaps(fg.addFactor(new int[][] { { 0, 0 } }, new double[] { 1 }, a, d)));
+		// Unequal off-diagonal energies
+		assertNull(SwendsenWangSampler.bondGaps(fg.addFactor(new int[][] { { 0, 0 }, { 0, 1 }, { 1, 0 } },
+			new double[] { 2, 1, 2 }, b, c)));
+
+		List<Variable> vars = SwendsenWangSampler.findClusterVariables(fg);
+		assertEquals(2, vars.size());
+		assertTrue(vars.contains(a));
+		assertTrue(vars.contains(b));
+	}
+
+	@Test
+	public void grid()
+	{
+		// Strongly coupled 3x3 Potts model with random fields and one coupling that is not a bond
+		final int size = 3;
+		final int n = size * size;
+		final double coupling = 2.0;
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[n];
+		double[][] priors = new double[n][3];
+		for (int i = 0; i < n; ++i)
+		{
+			vars[i] = new Discrete(DiscreteDomain.range(0, 2));
+			for (int j = 0; j < 3; ++j)
+			{
+				priors[i][j] = .2 + _rand.nextDouble();
+			}
+			vars[i].setPrior(priors[i]);
+		}
+		for (int row = 0; row < size; ++row)
+		{
+			for (int col = 0; col < size; ++col)
+			{
+				final int i = row * size + col;
+				if (col + 1 < size)
+				{
+					addPotts(fg, vars[i], vars[i + 1], coupling, coupling, coupling);
+				}
+				if (row + 1 < size)
+				{
+					addPotts(fg, vars[i], vars[i + size], coupling, coupling, coupling);
+				}
+			}
+		}
+		int[][] indices = new int[9][];
+		double[] weights = new double[9];
+		for (int k = 0; k < 9; ++k)
+		{
+			indices[k] = new int[] { k / 3, k % 3 };
+			weights[k] = .1 + _rand.nextDouble();
+		}
+		fg.addFactor(indices, weights, vars[0], vars[n - 1]);
+
+		GibbsOptions.scheduler.set(fg, GibbsSwendsenWangScheduler.class);
+		fg.setOption(GibbsOptions.numSamples, 20000);
+		fg.setOption(GibbsOptions.burnInScans, 10);
+		GibbsSolverGraph sfg = requireNonNull(fg.setSolverFactory(new GibbsSolver()));
+		sfg.setSeed(42);
+		fg.solve();
+
+		// Single block entry for the whole grid
+		assertEquals(1, sfg.getSchedule().size());
+
+		double[][] expected = exactMarginals(fg, vars, priors);
+		for (int i = 0; i < n; ++i)
+		{
+			assertArrayEquals(expected[i], vars[i].getBelief(), .025);
+		}
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	/**
+	 * Adds pairwise factor with energy {@code -gaps[a]} for equal values {@code a} and zero otherwise.
+	 */
+	private static Factor addPotts(FactorGraph fg, Discrete a, Discrete b, double ... gaps)
+	{
+		final int size = gaps.length;
+		int[][] indices = new int[size * size][];
+		double[] weights = new double[size * size];
+		for (int k = 0; k < size * size; ++k)
+		{
+			final int i = k / size, j = k % size;
+			indices[k] = new int[] { i, j };
+			weights[k] = i == j ? Math.exp(gaps[i]) : 1.0;
+		}
+		return fg.addFactor(indices, weights, a, b);
+	}
+
+	/**
+	 * Marginals computed by enumerating all joint values.
+	 */
+	private static double[][] exactMarginals(FactorGraph fg, Discrete[] vars, double[][] priors)
+	{
+		final int n = vars.length;
+		int total = 1;
+		double[][] marginals = new double[n][];
+		for (int i = 0; i < n; ++i)
+		{
+			marginals[i] = new double[priors[i].length];
+			total *= priors[i].length;
+		}
+
+		final int[] values = new int[n];
+		double sum = 0;
+		for (int k = 0; k < total; ++k)
+		{
+			double weight = 1;
+			for (int i = n, rest = k; --i>=0;)
+			{
+				values[i] = rest % priors[i].length;
+				rest /= priors[i].length;
+				weight *= priors[i][values[i]];
+			}
+			for (Factor factor : fg.getFactors())
+			{
+				int[] factorIndices = new int[factor.getSiblingCount()];
+				for (int j = 0; j < factorIndices.length; ++j)
+				{
+					factorIndices[j] = values[indexOf(vars, factor.getSibling(j))];
+				}
+				weight *= Math.exp(-factor.getFactorTable().getEnergyForIndices(factorIndices));
+			}
+
+			sum += weight;
+			for (int i = 0; i < n; ++i)
+			{
+				marginals[i][values[i]] += weight;
+			}
+		}
+
+		for (double[] marginal : marginals)
+		{
+			for (int j = 0; j < marginal.length; ++j)
+			{
+				marginal[j] /= sum;
+			}
+		}
+		return marginals;
+	}
+
+	private static int indexOf(Object[] array, Object obj)
+	{
+		for (int i = 0; i < array.length; ++i)
+		{
+			if (array[i] == obj)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
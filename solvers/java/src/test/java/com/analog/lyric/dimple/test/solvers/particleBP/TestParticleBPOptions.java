@@ -21,6 +21,7 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import com.analog.lyric.dimple.factorfunctions.Normal;
 import com.analog.lyric.dimple.model.core.FactorGraph;
 import com.analog.lyric.dimple.model.variables.Real;
 import com.analog.lyric.dimple.solvers.core.SolverBase;
@@ -58,6 +59,9 @@ public class TestParticleBPOptions extends DimpleTestBase
 		assertEquals(NormalProposalKernel.class, ParticleBPOptions.proposalKernel.defaultValue());
 		assertEquals(new OptionDoubleList(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY),
 			ParticleBPOptions.initialParticleRange.defaultValue());
+		assertFalse(ParticleBPOptions.parallelParticleUpdates.defaultValue());
+		assertEquals((Integer)0, ParticleBPOptions.subsampleSize.defaultValue());
+		assertEquals(.01, ParticleBPOptions.subsampleTolerance.defaultValue(), 0.0);
 		
 		// Set up test graph
 		FactorGraph fg = new FactorGraph();
@@ -181,6 +185,42 @@ public class TestParticleBPOptions extends DimpleTestBase
 		
 	}
 
+	@Test
+	public void testParallelAndSubsampledUpdates()
+	{
+		// Same model as RealVariableParticleBPTest.basicTest1, whose exact means are .8 and -.2
+		for (int mode = 0; mode < 3; ++mode)
+		{
+			FactorGraph fg = new FactorGraph();
+			Real a = new Real();
+			Real b = new Real();
+			a.setPrior(new Normal(1, 4));
+			b.setPrior(new Normal(-1, .25));
+			fg.addFactor(new Normal(0, 1), a, b);
+			
+			fg.setOption(ParticleBPOptions.numParticles, 100);
+			fg.setOption(ParticleBPOptions.resamplingUpdatesPerParticle, 20);
+			fg.setOption(NormalProposalKernel.standardDeviation, .5);
+			if (mode >= 1)
+			{
+				fg.setOption(ParticleBPOptions.parallelParticleUpdates, true);
+			}
+			if (mode >= 2)
+			{
+				fg.setOption(ParticleBPOptions.subsampleSize, 50);
+				fg.setOption(ParticleBPOptions.subsampleTolerance, .02);
+			}
+			
+			ParticleBPSolverGraph sfg = requireNonNull(fg.setSolverFactory(new ParticleBPSolver()));
+			sfg.setSeed(42);
+			sfg.setNumIterations(10);
+			fg.solve();
+			
+			assertEquals(.8, beliefMean((ParticleBPReal)sfg.getSolverVariable(a)), .1);
+			assertEquals(-.2, beliefMean((ParticleBPReal)sfg.getSolverVariable(b)), .2);
+		}
+	}
+	
 	@Test
 	public void testSolverEquality()
 	{
@@ -193,4 +233,22 @@ public class TestParticleBPOptions extends DimpleTestBase
 		assertNotEquals(solver1, solver3);
 		assertNotEquals(solver1.hashCode(), solver3.hashCode());
 	}
+
+	private static double beliefMean(ParticleBPReal var)
+	{
+		final int n = 600;
+		double[] points = new double[n];
+		for (int i = 0; i < n; ++i)
+		{
+			points[i] = -3 + i * 6.0 / n;
+		}
+		double[] belief = var.getBelief(points);
+		double mean = 0, sum = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			mean += points[i] * belief[i];
+			sum += belief[i];
+		}
+		return mean / sum;
+	}
 }
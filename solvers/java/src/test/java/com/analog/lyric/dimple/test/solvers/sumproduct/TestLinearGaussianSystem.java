@@ -0,0 +1,317 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.sumproduct;
+
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.factorfunctions.LinearEquation;
+import com.analog.lyric.dimple.factorfunctions.MatrixRealJointVectorProduct;
+import com.analog.lyric.dimple.factorfunctions.Normal;
+import com.analog.lyric.dimple.factorfunctions.Product;
+import com.analog.lyric.dimple.factorfunctions.Sum;
+import com.analog.lyric.dimple.factorfunctions.XorDelta;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.variables.Bit;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.model.variables.RealJoint;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
+import com.analog.lyric.dimple.solvers.sumproduct.LinearGaussianSystem;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+import com.analog.lyric.math.Cholesky;
+
+/**
+ * Tests for {@link LinearGaussianSystem}
+ * @since 0.08
+ */
+public class TestLinearGaussianSystem extends DimpleTestBase
+{
+	@Test
+	public void testLoopyScalar()
+	{
+		//
+		// a, b, c are free, s = a + b, t = 2b, u = s + t + c, which forms a loop through s, b, t and u.
+		//
+
+		FactorGraph fg = new FactorGraph();
+		Real a = new Real(), b = new Real(), c = new Real(), s = new Real(), t = new Real(), u = new Real();
+		fg.addVariables(a, b, c, s, t, u);
+		fg.addFactor(new Sum(), s, a, b);
+		fg.addFactor(new Product(), t, b, 2.0);
+		fg.addFactor(new Sum(), u, s, t, c);
+		fg.addFactor(new Normal(3, 4), s);
+		a.setPrior(new Normal(1, 2));
+		c.setPrior(new Normal(-1, 1));
+		t.setPrior(new Normal(2, 1));
+		u.setPrior(new Normal(5, .5));
+
+		SumProductSolverGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		fg.setOption(SumProductOptions.linearGaussianSolve, true);
+		fg.setOption(SumProductOptions.linearGaussianVariances, true);
+		fg.initialize();
+
+		LinearGaussianSystem system = requireNonNull(LinearGaussianSystem.build(sfg));
+		assertEquals(6, system.getDimensions());
+		assertEquals(3, system.getConstraintCount());
+
+		fg.solve();
+
+		double[][] g = new double[][] {
+			{1,0,0}, {0,1,0}, {0,0,1}, {1,1,0}, {0,2,0}, {1,3,1}
+		};
+		double[][] posterior = expectedPosterior(
+			new double[][] { g[0], g[2], g[3], g[4], g[5] },
+			new double[] { 0, 0, 0, 0, 0 },
+			new double[] { 1, -1, 3, 2, 5 },
+			new double[] { 2, 1, 4, 1, .5 });
+
+		Real[] vars = new Real[] { a, b, c, s, t, u };
+		for (int i = 0; i < vars.length; ++i)
+		{
+			NormalParameters belief = (NormalParameters)requireNonNull(vars[i].getBeliefObject());
+			assertEquals(dot(g[i], posterior[0]), belief.getMean(), 1e-8);
+			assertEquals(quadraticForm(posterior[1], g[i]), belief.getVariance(), 1e-8);
+		}
+
+		// Fixing c moves it into the constraint right-hand side
+		c.setFixedValue(.5);
+		fg.solve();
+
+		g = new double[][] { {1,0}, {0,1}, {1,1}, {0,2}, {1,3} };
+		posterior = expectedPosterior(
+			new double[][] { g[0], g[2], g[3], g[4] },
+			new double[] { 0, 0, 0, .5 },
+			new double[] { 1, 3, 2, 5 },
+			new double[] { 2, 4, 1, .5 });
+
+		vars = new Real[] { a, b, s, t, u };
+		double[] offsets = new double[] { 0, 0, 0, 0, .5 };
+		for (int i = 0; i < vars.length; ++i)
+		{
+			NormalParameters belief = (NormalParameters)requireNonNull(vars[i].getBeliefObject());
+			assertEquals(dot(g[i], posterior[0]) + offsets[i], belief.getMean(), 1e-8);
+			assertEquals(quadraticForm(posterior[1], g[i]), belief.getVariance(), 1e-8);
+		}
+		NormalParameters cbelief = (NormalParameters)requireNonNull(c.getBeliefObject());
+		assertEquals(.5, cbelief.getMean(), 0.0);
+		assertTrue(cbelief.hasDeterministicValue());
+
+		// Means only
+		fg.setOption(SumProductOptions.linearGaussianVariances, false);
+		fg.solve();
+		NormalParameters ubelief = (NormalParameters)requireNonNull(u.getBeliefObject());
+		assertEquals(dot(g[4], posterior[0]) + .5, ubelief.getMean(), 1e-8);
+		assertEquals(0.0, ubelief.getPrecision(), 0.0);
+
+		// Turning off the option reverts to belief propagation
+		fg.setOption(SumProductOptions.linearGaussianSolve, false);
+		fg.initialize();
+		ubelief = (NormalParameters)requireNonNull(u.getBeliefObject());
+		assertNotEquals(0.0, ubelief.getPrecision(), 0.0);
+	}
+
+	@Test
+	public void testMultivariate()
+	{
+		final double[][] M = new double[][] { {1, 2}, {0, 1}, {-1, 3} };
+		final double[] xMean = new double[] { 1, -2 };
+		final double[][] xCovariance = new double[][] { {2, .5}, {.5, 1} };
+		final double[] yMean = new double[] { 3, -1, 2 };
+		final double[][] yCovariance = new double[][] { {1, 0, .2}, {0, 2, 0}, {.2, 0, .5} };
+
+		FactorGraph fg = new FactorGraph();
+		RealJoint x = new RealJoint(2), y = new RealJoint(3);
+		fg.addVariables(x, y);
+		fg.addFactor(new MatrixRealJointVectorProduct(2, 3), y, M, x);
+		x.setPrior(new MultivariateNormalParameters(xMean, xCovariance));
+		y.setPrior(new MultivariateNormalParameters(yMean, yCovariance));
+
+		fg.setSolverFactory(new SumProductSolver());
+		fg.setOption(SumProductOptions.linearGaussianSolve, true);
+		fg.setOption(SumProductOptions.linearGaussianVariances, true);
+		fg.solve();
+
+		// Expected: precision = Px + M' Py M, information = Px mx + M' Py my
+		final MultivariateNormalParameters xPrior = new MultivariateNormalParameters(xMean, xCovariance);
+		final MultivariateNormalParameters yPrior = new MultivariateNormalParameters(yMean, yCovariance);
+		final double[][] px = xPrior.getInformationMatrix(), py = yPrior.getInformationMatrix();
+		final double[] hx = xPrior.getInformationVector(), hy = yPrior.getInformationVector();
+
+		final double[] q = new double[4];
+		final double[] h = new double[2];
+		for (int i = 0; i < 2; ++i)
+		{
+			h[i] = hx[i];
+			for (int k = 0; k < 3; ++k)
+			{
+				h[i] += M[k][i] * hy[k];
+			}
+			for (int j = 0; j < 2; ++j)
+			{
+				double sum = px[i][j];
+				for (int k = 0; k < 3; ++k)
+				{
+					for (int l = 0; l < 3; ++l)
+					{
+						sum += M[k][i] * py[k][l] * M[l][j];
+					}
+				}
+				q[i * 2 + j] = sum;
+			}
+		}
+		assertFalse(Double.isNaN(Cholesky.decompose(q, q, 2, 0.0)));
+		Cholesky.invert(q, 2);
+		final double[] mean = new double[2];
+		Cholesky.multiply(q, h, mean, 2);
+
+		MultivariateNormalParameters xBelief = requireNonNull(x.getBelief());
+		MultivariateNormalParameters yBelief = requireNonNull(y.getBelief());
+		double[][] xCov = xBelief.getCovariance(), yCov = yBelief.getCovariance();
+		for (int i = 0; i < 2; ++i)
+		{
+			assertEquals(mean[i], xBelief.getMean()[i], 1e-8);
+			for (int j = 0; j < 2; ++j)
+			{
+				assertEquals(q[i * 2 + j], xCov[i][j], 1e-8);
+			}
+		}
+		for (int k = 0; k < 3; ++k)
+		{
+			assertEquals(dot(M[k], mean), yBelief.getMean()[k], 1e-8);
+			for (int l = 0; l < 3; ++l)
+			{
+				double expected = 0;
+				for (int i = 0; i < 2; ++i)
+				{
+					for (int j = 0; j < 2; ++j)
+					{
+						expected += M[k][i] * q[i * 2 + j] * M[l][j];
+					}
+				}
+				assertEquals(expected, yCov[k][l], 1e-7);
+			}
+		}
+	}
+
+	@Test
+	public void testZeroCoefficient()
+	{
+		// b only appears in the equation with a zero weight
+		FactorGraph fg = new FactorGraph();
+		Real a = new Real(), b = new Real(), y = new Real();
+		fg.addFactor(new LinearEquation(new double[] { 1, 0 }), y, a, b);
+		a.setPrior(new Normal(1, 2));
+		y.setPrior(new Normal(3, 1));
+
+		SumProductSolverGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		fg.setOption(SumProductOptions.linearGaussianSolve, true);
+		fg.setOption(SumProductOptions.linearGaussianVariances, true);
+		fg.initialize();
+
+		LinearGaussianSystem system = requireNonNull(LinearGaussianSystem.build(sfg));
+		assertTrue(system.solve(1e-10, 100));
+		assertTrue(system.updateBeliefs(true, 1e-10, 100));
+
+		NormalParameters belief = (NormalParameters)requireNonNull(y.getBeliefObject());
+		assertEquals(5.0 / 3.0, belief.getMean(), 1e-8);
+		assertEquals(3.0, belief.getPrecision(), 1e-8);
+		assertEquals(0.0, ((NormalParameters)requireNonNull(b.getBeliefObject())).getPrecision(), 0.0);
+	}
+
+	@Test
+	public void testNotLinearGaussian()
+	{
+		FactorGraph fg = new FactorGraph();
+		Bit a = new Bit(), b = new Bit();
+		fg.addFactor(new XorDelta(), a, b);
+		a.setInput(.8);
+
+		SumProductSolverGraph sfg = requireNonNull(fg.setSolverFactory(new SumProductSolver()));
+		fg.setOption(SumProductOptions.linearGaussianSolve, true);
+		fg.initialize();
+		assertNull(LinearGaussianSystem.build(sfg));
+
+		// Falls back on normal belief propagation
+		fg.solve();
+		assertEquals(.8, b.getBelief()[1], 1e-12);
+	}
+
+	/*-----------------
+	 * Helper methods
+	 */
+
+	/**
+	 * Computes posterior mean and covariance of free variables given normal observations of linear
+	 * combinations of those variables. Returns mean in first element and flattened covariance in second.
+	 */
+	private static double[][] expectedPosterior(double[][] g, double[] offsets, double[] means, double[] precisions)
+	{
+		final int n = g[0].length;
+		final double[] q = new double[n * n];
+		final double[] h = new double[n];
+
+		for (int k = 0; k < g.length; ++k)
+		{
+			final double p = precisions[k];
+			for (int i = 0; i < n; ++i)
+			{
+				h[i] += p * (means[k] - offsets[k]) * g[k][i];
+				for (int j = 0; j < n; ++j)
+				{
+					q[i * n + j] += p * g[k][i] * g[k][j];
+				}
+			}
+		}
+
+		assertFalse(Double.isNaN(Cholesky.decompose(q, q, n, 0.0)));
+		Cholesky.invert(q, n);
+		final double[] mean = new double[n];
+		Cholesky.multiply(q, h, mean, n);
+
+		return new double[][] { mean, q };
+	}
+
+	private static double dot(double[] x, double[] y)
+	{
+		double sum = 0;
+		for (int i = 0; i < x.length; ++i)
+		{
+			sum += x[i] * y[i];
+		}
+		return sum;
+	}
+
+	private static double quadraticForm(double[] matrix, double[] x)
+	{
+		final int n = x.length;
+		double sum = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			for (int j = 0; j < n; ++j)
+			{
+				sum += x[i] * matrix[i * n + j] * x[j];
+			}
+		}
+		return sum;
+	}
+}
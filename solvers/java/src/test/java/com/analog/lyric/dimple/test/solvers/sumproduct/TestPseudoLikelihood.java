@@ -0,0 +1,173 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.sumproduct;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.solvers.core.multithreading.ThreadPool;
+import com.analog.lyric.dimple.solvers.sumproduct.pseudolikelihood.PseudoLikelihood;
+import com.analog.lyric.dimple.solvers.sumproduct.pseudolikelihood.SparseJointDistribution;
+import com.analog.lyric.dimple.solvers.sumproduct.pseudolikelihood.SparseJointHistogram;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests for {@link PseudoLikelihood}
+ * @since 0.08
+ */
+public class TestPseudoLikelihood extends DimpleTestBase
+{
+	@Test
+	public void testHistogram()
+	{
+		SparseJointHistogram hist = new SparseJointHistogram(new int[] { 3, 2, 4 });
+		assertEquals(3, hist.getDimensions());
+
+		int[] indices = new int[3];
+		for (int i = 0; i < 3; ++i)
+			for (int j = 0; j < 2; ++j)
+				for (int k = 0; k < 4; ++k)
+				{
+					long key = hist.jointIndex(new int[] { i, j, k });
+					assertEquals((i * 2 + j) * 4 + k, key);
+					assertArrayEquals(new int[] { i, j, k }, hist.jointIndexToIndices(key, indices));
+				}
+
+		hist.add(new int[] { 1, 1, 3 });
+		hist.add(new int[] { 0, 0, 0 });
+		hist.add(hist.jointIndex(new int[] { 1, 1, 3 }), 2);
+		assertEquals(2, hist.size());
+		assertEquals(4, hist.getTotal());
+		assertEquals(3, hist.get(hist.jointIndex(new int[] { 1, 1, 3 })));
+		assertEquals(0, hist.get(hist.jointIndex(new int[] { 2, 1, 3 })));
+		assertEquals(hist.jointIndex(new int[] { 1, 1, 3 }), hist.getKey(0));
+		assertEquals(1, hist.getCount(1));
+		assertEquals(hist.jointIndex(new int[] { 2, 0, 1 }), hist.jointIndex(new int[] { 7, 2, 0, 1 }, new int[] { 1, 2, 3 }));
+
+		SparseJointDistribution dist = hist.getDistribution();
+		assertEquals(.75, dist.get(new int[] { 1, 1, 3 }), 0.0);
+		assertEquals(.25, dist.get(new int[] { 0, 0, 0 }), 0.0);
+		assertEquals(0.0, dist.get(new int[] { 0, 1, 0 }), 0.0);
+		assertArrayEquals(hist.getKeys(), dist.getNonZeroKeys());
+
+		// Distribution does not see later samples
+		hist.add(new int[] { 0, 1, 0 });
+		assertEquals(0.0, dist.get(new int[] { 0, 1, 0 }), 0.0);
+
+		try
+		{
+			new SparseJointHistogram(new int[] { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE });
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+		}
+	}
+
+	@Test
+	public void testGradient()
+	{
+		final Random rand = new Random(42);
+		final DiscreteDomain domain = DiscreteDomain.range(0, 2);
+
+		FactorGraph fg = new FactorGraph();
+		Discrete[] vars = new Discrete[4];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(domain);
+		}
+		fg.addVariables(vars);
+
+		// Two factors share the first table
+		IFactorTable t1 = randomTable(rand, domain, domain);
+		IFactorTable t2 = randomTable(rand, domain, domain, domain);
+		Factor f1 = fg.addFactor(t1, vars[0], vars[1]);
+		fg.addFactor(t1, vars[2], vars[3]);
+		Factor f3 = fg.addFactor(t2, vars[1], vars[2], vars[3]);
+		IFactorTable[] tables = new IFactorTable[] { f1.getFactorTable(), f3.getFactorTable() };
+
+		int[][] data = new int[500][vars.length];
+		for (int[] sample : data)
+		{
+			for (int i = 0; i < sample.length; ++i)
+			{
+				sample[i] = rand.nextInt(3);
+			}
+		}
+
+		PseudoLikelihood pl = new PseudoLikelihood(fg, tables, vars);
+		pl.setData(data);
+
+		final int nThreads = ThreadPool.getNumThreads();
+		try
+		{
+			ThreadPool.setNumThreads(4);
+			double[][] gradient = pl.calculateGradient();
+			assertEquals(tables.length, gradient.length);
+			for (int i = 0; i < tables.length; ++i)
+			{
+				assertEquals(tables[i].countNonZeroWeights(), gradient[i].length);
+				for (int j = 0; j < gradient[i].length; ++j)
+				{
+					assertEquals(pl.calculateNumericalGradient(tables[i], j, 1e-6), gradient[i][j], 1e-4);
+				}
+			}
+
+			// Same answer when computed on a single thread
+			ThreadPool.setNumThreads(1);
+			double[][] gradient2 = pl.calculateGradient();
+			for (int i = 0; i < tables.length; ++i)
+			{
+				assertArrayEquals(gradient[i], gradient2[i], 1e-12);
+			}
+		}
+		finally
+		{
+			if (nThreads > 0)
+				ThreadPool.setNumThreads(nThreads);
+			else
+				ThreadPool.setNumThreadsToDefault();
+		}
+
+		// Learning increases the pseudo-likelihood
+		double start = pl.calculatePseudoLikelihood();
+		pl.learn(data, 20, .1);
+		assertTrue(pl.calculatePseudoLikelihood() > start);
+	}
+
+	private static IFactorTable randomTable(Random rand, DiscreteDomain ... domains)
+	{
+		IFactorTable table = FactorTable.create(domains);
+		double[] weights = new double[table.getDomainIndexer().getCardinality()];
+		for (int i = 0; i < weights.length; ++i)
+		{
+			weights[i] = rand.nextDouble() + .01;
+		}
+		table.setWeightsDense(weights);
+		return table;
+	}
+}
@@ -31,13 +31,20 @@ import org.apache.commons.math3.stat.correlation.StorelessCovariance;
 import org.junit.Test;
 
 import com.analog.lyric.dimple.factorfunctions.MultivariateNormal;
+import com.analog.lyric.dimple.factorfunctions.Normal;
 import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.factors.Factor;
 import com.analog.lyric.dimple.model.sugar.ModelSyntacticSugar.CurrentModel;
 import com.analog.lyric.dimple.model.variables.Complex;
+import com.analog.lyric.dimple.model.variables.Real;
+import com.analog.lyric.dimple.options.DimpleOptions;
 import com.analog.lyric.dimple.solvers.core.parameterizedMessages.MultivariateNormalParameters;
+import com.analog.lyric.dimple.solvers.core.parameterizedMessages.NormalParameters;
 import com.analog.lyric.dimple.solvers.gibbs.GibbsOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
 import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolverGraph;
+import com.analog.lyric.dimple.solvers.sumproduct.sampledfactor.SampledFactor;
 import com.analog.lyric.dimple.test.DimpleTestBase;
 import com.google.common.primitives.Doubles;
 
@@ -133,6 +140,75 @@ public class TestSampledFactors extends DimpleTestBase
 		}
 	}
 	
+	@Test
+	public void sharedSamples()
+	{
+		try (CurrentModel cur = using(new FactorGraph()))
+		{
+			final Real a = real("a");
+			final Real b = real("b");
+			final Real c = product(a,b);
+			a.setPrior(new Normal(2, 4));
+			b.setPrior(new Normal(3, 6.25));
+			
+			// Exact moments of product of independent normals
+			final double expectedMean = 6;
+			final double expectedVariance = 4 * .16 + 9 * .25 + .25 * .16;
+			
+			SumProductSolverGraph sfg = requireNonNull(cur.graph.setSolverFactory(new SumProductSolver()));
+			sfg.setOption(GibbsOptions.numSamples, 20000);
+			sfg.setOption(DimpleOptions.randomSeed, 42L);
+			sfg.setOption(SumProductOptions.sampledFactorSharedSamples, true);
+			
+			final Factor factor = cur.graph.getFactors().iterator().next();
+			final SampledFactor sfactor = (SampledFactor)sfg.getSolverFactor(factor);
+			final int cEdge = factor.findSibling(c);
+			
+			// Variance estimates from 20000 samples have a standard deviation of about .04 across seeds.
+			sfg.solve();
+			NormalParameters belief = (NormalParameters)requireNonNull(c.getBeliefObject());
+			assertEquals(expectedMean, belief.getMean(), .05);
+			assertEquals(expectedVariance, belief.getVariance(), .15);
+			for (int edge = 0; edge < 3; ++edge)
+			{
+				assertTrue(sfactor.usedSharedSamples(edge));
+			}
+			
+			// Stop early when messages stop changing
+			sfg.setOption(SumProductOptions.sampledFactorMessageTolerance, 1e-3);
+			sfg.setOption(SumProductOptions.sampledFactorBatchSize, 1000);
+			sfg.solve();
+			belief = (NormalParameters)requireNonNull(c.getBeliefObject());
+			assertEquals(expectedMean, belief.getMean(), .15);
+			assertEquals(expectedVariance, belief.getVariance(), .3);
+			
+			// Edges that do not reach the minimum effective sample size are sampled separately. No edge
+			// can have more effective samples than there are samples.
+			sfg.setOption(SumProductOptions.sampledFactorMessageTolerance, 0.0);
+			sfg.setOption(SumProductOptions.sampledFactorMinEffectiveSamples, 5001.0);
+			sfg.setOption(GibbsOptions.numSamples, 5000);
+			sfg.solve();
+			belief = (NormalParameters)requireNonNull(c.getBeliefObject());
+			assertEquals(expectedMean, belief.getMean(), .1);
+			assertEquals(expectedVariance, belief.getVariance(), .3);
+			for (int edge = 0; edge < 3; ++edge)
+			{
+				assertFalse(sfactor.usedSharedSamples(edge));
+			}
+			
+			// A narrow input on the output variable concentrates the shared samples, so reweighting them
+			// by the inverse of that input leaves too few effective samples to estimate the message to it.
+			c.setPrior(new Normal(expectedMean, 100));
+			sfg.setOption(SumProductOptions.sampledFactorMinEffectiveSamples, 2000.0);
+			sfg.setOption(GibbsOptions.numSamples, 20000);
+			sfg.solve();
+			assertFalse(sfactor.usedSharedSamples(cEdge));
+			final NormalParameters message = (NormalParameters)sfactor.getSiblingEdgeState(cEdge).getFactorToVarMsg();
+			assertEquals(expectedMean, message.getMean(), .05);
+			assertEquals(expectedVariance, message.getVariance(), .15);
+		}
+	}
+	
 	/**
 	 * Generates a random covariance matrix with given dimension.
 	 */
@@ -0,0 +1,274 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package com.analog.lyric.dimple.test.solvers.sumproduct;
+
+import static com.analog.lyric.math.Utilities.*;
+import static java.util.Objects.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.analog.lyric.dimple.exceptions.DimpleException;
+import com.analog.lyric.dimple.factorfunctions.core.FactorTable;
+import com.analog.lyric.dimple.factorfunctions.core.IFactorTable;
+import com.analog.lyric.dimple.model.core.FactorGraph;
+import com.analog.lyric.dimple.model.domains.DiscreteDomain;
+import com.analog.lyric.dimple.model.factors.Factor;
+import com.analog.lyric.dimple.model.variables.Discrete;
+import com.analog.lyric.dimple.options.BPOptions;
+import com.analog.lyric.dimple.solvers.optimizedupdate.UpdateApproach;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductOptions;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductSolver;
+import com.analog.lyric.dimple.solvers.sumproduct.SumProductTableFactor;
+import com.analog.lyric.dimple.solvers.sumproduct.TableFactorEngine;
+import com.analog.lyric.dimple.solvers.sumproduct.TableFactorEngineEnergy;
+import com.analog.lyric.dimple.test.DimpleTestBase;
+
+/**
+ * Tests {@link TableFactorEngine} with input messages containing zeros and {@link TableFactorEngineEnergy}.
+ * @since 0.08
+ */
+public class TestTableFactorEngine extends DimpleTestBase
+{
+	private final Random _rand = new Random(42);
+
+	@Test
+	public void test()
+	{
+		FactorGraph fg = new FactorGraph();
+		Factor factor = addFactor(fg, 0.0);
+
+		fg.setSolverFactory(new SumProductSolver());
+		fg.initialize();
+		testUpdates(requireNonNull((SumProductTableFactor)factor.getSolver()), 0.0);
+	}
+	
+	@Test
+	public void testEnergyDomain()
+	{
+		FactorGraph fg = new FactorGraph();
+		fg.setOption(SumProductOptions.energyDomainUpdate, true);
+		Factor factor = addFactor(fg, 0.0);
+
+		fg.setSolverFactory(new SumProductSolver());
+		fg.initialize();
+		testUpdates(requireNonNull((SumProductTableFactor)factor.getSolver()), 0.0);
+		
+		fg.setOption(SumProductOptions.energyDomainFastExp, true);
+		fg.initialize();
+		testUpdates(requireNonNull((SumProductTableFactor)factor.getSolver()), 0.0);
+		
+		// All table weights underflow to zero, so the normal update fails.
+		fg = new FactorGraph();
+		factor = addFactor(fg, 1000.0);
+		fg.setSolverFactory(new SumProductSolver());
+		fg.initialize();
+		try
+		{
+			factor.getSolver().update();
+			fail("expected DimpleException");
+		}
+		catch (DimpleException ex)
+		{
+			assertTrue(ex.getMessage().contains("All probabilities were zero"));
+		}
+		
+		// Use a new table, since the energies of the previous one were lost when it was converted to weights.
+		fg = new FactorGraph();
+		fg.setOption(SumProductOptions.energyDomainUpdate, true);
+		factor = addFactor(fg, 1000.0);
+		fg.setSolverFactory(new SumProductSolver());
+		fg.initialize();
+		testUpdates(requireNonNull((SumProductTableFactor)factor.getSolver()), 1000.0);
+	}
+	
+	@Test
+	public void testMissingTopValues()
+	{
+		// Table has no rows for the largest value of the first variable.
+		final DiscreteDomain xDomain = DiscreteDomain.range(0, 3);
+		final DiscreteDomain yDomain = DiscreteDomain.range(0, 2);
+		int[][] indices = new int[9][];
+		double[] weights = new double[indices.length];
+		for (int i = 0; i < indices.length; ++i)
+		{
+			indices[i] = new int[] { i / 3, i % 3 };
+			weights[i] = _rand.nextDouble() + .01;
+		}
+
+		FactorGraph fg = new FactorGraph();
+		fg.setOption(BPOptions.updateApproach, UpdateApproach.NORMAL);
+		Discrete x = new Discrete(xDomain), y = new Discrete(yDomain);
+		fg.addVariables(x, y);
+		Factor factor = fg.addFactor(FactorTable.create(indices, weights, xDomain, yDomain), x, y);
+		fg.setSolverFactory(new SumProductSolver());
+		fg.initialize();
+
+		SumProductTableFactor sf = requireNonNull((SumProductTableFactor)factor.getSolver());
+		System.arraycopy(new double[] { .5, 0, 0, .5 }, 0, sf.getInPortMsg(0), 0, 4);
+		Arrays.fill(sf.getInPortMsg(1), 1.0 / 3);
+		sf.update();
+		assertArrayEquals(normalize(expectedOutput(sf, 0, 0.0)), sf.getOutPortMsg(0), 1e-12);
+		assertArrayEquals(normalize(expectedOutput(sf, 1, 0.0)), sf.getOutPortMsg(1), 1e-12);
+	}
+
+	@Test
+	public void testFastEnergyToWeight()
+	{
+		for (int i = 0; i < 10000; ++i)
+		{
+			final double energy = _rand.nextDouble() * 80;
+			final double expected = energyToWeight(energy);
+			assertEquals(expected, fastEnergyToWeight(energy), expected * 1e-11);
+		}
+		assertEquals(1.0, fastEnergyToWeight(0.0), 0.0);
+		assertEquals(0.0, fastEnergyToWeight(Double.POSITIVE_INFINITY), 0.0);
+	}
+	
+	/**
+	 * Adds factor over three variables with random table energies offset by {@code minEnergy}.
+	 */
+	private Factor addFactor(FactorGraph fg, double minEnergy)
+	{
+		final DiscreteDomain domain = DiscreteDomain.range(0, 7);
+
+		fg.setOption(BPOptions.updateApproach, UpdateApproach.NORMAL);
+		Discrete[] vars = new Discrete[3];
+		for (int i = 0; i < vars.length; ++i)
+		{
+			vars[i] = new Discrete(domain);
+		}
+		fg.addVariables(vars);
+
+		IFactorTable table = FactorTable.create(domain, domain, domain);
+		double[] energies = new double[table.getDomainIndexer().getCardinality()];
+		for (int i = 0; i < energies.length; ++i)
+		{
+			// Include some zero weights, which will not be in the sparse table.
+			energies[i] = _rand.nextInt(5) == 0 ? Double.POSITIVE_INFINITY : minEnergy + _rand.nextDouble() * 3;
+		}
+		table.setEnergiesDense(energies);
+		return fg.addFactor(table, vars);
+	}
+	
+	private void testUpdates(SumProductTableFactor sf, double energyOffset)
+	{
+		// Dense inputs
+		testUpdate(sf, energyOffset, 0, 0, 0);
+		// One or two nearly deterministic inputs
+		testUpdate(sf, energyOffset, 6, 0, 0);
+		testUpdate(sf, energyOffset, 0, 7, 0);
+		testUpdate(sf, energyOffset, 7, 0, 5);
+		// Sparse but not very selective
+		testUpdate(sf, energyOffset, 2, 2, 2);
+	}
+
+	private void testUpdate(SumProductTableFactor sf, double energyOffset, int ... zerosPerPort)
+	{
+		final int nPorts = zerosPerPort.length;
+
+		for (int i = 0; i < nPorts; ++i)
+		{
+			double[] msg = sf.getInPortMsg(i);
+			for (int j = 0; j < msg.length; ++j)
+			{
+				msg[j] = _rand.nextDouble() + .01;
+			}
+			for (int n = 0; n < zerosPerPort[i];)
+			{
+				int j = _rand.nextInt(msg.length);
+				if (msg[j] != 0)
+				{
+					msg[j] = 0;
+					++n;
+				}
+			}
+		}
+
+		sf.update();
+		for (int i = 0; i < nPorts; ++i)
+		{
+			assertArrayEquals(normalize(expectedOutput(sf, i, energyOffset)), sf.getOutPortMsg(i), 1e-12);
+		}
+
+		for (int i = 0; i < nPorts; ++i)
+		{
+			Arrays.fill(sf.getOutPortMsg(i), 0);
+			sf.updateEdge(i);
+			final double[] expected = expectedOutput(sf, i, energyOffset);
+			double normalizationEnergy = weightToEnergy(sum(expected)) + energyOffset;
+			for (int j = 0; j < nPorts; ++j)
+			{
+				if (j != i)
+				{
+					normalizationEnergy += sf.getSiblingEdgeState(j).varToFactorMsg.getNormalizationEnergy();
+				}
+			}
+			assertArrayEquals(normalize(expected), sf.getOutPortMsg(i), 1e-12);
+			assertEquals(normalizationEnergy, sf.getSiblingEdgeState(i).factorToVarMsg.getNormalizationEnergy(), 1e-9);
+		}
+	}
+
+	/**
+	 * Unnormalized output with table weights scaled by e<sup>energyOffset</sup>.
+	 */
+	private double[] expectedOutput(SumProductTableFactor sf, int outPort, double energyOffset)
+	{
+		final IFactorTable table = sf.getFactorTable();
+		final double[] output = new double[sf.getOutPortMsg(outPort).length];
+
+		for (int entry = 0, n = table.sparseSize(); entry < n; ++entry)
+		{
+			final int[] row = table.sparseIndexToIndices(entry);
+			double value = energyToWeight(table.getEnergyForSparseIndex(entry) - energyOffset);
+			for (int i = 0; i < row.length; ++i)
+			{
+				if (i != outPort)
+				{
+					value *= sf.getInPortMsg(i)[row[i]];
+				}
+			}
+			output[row[outPort]] += value;
+		}
+
+		return output;
+	}
+	
+	private double sum(double[] values)
+	{
+		double sum = 0;
+		for (double d : values)
+		{
+			sum += d;
+		}
+		return sum;
+	}
+	
+	private double[] normalize(double[] values)
+	{
+		final double sum = sum(values);
+		double[] result = new double[values.length];
+		for (int i = 0; i < values.length; ++i)
+		{
+			result[i] = values[i] / sum;
+		}
+		return result;
+	}
+}
@@ -26,6 +26,7 @@ import org.apache.commons.math3.random.RandomGenerator;
 import org.junit.Test;
 
 import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.math.Xoshiro256StarStar;
 
 /**
  * 
@@ -53,9 +54,36 @@ public class TestDimpleRandom
 		{
 			assertEquals(r1.nextGamma(), r2.nextGamma(), 0.0);
 			assertEquals(r1.nextGamma(.5,.7), r2.nextGamma(.5,.7), 0.0);
+			assertEquals(r1.nextBeta(.5,2), r2.nextBeta(.5,2), 0.0);
+			assertEquals(r1.nextGaussian(), r2.nextGaussian(), 0.0);
 		}
 	}
 
+	@Test
+	public void testDefaultStream()
+	{
+		// Default generator produces the same stream as in earlier releases, so seeded results do not change.
+		// These values were recorded from DimpleRandom(42) before xoshiro256** was added.
+		final double[][] expected = {
+			{ 0.433919173241921, -0.6765460817582688, 0.710714944935267, 0.2118108778752154 },
+			{ 0.1434645190766235, -0.8085719315290952, 0.5694451794740152, 0.36677643616576644 },
+			{ 0.06848743176556704, -0.48419514386159085, 0.7377502322272903, 0.06469016555843259 },
+		};
+		final DimpleRandom r1 = new DimpleRandom(42);
+		assertTrue(r1.getGenerator() instanceof MersenneTwister);
+		for (double[] values : expected)
+		{
+			assertEquals(values[0], r1.nextDouble(), 0.0);
+			assertEquals(values[1], r1.nextGaussian(), 0.0);
+			assertEquals(values[2], r1.nextGamma(.5, .7), 0.0);
+			assertEquals(values[3], r1.nextBeta(.5, 2), 0.0);
+		}
+		
+		// Opting in to xoshiro256** gives a different stream.
+		final DimpleRandom r2 = new DimpleRandom(new Xoshiro256StarStar(42), 42);
+		assertNotEquals(expected[0][0], r2.nextDouble(), 0.0);
+	}
+
 	/**
 	 * Measures speed of Apache vs Colt generators
 	 */
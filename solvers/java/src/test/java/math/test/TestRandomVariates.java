@@ -0,0 +1,255 @@
+/*******************************************************************************
+*   Copyright 2015 Analog Devices, Inc.
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+********************************************************************************/
+
+package math.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.analog.lyric.math.DimpleRandom;
+import com.analog.lyric.math.RandomVariates;
+import com.analog.lyric.math.Xoshiro256StarStar;
+
+/**
+ * Tests for {@link RandomVariates} and {@link Xoshiro256StarStar}
+ * @since 0.08
+ */
+public class TestRandomVariates
+{
+	private static final int N = 400000;
+
+	@Test
+	public void testXoshiro()
+	{
+		// Reference values for SplitMix64 and for xoshiro256** seeded by it
+		assertEquals(0xe220a8397b1dcdafL, Xoshiro256StarStar.splitMix64(0x9e3779b97f4a7c15L));
+		Xoshiro256StarStar r1 = new Xoshiro256StarStar(42);
+		assertEquals(0x15780b2e0c2ec716L, r1.nextLong());
+		assertEquals(0x6104d9866d113a7eL, r1.nextLong());
+		assertEquals(0xae17533239e499a1L, r1.nextLong());
+		assertEquals(0xecb8ad4703b360a1L, r1.nextLong());
+
+		// Split stream continues from current state, while original jumps ahead
+		r1.setSeed(23);
+		Xoshiro256StarStar r2 = new Xoshiro256StarStar(23);
+		Xoshiro256StarStar r3 = r1.split();
+		for (int i = 0; i < 10; ++i)
+		{
+			assertEquals(r2.nextLong(), r3.nextLong());
+		}
+		r2.setSeed(23);
+		r2.jump();
+		for (int i = 0; i < 10; ++i)
+		{
+			assertEquals(r2.nextLong(), r1.nextLong());
+		}
+
+		int[] counts = new int[7];
+		for (int i = 0; i < N; ++i)
+		{
+			double d = r1.nextDouble();
+			assertTrue(d >= 0.0 && d < 1.0);
+			++counts[r1.nextInt(counts.length)];
+		}
+		for (int count : counts)
+		{
+			assertEquals(1.0 / counts.length, (double)count / N, .005);
+		}
+
+		byte[] bytes = new byte[13];
+		r1.nextBytes(bytes);
+
+		try
+		{
+			r1.nextInt(0);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+	}
+
+	@Test
+	public void testNormal()
+	{
+		Xoshiro256StarStar rand = new Xoshiro256StarStar(1234);
+		double sum = 0, sum2 = 0, sum4 = 0;
+		int nTail = 0;
+		for (int i = 0; i < N; ++i)
+		{
+			double x = RandomVariates.nextNormal(rand);
+			sum += x;
+			sum2 += x * x;
+			sum4 += x * x * x * x;
+			if (Math.abs(x) > 3.442619855899)
+			{
+				++nTail;
+			}
+		}
+		assertEquals(0.0, sum / N, .01);
+		assertEquals(1.0, sum2 / N, .01);
+		assertEquals(3.0, sum4 / N, .05);
+		// P(|x| > R) = 5.7599e-4
+		assertEquals(5.7599e-4, (double)nTail / N, 1.5e-4);
+	}
+
+	@Test
+	public void testGamma()
+	{
+		Xoshiro256StarStar rand = new Xoshiro256StarStar(42);
+		for (double shape : new double[] { .05, .3, 1, 2.5, 10 })
+		{
+			double sum = 0, sum2 = 0, sumLog = 0;
+			for (int i = 0; i < N; ++i)
+			{
+				double x = RandomVariates.nextGamma(rand, shape);
+				assertTrue(x >= 0);
+				sum += x;
+				sum2 += x * x;
+				sumLog += RandomVariates.nextLogGamma(rand, shape);
+			}
+			double mean = sum / N;
+			assertEquals(shape, mean, .015 * Math.sqrt(shape) + .002);
+			assertEquals(shape, sum2 / N - mean * mean, .05 * shape);
+			// E[log X] = digamma(shape)
+			assertEquals(digamma(shape), sumLog / N, .02 / Math.min(1, shape));
+		}
+
+		assertEquals(0.0, RandomVariates.nextGamma(rand, 0.0), 0.0);
+		assertEquals(Double.NEGATIVE_INFINITY, RandomVariates.nextLogGamma(rand, 0.0), 0.0);
+		try
+		{
+			RandomVariates.nextGamma(rand, -1);
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+
+		DimpleRandom drand = newRandom(42);
+		double sum = 0;
+		for (int i = 0; i < N; ++i)
+		{
+			sum += drand.nextGamma(3, 2);
+		}
+		assertEquals(1.5, sum / N, .01);
+	}
+
+	@Test
+	public void testBeta()
+	{
+		DimpleRandom rand = newRandom(99);
+		double[][] params = { { .5, .5 }, { 2, 5 }, { .01, 3 }, { 1, 1 } };
+		for (double[] ab : params)
+		{
+			final double a = ab[0], b = ab[1];
+			double sum = 0, sum2 = 0;
+			for (int i = 0; i < N; ++i)
+			{
+				double x = rand.nextBeta(a, b);
+				assertTrue(x >= 0 && x <= 1);
+				sum += x;
+				sum2 += x * x;
+			}
+			double mean = sum / N;
+			assertEquals(a / (a + b), mean, .003);
+			assertEquals(a * b / ((a + b) * (a + b) * (a + b + 1)), sum2 / N - mean * mean, .003);
+		}
+
+		// Does not produce NaN for tiny parameters
+		for (int i = 0; i < 1000; ++i)
+		{
+			double x = rand.nextBeta(1e-4, 1e-4);
+			assertTrue(x >= 0 && x <= 1);
+		}
+	}
+
+	@Test
+	public void testDirichlet()
+	{
+		DimpleRandom rand = newRandom(7);
+		for (double[] alphas : new double[][] { { 1, 2, 3 }, { .1, .5, 2 } })
+		{
+			double alphaSum = 0;
+			for (double alpha : alphas)
+			{
+				alphaSum += alpha;
+			}
+
+			double[] sample = new double[alphas.length];
+			double[] means = new double[alphas.length];
+			for (int i = 0; i < N / 4; ++i)
+			{
+				rand.nextDirichlet(alphas, sample);
+				double sum = 0;
+				for (int j = 0; j < sample.length; ++j)
+				{
+					sum += sample[j];
+					means[j] += sample[j] / (N / 4);
+				}
+				assertEquals(1.0, sum, 1e-12);
+			}
+			for (int j = 0; j < alphas.length; ++j)
+			{
+				assertEquals(alphas[j] / alphaSum, means[j], .005);
+			}
+		}
+
+		// In place
+		double[] values = { 2, 2 };
+		assertSame(values, rand.nextDirichlet(values, values));
+		assertEquals(1.0, values[0] + values[1], 1e-12);
+
+		// All zero parameters
+		values = new double[3];
+		rand.nextDirichlet(values, values);
+		assertEquals(1.0, values[0] + values[1] + values[2], 0.0);
+	}
+
+	@Test
+	public void testSplit()
+	{
+		DimpleRandom r1 = newRandom(42);
+		DimpleRandom r2 = r1.split();
+		assertEquals(r1.getSeed(), r2.getSeed());
+		assertNotEquals(r1.nextLong(), r2.nextLong());
+
+		// Reproducible
+		DimpleRandom r3 = newRandom(42).split();
+		r2 = newRandom(42).split();
+		for (int i = 0; i < 10; ++i)
+		{
+			assertEquals(r2.nextGaussian(), r3.nextGaussian(), 0.0);
+		}
+	}
+
+	private static DimpleRandom newRandom(long seed)
+	{
+		return new DimpleRandom(new Xoshiro256StarStar(seed), seed);
+	}
+
+	private static double digamma(double x)
+	{
+		double result = 0;
+		for (; x < 6; x += 1)
+		{
+			result -= 1 / x;
+		}
+		final double f = 1 / (x * x);
+		return result + Math.log(x) - .5 / x - f * (1.0/12 - f * (1.0/120 - f * (1.0/252 - f * (1.0/240 - f / 132))));
+	}
+}